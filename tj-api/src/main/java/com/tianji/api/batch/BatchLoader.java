@@ -0,0 +1,240 @@
+package com.tianji.api.batch;
+
+import cn.hutool.core.lang.UUID;
+import com.tianji.common.utils.CollUtils;
+import com.tianji.common.utils.ContextSnapshot;
+import com.tianji.common.utils.UserContext;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import static com.tianji.common.constants.Constant.REQUEST_ID_HEADER;
+
+/**
+ * 按id批量查询的请求合并器。
+ * <p>
+ * 在很短的时间窗口内收集并发的单个或小批量查询，对id去重后只发起一次远程调用，再把结果按照每个调用者请求的id分发回去。
+ * 窗口内的id数量达到上限时立即发起调用，不再等待窗口结束。远程调用失败时，窗口内所有调用者都会收到同样的异常。
+ * 合并的请求可能来自不同的用户，远程调用不以任何一个调用者的身份发起：执行时不设置用户（{@link UserContext}），
+ * MDC中只有批次自己生成的requestId，并在日志中记录合并了哪些调用者的requestId，便于从调用者的请求追踪到批次。
+ * </p>
+ *
+ * @param <K> id类型
+ * @param <V> 查询结果类型
+ */
+@Slf4j
+public class BatchLoader<K, V> {
+
+    private final String name;
+    private final Function<List<K>, List<V>> remoteLoader;
+    private final Function<V, K> idGetter;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+
+    /**
+     * 当前正在收集的批次
+     */
+    private Batch<K, V> current;
+
+    /**
+     * @param name         名称，用于日志
+     * @param remoteLoader 批量查询的远程调用
+     * @param idGetter     从查询结果中获取id
+     * @param window       收集请求的时间窗口
+     * @param maxBatchSize 单次远程调用的最大id数量
+     * @param scheduler    用于触发窗口结束
+     * @param executor     用于执行远程调用
+     */
+    public BatchLoader(String name, Function<List<K>, List<V>> remoteLoader, Function<V, K> idGetter,
+                       Duration window, int maxBatchSize, ScheduledExecutorService scheduler, Executor executor) {
+        this.name = name;
+        this.remoteLoader = remoteLoader;
+        this.idGetter = idGetter;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    /**
+     * 异步查询单个id
+     *
+     * @param id id
+     * @return 查询结果，不存在时结果为null
+     */
+    public CompletableFuture<V> load(K id) {
+        return loadAll(CollUtils.singletonList(id)).thenApply(map -> map.get(id));
+    }
+
+    /**
+     * 异步批量查询
+     *
+     * @param ids id集合
+     * @return id和查询结果的map，不存在的id不包含在内
+     */
+    public CompletableFuture<Map<K, V>> loadAll(Collection<K> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return CompletableFuture.completedFuture(CollUtils.emptyMap());
+        }
+        Request<K, V> request = new Request<>(ids);
+        Batch<K, V> full = null;
+        synchronized (this) {
+            if (current == null) {
+                // 新窗口，到期后发起调用
+                Batch<K, V> batch = new Batch<>();
+                current = batch;
+                scheduler.schedule(() -> flush(batch), windowNanos, TimeUnit.NANOSECONDS);
+            }
+            current.add(request);
+            if (current.ids.size() >= maxBatchSize) {
+                // 达到上限，立即发起调用
+                full = current;
+                current = null;
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return request.future;
+    }
+
+    /**
+     * 同步批量查询，与Feign客户端的批量查询接口对应
+     *
+     * @param ids id集合
+     * @return 查询结果的列表，按照id的顺序排列，不存在的id被忽略
+     */
+    public List<V> getAll(Collection<K> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return CollUtils.emptyList();
+        }
+        Map<K, V> map = join(loadAll(ids));
+        List<V> list = new ArrayList<>(map.size());
+        Set<K> added = new HashSet<>(map.size());
+        for (K id : ids) {
+            V v = map.get(id);
+            if (v != null && added.add(id)) {
+                list.add(v);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 同步查询单个id
+     */
+    public V get(K id) {
+        return join(load(id));
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    private void flush(Batch<K, V> batch) {
+        synchronized (this) {
+            if (current != batch) {
+                // 已经因为达到上限被发出
+                return;
+            }
+            current = null;
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(Batch<K, V> batch) {
+        // 批次没有用户，MDC中只有批次自己的requestId；线程池满时可能由某个调用者线程执行，执行完后恢复它的上下文
+        String batchId = UUID.randomUUID().toString(true);
+        ContextSnapshot context = ContextSnapshot.of(null, Collections.singletonMap(REQUEST_ID_HEADER, batchId));
+        try {
+            executor.execute(context.wrap(() -> execute(batch, batchId)));
+        } catch (RejectedExecutionException e) {
+            batch.fail(e);
+        }
+    }
+
+    private void execute(Batch<K, V> batch, String batchId) {
+        try {
+            List<K> ids = new ArrayList<>(batch.ids);
+            Map<K, V> result = new HashMap<>(ids.size());
+            for (int i = 0; i < ids.size(); i += maxBatchSize) {
+                List<V> list = remoteLoader.apply(ids.subList(i, Math.min(i + maxBatchSize, ids.size())));
+                if (list == null) {
+                    continue;
+                }
+                for (V v : list) {
+                    result.put(idGetter.apply(v), v);
+                }
+            }
+            log.debug("{}批次{}合并了{}个请求，共{}个id", name, batchId, batch.requests.size(), ids.size());
+            batch.complete(result);
+        } catch (Throwable e) {
+            log.warn("{}批次{}批量查询失败，共{}个请求，requestId：{}", name, batchId, batch.requests.size(), batch.requestIds(), e);
+            batch.fail(e);
+        }
+    }
+
+    private static class Request<K, V> {
+        private final Collection<K> ids;
+        private final CompletableFuture<Map<K, V>> future = new CompletableFuture<>();
+        private final String requestId = MDC.get(REQUEST_ID_HEADER);
+
+        Request(Collection<K> ids) {
+            this.ids = ids;
+        }
+    }
+
+    private static class Batch<K, V> {
+        private final Set<K> ids = new LinkedHashSet<>();
+        private final List<Request<K, V>> requests = new ArrayList<>();
+
+        void add(Request<K, V> request) {
+            ids.addAll(request.ids);
+            requests.add(request);
+        }
+
+        List<String> requestIds() {
+            List<String> requestIds = new ArrayList<>(requests.size());
+            for (Request<K, V> request : requests) {
+                if (request.requestId != null) {
+                    requestIds.add(request.requestId);
+                }
+            }
+            return requestIds;
+        }
+
+        void complete(Map<K, V> result) {
+            for (Request<K, V> request : requests) {
+                // 每个调用者只拿到自己请求的id
+                Map<K, V> slice = new HashMap<>(request.ids.size());
+                for (K id : request.ids) {
+                    V v = result.get(id);
+                    if (v != null) {
+                        slice.put(id, v);
+                    }
+                }
+                request.future.complete(slice);
+            }
+        }
+
+        void fail(Throwable e) {
+            for (Request<K, V> request : requests) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+}
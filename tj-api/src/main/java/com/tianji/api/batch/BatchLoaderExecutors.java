@@ -0,0 +1,45 @@
+package com.tianji.api.batch;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 所有{@link BatchLoader}共用的线程：一个调度线程用于触发窗口结束，一个线程池用于执行合并后的远程调用
+ */
+public class BatchLoaderExecutors implements DisposableBean {
+
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor executor;
+
+    public BatchLoaderExecutors(int threads) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "batch-loader-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger index = new AtomicInteger();
+        // 线程池满了以后由调用者线程执行，对调用者形成背压
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(1000), r -> {
+                    Thread t = new Thread(r, "batch-loader-" + index.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdown();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,41 @@
+package com.tianji.api.cache;
+
+import com.tianji.common.utils.ContextSnapshot;
+import com.tianji.common.utils.UserContext;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地缓存后台刷新共用的线程池。
+ * <p>
+ * 刷新是阻塞的feign调用，不能占用ForkJoinPool.commonPool()。触发刷新的请求的用户（{@link UserContext}）
+ * 和MDC（requestId）会传递到刷新线程，保证feign调用能够继续传递用户和请求id。线程池满时由调用者线程执行。
+ * </p>
+ */
+public class CacheRefreshExecutor implements Executor, DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+
+    public CacheRefreshExecutor(int threads) {
+        AtomicInteger index = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(100), r -> {
+                    Thread t = new Thread(r, "cache-refresh-" + index.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(ContextSnapshot.capture().wrap(command));
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -1,34 +1,69 @@
 package com.tianji.api.cache;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
 import com.tianji.api.client.course.CategoryClient;
 import com.tianji.api.dto.course.CategoryBasicDTO;
 import com.tianji.common.utils.CollUtils;
-import lombok.RequiredArgsConstructor;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
-@RequiredArgsConstructor
+/**
+ * 课程分类的缓存。
+ * <p>
+ * 全部分类缓存在一个key中。缓存写入一段时间后，下一次访问会在后台刷新，刷新完成前继续返回旧数据，
+ * 避免缓存过期时所有请求同时阻塞在远程调用上；缓存为空时，并发的请求只会触发一次远程调用。
+ * </p>
+ */
 public class CategoryCache {
+    private static final String CATEGORY_KEY = "CATEGORY";
+    /**
+     * 分类的有效期，超过有效期没有被访问才需要阻塞加载
+     */
+    static final Duration TTL = Duration.ofMinutes(30);
+    /**
+     * 写入超过这个时间后，访问时在后台刷新
+     */
+    static final Duration REFRESH_AFTER = Duration.ofMinutes(10);
 
-    private final Cache<String, Map<Long, CategoryBasicDTO>> categoryCaches;
+    private final LoadingCache<String, Map<Long, CategoryBasicDTO>> categoryCaches;
 
-    private final CategoryClient categoryClient;
+    /**
+     * @param categoryClient 远程查询
+     * @param refreshExecutor 后台刷新使用的线程池
+     */
+    public CategoryCache(CategoryClient categoryClient, Executor refreshExecutor) {
+        this(categoryClient, Ticker.systemTicker(), refreshExecutor);
+    }
+
+    CategoryCache(CategoryClient categoryClient, Ticker ticker, Executor executor) {
+        this.categoryCaches = Caffeine.newBuilder()
+                .initialCapacity(1)
+                .maximumSize(1)
+                .expireAfterWrite(TTL)
+                .refreshAfterWrite(REFRESH_AFTER)
+                .ticker(ticker)
+                .executor(executor)
+                .build(new CategoryLoader(categoryClient));
+    }
 
     public Map<Long, CategoryBasicDTO> getCategoryMap() {
-        return categoryCaches.get("CATEGORY", key -> {
-            // 1.从CategoryClient查询
-            List<CategoryBasicDTO> list = categoryClient.getAllOfOneLevel();
-            if (list == null || list.isEmpty()) {
-                return CollUtils.emptyMap();
-            }
-            // 2.转换数据
-            return list.stream().collect(Collectors.toMap(CategoryBasicDTO::getId, Function.identity()));
-        });
+        return categoryCaches.get(CATEGORY_KEY);
+    }
+
+    /**
+     * 清除分类缓存，下次访问时重新加载
+     */
+    public void invalidate() {
+        categoryCaches.invalidateAll();
     }
 
     public String getCategoryNames(List<Long> ids) {
@@ -90,4 +125,30 @@ public class CategoryCache {
         CategoryBasicDTO lv1 = map.get(lv2.getParentId());
         return lv1.getName() + "/" + lv2.getName() + "/" + lv3.getName();
     }
+
+    private static class CategoryLoader implements CacheLoader<String, Map<Long, CategoryBasicDTO>> {
+        private final CategoryClient categoryClient;
+
+        private CategoryLoader(CategoryClient categoryClient) {
+            this.categoryClient = categoryClient;
+        }
+
+        @Override
+        public Map<Long, CategoryBasicDTO> load(String key) {
+            // 1.从CategoryClient查询
+            List<CategoryBasicDTO> list = categoryClient.getAllOfOneLevel();
+            if (list == null || list.isEmpty()) {
+                return CollUtils.emptyMap();
+            }
+            // 2.转换数据
+            return list.stream().collect(Collectors.toMap(CategoryBasicDTO::getId, Function.identity()));
+        }
+
+        @Override
+        public Map<Long, CategoryBasicDTO> reload(String key, Map<Long, CategoryBasicDTO> oldValue) {
+            Map<Long, CategoryBasicDTO> map = load(key);
+            // 后台刷新没有查到数据时，继续使用旧数据
+            return map.isEmpty() ? oldValue : map;
+        }
+    }
 }
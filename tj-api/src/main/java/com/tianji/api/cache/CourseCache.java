@@ -0,0 +1,200 @@
+package com.tianji.api.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.tianji.api.client.course.CourseClient;
+import com.tianji.api.dto.course.CourseSimpleInfoDTO;
+import com.tianji.common.utils.CollUtils;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 课程简单信息的缓存。
+ * <p>
+ * 本地caffeine缓存为第一级，可选的redis缓存为第二级，多个实例共享。批量查询时只加载缺失的课程，
+ * 先查redis，仍然缺失的才远程调用课程服务。课程上架、下架、过期、删除时由{@link CourseCacheInvalidator}清除缓存。
+ * </p>
+ */
+public class CourseCache {
+    /**
+     * 单次远程调用最多查询的课程数量，避免请求参数过长
+     */
+    private static final int REMOTE_BATCH_SIZE = 200;
+
+    private final Cache<Long, CourseSimpleInfoDTO> courseCaches;
+    private final Function<List<Long>, List<CourseSimpleInfoDTO>> remoteLoader;
+    @Nullable
+    private final CourseRedisCache redisCache;
+
+    private final LongAdder redisHitCount = new LongAdder();
+    private final LongAdder redisMissCount = new LongAdder();
+    private final LongAdder remoteCallCount = new LongAdder();
+
+    /**
+     * @param courseCaches  本地缓存
+     * @param remoteLoader  远程批量查询课程，通常是{@link CourseClient#getSimpleInfoList(Iterable)}或者合并了请求的批量查询
+     * @param redisCache    redis缓存，为null代表不使用redis缓存
+     */
+    public CourseCache(Cache<Long, CourseSimpleInfoDTO> courseCaches,
+                       Function<List<Long>, List<CourseSimpleInfoDTO>> remoteLoader,
+                       @Nullable CourseRedisCache redisCache) {
+        this.courseCaches = courseCaches;
+        this.remoteLoader = remoteLoader;
+        this.redisCache = redisCache;
+    }
+
+    /**
+     * 根据id查询课程简单信息
+     *
+     * @param id 课程id
+     * @return 课程简单信息，课程不存在时返回null
+     */
+    public CourseSimpleInfoDTO getSimpleInfo(Long id) {
+        if (id == null) {
+            return null;
+        }
+        return getSimpleInfoMap(CollUtils.singletonList(id)).get(id);
+    }
+
+    /**
+     * 根据id集合查询课程简单信息，与{@link CourseClient#getSimpleInfoList(Iterable)}对应
+     *
+     * @param ids 课程id集合
+     * @return 课程简单信息的列表，按照id的顺序排列，不存在的课程被忽略
+     */
+    public List<CourseSimpleInfoDTO> getSimpleInfoList(Collection<Long> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return CollUtils.emptyList();
+        }
+        Map<Long, CourseSimpleInfoDTO> map = getSimpleInfoMap(ids);
+        List<CourseSimpleInfoDTO> list = new ArrayList<>(map.size());
+        Set<Long> added = new HashSet<>(map.size());
+        for (Long id : ids) {
+            CourseSimpleInfoDTO info = map.get(id);
+            if (info != null && added.add(id)) {
+                list.add(info);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 根据id集合查询课程简单信息
+     *
+     * @param ids 课程id集合
+     * @return 课程id和课程简单信息的map，不存在的课程不包含在内
+     */
+    public Map<Long, CourseSimpleInfoDTO> getSimpleInfoMap(Collection<Long> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return CollUtils.emptyMap();
+        }
+        // 本地缓存未命中的id会一起交给loadAll批量加载
+        return courseCaches.getAll(ids, this::loadAll);
+    }
+
+    private Map<Long, CourseSimpleInfoDTO> loadAll(Iterable<? extends Long> keys) {
+        List<Long> missing = new ArrayList<>();
+        keys.forEach(missing::add);
+        Map<Long, CourseSimpleInfoDTO> result = new HashMap<>(missing.size());
+        // 1.查询redis缓存
+        if (redisCache != null) {
+            int total = missing.size();
+            missing = redisCache.getAll(missing, result);
+            redisHitCount.add(total - missing.size());
+            redisMissCount.add(missing.size());
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        // 2.远程查询缺失的课程
+        Map<Long, CourseSimpleInfoDTO> loaded = new HashMap<>(missing.size());
+        for (int i = 0; i < missing.size(); i += REMOTE_BATCH_SIZE) {
+            List<Long> batch = missing.subList(i, Math.min(i + REMOTE_BATCH_SIZE, missing.size()));
+            remoteCallCount.increment();
+            List<CourseSimpleInfoDTO> list = remoteLoader.apply(batch);
+            if (CollUtils.isNotEmpty(list)) {
+                for (CourseSimpleInfoDTO info : list) {
+                    loaded.put(info.getId(), info);
+                }
+            }
+        }
+        // 3.写入redis缓存
+        if (redisCache != null && !loaded.isEmpty()) {
+            redisCache.putAll(loaded.values());
+        }
+        result.putAll(loaded);
+        return result;
+    }
+
+    /**
+     * 清除课程缓存
+     *
+     * @param id 课程id
+     */
+    public void invalidate(Long id) {
+        courseCaches.invalidate(id);
+        if (redisCache != null) {
+            redisCache.delete(id);
+        }
+    }
+
+    /**
+     * 清除全部本地缓存
+     */
+    public void invalidateAll() {
+        courseCaches.invalidateAll();
+    }
+
+    /**
+     * 缓存命中情况
+     */
+    public CourseCacheStats stats() {
+        CacheStats local = courseCaches.stats();
+        return new CourseCacheStats(local.hitCount(), local.missCount(),
+                redisHitCount.sum(), redisMissCount.sum(), remoteCallCount.sum());
+    }
+
+    /**
+     * 课程缓存的命中统计
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+    public static class CourseCacheStats {
+        private final long localHitCount;
+        private final long localMissCount;
+        private final long redisHitCount;
+        private final long redisMissCount;
+        /**
+         * 远程调用课程服务的次数
+         */
+        private final long remoteCallCount;
+
+        /**
+         * 本地缓存命中率
+         */
+        public double getLocalHitRate() {
+            long total = localHitCount + localMissCount;
+            return total == 0 ? 1.0 : (double) localHitCount / total;
+        }
+
+        /**
+         * 本地和redis缓存的总命中率
+         */
+        public double getHitRate() {
+            long total = localHitCount + localMissCount;
+            return total == 0 ? 1.0 : (double) (localHitCount + redisHitCount) / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("本地命中率：%.2f%%，总命中率：%.2f%%，远程调用次数：%d",
+                    getLocalHitRate() * 100, getHitRate() * 100, remoteCallCount);
+        }
+    }
+}
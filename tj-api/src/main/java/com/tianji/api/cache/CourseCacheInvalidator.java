@@ -0,0 +1,34 @@
+package com.tianji.api.cache;
+
+import com.tianji.common.constants.MqConstants;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+
+/**
+ * 监听课程变更事件，清除课程缓存。每个实例使用自己的匿名队列，保证所有实例都能收到消息
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class CourseCacheInvalidator {
+
+    private final CourseCache courseCache;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(name = MqConstants.Exchange.COURSE_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = {MqConstants.Key.COURSE_UP_KEY, MqConstants.Key.COURSE_DOWN_KEY,
+                    MqConstants.Key.COURSE_EXPIRE_KEY, MqConstants.Key.COURSE_DELETE_KEY}
+    ))
+    public void listenCourseChange(Long courseId) {
+        if (courseId == null) {
+            return;
+        }
+        log.debug("课程{}发生变更，清除课程缓存", courseId);
+        courseCache.invalidate(courseId);
+    }
+}
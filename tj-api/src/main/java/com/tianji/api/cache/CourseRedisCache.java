@@ -0,0 +1,86 @@
+package com.tianji.api.cache;
+
+import com.tianji.api.dto.course.CourseSimpleInfoDTO;
+import com.tianji.common.utils.JsonUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 课程简单信息的redis缓存，作为{@link CourseCache}的共享二级缓存。redis异常时只记录日志，由调用者回源查询
+ */
+@Slf4j
+public class CourseRedisCache {
+    private static final String KEY_PREFIX = "cache:course:simple:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final long ttlMillis;
+
+    public CourseRedisCache(StringRedisTemplate redisTemplate, Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    /**
+     * 批量查询
+     *
+     * @param ids    课程id
+     * @param result 查到的课程信息放入其中
+     * @return 缓存中不存在的课程id
+     */
+    public List<Long> getAll(List<Long> ids, Map<Long, CourseSimpleInfoDTO> result) {
+        List<String> keys = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            keys.add(KEY_PREFIX + id);
+        }
+        List<String> values;
+        try {
+            values = redisTemplate.opsForValue().multiGet(keys);
+        } catch (Exception e) {
+            log.warn("查询课程的redis缓存失败，直接查询课程服务", e);
+            return ids;
+        }
+        List<Long> missing = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String json = values == null ? null : values.get(i);
+            if (json == null) {
+                missing.add(ids.get(i));
+                continue;
+            }
+            result.put(ids.get(i), JsonUtils.toBean(json, CourseSimpleInfoDTO.class));
+        }
+        return missing;
+    }
+
+    /**
+     * 批量写入，通过pipeline一次发送
+     */
+    public void putAll(Collection<CourseSimpleInfoDTO> infos) {
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (CourseSimpleInfoDTO info : infos) {
+                    connection.pSetEx((KEY_PREFIX + info.getId()).getBytes(StandardCharsets.UTF_8), ttlMillis,
+                            JsonUtils.toJsonStr(info).getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("写入课程的redis缓存失败", e);
+        }
+    }
+
+    public void delete(Long id) {
+        try {
+            redisTemplate.delete(KEY_PREFIX + id);
+        } catch (Exception e) {
+            log.warn("删除课程{}的redis缓存失败", id, e);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.tianji.api.cache;
+
+import lombok.Getter;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * 用户的课程权益缓存，即用户课表中有哪些课程，以及各自的有效期。
+ * <p>
+ * 每个用户一个hash，field为课程id，value为"课表id,过期时间戳(秒)"，过期时间戳为0代表永久有效。
+ * 学习服务从数据库加载用户的全部课表后写入，并标记{@link #LOADED_FIELD}；课程报名、退款时增量修改。
+ * 播放视频等鉴权场景直接读取缓存，不需要远程调用学习服务。
+ * </p>
+ * <p>
+ * 增量添加时hash可能还没有加载过，此时只写入这一门课程，没有加载标记的hash在读取时仍然视为未加载，
+ * 加载时与已有的field合并，不会覆盖增量添加的课程。
+ * </p>
+ * <p>
+ * 每次增量修改都会递增用户的版本号。加载前先读取版本号，写入时版本号已经变化，说明加载期间课表有了新的提交，
+ * 读到的课表可能已经过时（例如包含刚退款的课程），放弃写入，下次查询再加载。删除课程必须在事务提交后调用。
+ * </p>
+ */
+public class LessonEntitlementCache {
+    private static final String KEY_PREFIX = "learning:lesson:valid:";
+    private static final String VERSION_KEY_PREFIX = "learning:lesson:valid:ver:";
+    /**
+     * 标记用户的全部课表已经加载
+     */
+    private static final String LOADED_FIELD = "loaded";
+    /**
+     * 缓存有效期，过期后重新从数据库加载
+     */
+    static final Duration TTL = Duration.ofDays(1);
+
+    /**
+     * 递增版本号并写入一门课程，hash没有有效期时（新创建）设置有效期
+     */
+    static final RedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('incr', KEYS[2]) redis.call('expire', KEYS[2], ARGV[3]) " +
+            "redis.call('hset', KEYS[1], ARGV[1], ARGV[2]) " +
+            "if redis.call('ttl', KEYS[1]) < 0 then redis.call('expire', KEYS[1], ARGV[3]) end " +
+            "return 1", Long.class);
+    /**
+     * 递增版本号并删除一门课程
+     */
+    static final RedisScript<Long> REMOVE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('incr', KEYS[2]) redis.call('expire', KEYS[2], ARGV[2]) " +
+            "return redis.call('hdel', KEYS[1], ARGV[1])", Long.class);
+    /**
+     * 版本号与加载前读取的一致时，写入全部课程并设置有效期。ARGV[1]为版本号，ARGV[2]为有效期，之后依次为field和value
+     */
+    static final RedisScript<Long> PUT_ALL_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('get', KEYS[2]) or '0') ~= ARGV[1] then return 0 end " +
+            "for i = 3, #ARGV, 2 do redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('expire', KEYS[1], ARGV[2]) " +
+            "return 1", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public LessonEntitlementCache(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 查询用户对课程的权益
+     *
+     * @param userId   用户id
+     * @param courseId 课程id
+     * @return 课程权益，用户没有该课程时返回{@link LessonEntitlement#NONE}；用户的课表尚未加载到缓存时返回null
+     */
+    public LessonEntitlement get(Long userId, Long courseId) {
+        if (userId == null || courseId == null) {
+            return null;
+        }
+        List<Object> values = redisTemplate.opsForHash().multiGet(key(userId), List.of(courseId.toString(), LOADED_FIELD));
+        if (values == null) {
+            return null;
+        }
+        Object value = values.get(0);
+        if (value != null) {
+            return LessonEntitlement.parse(value.toString());
+        }
+        return values.get(1) == null ? null : LessonEntitlement.NONE;
+    }
+
+    /**
+     * 查询用户课程权益的当前版本号，从数据库加载课表之前调用
+     *
+     * @param userId 用户id
+     * @return 版本号
+     */
+    public String currentVersion(Long userId) {
+        String version = redisTemplate.opsForValue().get(versionKey(userId));
+        return version == null ? "0" : version;
+    }
+
+    /**
+     * 写入用户的全部课程权益，并标记为已加载
+     *
+     * @param userId       用户id
+     * @param entitlements 课程id和课程权益
+     * @param version      加载课表之前读取的版本号
+     * @return 是否写入，加载期间课表有变化时不写入
+     */
+    public boolean putAll(Long userId, Map<Long, LessonEntitlement> entitlements, String version) {
+        List<String> args = new ArrayList<>(entitlements.size() * 2 + 4);
+        args.add(version);
+        args.add(String.valueOf(TTL.getSeconds()));
+        entitlements.forEach((courseId, e) -> {
+            args.add(courseId.toString());
+            args.add(e.format());
+        });
+        args.add(LOADED_FIELD);
+        args.add("1");
+        Long result = redisTemplate.execute(PUT_ALL_SCRIPT, keys(userId), args.toArray());
+        return result != null && result > 0;
+    }
+
+    /**
+     * 用户新增了课程
+     *
+     * @param userId      用户id
+     * @param courseId    课程id
+     * @param entitlement 课程权益
+     */
+    public void add(Long userId, Long courseId, LessonEntitlement entitlement) {
+        redisTemplate.execute(ADD_SCRIPT, keys(userId),
+                courseId.toString(), entitlement.format(), String.valueOf(TTL.getSeconds()));
+    }
+
+    /**
+     * 用户的课程被移除，例如退款。必须在删除课表的事务提交后调用，否则并发的加载可能把课程重新写回缓存
+     *
+     * @param userId   用户id
+     * @param courseId 课程id
+     */
+    public void remove(Long userId, Long courseId) {
+        redisTemplate.execute(REMOVE_SCRIPT, keys(userId), courseId.toString(), String.valueOf(TTL.getSeconds()));
+    }
+
+    private static String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    private static String versionKey(Long userId) {
+        return VERSION_KEY_PREFIX + userId;
+    }
+
+    private static List<String> keys(Long userId) {
+        return List.of(key(userId), versionKey(userId));
+    }
+
+    /**
+     * 用户对一门课程的权益
+     */
+    @Getter
+    public static class LessonEntitlement {
+        /**
+         * 用户没有这门课程
+         */
+        public static final LessonEntitlement NONE = new LessonEntitlement(null, 0);
+
+        /**
+         * 课表id
+         */
+        private final Long lessonId;
+        /**
+         * 过期时间戳，单位秒，0代表永久有效
+         */
+        private final long expireAt;
+
+        private LessonEntitlement(Long lessonId, long expireAt) {
+            this.lessonId = lessonId;
+            this.expireAt = expireAt;
+        }
+
+        public static LessonEntitlement of(Long lessonId, LocalDateTime expireTime) {
+            return new LessonEntitlement(lessonId,
+                    expireTime == null ? 0 : expireTime.atZone(ZoneId.systemDefault()).toEpochSecond());
+        }
+
+        /**
+         * 课程有效时返回课表id，没有该课程或已过期时返回null
+         */
+        public Long getValidLessonId() {
+            if (lessonId == null) {
+                return null;
+            }
+            if (expireAt > 0 && Instant.now().getEpochSecond() > expireAt) {
+                return null;
+            }
+            return lessonId;
+        }
+
+        String format() {
+            return lessonId + "," + expireAt;
+        }
+
+        static LessonEntitlement parse(String value) {
+            int i = value.indexOf(',');
+            return new LessonEntitlement(Long.valueOf(value.substring(0, i)), Long.parseLong(value.substring(i + 1)));
+        }
+    }
+}
@@ -1,24 +1,65 @@
 package com.tianji.api.cache;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
 import com.tianji.api.client.auth.AuthClient;
 import com.tianji.api.dto.auth.RoleDTO;
 import com.tianji.api.dto.user.UserDTO;
 import com.tianji.common.enums.UserType;
-import lombok.RequiredArgsConstructor;
 
-@RequiredArgsConstructor
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+/**
+ * 角色的缓存。
+ * <p>
+ * 同一个角色同时只会有一次远程调用，其它请求等待这次调用的结果。缓存写入一段时间后，下一次访问会在后台刷新，
+ * 刷新完成前继续返回旧值，刷新失败时保留旧值。不存在的角色也会缓存一小段时间，避免反复查询认证服务。
+ * </p>
+ */
 public class RoleCache {
+    /**
+     * 角色的有效期
+     */
+    static final Duration TTL = Duration.ofMinutes(30);
+    /**
+     * 写入超过这个时间后，访问时在后台刷新
+     */
+    static final Duration REFRESH_AFTER = Duration.ofMinutes(10);
+    /**
+     * 不存在的角色的有效期
+     */
+    static final Duration NEGATIVE_TTL = Duration.ofMinutes(1);
+
+    private final LoadingCache<Long, Optional<RoleDTO>> roleCaches;
 
-    private final Cache<Long, RoleDTO> roleCaches;
-    private final AuthClient authClient;
+    /**
+     * @param authClient 远程查询
+     * @param refreshExecutor 后台刷新使用的线程池
+     */
+    public RoleCache(AuthClient authClient, Executor refreshExecutor) {
+        this(authClient, Ticker.systemTicker(), refreshExecutor);
+    }
+
+    RoleCache(AuthClient authClient, Ticker ticker, Executor executor) {
+        this.roleCaches = Caffeine.newBuilder()
+                .initialCapacity(1)
+                .maximumSize(10_000)
+                .expireAfter(new RoleExpiry())
+                .refreshAfterWrite(REFRESH_AFTER)
+                .ticker(ticker)
+                .executor(executor)
+                .build(id -> Optional.ofNullable(authClient.queryRoleById(id)));
+    }
 
     public String getRoleName(Long roleId) {
-        RoleDTO roleDTO = roleCaches.get(roleId, authClient::queryRoleById);
-        if (roleDTO == null) {
+        if (roleId == null) {
             return null;
         }
-        return roleDTO.getName();
+        return roleCaches.get(roleId).map(RoleDTO::getName).orElse(null);
     }
 
     public String exchangeRoleName(UserDTO u) {
@@ -33,4 +74,33 @@ public class RoleCache {
             return getRoleName(u.getRoleId()) + "-" + u.getName();
         }
     }
+
+    /**
+     * 清除角色缓存
+     *
+     * @param roleId 角色id
+     */
+    public void invalidate(Long roleId) {
+        roleCaches.invalidate(roleId);
+    }
+
+    /**
+     * 存在的角色和不存在的角色使用不同的有效期，重新加载后按照新值计算有效期
+     */
+    private static class RoleExpiry implements Expiry<Long, Optional<RoleDTO>> {
+        @Override
+        public long expireAfterCreate(Long key, Optional<RoleDTO> value, long currentTime) {
+            return value.isPresent() ? TTL.toNanos() : NEGATIVE_TTL.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Long key, Optional<RoleDTO> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Long key, Optional<RoleDTO> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package com.tianji.api.config;
+
+import com.tianji.api.batch.BatchLoader;
+import com.tianji.api.batch.BatchLoaderExecutors;
+import com.tianji.api.client.course.CatalogueClient;
+import com.tianji.api.client.course.CourseClient;
+import com.tianji.api.client.user.UserClient;
+import com.tianji.api.dto.course.CataSimpleInfoDTO;
+import com.tianji.api.dto.course.CourseSimpleInfoDTO;
+import com.tianji.api.dto.user.UserDTO;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+
+@EnableConfigurationProperties(BatchLoaderProperties.class)
+public class BatchLoaderConfig {
+
+    /**
+     * 请求合并器共用的线程
+     */
+    @Bean
+    public BatchLoaderExecutors batchLoaderExecutors(BatchLoaderProperties properties) {
+        return new BatchLoaderExecutors(properties.getThreads());
+    }
+
+    /**
+     * 合并根据id查询用户的请求
+     */
+    @Bean
+    public BatchLoader<Long, UserDTO> userBatchLoader(
+            UserClient userClient, BatchLoaderProperties properties,
+            BatchLoaderExecutors executors) {
+        return new BatchLoader<>("UserClient.queryUserByIds", userClient::queryUserByIds, UserDTO::getId,
+                properties.getWindow(), properties.getMaxBatchSize(),
+                executors.getScheduler(), executors.getExecutor());
+    }
+
+    /**
+     * 合并根据id查询课程的请求
+     */
+    @Bean
+    public BatchLoader<Long, CourseSimpleInfoDTO> courseBatchLoader(
+            CourseClient courseClient, BatchLoaderProperties properties,
+            BatchLoaderExecutors executors) {
+        return new BatchLoader<>("CourseClient.getSimpleInfoList", courseClient::getSimpleInfoList,
+                CourseSimpleInfoDTO::getId, properties.getWindow(), properties.getMaxBatchSize(),
+                executors.getScheduler(), executors.getExecutor());
+    }
+
+    /**
+     * 合并根据id查询目录的请求
+     */
+    @Bean
+    public BatchLoader<Long, CataSimpleInfoDTO> catalogueBatchLoader(
+            CatalogueClient catalogueClient, BatchLoaderProperties properties,
+            BatchLoaderExecutors executors) {
+        return new BatchLoader<>("CatalogueClient.batchQueryCatalogue", catalogueClient::batchQueryCatalogue,
+                CataSimpleInfoDTO::getId, properties.getWindow(), properties.getMaxBatchSize(),
+                executors.getScheduler(), executors.getExecutor());
+    }
+}
@@ -0,0 +1,23 @@
+package com.tianji.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "tj.api.batch")
+public class BatchLoaderProperties {
+    /**
+     * 合并请求的时间窗口
+     */
+    private Duration window = Duration.ofMillis(5);
+    /**
+     * 单次远程调用的最大id数量
+     */
+    private Integer maxBatchSize = 100;
+    /**
+     * 执行合并后远程调用的线程数
+     */
+    private Integer threads = 8;
+}
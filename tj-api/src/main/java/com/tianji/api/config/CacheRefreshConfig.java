@@ -0,0 +1,14 @@
+package com.tianji.api.config;
+
+import com.tianji.api.cache.CacheRefreshExecutor;
+import org.springframework.context.annotation.Bean;
+
+public class CacheRefreshConfig {
+    /**
+     * 分类、角色等本地缓存后台刷新共用的线程
+     */
+    @Bean
+    public CacheRefreshExecutor cacheRefreshExecutor() {
+        return new CacheRefreshExecutor(2);
+    }
+}
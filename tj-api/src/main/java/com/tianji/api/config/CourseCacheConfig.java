@@ -0,0 +1,77 @@
+package com.tianji.api.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tianji.api.batch.BatchLoader;
+import com.tianji.api.cache.CourseCache;
+import com.tianji.api.cache.CourseCacheInvalidator;
+import com.tianji.api.cache.CourseRedisCache;
+import com.tianji.api.dto.course.CourseSimpleInfoDTO;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@AutoConfigureAfter({BatchLoaderConfig.class, RabbitAutoConfiguration.class, RedisAutoConfiguration.class})
+@EnableConfigurationProperties(CourseCacheProperties.class)
+public class CourseCacheConfig {
+    /**
+     * 课程简单信息的caffeine缓存
+     */
+    @Bean
+    public Cache<Long, CourseSimpleInfoDTO> courseCaches(CourseCacheProperties properties){
+        return Caffeine.newBuilder()
+                .initialCapacity(128)
+                .maximumSize(properties.getLocalMaximumSize())
+                .expireAfterWrite(properties.getLocalTtl())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 课程的缓存工具类
+     */
+    @Bean
+    public CourseCache courseCache(Cache<Long, CourseSimpleInfoDTO> courseCaches,
+                                   BatchLoader<Long, CourseSimpleInfoDTO> courseBatchLoader,
+                                   ObjectProvider<CourseRedisCache> courseRedisCache){
+        // 不同请求同时未命中的课程，合并为一次远程调用
+        return new CourseCache(courseCaches, courseBatchLoader::getAll, courseRedisCache.getIfAvailable());
+    }
+
+    /**
+     * 开启后使用redis作为共享的二级缓存
+     */
+    @Configuration
+    @ConditionalOnClass(StringRedisTemplate.class)
+    @ConditionalOnProperty(prefix = "tj.cache.course", name = "redis-enabled", havingValue = "true")
+    static class CourseRedisCacheConfiguration {
+        @Bean
+        public CourseRedisCache courseRedisCache(StringRedisTemplate stringRedisTemplate,
+                                                 CourseCacheProperties properties){
+            return new CourseRedisCache(stringRedisTemplate, properties.getRedisTtl());
+        }
+    }
+
+    /**
+     * 监听课程变更，清除缓存
+     */
+    @Configuration
+    @ConditionalOnClass(RabbitTemplate.class)
+    @ConditionalOnBean(ConnectionFactory.class)
+    static class CourseCacheInvalidatorConfiguration {
+        @Bean
+        public CourseCacheInvalidator courseCacheInvalidator(CourseCache courseCache){
+            return new CourseCacheInvalidator(courseCache);
+        }
+    }
+}
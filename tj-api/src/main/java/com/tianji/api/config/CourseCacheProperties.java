@@ -0,0 +1,27 @@
+package com.tianji.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "tj.cache.course")
+public class CourseCacheProperties {
+    /**
+     * 本地缓存的最大课程数量
+     */
+    private Long localMaximumSize = 10_000L;
+    /**
+     * 本地缓存的有效期，课程变更事件丢失时作为兜底
+     */
+    private Duration localTtl = Duration.ofMinutes(10);
+    /**
+     * 是否使用redis作为共享的二级缓存
+     */
+    private Boolean redisEnabled = false;
+    /**
+     * redis缓存的有效期
+     */
+    private Duration redisTtl = Duration.ofMinutes(30);
+}
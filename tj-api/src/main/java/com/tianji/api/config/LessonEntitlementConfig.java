@@ -0,0 +1,22 @@
+package com.tianji.api.config;
+
+import com.tianji.api.cache.LessonEntitlementCache;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@ConditionalOnClass(StringRedisTemplate.class)
+@AutoConfigureAfter(RedisAutoConfiguration.class)
+public class LessonEntitlementConfig {
+    /**
+     * 用户课程权益的缓存，使用redis的服务才可用
+     */
+    @Bean
+    @ConditionalOnBean(StringRedisTemplate.class)
+    public LessonEntitlementCache lessonEntitlementCache(StringRedisTemplate stringRedisTemplate){
+        return new LessonEntitlementCache(stringRedisTemplate);
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
@@ -25,4 +26,12 @@ public class OrderBasicDTO {
      * 订单完成时间
      */
     private LocalDateTime finishTime;
+    /**
+     * 订单实付金额或退款金额，单位分
+     */
+    private Integer amount;
+    /**
+     * 每门课程的实付金额或退款金额，单位分，免费报名时为空
+     */
+    private Map<Long, Integer> courseAmounts;
 }
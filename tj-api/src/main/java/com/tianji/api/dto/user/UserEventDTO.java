@@ -0,0 +1,36 @@
+package com.tianji.api.dto.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户行为事件，例如注册、登录、学完小节
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserEventDTO {
+    /**
+     * 用户id
+     */
+    private Long userId;
+    /**
+     * 事件关联的课程id，学完小节时为小节所属的课程，其它事件为空
+     */
+    private Long courseId;
+    /**
+     * 事件发生的时间
+     */
+    private LocalDateTime time;
+
+    public static UserEventDTO of(Long userId, LocalDateTime time) {
+        return new UserEventDTO(userId, null, time);
+    }
+
+    public static UserEventDTO of(Long userId, Long courseId, LocalDateTime time) {
+        return new UserEventDTO(userId, courseId, time);
+    }
+}
@@ -0,0 +1,184 @@
+package com.tianji.api.batch;
+
+import com.tianji.api.dto.user.UserDTO;
+import com.tianji.common.utils.UserContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.tianji.common.constants.Constant.REQUEST_ID_HEADER;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用本地的用户服务替身测试请求合并
+ */
+class BatchLoaderTest {
+
+    private final BatchLoaderExecutors executors = new BatchLoaderExecutors(8);
+    private final AtomicInteger remoteCalls = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executors.destroy();
+    }
+
+    /**
+     * 用户服务的替身，模拟2毫秒的网络耗时，id为负数的用户不存在
+     */
+    private List<UserDTO> queryUserByIds(List<Long> ids) {
+        remoteCalls.incrementAndGet();
+        assertEquals(ids.size(), new HashSet<>(ids).size(), "id没有去重");
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<UserDTO> list = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            if (id < 0) {
+                continue;
+            }
+            UserDTO u = new UserDTO();
+            u.setId(id);
+            u.setName("user-" + id);
+            list.add(u);
+        }
+        return list;
+    }
+
+    private BatchLoader<Long, UserDTO> newLoader(int maxBatchSize) {
+        return new BatchLoader<>("UserClient.queryUserByIds", this::queryUserByIds, UserDTO::getId,
+                Duration.ofMillis(5), maxBatchSize, executors.getScheduler(), executors.getExecutor());
+    }
+
+    @Test
+    void testConcurrentLookups() throws Exception {
+        BatchLoader<Long, UserDTO> loader = newLoader(100);
+        int threads = 64;
+        int requestsPerThread = 200;
+        ExecutorService callers = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            futures.add(callers.submit(() -> {
+                start.await();
+                Random random = ThreadLocalRandom.current();
+                for (int i = 0; i < requestsPerThread; i++) {
+                    // 1到5个id，取值范围较小，并发请求之间有大量重复
+                    List<Long> ids = random.longs(1 + random.nextInt(5), -5, 50).boxed().collect(Collectors.toList());
+                    List<UserDTO> users = loader.getAll(ids);
+                    // 每个调用者只拿到自己请求的、存在的用户，按照请求的顺序排列
+                    List<Long> expected = ids.stream().filter(id -> id >= 0).distinct().collect(Collectors.toList());
+                    assertEquals(expected, users.stream().map(UserDTO::getId).collect(Collectors.toList()));
+                }
+                return requestsPerThread;
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        for (Future<Integer> future : futures) {
+            total += future.get(60, TimeUnit.SECONDS);
+        }
+        callers.shutdown();
+        assertTrue(remoteCalls.get() < total / 10, "请求没有被合并");
+    }
+
+    @Test
+    void testSingleLookup() throws Exception {
+        BatchLoader<Long, UserDTO> loader = newLoader(100);
+        CompletableFuture<UserDTO> f1 = loader.load(1L);
+        CompletableFuture<UserDTO> f2 = loader.load(1L);
+        CompletableFuture<UserDTO> f3 = loader.load(-1L);
+        assertEquals(1L, f1.get(1, TimeUnit.SECONDS).getId());
+        assertEquals(1L, f2.get(1, TimeUnit.SECONDS).getId());
+        assertNull(f3.get(1, TimeUnit.SECONDS));
+        assertEquals(1, remoteCalls.get());
+    }
+
+    @Test
+    void testFlushWhenFull() throws Exception {
+        BatchLoader<Long, UserDTO> loader = new BatchLoader<>("UserClient.queryUserByIds", this::queryUserByIds,
+                UserDTO::getId, Duration.ofSeconds(10), 10, executors.getScheduler(), executors.getExecutor());
+        List<Long> ids = new ArrayList<>();
+        for (long i = 0; i < 10; i++) {
+            ids.add(i);
+        }
+        // 达到上限立即发起调用，不等待10秒的窗口
+        assertEquals(10, loader.loadAll(ids).get(1, TimeUnit.SECONDS).size());
+    }
+
+    @Test
+    void testBatchContext() throws Exception {
+        Map<String, Optional<Object>> seen = new ConcurrentHashMap<>();
+        BatchLoader<Long, UserDTO> loader = new BatchLoader<>("UserClient.queryUserByIds", ids -> {
+            seen.put("user", Optional.ofNullable(UserContext.getUser()));
+            seen.put("requestId", Optional.ofNullable(MDC.get(REQUEST_ID_HEADER)));
+            return queryUserByIds(ids);
+        }, UserDTO::getId, Duration.ofMillis(20), 100, executors.getScheduler(), executors.getExecutor());
+
+        // 两个用户的请求合并到同一个批次
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (long i = 1; i <= 2; i++) {
+            long userId = i;
+            futures.add(callers.submit(() -> {
+                UserContext.setUser(userId);
+                MDC.put(REQUEST_ID_HEADER, "req-" + userId);
+                try {
+                    start.await();
+                    return loader.get(userId).getId();
+                } finally {
+                    UserContext.removeUser();
+                    MDC.clear();
+                }
+            }));
+        }
+        start.countDown();
+        for (int i = 0; i < 2; i++) {
+            assertEquals(i + 1L, futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+        callers.shutdown();
+
+        // 远程调用不以任何一个调用者的身份发起，使用批次自己的requestId
+        assertEquals(1, remoteCalls.get());
+        assertFalse(seen.get("user").isPresent());
+        String batchId = (String) seen.get("requestId").orElseThrow();
+        assertNotEquals("req-1", batchId);
+        assertNotEquals("req-2", batchId);
+    }
+
+    @Test
+    void testCallerContextRestored() {
+        // 由调用者线程执行时，执行完后恢复调用者的上下文
+        BatchLoader<Long, UserDTO> loader = new BatchLoader<>("UserClient.queryUserByIds", ids -> {
+            assertNull(UserContext.getUser());
+            return queryUserByIds(ids);
+        }, UserDTO::getId, Duration.ofMillis(5), 1, executors.getScheduler(), Runnable::run);
+
+        UserContext.setUser(2L);
+        MDC.put(REQUEST_ID_HEADER, "req-1");
+        try {
+            assertEquals(1L, loader.get(1L).getId());
+            assertEquals(2L, UserContext.getUser());
+            assertEquals("req-1", MDC.get(REQUEST_ID_HEADER));
+        } finally {
+            UserContext.removeUser();
+            MDC.clear();
+        }
+    }
+
+    @Test
+    void testFailure() {
+        BatchLoader<Long, UserDTO> loader = new BatchLoader<>("UserClient.queryUserByIds", ids -> {
+            throw new IllegalStateException("服务不可用");
+        }, UserDTO::getId, Duration.ofMillis(5), 100, executors.getScheduler(), executors.getExecutor());
+        assertThrows(IllegalStateException.class, () -> loader.getAll(List.of(1L, 2L)));
+    }
+}
@@ -0,0 +1,47 @@
+package com.tianji.api.cache;
+
+import com.tianji.common.utils.UserContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.tianji.common.constants.Constant.REQUEST_ID_HEADER;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheRefreshExecutorTest {
+
+    private final CacheRefreshExecutor executor = new CacheRefreshExecutor(1);
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+        UserContext.removeUser();
+        MDC.clear();
+    }
+
+    @Test
+    void testContextPropagated() throws InterruptedException {
+        Map<String, Object> seen = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(1);
+        UserContext.setUser(2L);
+        MDC.put(REQUEST_ID_HEADER, "req-1");
+
+        executor.execute(() -> {
+            seen.put("thread", Thread.currentThread().getName());
+            seen.put("user", UserContext.getUser());
+            seen.put("requestId", MDC.get(REQUEST_ID_HEADER));
+            done.countDown();
+        });
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        // 在独立的刷新线程中执行，触发刷新的请求的用户和请求id被传递过去
+        assertTrue(seen.get("thread").toString().startsWith("cache-refresh-"));
+        assertEquals(2L, seen.get("user"));
+        assertEquals("req-1", seen.get("requestId"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.tianji.api.cache;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.tianji.api.client.course.CategoryClient;
+import com.tianji.api.dto.course.CategoryBasicDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CategoryCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final List<Runnable> pending = new CopyOnWriteArrayList<>();
+
+    private CategoryClient categoryClient;
+    private CategoryCache categoryCache;
+
+    @BeforeEach
+    void setUp() {
+        categoryClient = mock(CategoryClient.class);
+        when(categoryClient.getAllOfOneLevel()).thenReturn(categories("Java"));
+        categoryCache = new CategoryCache(categoryClient, nanos::get, pending::add);
+    }
+
+    private static List<CategoryBasicDTO> categories(String lv3Name) {
+        List<CategoryBasicDTO> list = new ArrayList<>();
+        list.add(category(1L, 0L, "后端"));
+        list.add(category(2L, 1L, "编程语言"));
+        list.add(category(3L, 2L, lv3Name));
+        return list;
+    }
+
+    private static CategoryBasicDTO category(Long id, Long parentId, String name) {
+        CategoryBasicDTO dto = new CategoryBasicDTO();
+        dto.setId(id);
+        dto.setParentId(parentId);
+        dto.setName(name);
+        return dto;
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    private void runPending() {
+        List<Runnable> tasks = new ArrayList<>(pending);
+        pending.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    @Test
+    void testServeStaleWhileRefreshing() {
+        assertEquals("后端/编程语言/Java", categoryCache.getNameByLv3Id(3L));
+
+        when(categoryClient.getAllOfOneLevel()).thenReturn(categories("Go"));
+        advance(CategoryCache.REFRESH_AFTER.plusSeconds(1));
+
+        // 到达刷新时间后，访问不阻塞，先返回旧数据
+        assertEquals("后端/编程语言/Java", categoryCache.getNameByLv3Id(3L));
+        runPending();
+        assertEquals("后端/编程语言/Go", categoryCache.getNameByLv3Id(3L));
+        verify(categoryClient, times(2)).getAllOfOneLevel();
+    }
+
+    @Test
+    void testEmptyRefreshKeepsOldValue() {
+        categoryCache.getCategoryMap();
+
+        when(categoryClient.getAllOfOneLevel()).thenReturn(Collections.emptyList());
+        advance(CategoryCache.REFRESH_AFTER.plusSeconds(1));
+        categoryCache.getCategoryMap();
+        runPending();
+
+        assertEquals(3, categoryCache.getCategoryMap().size());
+    }
+
+    @Test
+    void testExpiredLoadsAgain() {
+        categoryCache.getCategoryMap();
+        advance(CategoryCache.TTL.plusSeconds(1));
+
+        assertEquals(3, categoryCache.getCategoryMap().size());
+        verify(categoryClient, times(2)).getAllOfOneLevel();
+    }
+}
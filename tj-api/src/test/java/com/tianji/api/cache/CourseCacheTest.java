@@ -0,0 +1,85 @@
+package com.tianji.api.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tianji.api.client.course.CourseClient;
+import com.tianji.api.dto.course.CourseSimpleInfoDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CourseCacheTest {
+
+    private CourseClient courseClient;
+    private CourseCache courseCache;
+
+    @BeforeEach
+    void setUp() {
+        courseClient = mock(CourseClient.class);
+        // 课程服务的替身，返回请求的全部课程
+        when(courseClient.getSimpleInfoList(any())).thenAnswer(invocation -> {
+            Iterable<Long> ids = invocation.getArgument(0);
+            return StreamSupport.stream(ids.spliterator(), false).map(id -> {
+                CourseSimpleInfoDTO dto = new CourseSimpleInfoDTO();
+                dto.setId(id);
+                dto.setName("course-" + id);
+                return dto;
+            }).collect(Collectors.toList());
+        });
+        courseCache = new CourseCache(
+                Caffeine.newBuilder().maximumSize(10_000).recordStats().build(), courseClient::getSimpleInfoList, null);
+    }
+
+    @Test
+    void testBatchLookup() {
+        List<Long> ids = LongStream.rangeClosed(1, 100).boxed().collect(Collectors.toList());
+
+        // 1.冷缓存，100个id只需要一次远程调用
+        List<CourseSimpleInfoDTO> cold = courseCache.getSimpleInfoList(ids);
+        assertEquals(100, cold.size());
+        verify(courseClient, times(1)).getSimpleInfoList(any());
+
+        // 2.热缓存，不需要远程调用
+        List<CourseSimpleInfoDTO> warm = courseCache.getSimpleInfoList(ids);
+        assertEquals(ids, warm.stream().map(CourseSimpleInfoDTO::getId).collect(Collectors.toList()));
+        verify(courseClient, times(1)).getSimpleInfoList(any());
+
+        CourseCache.CourseCacheStats stats = courseCache.stats();
+        assertEquals(1, stats.getRemoteCallCount());
+        assertEquals(0.5, stats.getLocalHitRate(), 0.001);
+    }
+
+    @Test
+    void testLoadMissingOnly() {
+        courseCache.getSimpleInfoList(LongStream.rangeClosed(1, 50).boxed().collect(Collectors.toList()));
+        clearInvocations(courseClient);
+
+        courseCache.getSimpleInfoList(LongStream.rangeClosed(1, 100).boxed().collect(Collectors.toList()));
+        verify(courseClient, times(1)).getSimpleInfoList(argThat(ids -> {
+            List<Long> list = new ArrayList<>();
+            ids.forEach(list::add);
+            return list.size() == 50 && list.stream().allMatch(id -> id > 50);
+        }));
+    }
+
+    @Test
+    void testInvalidate() {
+        courseCache.getSimpleInfo(1L);
+        courseCache.invalidate(1L);
+        courseCache.getSimpleInfo(1L);
+        verify(courseClient, times(2)).getSimpleInfoList(any());
+
+        // 课程变更事件
+        new CourseCacheInvalidator(courseCache).listenCourseChange(1L);
+        assertNotNull(courseCache.getSimpleInfo(1L));
+        verify(courseClient, times(3)).getSimpleInfoList(any());
+    }
+}
@@ -0,0 +1,161 @@
+package com.tianji.api.cache;
+
+import com.tianji.api.cache.LessonEntitlementCache.LessonEntitlement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * redis使用内存中的替身，替身按照脚本的语义执行，不校验lua脚本本身
+ */
+class LessonEntitlementCacheTest {
+
+    private static final Long USER_ID = 1L;
+
+    private final Map<String, Map<String, String>> hashes = new HashMap<>();
+    private final Map<String, String> strings = new HashMap<>();
+    private LessonEntitlementCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOps);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(hashOps.multiGet(anyString(), anyCollection())).thenAnswer(inv -> {
+            Map<String, String> hash = hashes.getOrDefault(inv.<String>getArgument(0), Map.of());
+            Collection<Object> fields = inv.getArgument(1);
+            return fields.stream().map(hash::get).collect(Collectors.toList());
+        });
+        when(valueOps.get(anyString())).thenAnswer(inv -> strings.get(inv.<String>getArgument(0)));
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(inv -> {
+            Object[] all = inv.getArguments();
+            List<String> keys = inv.getArgument(1);
+            String[] args = Arrays.stream(all, 2, all.length).map(String::valueOf).toArray(String[]::new);
+            return runScript(inv.getArgument(0), keys, args);
+        });
+        cache = new LessonEntitlementCache(redisTemplate);
+    }
+
+    private Long runScript(RedisScript<?> script, List<String> keys, String[] args) {
+        if (script == LessonEntitlementCache.PUT_ALL_SCRIPT) {
+            if (!strings.getOrDefault(keys.get(1), "0").equals(args[0])) {
+                return 0L;
+            }
+            Map<String, String> hash = hashes.computeIfAbsent(keys.get(0), k -> new HashMap<>());
+            for (int i = 2; i < args.length; i += 2) {
+                hash.put(args[i], args[i + 1]);
+            }
+            return 1L;
+        }
+        strings.merge(keys.get(1), "1", (a, b) -> String.valueOf(Long.parseLong(a) + 1));
+        if (script == LessonEntitlementCache.ADD_SCRIPT) {
+            hashes.computeIfAbsent(keys.get(0), k -> new HashMap<>()).put(args[0], args[1]);
+            return 1L;
+        }
+        if (script == LessonEntitlementCache.REMOVE_SCRIPT) {
+            Map<String, String> hash = hashes.get(keys.get(0));
+            return hash != null && hash.remove(args[0]) != null ? 1L : 0L;
+        }
+        throw new IllegalArgumentException("unknown script");
+    }
+
+    private static Map<Long, LessonEntitlement> lessons(long... courseIds) {
+        Map<Long, LessonEntitlement> map = new HashMap<>();
+        for (long courseId : courseIds) {
+            map.put(courseId, LessonEntitlement.of(courseId * 10, null));
+        }
+        return map;
+    }
+
+    @Test
+    void testLoadAndGet() {
+        // 未加载
+        assertNull(cache.get(USER_ID, 1L));
+
+        assertTrue(cache.putAll(USER_ID, lessons(1L, 2L), cache.currentVersion(USER_ID)));
+
+        assertEquals(10L, cache.get(USER_ID, 1L).getValidLessonId());
+        // 已加载，没有这门课程
+        assertSame(LessonEntitlement.NONE, cache.get(USER_ID, 3L));
+    }
+
+    @Test
+    void testAddBeforeLoad() {
+        cache.add(USER_ID, 3L, LessonEntitlement.of(30L, null));
+        // 只有增量添加的课程，仍然视为未加载
+        assertEquals(30L, cache.get(USER_ID, 3L).getValidLessonId());
+        assertNull(cache.get(USER_ID, 1L));
+
+        // 加载时与增量添加的课程合并
+        assertTrue(cache.putAll(USER_ID, lessons(1L), cache.currentVersion(USER_ID)));
+        assertEquals(30L, cache.get(USER_ID, 3L).getValidLessonId());
+        assertEquals(10L, cache.get(USER_ID, 1L).getValidLessonId());
+    }
+
+    @Test
+    void testRemove() {
+        cache.putAll(USER_ID, lessons(1L, 2L), cache.currentVersion(USER_ID));
+
+        cache.remove(USER_ID, 1L);
+
+        assertSame(LessonEntitlement.NONE, cache.get(USER_ID, 1L));
+        assertEquals(20L, cache.get(USER_ID, 2L).getValidLessonId());
+    }
+
+    @Test
+    void testLoadRacesWithRemove() {
+        // 加载前读取版本号，从数据库读到了课程1
+        String version = cache.currentVersion(USER_ID);
+        Map<Long, LessonEntitlement> loaded = lessons(1L, 2L);
+        // 加载期间课程1退款，事务提交后移除
+        cache.remove(USER_ID, 1L);
+
+        // 读到的课表已经过时，不写入，退款的课程不会被写回缓存
+        assertFalse(cache.putAll(USER_ID, loaded, version));
+        assertNull(cache.get(USER_ID, 1L));
+
+        assertTrue(cache.putAll(USER_ID, lessons(2L), cache.currentVersion(USER_ID)));
+        assertSame(LessonEntitlement.NONE, cache.get(USER_ID, 1L));
+    }
+
+    @Test
+    void testLoadRacesWithAdd() {
+        String version = cache.currentVersion(USER_ID);
+        cache.add(USER_ID, 3L, LessonEntitlement.of(30L, null));
+
+        assertFalse(cache.putAll(USER_ID, lessons(1L), version));
+        assertEquals(30L, cache.get(USER_ID, 3L).getValidLessonId());
+    }
+
+    @Test
+    void testFormatAndParse() {
+        LessonEntitlement e = LessonEntitlement.of(10L, LocalDateTime.now().plusDays(1));
+        LessonEntitlement parsed = LessonEntitlement.parse(e.format());
+
+        assertEquals(10L, parsed.getLessonId());
+        assertEquals(e.getExpireAt(), parsed.getExpireAt());
+    }
+
+    @Test
+    void testValidity() {
+        assertEquals(10L, LessonEntitlement.of(10L, LocalDateTime.now().plusMinutes(1)).getValidLessonId());
+        assertNull(LessonEntitlement.of(10L, LocalDateTime.now().minusMinutes(1)).getValidLessonId());
+        // 没有过期时间的课程永久有效
+        assertEquals(10L, LessonEntitlement.parse(LessonEntitlement.of(10L, null).format()).getValidLessonId());
+        assertNull(LessonEntitlement.NONE.getValidLessonId());
+    }
+}
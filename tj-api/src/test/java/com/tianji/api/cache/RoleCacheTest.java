@@ -0,0 +1,110 @@
+package com.tianji.api.cache;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.tianji.api.client.auth.AuthClient;
+import com.tianji.api.dto.auth.RoleDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class RoleCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = nanos::get;
+    private final List<Runnable> pending = new CopyOnWriteArrayList<>();
+
+    private AuthClient authClient;
+    private RoleCache roleCache;
+
+    @BeforeEach
+    void setUp() {
+        authClient = mock(AuthClient.class);
+        when(authClient.queryRoleById(1L)).thenReturn(new RoleDTO().setId(1L).setName("admin"));
+        // 后台任务先暂存，由测试决定何时执行
+        roleCache = new RoleCache(authClient, ticker, pending::add);
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    private void runPending() {
+        List<Runnable> tasks = new ArrayList<>(pending);
+        pending.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    @Test
+    void testNegativeCache() {
+        assertNull(roleCache.getRoleName(404L));
+        assertNull(roleCache.getRoleName(404L));
+        verify(authClient, times(1)).queryRoleById(404L);
+
+        // 不存在的角色很快过期，之后重新查询
+        advance(RoleCache.NEGATIVE_TTL.plusSeconds(1));
+        assertNull(roleCache.getRoleName(404L));
+        verify(authClient, times(2)).queryRoleById(404L);
+    }
+
+    @Test
+    void testRefreshAhead() {
+        assertEquals("admin", roleCache.getRoleName(1L));
+
+        when(authClient.queryRoleById(1L)).thenReturn(new RoleDTO().setId(1L).setName("super-admin"));
+        advance(RoleCache.REFRESH_AFTER.plusSeconds(1));
+
+        // 需要刷新时仍然立即返回旧值，刷新在后台执行
+        assertEquals("admin", roleCache.getRoleName(1L));
+        runPending();
+        assertEquals("super-admin", roleCache.getRoleName(1L));
+        verify(authClient, times(2)).queryRoleById(1L);
+    }
+
+    @Test
+    void testRefreshFailureKeepsOldValue() {
+        assertEquals("admin", roleCache.getRoleName(1L));
+
+        when(authClient.queryRoleById(1L)).thenThrow(new IllegalStateException("auth-service down"));
+        advance(RoleCache.REFRESH_AFTER.plusSeconds(1));
+        assertEquals("admin", roleCache.getRoleName(1L));
+        runPending();
+
+        assertEquals("admin", roleCache.getRoleName(1L));
+    }
+
+    @Test
+    void testSingleFlight() throws Exception {
+        when(authClient.queryRoleById(anyLong())).thenAnswer(invocation -> {
+            Thread.sleep(100);
+            return new RoleDTO().setId(invocation.getArgument(0)).setName("teacher");
+        });
+        RoleCache cache = new RoleCache(authClient, Ticker.systemTicker(), Runnable::run);
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return cache.getRoleName(2L);
+            }));
+        }
+        start.countDown();
+        for (Future<String> future : futures) {
+            assertEquals("teacher", future.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        verify(authClient, times(1)).queryRoleById(2L);
+    }
+}
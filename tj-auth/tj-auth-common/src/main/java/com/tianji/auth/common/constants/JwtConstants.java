@@ -24,7 +24,11 @@ public class JwtConstants {
     /* 权限缓存 KEY  begin */
     public static final String AUTH_PRIVILEGE_KEY = "auth:privileges";
     public static final String AUTH_PRIVILEGE_VERSION_KEY = "version";
+    // 角色拥有的权限id集合，key后缀为角色id。hash tag与AUTH_PRIVILEGE_KEY相同，集群模式下与权限缓存在同一个slot
+    public static final String AUTH_ROLE_PRIVILEGES_KEY_PREFIX = "{auth:privileges}:role:";
     public static final String LOCK_AUTH_PRIVILEGE_KEY = "lock:auth:privileges";
+    // 权限变更通知的频道，消息内容为最新版本号
+    public static final String AUTH_PRIVILEGE_CHANNEL = "auth:privileges:channel";
     /* 权限缓存 KEY  end */
 
 }
@@ -2,11 +2,18 @@ package com.tianji.authsdk.gateway.config;
 
 import com.tianji.authsdk.gateway.util.AuthUtil;
 import com.tianji.authsdk.gateway.util.JwtSignerHolder;
+import com.tianji.authsdk.gateway.util.TokenCache;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import static com.tianji.auth.common.constants.JwtConstants.AUTH_PRIVILEGE_CHANNEL;
 
 @Configuration
 public class AuthAutoConfiguration {
@@ -18,7 +25,24 @@ public class AuthAutoConfiguration {
     }
 
     @Bean
-    public AuthUtil authUtil(JwtSignerHolder jwtSignerHolder, StringRedisTemplate stringRedisTemplate){
-        return new AuthUtil(jwtSignerHolder, stringRedisTemplate);
+    public TokenCache tokenCache(@Value("${tj.auth.token-cache-size:100000}") long maximumSize){
+        return new TokenCache(maximumSize);
+    }
+
+    @Bean
+    public AuthUtil authUtil(JwtSignerHolder jwtSignerHolder, StringRedisTemplate stringRedisTemplate, TokenCache tokenCache){
+        return new AuthUtil(jwtSignerHolder, stringRedisTemplate, tokenCache);
+    }
+
+    /**
+     * 订阅权限变更通知，收到通知后立即刷新权限数据
+     */
+    @Bean
+    public RedisMessageListenerContainer authPrivilegeListenerContainer(
+            RedisConnectionFactory redisConnectionFactory, AuthUtil authUtil){
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener((message, pattern) -> authUtil.refreshTask(), new ChannelTopic(AUTH_PRIVILEGE_CHANNEL));
+        return container;
     }
 }
@@ -0,0 +1,120 @@
+package com.tianji.authsdk.gateway.util;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+
+/**
+ * 预编译的路径匹配索引。
+ * <p>
+ * 将路径匹配符按照分段（例如 "GET:"、"users"）构建成前缀树，只有开头连续的字面量分段参与建树，
+ * 遇到含有通配符（*、?、{}）的分段即停止，匹配符挂在该节点上。匹配时沿请求路径的分段向下查找，
+ * 只对沿途节点上的候选匹配符执行{@link AntPathMatcher#match}，而不是遍历全部匹配符。
+ * </p>
+ * 索引构建后不可修改，可以被多个线程安全地共享。
+ */
+public class AntPathIndex {
+
+    private static final String PATH_SEPARATOR = "/";
+    private static final AntPathIndex EMPTY = new AntPathIndex(Collections.emptyList());
+
+    private final AntPathMatcher antPathMatcher = new AntPathMatcher(PATH_SEPARATOR);
+    private final Node root = new Node();
+    private final int size;
+
+    private AntPathIndex(Collection<String> patterns) {
+        int count = 0;
+        for (String pattern : patterns) {
+            if (pattern == null) {
+                continue;
+            }
+            insert(pattern);
+            count++;
+        }
+        this.size = count;
+    }
+
+    public static AntPathIndex of(Collection<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return EMPTY;
+        }
+        return new AntPathIndex(patterns);
+    }
+
+    public static AntPathIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 查找与路径匹配的匹配符，字面量前缀越长的匹配符越优先
+     * @param path 请求路径，例如 GET:/users/1
+     * @return 匹配到的匹配符，没有则返回null
+     */
+    public String match(String path) {
+        if (size == 0 || path == null) {
+            return null;
+        }
+        // 1.沿字面量分段向下查找，记录途经的节点
+        String[] segments = tokenize(path);
+        Node[] visited = new Node[segments.length + 1];
+        int depth = 0;
+        Node node = root;
+        visited[depth] = node;
+        for (String segment : segments) {
+            node = node.children.get(segment);
+            if (node == null) {
+                break;
+            }
+            visited[++depth] = node;
+        }
+        // 2.从最深的节点开始，逐个校验候选匹配符
+        for (int i = depth; i >= 0; i--) {
+            for (String pattern : visited[i].patterns) {
+                if (antPathMatcher.match(pattern, path)) {
+                    return pattern;
+                }
+            }
+        }
+        return null;
+    }
+
+    public boolean matches(String path) {
+        return match(path) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void insert(String pattern) {
+        Node node = root;
+        for (String segment : tokenize(pattern)) {
+            if (!isLiteral(segment)) {
+                break;
+            }
+            node = node.children.computeIfAbsent(segment, k -> new Node());
+        }
+        node.patterns.add(pattern);
+    }
+
+    private static String[] tokenize(String path) {
+        // 与AntPathMatcher默认的分段方式保持一致：不去除空白，忽略空分段
+        return StringUtils.tokenizeToStringArray(path, PATH_SEPARATOR, false, true);
+    }
+
+    private static boolean isLiteral(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '*' || c == '?' || c == '{') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final List<String> patterns = new ArrayList<>(1);
+    }
+}
@@ -8,7 +8,9 @@ import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import cn.hutool.jwt.JWT;
+import cn.hutool.jwt.JWTPayload;
 import cn.hutool.jwt.JWTValidator;
+import cn.hutool.jwt.signers.JWTSigner;
 import com.tianji.auth.common.domain.PrivilegeRoleDTO;
 import com.tianji.common.domain.R;
 import com.tianji.common.domain.dto.LoginUserDTO;
@@ -19,7 +21,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.BoundHashOperations;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.util.AntPathMatcher;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -31,22 +32,21 @@ import static com.tianji.auth.common.constants.JwtConstants.*;
 
 @Slf4j
 public class AuthUtil {
-    // 缓存权限信息
-    private Map<String, PrivilegeRoleDTO> privileges = new HashMap<>();
-    // 要拦截的路径匹配符的集合
-    private Set<String> paths = new HashSet<>();
-    // 权限版本信息，减少不必要的缓存处理
-    private int privilegeVersion;
-
-    private final AntPathMatcher antPathMatcher = new AntPathMatcher();
+    // 权限数据快照，包含权限信息、路径匹配索引和版本，刷新时整体替换
+    private volatile PrivilegeSnapshot snapshot = PrivilegeSnapshot.empty();
+
     private final JwtSignerHolder jwtSignerHolder;
     private final StringRedisTemplate stringRedisTemplate;
     private final BoundHashOperations<String, String, String> hashOps;
+    private final TokenCache tokenCache;
 
-    public AuthUtil(JwtSignerHolder jwtSignerHolder, StringRedisTemplate stringRedisTemplate) {
+    public AuthUtil(JwtSignerHolder jwtSignerHolder, StringRedisTemplate stringRedisTemplate, TokenCache tokenCache) {
         this.jwtSignerHolder = jwtSignerHolder;
         this.stringRedisTemplate = stringRedisTemplate;
         this.hashOps = stringRedisTemplate.boundHashOps(AUTH_PRIVILEGE_KEY);
+        this.tokenCache = tokenCache;
+        // 秘钥更换后，之前验签通过的token全部作废
+        jwtSignerHolder.addSignerChangeListener(tokenCache::invalidateAll);
     }
 
     public R<LoginUserDTO> parseToken(String token) {
@@ -54,31 +54,40 @@ public class AuthUtil {
         if(StringUtils.isBlank(token)){
             return R.error(INVALID_TOKEN_CODE, INVALID_TOKEN);
         }
+        // 2.尝试从缓存中获取已验签的结果
+        JWTSigner signer = jwtSignerHolder.getJwtSigner();
+        TokenCache.CachedToken cached = signer == null ? null : tokenCache.get(token, signer);
+        if (cached != null) {
+            if (cached.isExpired()) {
+                return R.error(EXPIRED_TOKEN_CODE, EXPIRED_TOKEN);
+            }
+            return R.ok(cached.getUser());
+        }
         JWT jwt = null;
         try {
-            jwt = JWT.of(token).setSigner(jwtSignerHolder.getJwtSigner());
+            jwt = JWT.of(token).setSigner(signer);
         } catch (Exception e) {
             return R.error(INVALID_TOKEN_CODE, INVALID_TOKEN);
         }
-        // 2.校验jwt是否有效
+        // 3.校验jwt是否有效
         if (!jwt.verify()) {
             // 验证失败，返回空
             return R.error(INVALID_TOKEN_CODE, INVALID_TOKEN);
         }
-        // 3.校验是否过期
+        // 4.校验是否过期
         try {
             JWTValidator.of(jwt).validateDate();
         } catch (ValidateException e) {
             return R.error(EXPIRED_TOKEN_CODE, EXPIRED_TOKEN);
         }
-        // 4.数据格式校验
+        // 5.数据格式校验
         Object userPayload = jwt.getPayload(PAYLOAD_USER_KEY);
         if (userPayload == null) {
             // 数据为空
             return R.error(INVALID_TOKEN_CODE, INVALID_TOKEN_PAYLOAD);
         }
 
-        // 5.数据解析
+        // 6.数据解析
         LoginUserDTO userDTO;
         try {
             userDTO = ((JSONObject)userPayload).toBean(LoginUserDTO.class);
@@ -87,14 +96,18 @@ public class AuthUtil {
             return R.error(INVALID_TOKEN_CODE, INVALID_TOKEN_PAYLOAD);
         }
 
-        // 6.返回
+        // 7.缓存解析结果，有效期与token一致
+        Long expiresAt = jwt.getPayloads().getLong(JWTPayload.EXPIRES_AT);
+        tokenCache.put(token, signer, userDTO, expiresAt == null ? null : expiresAt * 1000);
+
+        // 8.返回
         return R.ok(userDTO);
     }
 
     public void checkAuth(String antPath, R<LoginUserDTO> r){
-        // 1.判断是否是需要权限的路径
-        String matchPath = findMatchPath(antPath);
-        if(matchPath == null){
+        // 1.判断是否是需要权限的路径，并获取当前路径所需权限
+        PrivilegeRoleDTO pathPrivilege = snapshot.findPrivilege(antPath);
+        if(pathPrivilege == null){
             // 没有权限限制，直接放行
             return;
         }
@@ -103,10 +116,8 @@ public class AuthUtil {
             // 未登录，直接报错
             throw new UnauthorizedException(r.getCode(), r.getMsg());
         }
-        // 3.获取当前路径所需权限
-        PrivilegeRoleDTO pathPrivilege = findPathPrivilege(matchPath);
 
-        // 4.权限判断
+        // 3.权限判断
         Set<Long> requiredRoles = pathPrivilege.getRoles();
         if (!CollectionUtil.contains(requiredRoles, r.getData().getRoleId())) {
             // 没有访问权限
@@ -114,19 +125,8 @@ public class AuthUtil {
         }
     }
 
-    private String findMatchPath(String antPath){
-        String matchPath = null;
-        for (String pathPattern : paths) {
-            if(antPathMatcher.match(pathPattern, antPath)){
-                matchPath = pathPattern;
-                break;
-            }
-        }
-        return matchPath;
-    }
-
-    private PrivilegeRoleDTO findPathPrivilege(String path){
-        return privileges.get(path);
+    public PrivilegeSnapshot getPrivilegeSnapshot(){
+        return snapshot;
     }
 
     private List<PrivilegeRoleDTO> loadPrivileges(){
@@ -148,29 +148,21 @@ public class AuthUtil {
     }
 
 
+    /**
+     * 刷新权限数据。auth服务发布权限变更通知时立即调用，定时任务只作为通知丢失时的兜底
+     */
     @Scheduled(fixedDelay = 20000)
-    public void refreshTask(){
+    public synchronized void refreshTask(){
         // 1.获取版本号
         int currentVersion = currentVersion();
-        if (currentVersion == this.privilegeVersion) {
+        if (currentVersion == snapshot.getVersion()) {
             // 版本一致，说明数据没有更新，直接结束任务
             return;
         }
         // 2.获取最新权限信息
         List<PrivilegeRoleDTO> privilegeRoleDTOS = loadPrivileges();
-        if(CollUtil.isEmpty(privilegeRoleDTOS)){
-            // 更新版本
-            this.privilegeVersion = currentVersion;
-            return;
-        }
-        // 3.数据处理
-        Map<String, PrivilegeRoleDTO> map = new HashMap<>();
-        for (PrivilegeRoleDTO p : privilegeRoleDTOS) {
-            map.put(p.getAntPath(), p);
-            this.privileges = map;
-        }
-        this.paths = map.keySet();
-        // 4.更新版本
-        this.privilegeVersion = currentVersion;
+        // 3.在新的快照中构建权限数据及路径索引，构建完成后整体替换，请求线程不会读到构建一半的数据
+        this.snapshot = PrivilegeSnapshot.of(currentVersion, privilegeRoleDTOS);
+        log.debug("权限数据已刷新，版本：{}，权限数量：{}", currentVersion, privilegeRoleDTOS.size());
     }
 }
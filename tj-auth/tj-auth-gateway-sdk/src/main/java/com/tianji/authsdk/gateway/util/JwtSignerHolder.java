@@ -19,6 +19,7 @@ import java.nio.charset.StandardCharsets;
 import java.security.PublicKey;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -29,6 +30,8 @@ public class JwtSignerHolder {
 
     private volatile JWTSigner jwtSigner;
 
+    private final List<Runnable> signerChangeListeners = new CopyOnWriteArrayList<>();
+
     private DiscoveryClient discoveryClient;
 
     public JwtSignerHolder(DiscoveryClient discoveryClient) {
@@ -50,6 +53,24 @@ public class JwtSignerHolder {
         ses.submit(new MarkedRunnable(new JwkTask(discoveryClient)));
     }
 
+    /**
+     * 注册秘钥变更的监听器，秘钥加载或更换后回调
+     */
+    public void addSignerChangeListener(Runnable listener){
+        signerChangeListeners.add(listener);
+    }
+
+    public void setJwtSigner(JWTSigner jwtSigner){
+        this.jwtSigner = jwtSigner;
+        for (Runnable listener : signerChangeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("秘钥变更通知失败", e);
+            }
+        }
+    }
+
     public void shutdown(){
         ses.shutdown();
         log.debug("销毁加载秘钥线程 AuthFetchJwkThread");
@@ -96,7 +117,7 @@ public class JwtSignerHolder {
                             AsymmetricAlgorithm.RSA_ECB_PKCS1.getValue(),
                             SecureUtil.decode(result)
                     );
-                    jwtSigner = JWTSignerUtil.createSigner(JwtConstants.JWT_ALGORITHM, publicKey);
+                    setJwtSigner(JWTSignerUtil.createSigner(JwtConstants.JWT_ALGORITHM, publicKey));
                     log.info("加载jwk秘钥成功！");
                 } catch (Exception e) {
                     log.error("加载jwk秘钥失败，原因：{}", e.getMessage());
@@ -0,0 +1,62 @@
+package com.tianji.authsdk.gateway.util;
+
+import com.tianji.auth.common.domain.PrivilegeRoleDTO;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 某一版本的权限数据快照，包含权限信息及其路径匹配索引。
+ * <p>
+ * 快照在构建完成后不再修改，刷新时整体替换，保证请求线程读到的权限与路径索引始终属于同一版本。
+ * </p>
+ */
+@Getter
+public class PrivilegeSnapshot {
+
+    private static final PrivilegeSnapshot EMPTY = new PrivilegeSnapshot(0, Collections.emptyList());
+
+    /**
+     * 权限版本
+     */
+    private final int version;
+    /**
+     * 权限信息，key为路径匹配符
+     */
+    private final Map<String, PrivilegeRoleDTO> privileges;
+    /**
+     * 路径匹配索引
+     */
+    private final AntPathIndex pathIndex;
+
+    private PrivilegeSnapshot(int version, Collection<PrivilegeRoleDTO> list) {
+        Map<String, PrivilegeRoleDTO> map = new HashMap<>(list.size() * 4 / 3 + 1);
+        for (PrivilegeRoleDTO p : list) {
+            map.put(p.getAntPath(), p);
+        }
+        this.version = version;
+        this.privileges = Collections.unmodifiableMap(map);
+        this.pathIndex = AntPathIndex.of(map.keySet());
+    }
+
+    public static PrivilegeSnapshot of(int version, Collection<PrivilegeRoleDTO> list) {
+        return new PrivilegeSnapshot(version, list);
+    }
+
+    public static PrivilegeSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 查找与路径匹配的权限信息
+     * @param antPath 请求路径，例如 GET:/users/1
+     * @return 权限信息，没有匹配的权限返回null
+     */
+    public PrivilegeRoleDTO findPrivilege(String antPath) {
+        String matchPath = pathIndex.match(antPath);
+        return matchPath == null ? null : privileges.get(matchPath);
+    }
+}
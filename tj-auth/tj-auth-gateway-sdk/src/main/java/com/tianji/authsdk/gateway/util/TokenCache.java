@@ -0,0 +1,140 @@
+package com.tianji.authsdk.gateway.util;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.jwt.signers.JWTSigner;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.tianji.common.domain.dto.LoginUserDTO;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 已校验token的本地缓存。
+ * <p>
+ * 同一个token在有效期内会被反复提交，缓存其解析结果可以省去每次请求的RS256验签和payload解析。
+ * 缓存key为token的摘要，缓存项在token自身的过期时间到达时失效，秘钥更换后全部作废。
+ * </p>
+ */
+@Slf4j
+public class TokenCache {
+
+    /**
+     * 没有过期时间的token，最多缓存的时长
+     */
+    private static final Duration MAX_TTL = Duration.ofMinutes(30);
+
+    private final Cache<String, CachedToken> cache;
+    /**
+     * 当前时间，毫秒值，与token中的过期时间比较
+     */
+    private final LongSupplier clock;
+
+    public TokenCache(long maximumSize) {
+        this(maximumSize, Ticker.systemTicker(), System::currentTimeMillis);
+    }
+
+    TokenCache(long maximumSize, Ticker ticker, LongSupplier clock) {
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .initialCapacity(256)
+                .maximumSize(maximumSize)
+                .expireAfter(new TokenExpiry(clock))
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * 读取缓存的用户信息
+     * @param token 原始token
+     * @param signer 当前的验签器，与缓存时不一致则视为未命中
+     * @return 缓存的token信息，未命中返回null
+     */
+    public CachedToken get(String token, JWTSigner signer) {
+        String key = hash(token);
+        CachedToken cached = cache.getIfPresent(key);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.getSigner() != signer) {
+            // 秘钥已更换，需要重新验签
+            cache.invalidate(key);
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * 缓存验签通过的token
+     * @param token 原始token
+     * @param signer 验签使用的验签器
+     * @param user 解析出的用户信息
+     * @param expiresAtMillis token过期时间，毫秒值，没有过期时间则传null
+     */
+    public void put(String token, JWTSigner signer, LoginUserDTO user, Long expiresAtMillis) {
+        long now = clock.getAsLong();
+        long maxExpiresAt = now + MAX_TTL.toMillis();
+        long expiresAt = expiresAtMillis == null ? maxExpiresAt : Math.min(expiresAtMillis, maxExpiresAt);
+        if (expiresAt <= now) {
+            return;
+        }
+        cache.put(hash(token), new CachedToken(user, expiresAt, signer, clock));
+    }
+
+    /**
+     * 清空缓存，在秘钥更换时调用
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        log.debug("token缓存已清空");
+    }
+
+    private static String hash(String token) {
+        return DigestUtil.sha256Hex(token);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class CachedToken {
+        private final LoginUserDTO user;
+        private final long expiresAtMillis;
+        private final JWTSigner signer;
+        @Getter(AccessLevel.NONE)
+        private final LongSupplier clock;
+
+        /**
+         * 缓存项按照缓存的计时淘汰，读到缓存后仍以token本身的过期时间为准
+         */
+        public boolean isExpired() {
+            return clock.getAsLong() >= expiresAtMillis;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class TokenExpiry implements Expiry<String, CachedToken> {
+        private final LongSupplier clock;
+
+        @Override
+        public long expireAfterCreate(String key, CachedToken value, long currentTime) {
+            long millis = value.getExpiresAtMillis() - clock.getAsLong();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.tianji.authsdk.gateway.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路径匹配索引与逐个遍历匹配符的性能对比，匹配符数量分别为100、1000、10000。
+ * <p>
+ * 不在单元测试中执行，需要时运行main方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AntPathIndexBenchmark {
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+
+    @Param({"100", "1000", "10000"})
+    private int patternCount;
+
+    private final AntPathMatcher antPathMatcher = new AntPathMatcher("/");
+    private List<String> patterns;
+    private AntPathIndex index;
+    private String[] paths;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        // 模拟按服务、资源划分的接口，一半是字面量路径，一半带路径变量
+        patterns = new ArrayList<>(patternCount);
+        for (int i = 0; i < patternCount; i++) {
+            String method = METHODS[i % METHODS.length];
+            String prefix = "/service" + (i % 20) + "/resource" + i;
+            patterns.add(i % 2 == 0 ? method + ":" + prefix + "/list" : method + ":" + prefix + "/{id}");
+        }
+        index = AntPathIndex.of(patterns);
+        // 请求路径中有命中的，也有未命中的
+        paths = new String[64];
+        for (int i = 0; i < paths.length; i++) {
+            int n = i * patternCount / paths.length;
+            String method = METHODS[n % METHODS.length];
+            String prefix = "/service" + (n % 20) + "/resource" + n;
+            paths[i] = i % 4 == 3 ? "GET:/unknown/" + i : method + ":" + prefix + (n % 2 == 0 ? "/list" : "/" + i);
+        }
+    }
+
+    private String nextPath() {
+        cursor = (cursor + 1) & (paths.length - 1);
+        return paths[cursor];
+    }
+
+    @Benchmark
+    public String index() {
+        return index.match(nextPath());
+    }
+
+    @Benchmark
+    public String linearScan() {
+        String path = nextPath();
+        for (String pattern : patterns) {
+            if (antPathMatcher.match(pattern, path)) {
+                return pattern;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AntPathIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.tianji.authsdk.gateway.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 与逐个遍历匹配符调用{@link AntPathMatcher}的结果对比
+ */
+class AntPathIndexTest {
+
+    private static final List<String> PATTERNS = List.of(
+            "GET:/users",
+            "GET:/users/",
+            "GET:/users/*",
+            "GET:/users/{id}/orders",
+            "GET:/users/me/**",
+            "POST:/users/**",
+            "GET:/courses/*/sections/**",
+            "GET:/courses/{courseId}",
+            "PUT:/courses/{id:\\d+}",
+            "DELETE:/**",
+            "GET:/file?/download",
+            "GET:/static/**/*.js",
+            "GET:/admin/users/list"
+    );
+
+    private static final List<String> PATHS = List.of(
+            "GET:/users",
+            "GET:/users/",
+            "GET:/users/1",
+            "GET:/users/1/",
+            "GET:/users/1/orders",
+            "GET:/users/1/orders/",
+            "GET:/users/me",
+            "GET:/users/me/courses/1",
+            "POST:/users",
+            "POST:/users/1/roles",
+            "PUT:/users/1",
+            "GET:/courses/1",
+            "GET:/courses/1/",
+            "GET:/courses/1/sections",
+            "GET:/courses/1/sections/2/media",
+            "PUT:/courses/12",
+            "PUT:/courses/abc",
+            "DELETE:/users/1",
+            "DELETE:/",
+            "GET:/file1/download",
+            "GET:/files/download",
+            "GET:/static/app.js",
+            "GET:/static/js/lib/app.js",
+            "GET:/static/js/app.css",
+            "GET:/admin/users/list",
+            "GET:/admin/users/list/",
+            "GET:/admin/users",
+            "GET://users",
+            "GET:/Users"
+    );
+
+    private final AntPathMatcher matcher = new AntPathMatcher("/");
+    private final AntPathIndex index = AntPathIndex.of(PATTERNS);
+
+    @Test
+    void testSameResultAsAntPathMatcher() {
+        for (String path : PATHS) {
+            List<String> expected = PATTERNS.stream()
+                    .filter(pattern -> matcher.match(pattern, path))
+                    .collect(Collectors.toList());
+            String actual = index.match(path);
+            if (expected.isEmpty()) {
+                assertNull(actual, path);
+            } else {
+                assertTrue(expected.contains(actual), path + " 匹配到了 " + actual + "，期望 " + expected);
+            }
+            assertEquals(!expected.isEmpty(), index.matches(path), path);
+        }
+    }
+
+    @Test
+    void testLongestLiteralPrefixFirst() {
+        // 同时匹配 GET:/users/* 和 GET:/users/me/**，字面量前缀更长的优先
+        assertTrue(matcher.match("GET:/users/*", "GET:/users/me"));
+        assertEquals("GET:/users/me/**", index.match("GET:/users/me"));
+        assertEquals("GET:/admin/users/list", index.match("GET:/admin/users/list"));
+    }
+
+    @Test
+    void testTrailingSlash() {
+        // 与AntPathMatcher一致，结尾的斜杠不能省略
+        assertEquals("GET:/users", index.match("GET:/users"));
+        assertEquals("GET:/users/", index.match("GET:/users/"));
+        assertNull(index.match("GET:/admin/users/list/"));
+        assertNull(AntPathIndex.of(List.of("GET:/users/*")).match("GET:/users/1/"));
+    }
+
+    @Test
+    void testEmpty() {
+        assertNull(AntPathIndex.empty().match("GET:/users"));
+        assertSame(AntPathIndex.empty(), AntPathIndex.of(List.of()));
+        assertEquals(PATTERNS.size(), index.size());
+    }
+}
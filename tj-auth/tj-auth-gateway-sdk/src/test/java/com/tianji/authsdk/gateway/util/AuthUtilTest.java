@@ -0,0 +1,108 @@
+package com.tianji.authsdk.gateway.util;
+
+import cn.hutool.json.JSONUtil;
+import com.tianji.auth.common.domain.PrivilegeRoleDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.BoundHashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.tianji.auth.common.constants.JwtConstants.AUTH_PRIVILEGE_KEY;
+import static com.tianji.auth.common.constants.JwtConstants.AUTH_PRIVILEGE_VERSION_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AuthUtilTest {
+
+    private static final int READERS = 8;
+    private static final int VERSIONS = 500;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReadersNeverObserveHalfBuiltSnapshot() throws Exception {
+        // 1.模拟redis：每个版本的权限数量不同，且所有权限的角色id都等于版本号
+        AtomicInteger version = new AtomicInteger();
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        BoundHashOperations<String, String, String> hashOps = mock(BoundHashOperations.class);
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        doReturn(hashOps).when(redisTemplate).boundHashOps(AUTH_PRIVILEGE_KEY);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.get(AUTH_PRIVILEGE_VERSION_KEY)).thenAnswer(i -> String.valueOf(version.get()));
+        when(hashOps.values()).thenAnswer(i -> buildPrivileges(version.get()));
+
+        AuthUtil authUtil = new AuthUtil(mock(JwtSignerHolder.class), redisTemplate, new TokenCache(16));
+
+        // 2.读线程不断校验快照的一致性
+        ExecutorService pool = Executors.newFixedThreadPool(READERS);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(READERS);
+        List<Future<Integer>> futures = new ArrayList<>(READERS);
+        for (int r = 0; r < READERS; r++) {
+            futures.add(pool.submit(() -> {
+                started.countDown();
+                int checks = 0;
+                while (running.get()) {
+                    assertConsistent(authUtil.getPrivilegeSnapshot());
+                    checks++;
+                }
+                return checks;
+            }));
+        }
+        started.await();
+
+        // 3.写线程不断发布新版本并刷新
+        for (int v = 1; v <= VERSIONS; v++) {
+            version.set(v);
+            authUtil.refreshTask();
+        }
+        running.set(false);
+        pool.shutdown();
+
+        for (Future<Integer> future : futures) {
+            assertTrue(future.get() > 0);
+        }
+        PrivilegeSnapshot last = authUtil.getPrivilegeSnapshot();
+        assertEquals(VERSIONS, last.getVersion());
+        assertConsistent(last);
+    }
+
+    private static void assertConsistent(PrivilegeSnapshot snapshot) {
+        int version = snapshot.getVersion();
+        int size = snapshot.getPrivileges().size();
+        assertEquals(version == 0 ? 0 : privilegeCount(version), size);
+        assertEquals(size, snapshot.getPathIndex().size());
+        for (int i = 0; i < size; i++) {
+            PrivilegeRoleDTO p = snapshot.findPrivilege("GET:/p" + i + "/detail");
+            assertNotNull(p);
+            assertEquals(Set.of((long) version), p.getRoles());
+        }
+    }
+
+    private static int privilegeCount(int version) {
+        return 20 + version % 30;
+    }
+
+    private static List<String> buildPrivileges(int version) {
+        int count = privilegeCount(version);
+        List<String> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PrivilegeRoleDTO p = new PrivilegeRoleDTO();
+            p.setId((long) i);
+            p.setAntPath("GET:/p" + i + "/**");
+            p.setInternal(false);
+            p.setRoles(Set.of((long) version));
+            list.add(JSONUtil.toJsonStr(p));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,77 @@
+package com.tianji.authsdk.gateway.util;
+
+import cn.hutool.jwt.signers.JWTSigner;
+import cn.hutool.jwt.signers.JWTSignerUtil;
+import com.tianji.common.domain.dto.LoginUserDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class TokenCacheTest {
+
+    private static final String TOKEN = "header.payload.signature";
+
+    private final JWTSigner signer = JWTSignerUtil.hs256("key-1".getBytes(StandardCharsets.UTF_8));
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    @Test
+    void testHit() {
+        TokenCache cache = new TokenCache(16);
+        LoginUserDTO user = new LoginUserDTO();
+        cache.put(TOKEN, signer, user, System.currentTimeMillis() + 60_000);
+
+        TokenCache.CachedToken cached = cache.get(TOKEN, signer);
+        assertNotNull(cached);
+        assertSame(user, cached.getUser());
+        assertFalse(cached.isExpired());
+        assertNull(cache.get("other." + TOKEN, signer));
+    }
+
+    @Test
+    void testExpiredTokenRejectedWhileStillCached() {
+        // 缓存的计时不前进，缓存项不会被淘汰，只有token自身的时间到期
+        TokenCache cache = new TokenCache(16, () -> 0L, now::get);
+        cache.put(TOKEN, signer, new LoginUserDTO(), now.get() + 1_000);
+
+        now.addAndGet(1_000);
+        TokenCache.CachedToken cached = cache.get(TOKEN, signer);
+        assertNotNull(cached);
+        assertTrue(cached.isExpired());
+    }
+
+    @Test
+    void testAlreadyExpiredTokenNotCached() {
+        TokenCache cache = new TokenCache(16, () -> 0L, now::get);
+        cache.put(TOKEN, signer, new LoginUserDTO(), now.get());
+
+        assertNull(cache.get(TOKEN, signer));
+    }
+
+    @Test
+    void testRotatedSignerMisses() {
+        TokenCache cache = new TokenCache(16);
+        cache.put(TOKEN, signer, new LoginUserDTO(), System.currentTimeMillis() + 60_000);
+
+        JWTSigner otherSigner = JWTSignerUtil.hs256("key-2".getBytes(StandardCharsets.UTF_8));
+        assertNull(cache.get(TOKEN, otherSigner));
+        // 未命中时删除旧的缓存项，换回原来的验签器也需要重新验签
+        assertNull(cache.get(TOKEN, signer));
+    }
+
+    @Test
+    void testInvalidatedWhenSignerChanges() {
+        TokenCache cache = new TokenCache(16);
+        JwtSignerHolder holder = new JwtSignerHolder(null);
+        new AuthUtil(holder, mock(StringRedisTemplate.class), cache);
+        cache.put(TOKEN, signer, new LoginUserDTO(), System.currentTimeMillis() + 60_000);
+        assertNotNull(cache.get(TOKEN, signer));
+
+        holder.setJwtSigner(signer);
+        assertNull(cache.get(TOKEN, signer));
+    }
+}
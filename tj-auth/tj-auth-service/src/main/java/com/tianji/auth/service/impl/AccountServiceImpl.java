@@ -2,10 +2,13 @@ package com.tianji.auth.service.impl;
 
 import com.tianji.api.client.user.UserClient;
 import com.tianji.api.dto.user.LoginFormDTO;
+import com.tianji.api.dto.user.UserEventDTO;
 import com.tianji.auth.common.constants.JwtConstants;
 import com.tianji.auth.service.IAccountService;
 import com.tianji.auth.service.ILoginRecordService;
 import com.tianji.auth.util.JwtTool;
+import com.tianji.common.autoconfigure.mq.RabbitMqHelper;
+import com.tianji.common.constants.MqConstants;
 import com.tianji.common.domain.dto.LoginUserDTO;
 import com.tianji.common.exceptions.BadRequestException;
 import com.tianji.common.utils.BooleanUtils;
@@ -14,6 +17,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+
 /**
  * <p>
  * 账号表，平台内所有用户的账号、密码信息 服务实现类
@@ -29,6 +34,7 @@ public class AccountServiceImpl implements IAccountService{
     private final JwtTool jwtTool;
     private final UserClient userClient;
     private final ILoginRecordService loginRecordService;
+    private final RabbitMqHelper mqHelper;
 
     @Override
     public String login(LoginFormDTO loginDTO, boolean isStaff) {
@@ -46,7 +52,16 @@ public class AccountServiceImpl implements IAccountService{
 
         // 3.计入登录信息表
         loginRecordService.loginSuccess(loginDTO.getCellPhone(), detail.getUserId());
-        // 4.返回结果
+        // 4.学员登录，发送MQ消息用于统计访问量，发送失败不影响登录
+        if (!isStaff) {
+            mqHelper.sendAsync(MqConstants.Exchange.USER_EXCHANGE, MqConstants.Key.USER_LOGIN_KEY,
+                            UserEventDTO.of(detail.getUserId(), LocalDateTime.now()))
+                    .exceptionally(e -> {
+                        log.warn("发送用户{}的登录消息失败", detail.getUserId(), e);
+                        return null;
+                    });
+        }
+        // 5.返回结果
         return token;
     }
 
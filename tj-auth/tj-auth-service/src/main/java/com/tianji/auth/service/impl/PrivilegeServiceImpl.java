@@ -144,8 +144,10 @@ public class PrivilegeServiceImpl extends ServiceImpl<PrivilegeMapper, Privilege
         }
         // 4.写入数据库
         rolePrivilegeService.saveBatch(rolePrivileges);
-        // 5.重置缓存
-        privilegeCache.initPrivilegesCache(listPrivilegeRoles());
+        // 5.更新受影响的权限缓存，缓存中缺少权限数据时再全量重置
+        if (!privilegeCache.addRolePrivileges(roleId, privilegeIds)) {
+            privilegeCache.initPrivilegesCache(listPrivilegeRoles());
+        }
     }
 
     @Override
@@ -154,6 +156,6 @@ public class PrivilegeServiceImpl extends ServiceImpl<PrivilegeMapper, Privilege
         // 1.删除
         rolePrivilegeService.deleteRolePrivileges(roleId, privilegeIds);
         // 2.移除对应角色权限缓存
-        privilegeCache.initPrivilegesCache(listPrivilegeRoles());
+        privilegeCache.removeRolePrivileges(roleId, privilegeIds);
     }
 }
@@ -3,24 +3,46 @@ package com.tianji.auth.util;
 import cn.hutool.json.JSONUtil;
 import com.tianji.auth.common.domain.PrivilegeRoleDTO;
 import com.tianji.auth.domain.po.Privilege;
+import com.tianji.common.exceptions.BizIllegalException;
 import com.tianji.common.utils.CollUtils;
 import com.tianji.common.utils.JsonUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.BoundHashOperations;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.function.BiFunction;
 
-import static com.tianji.auth.common.constants.JwtConstants.AUTH_PRIVILEGE_KEY;
-import static com.tianji.auth.common.constants.JwtConstants.AUTH_PRIVILEGE_VERSION_KEY;
+import static com.tianji.auth.common.constants.JwtConstants.*;
 
+/**
+ * 权限缓存。
+ * <p>
+ * 权限信息以hash结构缓存，同时维护 角色id -> 权限id集合 的反向索引，角色或权限变更时只需修改受影响的权限。
+ * 所有写操作都在lua脚本中完成：先校验旧值未被并发修改，再写入新值、维护反向索引、递增版本并发布变更通知，
+ * 网关不会读到改了一半的数据。脚本访问的反向索引key都通过KEYS传入。
+ * </p>
+ */
 @Slf4j
 @Component
 public class PrivilegeCache {
+    /**
+     * 并发修改导致更新失败时的最大重试次数
+     */
+    private static final int MAX_RETRY_TIMES = 5;
+    private static final RedisScript<Long> UPDATE_SCRIPT;
+
+    static {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource("lua/update_privileges.lua"));
+        script.setResultType(Long.class);
+        UPDATE_SCRIPT = script;
+    }
+
     private final BoundHashOperations<String, String, String> hashOps;
     private final StringRedisTemplate stringRedisTemplate;
 
@@ -31,14 +53,12 @@ public class PrivilegeCache {
 
     public void initPrivilegesCache(List<PrivilegeRoleDTO> list) {
         // 1.组装权限对应角色
-        Map<String, String> map = new HashMap<>();
+        Map<String, PrivilegeRoleDTO> map = new HashMap<>(list.size());
         for (PrivilegeRoleDTO prDTO : list) {
-            map.put(prDTO.getId().toString(), JSONUtil.toJsonStr(prDTO));
+            map.put(prDTO.getId().toString(), prDTO);
         }
-        // 2.写入 redis
-        hashOps.putAll(map);
-        // 3.版本递增
-        incrementVersion();
+        // 2.写入 redis，同时重建反向索引
+        update(new ArrayList<>(map.keySet()), (id, old) -> map.get(id));
     }
 
     public void cacheSinglePrivilege(Privilege p, Set<Long> roleIds) {
@@ -48,8 +68,7 @@ public class PrivilegeCache {
             privilegeRoleDTO.setAntPath(p.getMethod() + ":" + p.getUri());
             privilegeRoleDTO.setRoles(roleIds);
             privilegeRoleDTO.setInternal(p.getInternal());
-            hashOps.put(p.getId().toString(), JSONUtil.toJsonStr(privilegeRoleDTO));
-            incrementVersion();
+            update(CollUtils.singletonList(p.getId().toString()), (id, old) -> privilegeRoleDTO);
         } catch (Exception e) {
             log.error("缓存权限信息失败。 ->", e);
             throw new RuntimeException(e);
@@ -57,40 +76,124 @@ public class PrivilegeCache {
     }
 
     public void removePrivilegeCacheById(Long id) {
-        hashOps.delete(id);
-        incrementVersion();
+        removePrivilegeCacheByIds(CollUtils.singletonList(id));
     }
 
     public void removePrivilegeCacheByIds(List<Long> ids) {
-        hashOps.delete(ids.toArray());
-        incrementVersion();
+        update(toFields(ids), (id, old) -> null);
     }
 
+    /**
+     * 给角色添加权限，只修改受影响的权限
+     * @param roleId 角色id
+     * @param privilegeIds 权限id
+     * @return 缓存中是否存在全部的权限，不存在时需要调用者重新加载
+     */
+    public boolean addRolePrivileges(Long roleId, Collection<Long> privilegeIds) {
+        return update(toFields(privilegeIds), (id, old) -> {
+            if (old == null) {
+                return null;
+            }
+            old.getRoles().add(roleId);
+            return old;
+        });
+    }
 
-    private void incrementVersion() {
-        stringRedisTemplate.opsForValue().increment(AUTH_PRIVILEGE_VERSION_KEY, 1);
+    /**
+     * 移除角色的部分权限，只修改受影响的权限
+     * @param roleId 角色id
+     * @param privilegeIds 权限id
+     */
+    public void removeRolePrivileges(Long roleId, Collection<Long> privilegeIds) {
+        update(toFields(privilegeIds), (id, old) -> removeRole(old, roleId));
     }
 
     public void removeCacheByRoleId(Long id) {
-        // 查询出所有权限信息
-        Map<String, String> cacheMap = hashOps.entries();
-        if(CollUtils.isEmpty(cacheMap)){
+        // 通过反向索引查询角色关联的权限，而不是遍历全部权限
+        Set<String> fields = stringRedisTemplate.opsForSet().members(AUTH_ROLE_PRIVILEGES_KEY_PREFIX + id);
+        if (CollUtils.isEmpty(fields)) {
             return;
         }
-        // 记录修改的数据
-        Map<String, String> modified = new HashMap<>();
-        for (Map.Entry<String, String> en : cacheMap.entrySet()) {
-            // 获取权限数据
-            String value = en.getValue();
-            PrivilegeRoleDTO prDTO = JsonUtils.toBean(value, PrivilegeRoleDTO.class);
-            // 尝试移除角色id
-            boolean remove = prDTO.getRoles().remove(id);
-            if(remove){
-                modified.put(en.getKey(), JsonUtils.toJsonStr(prDTO));
+        update(new ArrayList<>(fields), (field, old) -> removeRole(old, id));
+    }
+
+    private static PrivilegeRoleDTO removeRole(PrivilegeRoleDTO old, Long roleId) {
+        if (old == null) {
+            return null;
+        }
+        old.getRoles().remove(roleId);
+        return old;
+    }
+
+    /**
+     * 更新指定的权限缓存，并发修改导致冲突时重新读取后重试
+     * @param fields 要更新的权限id
+     * @param mapper 根据权限id和旧的权限数据计算新的权限数据，旧数据为null代表缓存中不存在，返回null代表删除
+     * @return 所有权限在缓存中都存在时返回true
+     */
+    private boolean update(List<String> fields, BiFunction<String, PrivilegeRoleDTO, PrivilegeRoleDTO> mapper) {
+        if (CollUtils.isEmpty(fields)) {
+            return true;
+        }
+        for (int i = 0; i < MAX_RETRY_TIMES; i++) {
+            // 1.读取旧值
+            List<String> olds = hashOps.multiGet(fields);
+            // 2.计算新值，组装脚本参数
+            boolean allExists = true;
+            Set<Long> roles = new TreeSet<>();
+            List<String> args = new ArrayList<>(3 + fields.size() * 5);
+            args.add(AUTH_PRIVILEGE_CHANNEL);
+            args.add(AUTH_ROLE_PRIVILEGES_KEY_PREFIX);
+            args.add(String.valueOf(fields.size()));
+            for (int j = 0; j < fields.size(); j++) {
+                String oldJson = olds == null ? null : olds.get(j);
+                PrivilegeRoleDTO old = oldJson == null ? null : JsonUtils.toBean(oldJson, PrivilegeRoleDTO.class);
+                allExists &= old != null;
+                if (old != null && old.getRoles() == null) {
+                    old.setRoles(new HashSet<>());
+                }
+                Set<Long> oldRoles = old == null ? null : new HashSet<>(old.getRoles());
+                PrivilegeRoleDTO newValue = mapper.apply(fields.get(j), old);
+                addRoles(roles, oldRoles);
+                addRoles(roles, newValue == null ? null : newValue.getRoles());
+                args.add(fields.get(j));
+                args.add(oldJson == null ? "" : oldJson);
+                args.add(newValue == null ? "" : JSONUtil.toJsonStr(newValue));
+                args.add(joinRoles(oldRoles));
+                args.add(joinRoles(newValue == null ? null : newValue.getRoles()));
             }
+            // 3.原子更新，受影响角色的反向索引key作为KEYS传入
+            List<String> keys = new ArrayList<>(2 + roles.size());
+            keys.add(AUTH_PRIVILEGE_KEY);
+            keys.add(AUTH_PRIVILEGE_VERSION_KEY);
+            for (Long role : roles) {
+                keys.add(AUTH_ROLE_PRIVILEGES_KEY_PREFIX + role);
+            }
+            Long version = stringRedisTemplate.execute(UPDATE_SCRIPT, keys, args.toArray());
+            if (version != null && version > 0) {
+                return allExists;
+            }
+            log.debug("权限缓存被并发修改，重新尝试更新，第{}次", i + 1);
+        }
+        log.error("权限缓存更新失败，并发冲突次数过多，权限id：{}", fields);
+        throw new BizIllegalException("权限缓存更新失败，请稍后重试");
+    }
+
+    private static List<String> toFields(Collection<Long> ids) {
+        List<String> fields = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            fields.add(id.toString());
         }
-        // 写回缓存
-        hashOps.putAll(modified);
-        incrementVersion();
+        return fields;
+    }
+
+    private static void addRoles(Set<Long> roles, Set<Long> added) {
+        if (added != null) {
+            roles.addAll(added);
+        }
+    }
+
+    private static String joinRoles(Set<Long> roles) {
+        return CollUtils.isEmpty(roles) ? "" : CollUtils.join(roles, ",");
     }
 }
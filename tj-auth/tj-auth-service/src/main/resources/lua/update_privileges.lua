@@ -0,0 +1,67 @@
+-- 原子更新权限缓存：校验旧值 -> 写入新值 -> 维护角色权限反向索引 -> 版本递增 -> 发布变更通知
+-- KEYS[1]: 权限缓存的hash key
+-- KEYS[2]: 权限版本的key
+-- KEYS[3..]: 本次涉及的全部角色的反向索引key，即新旧角色id拼接反向索引的key前缀
+-- ARGV[1]: 权限变更通知的频道
+-- ARGV[2]: 角色权限反向索引的key前缀
+-- ARGV[3]: 变更的权限数量n
+-- 之后每5个参数描述一个权限：权限id、期望的旧值、新值、旧的角色id（逗号分隔）、新的角色id（逗号分隔）
+-- 旧值为空串代表缓存中不存在，新值为空串代表删除
+-- 返回值：最新的版本号，旧值不一致时返回-1
+local hashKey = KEYS[1]
+local versionKey = KEYS[2]
+local channel = ARGV[1]
+local rolePrefix = ARGV[2]
+local n = tonumber(ARGV[3])
+
+-- 反向索引的key必须通过KEYS声明
+local roleKeys = {}
+for i = 3, #KEYS do
+    roleKeys[KEYS[i]] = true
+end
+local function roleKey(role)
+    local key = rolePrefix .. role
+    if not roleKeys[key] then
+        error('role key not declared in KEYS: ' .. key)
+    end
+    return key
+end
+
+-- 1.校验旧值，任意一个权限被其它请求修改过则放弃本次更新
+for i = 0, n - 1 do
+    local base = 4 + i * 5
+    local current = redis.call('HGET', hashKey, ARGV[base])
+    if not current then
+        current = ''
+    end
+    if current ~= ARGV[base + 1] then
+        return -1
+    end
+end
+
+-- 2.写入新值并维护反向索引
+for i = 0, n - 1 do
+    local base = 4 + i * 5
+    local id = ARGV[base]
+    local newValue = ARGV[base + 2]
+    if newValue == '' then
+        redis.call('HDEL', hashKey, id)
+    else
+        redis.call('HSET', hashKey, id, newValue)
+    end
+    local newRoles = {}
+    for role in string.gmatch(ARGV[base + 4], '[^,]+') do
+        newRoles[role] = true
+        redis.call('SADD', roleKey(role), id)
+    end
+    for role in string.gmatch(ARGV[base + 3], '[^,]+') do
+        if not newRoles[role] then
+            redis.call('SREM', roleKey(role), id)
+        end
+    end
+end
+
+-- 3.版本递增并通知网关
+local version = redis.call('INCR', versionKey)
+redis.call('PUBLISH', channel, tostring(version))
+return version
@@ -0,0 +1,219 @@
+package com.tianji.auth.util;
+
+import cn.hutool.json.JSONUtil;
+import com.tianji.auth.common.domain.PrivilegeRoleDTO;
+import com.tianji.auth.domain.po.Privilege;
+import com.tianji.common.exceptions.BizIllegalException;
+import com.tianji.common.utils.JsonUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.BoundHashOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.tianji.auth.common.constants.JwtConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * redis使用内存中的替身，替身按照update_privileges.lua的语义执行，并校验脚本访问的key都通过KEYS传入；不校验lua脚本本身
+ */
+class PrivilegeCacheTest {
+
+    private final Map<String, String> hash = new HashMap<>();
+    private final Map<String, Set<String>> sets = new HashMap<>();
+    private long version;
+    private int scriptCalls;
+    /**
+     * 每次执行脚本前执行，用于模拟并发修改
+     */
+    private Runnable beforeScript = () -> {};
+    private PrivilegeCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        BoundHashOperations<String, String, String> hashOps = mock(BoundHashOperations.class);
+        SetOperations<String, String> setOps = mock(SetOperations.class);
+        doReturn(hashOps).when(redisTemplate).boundHashOps(AUTH_PRIVILEGE_KEY);
+        when(redisTemplate.opsForSet()).thenReturn(setOps);
+        when(hashOps.multiGet(anyCollection())).thenAnswer(inv -> {
+            Collection<String> fields = inv.getArgument(0);
+            return fields.stream().map(hash::get).collect(Collectors.toList());
+        });
+        when(setOps.members(anyString())).thenAnswer(inv -> new HashSet<>(sets.getOrDefault(inv.<String>getArgument(0), Set.of())));
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(inv -> {
+            Object[] all = inv.getArguments();
+            List<String> keys = inv.getArgument(1);
+            String[] args = Arrays.stream(all, 2, all.length).map(String::valueOf).toArray(String[]::new);
+            scriptCalls++;
+            beforeScript.run();
+            return runScript(keys, args);
+        });
+        cache = new PrivilegeCache(redisTemplate);
+    }
+
+    private long runScript(List<String> keys, String[] args) {
+        assertEquals(AUTH_PRIVILEGE_KEY, keys.get(0));
+        assertEquals(AUTH_PRIVILEGE_VERSION_KEY, keys.get(1));
+        Set<String> declared = new HashSet<>(keys.subList(2, keys.size()));
+        String prefix = args[1];
+        int n = Integer.parseInt(args[2]);
+        // 1.校验旧值
+        for (int i = 0; i < n; i++) {
+            int base = 3 + i * 5;
+            if (!hash.getOrDefault(args[base], "").equals(args[base + 1])) {
+                return -1;
+            }
+        }
+        // 2.写入新值并维护反向索引
+        for (int i = 0; i < n; i++) {
+            int base = 3 + i * 5;
+            String id = args[base];
+            if (args[base + 2].isEmpty()) {
+                hash.remove(id);
+            } else {
+                hash.put(id, args[base + 2]);
+            }
+            Set<String> newRoles = split(args[base + 4]);
+            for (String role : newRoles) {
+                sets.computeIfAbsent(roleKey(declared, prefix, role), k -> new HashSet<>()).add(id);
+            }
+            for (String role : split(args[base + 3])) {
+                if (!newRoles.contains(role)) {
+                    Set<String> set = sets.get(roleKey(declared, prefix, role));
+                    if (set != null) {
+                        set.remove(id);
+                    }
+                }
+            }
+        }
+        return ++version;
+    }
+
+    private static String roleKey(Set<String> declared, String prefix, String role) {
+        String key = prefix + role;
+        assertTrue(declared.contains(key), "脚本访问的key没有通过KEYS传入：" + key);
+        return key;
+    }
+
+    private static Set<String> split(String roles) {
+        return roles.isEmpty() ? new HashSet<>() : new HashSet<>(Arrays.asList(roles.split(",")));
+    }
+
+    private static PrivilegeRoleDTO privilege(long id, Long... roles) {
+        PrivilegeRoleDTO dto = new PrivilegeRoleDTO();
+        dto.setId(id);
+        dto.setAntPath("GET:/p/" + id);
+        dto.setInternal(false);
+        dto.setRoles(new HashSet<>(Arrays.asList(roles)));
+        return dto;
+    }
+
+    private Set<Long> rolesOf(long privilegeId) {
+        String json = hash.get(String.valueOf(privilegeId));
+        return json == null ? null : JsonUtils.toBean(json, PrivilegeRoleDTO.class).getRoles();
+    }
+
+    private Set<String> privilegesOf(long roleId) {
+        return sets.getOrDefault(AUTH_ROLE_PRIVILEGES_KEY_PREFIX + roleId, Set.of());
+    }
+
+    @Test
+    void testInitBuildsReverseIndex() {
+        cache.initPrivilegesCache(List.of(privilege(1, 10L, 20L), privilege(2, 10L), privilege(3)));
+
+        assertEquals(Set.of("1", "2"), privilegesOf(10));
+        assertEquals(Set.of("1"), privilegesOf(20));
+        assertEquals(3, hash.size());
+        assertEquals(1, version);
+    }
+
+    @Test
+    void testRolePrivilegesMaintainIndex() {
+        cache.initPrivilegesCache(List.of(privilege(1, 10L), privilege(2, 10L), privilege(3)));
+
+        assertTrue(cache.addRolePrivileges(20L, List.of(1L, 3L)));
+        assertEquals(Set.of("1", "3"), privilegesOf(20));
+        assertEquals(Set.of(10L, 20L), rolesOf(1));
+
+        cache.removeRolePrivileges(10L, List.of(1L));
+        assertEquals(Set.of("2"), privilegesOf(10));
+        assertEquals(Set.of(20L), rolesOf(1));
+
+        // 缓存中不存在的权限需要调用者重新加载
+        assertFalse(cache.addRolePrivileges(20L, List.of(4L)));
+    }
+
+    @Test
+    void testRemoveCacheByRoleIdUsesIndex() {
+        cache.initPrivilegesCache(List.of(privilege(1, 10L, 20L), privilege(2, 10L), privilege(3, 20L)));
+
+        cache.removeCacheByRoleId(10L);
+
+        assertTrue(privilegesOf(10).isEmpty());
+        assertEquals(Set.of(20L), rolesOf(1));
+        assertEquals(Set.of(), rolesOf(2));
+        // 其它角色的权限不受影响
+        assertEquals(Set.of(20L), rolesOf(3));
+        assertEquals(Set.of("1", "3"), privilegesOf(20));
+    }
+
+    @Test
+    void testSinglePrivilegeMovesIndex() {
+        cache.initPrivilegesCache(List.of(privilege(1, 10L)));
+
+        Privilege p = new Privilege();
+        p.setId(1L);
+        p.setMethod("GET");
+        p.setUri("/p/1");
+        p.setInternal(false);
+        cache.cacheSinglePrivilege(p, new HashSet<>(Set.of(20L)));
+
+        assertTrue(privilegesOf(10).isEmpty());
+        assertEquals(Set.of("1"), privilegesOf(20));
+
+        cache.removePrivilegeCacheById(1L);
+        assertNull(hash.get("1"));
+        assertTrue(privilegesOf(20).isEmpty());
+    }
+
+    @Test
+    void testConflictRetried() {
+        cache.initPrivilegesCache(List.of(privilege(1, 10L)));
+        // 第一次执行脚本前，另一个请求给权限1添加了角色30
+        beforeScript = () -> {
+            beforeScript = () -> {};
+            PrivilegeRoleDTO concurrent = privilege(1, 10L, 30L);
+            hash.put("1", JSONUtil.toJsonStr(concurrent));
+            sets.computeIfAbsent(AUTH_ROLE_PRIVILEGES_KEY_PREFIX + 30, k -> new HashSet<>()).add("1");
+        };
+        int before = scriptCalls;
+
+        cache.addRolePrivileges(20L, List.of(1L));
+
+        // 冲突后重新读取再更新，并发添加的角色没有丢失
+        assertEquals(2, scriptCalls - before);
+        assertEquals(Set.of(10L, 20L, 30L), rolesOf(1));
+        assertEquals(Set.of("1"), privilegesOf(20));
+        assertEquals(Set.of("1"), privilegesOf(30));
+    }
+
+    @Test
+    void testTooManyConflicts() {
+        cache.initPrivilegesCache(List.of(privilege(1, 10L)));
+        // 每次执行脚本前都被并发修改
+        beforeScript = () -> hash.put("1", JSONUtil.toJsonStr(privilege(1, 10L, 100L + scriptCalls)));
+        int before = scriptCalls;
+
+        assertThrows(BizIllegalException.class, () -> cache.addRolePrivileges(20L, List.of(1L)));
+        assertEquals(5, scriptCalls - before);
+        assertTrue(privilegesOf(20).isEmpty());
+    }
+}
@@ -0,0 +1,313 @@
+package com.tianji.common.autoconfigure.mq;
+
+import cn.hutool.core.lang.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.tianji.common.constants.Constant.REQUEST_ID_HEADER;
+
+/**
+ * 批量消息发送器。
+ * <p>
+ * 消息先进入缓冲队列，由后台线程在很短的攒批时间内收集，按照exchange和routingKey分组后在同一个channel上连续发送，
+ * 不再为每条消息单独借还channel。开启publisher confirm（correlated模式）时，每条消息在收到broker的ack后才算发送成功，
+ * 被nack或确认超时的消息会按递增间隔重试，超过重试次数后以异常结束对应的{@link CompletableFuture}。
+ * 未开启publisher confirm时，消息写入channel即视为成功。
+ * </p>
+ * <p>
+ * 关闭时不再接收新消息，也不再安排新的重试：缓冲区中已有的消息会被发送完，并在确认超时时间内等待broker确认，
+ * 之后仍未结束的消息（包括等待重试、残留在缓冲区中的消息）全部以异常结束，调用者不会一直阻塞。
+ * </p>
+ */
+@Slf4j
+public class BatchingRabbitPublisher implements InitializingBean, DisposableBean {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final MqPublisherProperties properties;
+    private final BlockingQueue<PendingMessage> queue;
+    private final ScheduledExecutorService scheduler;
+    private final Thread flusher;
+    private final boolean confirmsEnabled;
+    /**
+     * 尚未结束的消息，关闭时用于兜底结束它们的future
+     */
+    private final Set<PendingMessage> unfinished = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = true;
+
+    public BatchingRabbitPublisher(RabbitTemplate rabbitTemplate, MqPublisherProperties properties) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.properties = properties;
+        this.queue = new LinkedBlockingQueue<>(properties.getQueueCapacity());
+        this.confirmsEnabled = rabbitTemplate.getConnectionFactory().isPublisherConfirms();
+        if (!confirmsEnabled) {
+            log.warn("未开启publisher confirm，批量发送的消息写入channel即视为成功");
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "mq-publish-retry");
+            t.setDaemon(true);
+            return t;
+        });
+        this.flusher = new Thread(this::flushLoop, "mq-batch-publisher");
+        this.flusher.setDaemon(true);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        flusher.start();
+    }
+
+    /**
+     * 发送消息
+     *
+     * @param exchange   交换机
+     * @param routingKey 路由KEY
+     * @param payload    数据
+     * @param delay      延迟时间，为null或0代表不延迟
+     * @return 消息被broker确认后完成的future
+     */
+    public CompletableFuture<Void> publish(String exchange, String routingKey, Object payload, Duration delay) {
+        return publish(exchange, routingKey, payload, delay, null);
+    }
+
+    /**
+     * 发送消息，并指定消息id，消费者可以基于消息id做幂等
+     *
+     * @param exchange   交换机
+     * @param routingKey 路由KEY
+     * @param payload    数据
+     * @param delay      延迟时间，为null或0代表不延迟
+     * @param messageId  消息id，为null代表不指定
+     * @return 消息被broker确认后完成的future
+     */
+    public CompletableFuture<Void> publish(
+            String exchange, String routingKey, Object payload, Duration delay, String messageId) {
+        PendingMessage message = new PendingMessage(
+                exchange, routingKey, payload, delay, messageId, MDC.get(REQUEST_ID_HEADER));
+        if (!running) {
+            message.future.completeExceptionally(new AmqpException("消息发送器已关闭"));
+            return message.future;
+        }
+        unfinished.add(message);
+        message.future.whenComplete((r, e) -> unfinished.remove(message));
+        if (!queue.offer(message)) {
+            // 缓冲区已满，由调用者线程直接发送，对生产者形成背压
+            publishBatch(Collections.singletonList(message));
+        }
+        return message.future;
+    }
+
+    private void flushLoop() {
+        long linger = properties.getLinger().toNanos();
+        int batchSize = properties.getBatchSize();
+        List<PendingMessage> buffer = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                // 1.等待第一条消息
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                buffer.add(first);
+                // 2.在攒批时间内继续收集消息
+                long deadline = System.nanoTime() + linger;
+                while (buffer.size() < batchSize) {
+                    long remain = deadline - System.nanoTime();
+                    if (remain <= 0) {
+                        break;
+                    }
+                    if (queue.drainTo(buffer, batchSize - buffer.size()) > 0) {
+                        continue;
+                    }
+                    PendingMessage next = queue.poll(remain, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    buffer.add(next);
+                }
+                // 3.按照exchange和routingKey分组发送
+                Map<String, List<PendingMessage>> groups = new LinkedHashMap<>();
+                for (PendingMessage m : buffer) {
+                    groups.computeIfAbsent(m.exchange + "\u0000" + m.routingKey, k -> new ArrayList<>()).add(m);
+                }
+                groups.values().forEach(this::publishBatch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("批量发送消息异常", e);
+            } finally {
+                buffer.clear();
+            }
+        }
+    }
+
+    private void publishBatch(List<PendingMessage> batch) {
+        // 1.在同一个channel上连续发送
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (PendingMessage m : batch) {
+                    m.newAttempt();
+                    operations.convertAndSend(m.exchange, m.routingKey, m.payload, m::postProcess, m.correlation);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("批量发送消息失败，exchange：{}，RoutingKey：{}，数量：{}",
+                    batch.get(0).exchange, batch.get(0).routingKey, batch.size(), e);
+            batch.forEach(m -> retryOrFail(m, m.correlation, e));
+            return;
+        }
+        // 2.等待broker确认
+        if (!confirmsEnabled) {
+            batch.forEach(m -> m.future.complete(null));
+            return;
+        }
+        List<CorrelationData> correlations = new ArrayList<>(batch.size());
+        for (PendingMessage m : batch) {
+            correlations.add(m.correlation);
+            awaitConfirm(m);
+        }
+        // 3.整批共用一个超时检查，超时未确认的消息进行重试
+        scheduler.schedule(() -> {
+            for (int i = 0; i < batch.size(); i++) {
+                PendingMessage m = batch.get(i);
+                CorrelationData correlation = correlations.get(i);
+                if (m.settle(correlation)) {
+                    retryOrFail(m, correlation, new AmqpException("等待broker确认超时"));
+                }
+            }
+        }, properties.getConfirmTimeout().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void awaitConfirm(PendingMessage m) {
+        CorrelationData correlation = m.correlation;
+        correlation.getFuture().addCallback(confirm -> {
+            if (confirm == null || !m.settle(correlation)) {
+                return;
+            }
+            if (confirm.isAck()) {
+                m.future.complete(null);
+            } else {
+                retryOrFail(m, correlation, new AmqpException("消息被broker拒绝：" + confirm.getReason()));
+            }
+        }, ex -> {
+            if (m.settle(correlation)) {
+                retryOrFail(m, correlation, ex);
+            }
+        });
+    }
+
+    private void retryOrFail(PendingMessage m, CorrelationData attempt, Throwable cause) {
+        if (m.correlation != attempt || m.future.isDone()) {
+            // 已经有新的发送尝试，或者已经结束
+            return;
+        }
+        if (m.attempts > properties.getMaxRetries()) {
+            log.error("消息发送失败，已重试{}次，exchange：{}，RoutingKey：{}，message：{}",
+                    m.attempts - 1, m.exchange, m.routingKey, m.payload, cause);
+            m.future.completeExceptionally(cause);
+            return;
+        }
+        if (!running) {
+            // 正在关闭，后台线程可能已经退出，不再重试
+            m.future.completeExceptionally(new AmqpException("消息发送器已关闭，不再重试", cause));
+            return;
+        }
+        long backoff = properties.getRetryInterval().toMillis() * m.attempts;
+        try {
+            scheduler.schedule(() -> {
+                if (!running) {
+                    m.future.completeExceptionally(new AmqpException("消息发送器已关闭，不再重试", cause));
+                } else if (!queue.offer(m)) {
+                    m.future.completeExceptionally(new AmqpException("消息缓冲区已满，无法重试", cause));
+                }
+            }, backoff, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            m.future.completeExceptionally(new AmqpException("消息发送器已关闭，不再重试", cause));
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        // 1.停止接收新消息和新的重试，把缓冲区中的消息发送完
+        running = false;
+        long timeout = properties.getConfirmTimeout().toMillis();
+        flusher.join(timeout);
+        // 2.在确认超时时间内等待已发送的消息被确认，被nack或超时的消息会直接失败
+        CompletableFuture<?>[] futures = unfinished.stream().map(m -> m.future).toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(futures).get(timeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException ignored) {
+            // 失败或超时的消息在下面统一处理
+        }
+        // 3.取消已安排的重试和超时检查，其余未结束的消息全部以异常结束
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        queue.clear();
+        List<PendingMessage> remains = new ArrayList<>(unfinished);
+        if (!remains.isEmpty()) {
+            log.warn("消息发送器关闭时仍有{}条消息未结束，将以异常结束", remains.size());
+        }
+        AmqpException cause = new AmqpException("消息发送器已关闭，消息未能发送");
+        remains.forEach(m -> m.future.completeExceptionally(cause));
+    }
+
+    private static class PendingMessage {
+        private final String id = UUID.randomUUID().toString(true);
+        private final String exchange;
+        private final String routingKey;
+        private final Object payload;
+        private final Long delay;
+        private final String messageId;
+        private final String requestId;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private volatile CorrelationData correlation;
+        private volatile int attempts;
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        PendingMessage(String exchange, String routingKey, Object payload, Duration delay,
+                       String messageId, String requestId) {
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.payload = payload;
+            this.delay = delay == null || delay.isZero() || delay.isNegative() ? null : delay.toMillis();
+            this.messageId = messageId;
+            this.requestId = requestId == null ? UUID.randomUUID().toString(true) : requestId;
+        }
+
+        void newAttempt() {
+            attempts++;
+            settled.set(false);
+            correlation = new CorrelationData(id + "-" + attempts);
+        }
+
+        /**
+         * 标记本次发送已有结果（ack、nack或超时），只有第一个结果生效
+         */
+        boolean settle(CorrelationData attempt) {
+            return attempt == correlation && settled.compareAndSet(false, true);
+        }
+
+        Message postProcess(Message message) {
+            message.getMessageProperties().setHeader(REQUEST_ID_HEADER, requestId);
+            if (messageId != null) {
+                message.getMessageProperties().setMessageId(messageId);
+            }
+            if (delay != null) {
+                message.getMessageProperties().setHeader("x-delay", delay);
+            }
+            return message;
+        }
+    }
+}
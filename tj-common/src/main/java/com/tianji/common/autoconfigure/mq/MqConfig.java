@@ -18,6 +18,7 @@ import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainer
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -31,6 +32,7 @@ import static com.tianji.common.constants.MqConstants.Queue.ERROR_QUEUE_TEMPLATE
 
 @Configuration
 @ConditionalOnClass(value = {MessageConverter.class, AmqpTemplate.class})
+@EnableConfigurationProperties(MqPublisherProperties.class)
 public class MqConfig implements EnvironmentAware{
 
     private String defaultErrorRoutingKey;
@@ -77,6 +79,16 @@ public class MqConfig implements EnvironmentAware{
                 rabbitTemplate, ERROR_EXCHANGE, defaultErrorRoutingKey);
     }
 
+    /**
+     * rabbitmq批量发送器，用于异步发送
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnClass(RabbitTemplate.class)
+    public BatchingRabbitPublisher batchingRabbitPublisher(RabbitTemplate rabbitTemplate, MqPublisherProperties properties){
+        return new BatchingRabbitPublisher(rabbitTemplate, properties);
+    }
+
     /**
      * rabbitmq发送工具
      *
@@ -84,8 +96,8 @@ public class MqConfig implements EnvironmentAware{
     @Bean
     @ConditionalOnMissingBean
     @ConditionalOnClass(RabbitTemplate.class)
-    public RabbitMqHelper rabbitMqHelper(RabbitTemplate rabbitTemplate){
-        return new RabbitMqHelper(rabbitTemplate);
+    public RabbitMqHelper rabbitMqHelper(RabbitTemplate rabbitTemplate, BatchingRabbitPublisher batchingRabbitPublisher){
+        return new RabbitMqHelper(rabbitTemplate, batchingRabbitPublisher);
     }
 
     /**
@@ -0,0 +1,35 @@
+package com.tianji.common.autoconfigure.mq;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "tj.mq.publisher")
+public class MqPublisherProperties {
+    /**
+     * 攒批等待时间，第一条消息到达后最多等待这么久再发送
+     */
+    private Duration linger = Duration.ofMillis(5);
+    /**
+     * 每批最多发送的消息数量
+     */
+    private Integer batchSize = 100;
+    /**
+     * 待发送消息的缓冲区大小，缓冲区满时由调用者线程直接发送
+     */
+    private Integer queueCapacity = 100_000;
+    /**
+     * 发送失败或被broker拒绝后的最大重试次数
+     */
+    private Integer maxRetries = 3;
+    /**
+     * 重试间隔，每次重试递增
+     */
+    private Duration retryInterval = Duration.ofMillis(200);
+    /**
+     * 等待broker确认的超时时间
+     */
+    private Duration confirmTimeout = Duration.ofSeconds(5);
+}
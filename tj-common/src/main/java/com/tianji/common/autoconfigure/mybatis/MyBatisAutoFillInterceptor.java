@@ -1,5 +1,6 @@
 package com.tianji.common.autoconfigure.mybatis;
 
+import cn.hutool.core.convert.Convert;
 import com.baomidou.mybatisplus.extension.plugins.inner.InnerInterceptor;
 import com.tianji.common.utils.ReflectUtils;
 import com.tianji.common.utils.UserContext;
@@ -7,44 +8,148 @@ import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import static com.tianji.common.constants.Constant.DATA_FIELD_NAME_CREATER;
 import static com.tianji.common.constants.Constant.DATA_FIELD_NAME_UPDATER;
 
+/**
+ * 自动填充创建人、更新人。
+ * <p>
+ * 每个实体类是否存在creater、updater字段只解析一次，并缓存绑定好的setter。
+ * 参数是Map时（例如updateById的et参数、批量插入的list参数），会填充其中的实体和集合中的每个实体。
+ * </p>
+ */
 public class MyBatisAutoFillInterceptor implements InnerInterceptor {
 
+    private static final ClassValue<FillMetadata> METADATA = new ClassValue<FillMetadata>() {
+        @Override
+        protected FillMetadata computeValue(Class<?> type) {
+            return FillMetadata.of(type);
+        }
+    };
+
     @Override
     public void beforeUpdate(Executor executor, MappedStatement ms, Object parameter) throws SQLException {
-        //1.更新操作
-        updateExe(parameter);
-        //2.插入操作
-        insertExe(ms, parameter);
+        if (parameter == null) {
+            return;
+        }
+        Long userId = UserContext.getUser();
+        if (userId == null) {
+            // 没有当前操作人，无需填充
+            return;
+        }
+        //1.判断当前操作是否是插入操作
+        boolean insert = ms.getSqlCommandType() == SqlCommandType.INSERT;
+        //2.填充参数
+        if (parameter instanceof Map) {
+            fillParamMap((Map<?, ?>) parameter, userId, insert);
+        } else {
+            fill(parameter, userId, insert);
+        }
     }
 
-    private void insertExe(MappedStatement ms, Object parameter){
-        //1.判断当前操作是否是插入操作
-        if(ms.getSqlCommandType().compareTo(SqlCommandType.INSERT) == 0) {
-            //2.判断是否有updater字段，如果
-            if(ReflectUtils.containField(DATA_FIELD_NAME_CREATER, parameter.getClass())){
-                Long userId = UserContext.getUser();
-                //3.有userId也存在并设置updater
-                if(userId != null){
-                    //4.当前操作人设置到创建人字段
-                    ReflectUtils.setFieldValue(parameter, DATA_FIELD_NAME_CREATER, userId);
+    private void fillParamMap(Map<?, ?> paramMap, Long userId, boolean insert) {
+        // 同一个参数在ParamMap中会以多个名称出现，只填充一次
+        Map<Object, Boolean> filled = new IdentityHashMap<>();
+        for (Object value : paramMap.values()) {
+            if (value == null || filled.put(value, Boolean.TRUE) != null) {
+                continue;
+            }
+            if (value instanceof Collection) {
+                for (Object entity : (Collection<?>) value) {
+                    fill(entity, userId, insert);
                 }
+            } else {
+                fill(value, userId, insert);
             }
         }
     }
 
-    private void updateExe(Object parameter){
-        //1.判断是否有updater字段
-        if(ReflectUtils.containField(DATA_FIELD_NAME_UPDATER, parameter.getClass())){
-            Long userId = UserContext.getUser();
-            //2.如果有userId也存在并设置updater
-            if(userId != null){
-                //3.当前用户设置到更新人字段
-                ReflectUtils.setFieldValue(parameter, DATA_FIELD_NAME_UPDATER, userId);
+    private void fill(Object entity, Long userId, boolean insert) {
+        if (entity == null) {
+            return;
+        }
+        FillMetadata metadata = METADATA.get(entity.getClass());
+        //1.插入时，当前操作人设置到创建人字段
+        if (insert && metadata.creater != null) {
+            metadata.creater.set(entity, userId);
+        }
+        //2.插入和更新时，当前用户设置到更新人字段
+        if (metadata.updater != null) {
+            metadata.updater.set(entity, userId);
+        }
+    }
+
+    /**
+     * 实体类的自动填充字段
+     */
+    private static class FillMetadata {
+        private final FieldSetter creater;
+        private final FieldSetter updater;
+
+        private FillMetadata(FieldSetter creater, FieldSetter updater) {
+            this.creater = creater;
+            this.updater = updater;
+        }
+
+        static FillMetadata of(Class<?> type) {
+            if (type.getName().startsWith("java.")) {
+                return new FillMetadata(null, null);
+            }
+            return new FillMetadata(
+                    FieldSetter.of(ReflectUtils.getField(type, DATA_FIELD_NAME_CREATER)),
+                    FieldSetter.of(ReflectUtils.getField(type, DATA_FIELD_NAME_UPDATER)));
+        }
+    }
+
+    /**
+     * 预先绑定的字段setter
+     */
+    private static class FieldSetter {
+        private final MethodHandle handle;
+        private final Class<?> type;
+
+        private FieldSetter(MethodHandle handle, Class<?> type) {
+            this.handle = handle;
+            this.type = type;
+        }
+
+        static FieldSetter of(Field field) {
+            if (field == null) {
+                return null;
+            }
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+                MethodHandle handle = lookup.unreflectSetter(field)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                return new FieldSetter(handle, field.getType());
+            } catch (IllegalAccessException e) {
+                // 无法直接访问时，退回到反射
+                return new FieldSetter(null, field.getType()) {
+                    @Override
+                    void set(Object entity, Long userId) {
+                        ReflectUtils.setFieldValue(entity, field, userId);
+                    }
+                };
+            }
+        }
+
+        void set(Object entity, Long userId) {
+            Object value = type == Long.class || type == long.class ? userId : Convert.convert(type, userId);
+            try {
+                handle.invokeExact(entity, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
             }
         }
     }
@@ -0,0 +1,44 @@
+package com.tianji.common.autoconfigure.outbox;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tianji.common.autoconfigure.mq.BatchingRabbitPublisher;
+import com.tianji.common.autoconfigure.mq.MqConfig;
+import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 本地消息表配置，需要开启tj.outbox.enable，并在服务的库中执行classpath:sql/outbox_event.sql创建消息表
+ */
+@Configuration
+@ConditionalOnClass({BaseMapper.class, RabbitTemplate.class})
+@ConditionalOnProperty(prefix = "tj.outbox", name = "enable", havingValue = "true")
+@AutoConfigureAfter(MqConfig.class)
+@EnableConfigurationProperties(OutboxProperties.class)
+@MapperScan(basePackageClasses = OutboxMapper.class, markerInterface = BaseMapper.class)
+public class OutboxConfig {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public OutboxRelay outboxRelay(OutboxMapper outboxMapper, BatchingRabbitPublisher batchingRabbitPublisher,
+                                   ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                                   OutboxProperties properties) {
+        return new OutboxRelay(outboxMapper, batchingRabbitPublisher, objectMapper,
+                new TransactionTemplate(transactionManager), properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public OutboxHelper outboxHelper(OutboxMapper outboxMapper, ObjectMapper objectMapper, OutboxRelay outboxRelay) {
+        return new OutboxHelper(outboxMapper, objectMapper, outboxRelay);
+    }
+}
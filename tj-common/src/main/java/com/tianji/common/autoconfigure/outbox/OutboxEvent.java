@@ -0,0 +1,70 @@
+package com.tianji.common.autoconfigure.outbox;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 本地消息表（事务发件箱），使用发件箱的服务需要在自己的库中执行classpath:sql/outbox_event.sql创建该表
+ */
+@Data
+@TableName("outbox_event")
+public class OutboxEvent {
+    public static final int STATUS_PENDING = 0;
+    public static final int STATUS_SENT = 1;
+    public static final int STATUS_FAILED = 2;
+    public static final int STATUS_SENDING = 3;
+
+    /**
+     * 主键，雪花算法生成，可以反映写入顺序
+     */
+    @TableId(value = "id", type = IdType.ASSIGN_ID)
+    private Long id;
+    /**
+     * 消息唯一标识，作为MQ消息的messageId
+     */
+    private String eventKey;
+    /**
+     * 交换机
+     */
+    private String exchange;
+    /**
+     * 路由key
+     */
+    private String routingKey;
+    /**
+     * 消息体类型
+     */
+    private String payloadType;
+    /**
+     * 消息体，JSON格式
+     */
+    private String payload;
+    /**
+     * 状态：0-待发送，1-已发送，2-发送失败，3-发送中
+     */
+    private Integer status;
+    /**
+     * 发送中的消息被哪个投递器认领
+     */
+    private String owner;
+    /**
+     * 已重试次数
+     */
+    private Integer retryTimes;
+    /**
+     * 下次发送时间，发送中的消息为认领的租约到期时间，到期后可以被重新认领
+     */
+    private LocalDateTime nextRetryTime;
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
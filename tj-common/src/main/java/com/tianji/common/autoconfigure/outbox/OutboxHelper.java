@@ -0,0 +1,78 @@
+package com.tianji.common.autoconfigure.outbox;
+
+import cn.hutool.core.lang.UUID;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tianji.common.exceptions.CommonException;
+import com.tianji.common.utils.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.LocalDateTime;
+
+/**
+ * 基于本地消息表的消息发送工具。
+ * <p>
+ * 消息与业务数据写入同一个本地事务，事务提交后由{@link OutboxRelay}投递到MQ，事务回滚则消息一起回滚，
+ * 保证业务数据与消息的最终一致。投递至少一次，消费者需要基于消息id做幂等。
+ * </p>
+ */
+@Slf4j
+public class OutboxHelper {
+
+    private final OutboxMapper outboxMapper;
+    private final ObjectMapper objectMapper;
+    private final OutboxRelay relay;
+
+    public OutboxHelper(OutboxMapper outboxMapper, ObjectMapper objectMapper, OutboxRelay relay) {
+        this.outboxMapper = outboxMapper;
+        this.objectMapper = objectMapper;
+        this.relay = relay;
+    }
+
+    /**
+     * 根据exchange和routingKey发送消息，消息在当前事务提交后投递
+     */
+    public <T> void publish(String exchange, String routingKey, T t) {
+        publish(exchange, routingKey, t, UUID.randomUUID().toString(true));
+    }
+
+    /**
+     * 根据exchange和routingKey发送消息，消息在当前事务提交后投递
+     *
+     * @param exchange   交换机
+     * @param routingKey 路由KEY
+     * @param t          数据
+     * @param eventKey   消息唯一标识，同一个标识的消息只会写入一次，同时作为MQ消息的messageId
+     * @param <T>        数据类型
+     */
+    public <T> void publish(String exchange, String routingKey, T t, String eventKey) {
+        log.debug("写入本地消息表，exchange：{}， RoutingKey：{}， message：{}", exchange, routingKey, t);
+        // 1.写入消息表，与业务数据处于同一个事务
+        OutboxEvent event = new OutboxEvent();
+        event.setEventKey(eventKey);
+        event.setExchange(exchange);
+        event.setRoutingKey(routingKey);
+        event.setPayloadType(t.getClass().getName());
+        event.setPayload(toJson(t));
+        event.setStatus(OutboxEvent.STATUS_PENDING);
+        event.setRetryTimes(0);
+        event.setNextRetryTime(LocalDateTime.now());
+        try {
+            outboxMapper.insert(event);
+        } catch (DuplicateKeyException e) {
+            log.debug("消息已经存在，无需重复写入，eventKey：{}", eventKey);
+            return;
+        }
+        // 2.事务提交后立即唤醒投递，没有事务时直接唤醒
+        TransactionUtils.afterCommit(relay::wakeUp);
+    }
+
+    private String toJson(Object t) {
+        try {
+            return objectMapper.writeValueAsString(t);
+        } catch (JsonProcessingException e) {
+            throw new CommonException("消息序列化失败", e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.tianji.common.autoconfigure.outbox;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxMapper extends BaseMapper<OutboxEvent> {
+
+    /**
+     * 按写入顺序锁定一批可以认领的消息：到期的待发送消息，以及租约已过期的发送中消息。已被其它实例锁定的消息直接跳过，
+     * 因此顺序只在一批之内成立
+     */
+    @Select("SELECT * FROM outbox_event WHERE status IN (0, 3) AND next_retry_time <= #{now} " +
+            "ORDER BY id LIMIT #{limit} FOR UPDATE SKIP LOCKED")
+    List<OutboxEvent> lockClaimableEvents(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * 认领消息，标记为发送中，租约到期前其它实例不会再认领
+     */
+    @Update("<script>UPDATE outbox_event SET status = 3, owner = #{owner}, next_retry_time = #{leaseUntil} WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int claim(@Param("ids") List<Long> ids, @Param("owner") String owner, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * 标记发送成功，只更新仍由自己认领的消息
+     */
+    @Update("<script>UPDATE outbox_event SET status = 1 WHERE status = 3 AND owner = #{owner} AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int markSent(@Param("ids") List<Long> ids, @Param("owner") String owner);
+
+    /**
+     * 发送失败，释放认领的消息，等待重试或标记为发送失败
+     */
+    @Update("UPDATE outbox_event SET status = #{status}, retry_times = #{retryTimes}, next_retry_time = #{nextRetryTime} " +
+            "WHERE id = #{id} AND status = 3 AND owner = #{owner}")
+    int release(@Param("id") Long id, @Param("owner") String owner, @Param("status") int status,
+                @Param("retryTimes") int retryTimes, @Param("nextRetryTime") LocalDateTime nextRetryTime);
+
+    @Delete("DELETE FROM outbox_event WHERE status = 1 AND create_time < #{before} LIMIT #{limit}")
+    int deleteSentBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
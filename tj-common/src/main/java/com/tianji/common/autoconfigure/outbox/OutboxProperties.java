@@ -0,0 +1,43 @@
+package com.tianji.common.autoconfigure.outbox;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "tj.outbox")
+public class OutboxProperties {
+    /**
+     * 是否开启本地消息表
+     */
+    private Boolean enable = false;
+    /**
+     * 每次从消息表中读取的消息数量
+     */
+    private Integer batchSize = 100;
+    /**
+     * 扫描消息表的间隔，用于兜底发送事务提交后没有立即发出的消息
+     */
+    private Duration pollInterval = Duration.ofSeconds(1);
+    /**
+     * 最大重试次数，超过后消息标记为发送失败，需要人工处理
+     */
+    private Integer maxRetries = 10;
+    /**
+     * 重试间隔，每次重试翻倍
+     */
+    private Duration retryInterval = Duration.ofSeconds(5);
+    /**
+     * 等待一批消息被broker确认的超时时间
+     */
+    private Duration sendTimeout = Duration.ofSeconds(30);
+    /**
+     * 认领消息的租约时长，需要大于sendTimeout。投递器宕机后，租约到期的消息会被其它实例重新认领
+     */
+    private Duration lease = Duration.ofSeconds(60);
+    /**
+     * 已发送消息的保留时间，超过后被清理
+     */
+    private Duration retention = Duration.ofDays(7);
+}
@@ -0,0 +1,192 @@
+package com.tianji.common.autoconfigure.outbox;
+
+import cn.hutool.core.lang.UUID;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tianji.common.autoconfigure.mq.BatchingRabbitPublisher;
+import com.tianji.common.utils.CollUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ClassUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 本地消息表的投递器。
+ * <p>
+ * 在一个短事务中按写入顺序锁定一批待发送消息（FOR UPDATE SKIP LOCKED），标记为发送中并记录认领者和租约到期时间，
+ * 事务提交后行锁即释放。之后在事务外通过{@link BatchingRabbitPublisher}批量发送，收到broker确认后标记为已发送；
+ * 发送失败的消息按翻倍的间隔重试，超过最大重试次数后标记为发送失败。投递器宕机时，租约到期的消息会被重新认领。
+ * 事务提交后会立即唤醒投递，同时定时扫描兜底。已发送的消息定期分批清理。
+ * </p>
+ * <p>
+ * 只保证同一批消息按写入顺序发出，不保证全局或同一个exchange、RoutingKey下的消息有序：
+ * 发送失败的消息推迟重试时，它之后的消息照常发送；多个实例会并行认领互不重叠的批次。
+ * 消息至少投递一次：broker确认丢失或投递器在标记已发送前宕机时，消息会被重新发送。
+ * 消费者需要依赖消息中的业务数据（例如状态、版本号）处理乱序，并使用messageId（eventKey）或业务唯一键做幂等。
+ * </p>
+ */
+@Slf4j
+public class OutboxRelay implements InitializingBean, DisposableBean {
+    private static final int CLEAN_BATCH_SIZE = 1000;
+
+    private final OutboxMapper outboxMapper;
+    private final BatchingRabbitPublisher publisher;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxProperties properties;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    /**
+     * 当前投递器的标识，用于认领消息
+     */
+    private final String owner = UUID.randomUUID().toString(true);
+
+    public OutboxRelay(OutboxMapper outboxMapper, BatchingRabbitPublisher publisher, ObjectMapper objectMapper,
+                       TransactionTemplate transactionTemplate, OutboxProperties properties) {
+        this.outboxMapper = outboxMapper;
+        this.publisher = publisher;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "outbox-relay");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        long interval = properties.getPollInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::relay, interval, interval, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::clean, 1, 60, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 唤醒投递，多次唤醒在投递线程执行前只会合并为一次
+     */
+    public void wakeUp() {
+        if (!wakeUpPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                wakeUpPending.set(false);
+                relay();
+            });
+        } catch (RejectedExecutionException e) {
+            // 已经关闭，消息留在表中，下次启动后投递
+            wakeUpPending.set(false);
+        }
+    }
+
+    void relay() {
+        try {
+            int count;
+            do {
+                count = relayBatch();
+            } while (count >= properties.getBatchSize());
+        } catch (Exception e) {
+            log.error("投递本地消息表中的消息异常", e);
+        }
+    }
+
+    private int relayBatch() {
+        // 1.在短事务中认领一批消息，提交后释放行锁，发送和等待确认都在事务外
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> events = transactionTemplate.execute(status -> claim(now));
+        if (CollUtils.isEmpty(events)) {
+            return 0;
+        }
+        // 2.批量发送
+        List<CompletableFuture<Void>> futures = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            futures.add(send(event));
+        }
+        // 3.等待broker确认
+        long deadline = System.nanoTime() + properties.getSendTimeout().toNanos();
+        List<Long> sentIds = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            OutboxEvent event = events.get(i);
+            try {
+                futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                sentIds.add(event.getId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                markFailed(event, e);
+            } catch (ExecutionException | TimeoutException e) {
+                markFailed(event, e);
+            }
+        }
+        // 4.标记发送成功
+        if (!sentIds.isEmpty()) {
+            outboxMapper.markSent(sentIds, owner);
+        }
+        return events.size();
+    }
+
+    private List<OutboxEvent> claim(LocalDateTime now) {
+        List<OutboxEvent> events = outboxMapper.lockClaimableEvents(now, properties.getBatchSize());
+        if (CollUtils.isEmpty(events)) {
+            return events;
+        }
+        List<Long> ids = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            ids.add(event.getId());
+        }
+        outboxMapper.claim(ids, owner, now.plus(properties.getLease()));
+        return events;
+    }
+
+    private CompletableFuture<Void> send(OutboxEvent event) {
+        Object payload;
+        try {
+            Class<?> type = ClassUtils.forName(event.getPayloadType(), ClassUtils.getDefaultClassLoader());
+            payload = objectMapper.readValue(event.getPayload(), type);
+        } catch (Exception e) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        return publisher.publish(event.getExchange(), event.getRoutingKey(), payload, null, event.getEventKey());
+    }
+
+    private void markFailed(OutboxEvent event, Exception e) {
+        int retryTimes = event.getRetryTimes() + 1;
+        LocalDateTime now = LocalDateTime.now();
+        if (retryTimes > properties.getMaxRetries()) {
+            log.error("本地消息投递失败，已重试{}次，id：{}，exchange：{}，RoutingKey：{}",
+                    event.getRetryTimes(), event.getId(), event.getExchange(), event.getRoutingKey(), e);
+            outboxMapper.release(event.getId(), owner, OutboxEvent.STATUS_FAILED, retryTimes, now);
+            return;
+        }
+        log.warn("本地消息投递失败，稍后重试，id：{}，exchange：{}，RoutingKey：{}",
+                event.getId(), event.getExchange(), event.getRoutingKey(), e);
+        long backoff = properties.getRetryInterval().toMillis() << Math.min(retryTimes - 1, 16);
+        outboxMapper.release(event.getId(), owner, OutboxEvent.STATUS_PENDING, retryTimes,
+                now.plusNanos(TimeUnit.MILLISECONDS.toNanos(backoff)));
+    }
+
+    private void clean() {
+        try {
+            LocalDateTime before = LocalDateTime.now().minus(properties.getRetention());
+            int deleted;
+            do {
+                deleted = outboxMapper.deleteSentBefore(before, CLEAN_BATCH_SIZE);
+            } while (deleted >= CLEAN_BATCH_SIZE);
+        } catch (Exception e) {
+            log.error("清理本地消息表异常", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
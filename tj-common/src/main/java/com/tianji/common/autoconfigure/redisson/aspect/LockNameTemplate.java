@@ -0,0 +1,207 @@
+package com.tianji.common.autoconfigure.redisson.aspect;
+
+import com.tianji.common.utils.StringUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的锁名称模板。
+ * <p>
+ * 锁名称在第一次调用时被拆分为常量片段和表达式片段：形如 #{param.prop1.prop2} 的简单属性路径直接按参数下标取值，
+ * 再通过缓存的getter逐级读取属性，不经过SPEL；其它复杂表达式才使用预先解析好的SPEL表达式求值。
+ * </p>
+ */
+class LockNameTemplate {
+    /**
+     * SPEL的正则规则
+     */
+    private static final Pattern EXPRESSION_PATTERN = Pattern.compile("\\#\\{([^\\}]*)\\}");
+    /**
+     * 简单属性路径，例如：payApplyDTO.bizOrderNo
+     */
+    private static final Pattern PROPERTY_PATH_PATTERN =
+            Pattern.compile("[A-Za-z_$][\\w$]*(\\.[A-Za-z_$][\\w$]*)*");
+    /**
+     * 按下标引用参数，例如：p0、a1
+     */
+    private static final Pattern INDEX_PATTERN = Pattern.compile("[pa](\\d+)");
+    private static final SpelExpressionParser PARSER =
+            new SpelExpressionParser(new SpelParserConfiguration(SpelCompilerMode.MIXED, null));
+
+    private final String constant;
+    private final Segment[] segments;
+
+    private LockNameTemplate(String constant, Segment[] segments) {
+        this.constant = constant;
+        this.segments = segments;
+    }
+
+    /**
+     * 编译锁名称模板
+     *
+     * @param name                    原始锁名称
+     * @param method                  加锁的方法
+     * @param parameterNameDiscoverer 方法参数解析器
+     * @return 锁名称模板
+     */
+    static LockNameTemplate compile(String name, Method method, ParameterNameDiscoverer parameterNameDiscoverer) {
+        // 1.判断是否存在spel表达式
+        if (StringUtils.isBlank(name) || !name.contains("#")) {
+            // 不存在，直接作为常量
+            return new LockNameTemplate(name, null);
+        }
+        // 2.拆分常量和表达式
+        String[] parameterNames = parameterNameDiscoverer.getParameterNames(method);
+        List<Segment> segments = new ArrayList<>();
+        Matcher matcher = EXPRESSION_PATTERN.matcher(name);
+        int last = 0;
+        while (matcher.find()) {
+            if (matcher.start() > last) {
+                segments.add(new ConstantSegment(name.substring(last, matcher.start())));
+            }
+            segments.add(compileExpression(matcher.group(1).trim(), method, parameterNames, parameterNameDiscoverer));
+            last = matcher.end();
+        }
+        if (last < name.length()) {
+            segments.add(new ConstantSegment(name.substring(last)));
+        }
+        return new LockNameTemplate(null, segments.toArray(new Segment[0]));
+    }
+
+    private static Segment compileExpression(String expression, Method method, String[] parameterNames,
+                                             ParameterNameDiscoverer parameterNameDiscoverer) {
+        // 1.简单属性路径，直接取参数
+        if (PROPERTY_PATH_PATTERN.matcher(expression).matches()) {
+            String[] path = expression.split("\\.");
+            int index = indexOf(path[0], parameterNames);
+            if (index >= 0 && index < method.getParameterCount()) {
+                return new PropertyPathSegment(expression, index, path);
+            }
+        }
+        // 2.复杂表达式，预先解析SPEL
+        return new SpelSegment(PARSER.parseExpression("#" + expression), method, parameterNameDiscoverer);
+    }
+
+    private static int indexOf(String root, String[] parameterNames) {
+        if (parameterNames != null) {
+            for (int i = 0; i < parameterNames.length; i++) {
+                if (root.equals(parameterNames[i])) {
+                    return i;
+                }
+            }
+        }
+        Matcher matcher = INDEX_PATTERN.matcher(root);
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * 根据方法参数生成锁名称
+     */
+    String format(Object[] args) {
+        if (segments == null) {
+            return constant;
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (Segment segment : segments) {
+            segment.appendTo(sb, args);
+        }
+        return sb.toString();
+    }
+
+    private interface Segment {
+        void appendTo(StringBuilder sb, Object[] args);
+    }
+
+    private static class ConstantSegment implements Segment {
+        private final String value;
+
+        ConstantSegment(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb, Object[] args) {
+            sb.append(value);
+        }
+    }
+
+    private static class PropertyPathSegment implements Segment {
+        private final String expression;
+        private final int index;
+        private final String[] path;
+        /**
+         * 每一级属性的getter，按照运行时的类型缓存
+         */
+        private final List<Map<Class<?>, Method>> getters;
+
+        PropertyPathSegment(String expression, int index, String[] path) {
+            this.expression = expression;
+            this.index = index;
+            this.path = path;
+            this.getters = new ArrayList<>(path.length);
+            for (int i = 0; i < path.length; i++) {
+                getters.add(new ConcurrentHashMap<>(4));
+            }
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb, Object[] args) {
+            Object value = args[index];
+            for (int i = 1; i < path.length; i++) {
+                if (value == null) {
+                    throw new IllegalArgumentException("锁名称表达式 " + expression + " 中的 " + path[i - 1] + " 为null");
+                }
+                String property = path[i];
+                Method getter = getters.get(i).computeIfAbsent(value.getClass(), c -> findGetter(c, property));
+                value = ReflectionUtils.invokeMethod(getter, value);
+            }
+            sb.append(ObjectUtils.nullSafeToString(value));
+        }
+
+        private Method findGetter(Class<?> clazz, String property) {
+            PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(clazz, property);
+            if (pd == null || pd.getReadMethod() == null) {
+                throw new IllegalArgumentException("锁名称表达式 " + expression + " 中的属性 " + property + " 不存在");
+            }
+            Method getter = pd.getReadMethod();
+            ReflectionUtils.makeAccessible(getter);
+            return getter;
+        }
+    }
+
+    private static class SpelSegment implements Segment {
+        private final Expression expression;
+        private final Method method;
+        private final ParameterNameDiscoverer parameterNameDiscoverer;
+
+        SpelSegment(Expression expression, Method method, ParameterNameDiscoverer parameterNameDiscoverer) {
+            this.expression = expression;
+            this.method = method;
+            this.parameterNameDiscoverer = parameterNameDiscoverer;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb, Object[] args) {
+            MethodBasedEvaluationContext context =
+                    new MethodBasedEvaluationContext(TypedValue.NULL, method, args, parameterNameDiscoverer);
+            sb.append(ObjectUtils.nullSafeToString(expression.getValue(context)));
+        }
+    }
+}
@@ -24,6 +24,9 @@ public interface MqConstants {
 
          /*点赞记录有关的交换机*/
         String LIKE_RECORD_EXCHANGE = "like.record.topic";
+
+        /*用户有关的交换机*/
+        String USER_EXCHANGE = "user.topic";
     }
     interface Queue {
         String ERROR_QUEUE_TEMPLATE = "error.{}.queue";
@@ -40,6 +43,10 @@ public interface MqConstants {
         String ORDER_PAY_KEY = "order.pay";
         String ORDER_REFUND_KEY = "order.refund";
 
+        /*用户有关的RoutingKey*/
+        String USER_REGISTER_KEY = "user.register";
+        String USER_LOGIN_KEY = "user.login";
+
         /*积分相关RoutingKey*/
         /* 写回答 */
         String WRITE_REPLY = "reply.new";
@@ -2,14 +2,91 @@ package com.tianji.common.utils;
 
 import cn.hutool.core.bean.BeanUtil;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.*;
 
 /**
- * 继承自 hutool 的BeanUtil，增加了bean转换时自定义转换器的功能
+ * 继承自 hutool 的BeanUtil，增加了bean转换时自定义转换器的功能。
+ * <p>
+ * bean之间的转换使用{@link CachedBeanCopier}，每一对类型只解析一次属性，转换规则与hutool一致，Map等其它类型仍然交给hutool处理
+ * </p>
  */
 public class BeanUtils extends BeanUtil {
 
+    /**
+     * 将原对象转换成目标对象
+     *
+     * @param source 原对象
+     * @param clazz  目标对象的class
+     * @param <T>    目标对象类型
+     * @return 目标对象，原对象为null时返回null
+     */
+    public static <T> T toBean(Object source, Class<T> clazz) {
+        if (source == null) {
+            return null;
+        }
+        if (!CachedBeanCopier.supports(source, clazz)) {
+            return BeanUtil.toBean(source, clazz);
+        }
+        return CachedBeanCopier.copy(source, clazz, null);
+    }
+
+    /**
+     * 将集合中的每个元素转换成目标对象
+     *
+     * @param collection 原集合
+     * @param targetType 目标对象的class
+     * @param <T>        目标对象类型
+     * @return 目标对象集合，原集合为null时返回null
+     */
+    public static <T> List<T> copyToList(Collection<?> collection, Class<T> targetType) {
+        if (collection == null) {
+            return null;
+        }
+        List<T> list = new ArrayList<>(collection.size());
+        for (Object source : collection) {
+            list.add(toBean(source, targetType));
+        }
+        return list;
+    }
+
+    /**
+     * 创建目标对象并拷贝属性
+     *
+     * @param source           原对象
+     * @param tClass           目标对象的class
+     * @param ignoreProperties 不拷贝的属性
+     * @param <T>              目标对象类型
+     * @return 目标对象
+     */
+    public static <T> T copyProperties(Object source, Class<T> tClass, String... ignoreProperties) {
+        if (source == null || !CachedBeanCopier.supports(source, tClass)) {
+            return BeanUtil.copyProperties(source, tClass, ignoreProperties);
+        }
+        return CachedBeanCopier.copy(source, tClass, toSet(ignoreProperties));
+    }
+
+    /**
+     * 拷贝属性到已有的目标对象
+     *
+     * @param source           原对象
+     * @param target           目标对象
+     * @param ignoreProperties 不拷贝的属性
+     */
+    public static void copyProperties(Object source, Object target, String... ignoreProperties) {
+        if (source == null || target == null || !CachedBeanCopier.supports(source, target.getClass())) {
+            BeanUtil.copyProperties(source, target, ignoreProperties);
+            return;
+        }
+        CachedBeanCopier.copy(source, target, toSet(ignoreProperties));
+    }
+
+    private static Set<String> toSet(String... ignoreProperties) {
+        if (ignoreProperties == null || ignoreProperties.length == 0) {
+            return null;
+        }
+        return new HashSet<>(Arrays.asList(ignoreProperties));
+    }
+
     /**
      * 将原对象转换成目标对象，对于字段不匹配的字段可以使用转换器处理
      *
@@ -54,6 +131,10 @@ public class BeanUtils extends BeanUtil {
         if (list == null || list.size() == 0) {
             return CollUtils.emptyList();
         }
-        return list.stream().map(r -> copyBean(r, clazz, convert)).collect(Collectors.toList());
+        List<T> result = new ArrayList<>(list.size());
+        for (R r : list) {
+            result.add(copyBean(r, clazz, convert));
+        }
+        return result;
     }
 }
\ No newline at end of file
@@ -0,0 +1,345 @@
+package com.tianji.common.utils;
+
+import cn.hutool.core.convert.BasicType;
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.ClassUtil;
+import cn.hutool.core.util.ReflectUtil;
+
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 带缓存的bean拷贝器。
+ * <p>
+ * 与hutool的BeanUtil规则一致：以字段为属性，按字段名匹配源对象的getter和目标对象的setter（支持链式setter），
+ * transient字段同样拷贝，类型不一致时使用hutool的Convert转换。不同的是，每一对(源类型, 目标类型)只在第一次拷贝时解析属性，
+ * 并通过LambdaMetafactory为getter、setter和无参构造函数生成函数对象，之后的拷贝不再有反射开销。
+ * </p>
+ */
+final class CachedBeanCopier {
+
+    private static final ClassValue<Map<String, Property>> PROPERTIES = new ClassValue<Map<String, Property>>() {
+        @Override
+        protected Map<String, Property> computeValue(Class<?> type) {
+            return resolveProperties(type);
+        }
+    };
+    private static final ClassValue<Supplier<Object>> CONSTRUCTORS = new ClassValue<Supplier<Object>>() {
+        @Override
+        protected Supplier<Object> computeValue(Class<?> type) {
+            return resolveConstructor(type);
+        }
+    };
+    private static final ClassValue<Map<Class<?>, CopyPlan>> PLANS = new ClassValue<Map<Class<?>, CopyPlan>>() {
+        @Override
+        protected Map<Class<?>, CopyPlan> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>(8);
+        }
+    };
+
+    private CachedBeanCopier() {
+    }
+
+    /**
+     * 源对象或目标类型是否可以使用缓存拷贝，Map等非bean类型交给hutool处理
+     */
+    static boolean supports(Object source, Class<?> targetClass) {
+        return !(source instanceof Map) && !(source instanceof Collection) && !Map.class.isAssignableFrom(targetClass)
+                && !targetClass.isInterface() && !Modifier.isAbstract(targetClass.getModifiers())
+                && !ClassUtil.isSimpleValueType(targetClass) && !ClassUtil.isSimpleValueType(source.getClass());
+    }
+
+    /**
+     * 创建目标对象并拷贝属性
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T copy(Object source, Class<T> targetClass, Set<String> ignoreProperties) {
+        T target = (T) CONSTRUCTORS.get(targetClass).get();
+        copy(source, target, ignoreProperties);
+        return target;
+    }
+
+    /**
+     * 拷贝属性到已有的目标对象
+     */
+    static void copy(Object source, Object target, Set<String> ignoreProperties) {
+        CopyPlan plan = PLANS.get(source.getClass()).computeIfAbsent(target.getClass(),
+                t -> new CopyPlan(PROPERTIES.get(source.getClass()), PROPERTIES.get(t)));
+        plan.copy(source, target, ignoreProperties);
+    }
+
+    private static Map<String, Property> resolveProperties(Class<?> type) {
+        // 1.按名称（忽略大小写）整理所有public方法
+        Map<String, List<Method>> methods = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.getDeclaringClass() == Object.class
+                    || method.isBridge()) {
+                continue;
+            }
+            methods.computeIfAbsent(method.getName().toLowerCase(Locale.ROOT), k -> new ArrayList<>(1)).add(method);
+        }
+        // 2.以字段为属性，子类的字段优先
+        Map<String, Property> properties = new LinkedHashMap<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || properties.containsKey(field.getName())) {
+                    continue;
+                }
+                Method getter = findGetter(field, methods);
+                Method setter = findSetter(field, methods);
+                if (getter == null && setter == null) {
+                    continue;
+                }
+                properties.put(field.getName(), new Property(field.getName(), getter, setter));
+            }
+        }
+        return properties;
+    }
+
+    private static Method findGetter(Field field, Map<String, List<Method>> methods) {
+        String name = field.getName();
+        boolean isBoolean = field.getType() == boolean.class || field.getType() == Boolean.class;
+        List<String> candidates = new ArrayList<>(3);
+        candidates.add("get" + name);
+        if (isBoolean) {
+            candidates.add("is" + name);
+            // 形如 isXxx 的boolean字段，getter也叫isXxx
+            if (name.startsWith("is")) {
+                candidates.add(name);
+            }
+        }
+        for (String candidate : candidates) {
+            for (Method m : methods.getOrDefault(candidate.toLowerCase(Locale.ROOT), Collections.emptyList())) {
+                if (m.getParameterCount() == 0 && m.getReturnType() != void.class) {
+                    return m;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Method findSetter(Field field, Map<String, List<Method>> methods) {
+        String name = field.getName();
+        List<String> candidates = new ArrayList<>(2);
+        candidates.add("set" + name);
+        if (name.startsWith("is") && (field.getType() == boolean.class || field.getType() == Boolean.class)) {
+            candidates.add("set" + name.substring(2));
+        }
+        Method found = null;
+        for (String candidate : candidates) {
+            for (Method m : methods.getOrDefault(candidate.toLowerCase(Locale.ROOT), Collections.emptyList())) {
+                if (m.getParameterCount() != 1) {
+                    continue;
+                }
+                if (m.getParameterTypes()[0] == field.getType()) {
+                    // 存在重载时，以参数类型与字段一致的为准
+                    return m;
+                }
+                if (found == null) {
+                    found = m;
+                }
+            }
+        }
+        return found;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> resolveConstructor(Class<?> type) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            MethodHandle handle = lookup.unreflectConstructor(constructor);
+            try {
+                return (Supplier<Object>) LambdaMetafactory.metafactory(lookup, "get",
+                        MethodType.methodType(Supplier.class), MethodType.methodType(Object.class),
+                        handle, MethodType.methodType(type)).getTarget().invokeExact();
+            } catch (Throwable e) {
+                MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+                return () -> invoke(() -> generic.invokeExact());
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            // 没有可用的无参构造函数，交给hutool尝试创建
+            return () -> ReflectUtil.newInstanceIfPossible(type);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> toGetter(Method getter) {
+        Class<?> owner = getter.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            MethodHandle handle = lookup.unreflect(getter);
+            try {
+                return (Function<Object, Object>) LambdaMetafactory.metafactory(lookup, "apply",
+                        MethodType.methodType(Function.class), MethodType.methodType(Object.class, Object.class),
+                        handle, MethodType.methodType(BasicType.wrap(getter.getReturnType()), owner))
+                        .getTarget().invokeExact();
+            } catch (Throwable e) {
+                MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+                return bean -> invoke(() -> generic.invokeExact(bean));
+            }
+        } catch (IllegalAccessException e) {
+            return bean -> ReflectUtil.invoke(bean, getter);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> toSetter(Method setter) {
+        Class<?> owner = setter.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            MethodHandle handle = lookup.unreflect(setter);
+            try {
+                // 链式setter的返回值被丢弃
+                return (BiConsumer<Object, Object>) LambdaMetafactory.metafactory(lookup, "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class), handle,
+                        MethodType.methodType(void.class, owner, BasicType.wrap(setter.getParameterTypes()[0])))
+                        .getTarget().invokeExact();
+            } catch (Throwable e) {
+                MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+                return (bean, value) -> invoke(() -> {
+                    generic.invokeExact(bean, value);
+                    return null;
+                });
+            }
+        } catch (IllegalAccessException e) {
+            return (bean, value) -> ReflectUtil.invoke(bean, setter, value);
+        }
+    }
+
+    private static Object invoke(ThrowingSupplier supplier) {
+        try {
+            return supplier.get();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThrowingSupplier {
+        Object get() throws Throwable;
+    }
+
+    /**
+     * bean的一个属性
+     */
+    private static class Property {
+        private final String name;
+        private final Method getter;
+        private final Method setter;
+        private volatile Function<Object, Object> getterFunction;
+        private volatile BiConsumer<Object, Object> setterFunction;
+
+        Property(String name, Method getter, Method setter) {
+            this.name = name;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        Function<Object, Object> getterFunction() {
+            if (getterFunction == null) {
+                getterFunction = toGetter(getter);
+            }
+            return getterFunction;
+        }
+
+        BiConsumer<Object, Object> setterFunction() {
+            if (setterFunction == null) {
+                setterFunction = toSetter(setter);
+            }
+            return setterFunction;
+        }
+    }
+
+    /**
+     * 一对(源类型, 目标类型)的拷贝计划
+     */
+    private static class CopyPlan {
+        private final PropertyCopy[] copies;
+
+        CopyPlan(Map<String, Property> sourceProperties, Map<String, Property> targetProperties) {
+            List<PropertyCopy> list = new ArrayList<>(targetProperties.size());
+            for (Property target : targetProperties.values()) {
+                Property source = sourceProperties.get(target.name);
+                if (target.setter == null || source == null || source.getter == null) {
+                    continue;
+                }
+                list.add(new PropertyCopy(source, target));
+            }
+            this.copies = list.toArray(new PropertyCopy[0]);
+        }
+
+        void copy(Object source, Object target, Set<String> ignoreProperties) {
+            boolean hasIgnore = ignoreProperties != null && !ignoreProperties.isEmpty();
+            for (PropertyCopy copy : copies) {
+                if (hasIgnore && ignoreProperties.contains(copy.name)) {
+                    continue;
+                }
+                copy.copy(source, target);
+            }
+        }
+    }
+
+    private static class PropertyCopy {
+        private final String name;
+        private final Function<Object, Object> getter;
+        private final BiConsumer<Object, Object> setter;
+        private final Class<?> targetClass;
+        /**
+         * 类型转换时使用的目标类型，泛型参数会一并转换
+         */
+        private final Type convertType;
+        private final boolean primitive;
+        /**
+         * 源属性的类型一定可以直接赋值给目标属性，不需要转换
+         */
+        private final boolean assignable;
+        /**
+         * 目标属性是普通类型（非泛型），运行时类型匹配时可以直接赋值
+         */
+        private final boolean plainTarget;
+
+        PropertyCopy(Property source, Property target) {
+            this.name = target.name;
+            this.getter = source.getterFunction();
+            this.setter = target.setterFunction();
+            Class<?> sourceRaw = source.getter.getReturnType();
+            Type sourceType = source.getter.getGenericReturnType();
+            Class<?> targetRaw = target.setter.getParameterTypes()[0];
+            Type targetType = target.setter.getGenericParameterTypes()[0];
+            this.targetClass = BasicType.wrap(targetRaw);
+            this.convertType = targetType instanceof ParameterizedType ? targetType : targetClass;
+            this.primitive = targetRaw.isPrimitive();
+            this.plainTarget = targetType instanceof Class;
+            this.assignable = targetClass.isAssignableFrom(BasicType.wrap(sourceRaw))
+                    && (plainTarget || targetType.equals(sourceType));
+        }
+
+        void copy(Object source, Object target) {
+            Object value = getter.apply(source);
+            if (value == null) {
+                if (!primitive) {
+                    setter.accept(target, null);
+                }
+                return;
+            }
+            if (!assignable && !(plainTarget && targetClass.isInstance(value))) {
+                // 类型不一致，按照hutool的规则转换
+                value = Convert.convertWithCheck(convertType, value, null, false);
+                if (value == null && primitive) {
+                    return;
+                }
+            }
+            setter.accept(target, value);
+        }
+    }
+}
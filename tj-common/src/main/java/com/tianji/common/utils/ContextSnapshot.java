@@ -0,0 +1,117 @@
+package com.tianji.common.utils;
+
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * 线程上下文的快照，包括当前用户（{@link UserContext}）和MDC（requestId等）。
+ * <p>
+ * 用于把提交任务的线程的上下文传递到工作线程：提交时{@link #capture()}，再用快照包装任务。
+ * 包装后的任务执行前应用快照中的上下文，执行后恢复执行线程原来的上下文，
+ * 因此线程池满、由调用者线程执行时也不会破坏调用者自己的上下文。
+ * </p>
+ * <pre>
+ * executor.execute(ContextSnapshot.capture().wrap(task));
+ * </pre>
+ */
+public final class ContextSnapshot {
+
+    private static final ContextSnapshot EMPTY = new ContextSnapshot(null, null);
+
+    private final Long userId;
+    private final Map<String, String> mdc;
+
+    private ContextSnapshot(Long userId, Map<String, String> mdc) {
+        this.userId = userId;
+        this.mdc = mdc;
+    }
+
+    /**
+     * 获取当前线程上下文的快照
+     */
+    public static ContextSnapshot capture() {
+        return new ContextSnapshot(UserContext.getUser(), MDC.getCopyOfContextMap());
+    }
+
+    /**
+     * 指定用户和MDC的快照
+     *
+     * @param userId 用户id，为null代表没有用户
+     * @param mdc    MDC，为null代表清空MDC
+     */
+    public static ContextSnapshot of(Long userId, Map<String, String> mdc) {
+        return new ContextSnapshot(userId, mdc);
+    }
+
+    /**
+     * 没有用户、MDC为空的快照
+     */
+    public static ContextSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 在当前线程应用快照中的上下文
+     *
+     * @return 应用之前当前线程的上下文，用于恢复
+     */
+    public ContextSnapshot apply() {
+        ContextSnapshot previous = capture();
+        if (userId == null) {
+            UserContext.removeUser();
+        } else {
+            UserContext.setUser(userId);
+        }
+        if (mdc == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(mdc);
+        }
+        return previous;
+    }
+
+    /**
+     * 包装任务，在快照的上下文中执行
+     */
+    public Runnable wrap(Runnable task) {
+        return () -> {
+            ContextSnapshot previous = apply();
+            try {
+                task.run();
+            } finally {
+                previous.apply();
+            }
+        };
+    }
+
+    /**
+     * 包装任务，在快照的上下文中执行
+     */
+    public <T> Callable<T> wrapCallable(Callable<T> task) {
+        return () -> {
+            ContextSnapshot previous = apply();
+            try {
+                return task.call();
+            } finally {
+                previous.apply();
+            }
+        };
+    }
+
+    /**
+     * 包装任务，在快照的上下文中执行
+     */
+    public <T> Supplier<T> wrapSupplier(Supplier<T> task) {
+        return () -> {
+            ContextSnapshot previous = apply();
+            try {
+                return task.get();
+            } finally {
+                previous.apply();
+            }
+        };
+    }
+}
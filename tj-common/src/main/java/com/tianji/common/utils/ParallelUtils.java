@@ -0,0 +1,135 @@
+package com.tianji.common.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 并行调用工具，用于同时发起多个互不依赖的远程调用。
+ * <p>
+ * 任务在有界线程池中执行，提交时的当前用户（{@link UserContext}）和MDC（requestId）会传递到工作线程，
+ * 保证feign调用能够继续传递用户和请求id。线程池满时由调用者线程直接执行，退化为串行调用。
+ * 每个调用都有超时时间，超时或者失败时返回指定的降级值；没有指定降级值时，异常抛给调用者。
+ * </p>
+ * <pre>
+ * ParallelUtils.Call&lt;A&gt; a = ParallelUtils.submit(() -&gt; aClient.query(id));
+ * ParallelUtils.Call&lt;List&lt;B&gt;&gt; b = ParallelUtils.submit(() -&gt; bClient.query(id), timeout, CollUtils.emptyList());
+ * // 当前线程可以继续做本地查询
+ * use(a.get(), b.get());
+ * </pre>
+ */
+@Slf4j
+public class ParallelUtils {
+    /**
+     * 默认的超时时间
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final int POOL_SIZE = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private static ExecutorService createExecutor() {
+        AtomicInteger index = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                POOL_SIZE, POOL_SIZE, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                r -> {
+                    Thread thread = new Thread(r, "parallel-call-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 异步执行任务，使用默认超时时间，失败时异常抛给调用者
+     *
+     * @param supplier 任务
+     */
+    public static <T> Call<T> submit(Supplier<T> supplier) {
+        return submit(supplier, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * 异步执行任务，失败时异常抛给调用者
+     *
+     * @param supplier 任务
+     * @param timeout  超时时间，从提交任务开始计算
+     */
+    public static <T> Call<T> submit(Supplier<T> supplier, Duration timeout) {
+        return new Call<>(run(supplier), timeout, false, null);
+    }
+
+    /**
+     * 异步执行任务，超时或失败时返回降级值
+     *
+     * @param supplier 任务
+     * @param timeout  超时时间，从提交任务开始计算
+     * @param fallback 降级值，可以为null
+     */
+    public static <T> Call<T> submit(Supplier<T> supplier, Duration timeout, T fallback) {
+        return new Call<>(run(supplier), timeout, true, fallback);
+    }
+
+    private static <T> CompletableFuture<T> run(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(ContextSnapshot.capture().wrapSupplier(supplier), EXECUTOR);
+    }
+
+    /**
+     * 一次并行调用的结果
+     */
+    public static class Call<T> {
+        private final CompletableFuture<T> future;
+        private final long deadline;
+        private final boolean hasFallback;
+        private final T fallback;
+
+        private Call(CompletableFuture<T> future, Duration timeout, boolean hasFallback, T fallback) {
+            this.future = future;
+            this.deadline = System.nanoTime() + timeout.toNanos();
+            this.hasFallback = hasFallback;
+            this.fallback = fallback;
+        }
+
+        /**
+         * 等待并获取结果，最多等待到提交时指定的超时时间
+         *
+         * @return 调用结果，超时或失败时返回降级值
+         */
+        public T get() {
+            try {
+                return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return fallbackOrThrow(e);
+            } catch (TimeoutException e) {
+                // 远程调用本身有超时控制，这里只是不再等待结果
+                future.cancel(false);
+                return fallbackOrThrow(e);
+            } catch (ExecutionException e) {
+                return fallbackOrThrow(e.getCause());
+            }
+        }
+
+        private T fallbackOrThrow(Throwable e) {
+            if (hasFallback) {
+                log.warn("并行调用失败，使用降级值，原因：{}", e.toString());
+                return fallback;
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            throw new IllegalStateException("并行调用失败", e);
+        }
+    }
+}
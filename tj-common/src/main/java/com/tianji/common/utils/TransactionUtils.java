@@ -0,0 +1,41 @@
+package com.tianji.common.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 事务相关的工具，用于在事务提交后再更新缓存、唤醒投递等。
+ * <p>
+ * 当前线程存在事务时，任务在事务提交后执行，回滚时不执行；事务已经提交，任务抛出的异常只记录日志，不影响业务。
+ * 不存在事务时立即执行，异常抛给调用者。
+ * </p>
+ */
+@Slf4j
+public class TransactionUtils {
+
+    private TransactionUtils() {
+    }
+
+    /**
+     * 存在事务时在事务提交后执行，否则立即执行
+     *
+     * @param action 要执行的任务
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    action.run();
+                } catch (Exception e) {
+                    log.error("事务提交后执行任务失败", e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,18 @@
+-- 本地消息表（事务发件箱），开启tj.outbox.enable的服务需要在自己的库中执行
+CREATE TABLE IF NOT EXISTS `outbox_event` (
+  `id` bigint NOT NULL COMMENT '主键',
+  `event_key` varchar(64) NOT NULL COMMENT '消息唯一标识，作为MQ消息的messageId，用于消费者幂等',
+  `exchange` varchar(128) NOT NULL COMMENT '交换机',
+  `routing_key` varchar(128) NOT NULL COMMENT '路由key',
+  `payload_type` varchar(255) NOT NULL COMMENT '消息体类型',
+  `payload` text NOT NULL COMMENT '消息体，JSON格式',
+  `status` tinyint NOT NULL DEFAULT '0' COMMENT '状态：0-待发送，1-已发送，2-发送失败，3-发送中',
+  `owner` varchar(64) DEFAULT NULL COMMENT '发送中的消息被哪个投递器认领',
+  `retry_times` int NOT NULL DEFAULT '0' COMMENT '已重试次数',
+  `next_retry_time` datetime NOT NULL COMMENT '下次发送时间，发送中的消息为认领的租约到期时间',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_event_key` (`event_key`),
+  KEY `idx_status_next_retry` (`status`, `next_retry_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='本地消息表';
@@ -0,0 +1,102 @@
+package com.tianji.common.autoconfigure.mq;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 批量发送器的吞吐量，使用内存中的broker替身，每次channel调用模拟一次网络往返，broker异步返回ack。
+ * <p>
+ * batchSize为1时相当于逐条发送，与合并发送对比。不在单元测试中执行，需要时运行main方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class BatchingRabbitPublisherBenchmark {
+
+    private static final int MESSAGES_PER_INVOCATION = 1_000;
+    /**
+     * 模拟的一次channel调用的网络往返时间
+     */
+    private static final long ROUND_TRIP_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    private ExecutorService confirmExecutor;
+    private BatchingRabbitPublisher publisher;
+
+    @Setup
+    public void setUp() {
+        confirmExecutor = Executors.newFixedThreadPool(2);
+        MqPublisherProperties properties = new MqPublisherProperties();
+        properties.setLinger(Duration.ofMillis(5));
+        properties.setBatchSize(batchSize);
+        properties.setQueueCapacity(1_000_000);
+        properties.setConfirmTimeout(Duration.ofSeconds(30));
+        publisher = new BatchingRabbitPublisher(brokerStandIn(), properties);
+        publisher.afterPropertiesSet();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        publisher.destroy();
+        confirmExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_INVOCATION)
+    public void publish() throws Exception {
+        CompletableFuture<?>[] futures = new CompletableFuture[MESSAGES_PER_INVOCATION];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = publisher.publish("test.topic", "key." + (i % 2), i, null);
+        }
+        CompletableFuture.allOf(futures).get(60, TimeUnit.SECONDS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RabbitTemplate brokerStandIn() {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.isPublisherConfirms()).thenReturn(true);
+
+        RabbitOperations operations = mock(RabbitOperations.class);
+        doAnswer(inv -> {
+            CorrelationData cd = inv.getArgument(4);
+            confirmExecutor.execute(() -> cd.getFuture().set(new CorrelationData.Confirm(true, null)));
+            return null;
+        }).when(operations).convertAndSend(anyString(), anyString(), any(), any(MessagePostProcessor.class), any(CorrelationData.class));
+
+        RabbitTemplate template = mock(RabbitTemplate.class);
+        when(template.getConnectionFactory()).thenReturn(connectionFactory);
+        when(template.invoke(any(RabbitOperations.OperationsCallback.class))).thenAnswer(inv -> {
+            LockSupport.parkNanos(ROUND_TRIP_NANOS);
+            return inv.<RabbitOperations.OperationsCallback<Object>>getArgument(0).doInRabbit(operations);
+        });
+        return template;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BatchingRabbitPublisherBenchmark.class.getSimpleName()).build()).run();
+    }
+}
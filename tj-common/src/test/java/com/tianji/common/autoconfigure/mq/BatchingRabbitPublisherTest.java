@@ -0,0 +1,168 @@
+package com.tianji.common.autoconfigure.mq;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 使用内存中的broker替身测试批量发送器，broker异步返回ack或nack
+ */
+class BatchingRabbitPublisherTest {
+
+    private final Queue<Object> broker = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger invokeTimes = new AtomicInteger();
+    private final ExecutorService confirmExecutor = Executors.newFixedThreadPool(2);
+    private BatchingRabbitPublisher publisher;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (publisher != null) {
+            publisher.destroy();
+        }
+        confirmExecutor.shutdownNow();
+    }
+
+    @Test
+    void testBatchAndConfirm() throws Exception {
+        publisher = start(mockTemplate(cd -> true), properties(3));
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(publisher.publish("test.topic", "key." + (i % 2), i, null));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(200, broker.size());
+        assertTrue(futures.stream().allMatch(f -> f.isDone() && !f.isCompletedExceptionally()));
+        assertTrue(invokeTimes.get() < 200, "消息应当被合并发送");
+    }
+
+    @Test
+    void testRetryNack() throws Exception {
+        // 每条消息第一次发送被拒绝，重试后成功
+        publisher = start(mockTemplate(cd -> !cd.getId().endsWith("-1")), properties(3));
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(publisher.publish("test.topic", "key", i, null));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        assertEquals(200, broker.size());
+    }
+
+    @Test
+    void testFailAfterMaxRetries() {
+        publisher = start(mockTemplate(cd -> false), properties(2));
+        CompletableFuture<Void> future = publisher.publish("test.topic", "key", 1, Duration.ofSeconds(1));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertNotNull(e.getCause());
+        // 首次发送加两次重试
+        assertEquals(3, broker.size());
+    }
+
+    @Test
+    void testNotFlushedBeforeStart() throws Exception {
+        publisher = new BatchingRabbitPublisher(mockTemplate(cd -> true), properties(3));
+        CompletableFuture<Void> future = publisher.publish("test.topic", "key", 1, null);
+        Thread.sleep(100);
+        // 构造后不会启动后台线程，消息留在缓冲区
+        assertTrue(broker.isEmpty());
+        assertFalse(future.isDone());
+
+        publisher.afterPropertiesSet();
+        future.get(10, TimeUnit.SECONDS);
+        assertEquals(1, broker.size());
+    }
+
+    @Test
+    void testRetryFailsOnDestroy() throws Exception {
+        // 消息一直被拒绝，重试间隔很长，关闭时重试还没有执行
+        MqPublisherProperties properties = properties(5);
+        properties.setRetryInterval(Duration.ofSeconds(30));
+        publisher = start(mockTemplate(cd -> false), properties);
+        CompletableFuture<Void> future = publisher.publish("test.topic", "key", 1, null);
+        while (broker.isEmpty()) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+
+        publisher.destroy();
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals(1, broker.size());
+    }
+
+    @Test
+    void testNackDuringDestroyNotRetried() throws Exception {
+        publisher = start(mockTemplate(cd -> false), properties(5));
+        CompletableFuture<Void> future = publisher.publish("test.topic", "key", 1, null);
+        publisher.destroy();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+        assertNotNull(e.getCause());
+        // 关闭时被拒绝的消息不再重试
+        assertTrue(broker.size() <= 2);
+    }
+
+    @Test
+    void testUnstartedQueueFailsOnDestroy() throws Exception {
+        publisher = new BatchingRabbitPublisher(mockTemplate(cd -> true), properties(3));
+        CompletableFuture<Void> future = publisher.publish("test.topic", "key", 1, null);
+        publisher.destroy();
+
+        assertTrue(future.isCompletedExceptionally());
+        assertTrue(publisher.publish("test.topic", "key", 2, null).isCompletedExceptionally());
+        assertTrue(broker.isEmpty());
+    }
+
+    private BatchingRabbitPublisher start(RabbitTemplate template, MqPublisherProperties properties) {
+        BatchingRabbitPublisher p = new BatchingRabbitPublisher(template, properties);
+        p.afterPropertiesSet();
+        return p;
+    }
+
+    private MqPublisherProperties properties(int maxRetries) {
+        MqPublisherProperties properties = new MqPublisherProperties();
+        properties.setLinger(Duration.ofMillis(5));
+        properties.setBatchSize(500);
+        properties.setMaxRetries(maxRetries);
+        properties.setRetryInterval(Duration.ofMillis(10));
+        properties.setConfirmTimeout(Duration.ofSeconds(2));
+        return properties;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RabbitTemplate mockTemplate(Predicate<CorrelationData> ack) {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.isPublisherConfirms()).thenReturn(true);
+
+        RabbitOperations operations = mock(RabbitOperations.class);
+        doAnswer(inv -> {
+            broker.add(inv.getArgument(2));
+            CorrelationData cd = inv.getArgument(4);
+            confirmExecutor.execute(() -> cd.getFuture().set(new CorrelationData.Confirm(ack.test(cd), "nack")));
+            return null;
+        }).when(operations).convertAndSend(anyString(), anyString(), any(), any(MessagePostProcessor.class), any(CorrelationData.class));
+
+        RabbitTemplate template = mock(RabbitTemplate.class);
+        when(template.getConnectionFactory()).thenReturn(connectionFactory);
+        when(template.invoke(any(RabbitOperations.OperationsCallback.class))).thenAnswer(inv -> {
+            invokeTimes.incrementAndGet();
+            return inv.<RabbitOperations.OperationsCallback<Object>>getArgument(0).doInRabbit(operations);
+        });
+        return template;
+    }
+}
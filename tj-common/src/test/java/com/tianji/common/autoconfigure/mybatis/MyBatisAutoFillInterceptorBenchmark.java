@@ -0,0 +1,90 @@
+package com.tianji.common.autoconfigure.mybatis;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.tianji.common.utils.ReflectUtils;
+import com.tianji.common.utils.UserContext;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.tianji.common.autoconfigure.mybatis.MyBatisAutoFillInterceptorTest.Lesson;
+import static com.tianji.common.constants.Constant.DATA_FIELD_NAME_CREATER;
+import static com.tianji.common.constants.Constant.DATA_FIELD_NAME_UPDATER;
+
+/**
+ * 1000条数据的saveBatch中自动填充的开销：原来每次insert都通过反射查找并设置字段，与缓存setter对比。
+ * <p>
+ * 不在单元测试中执行，需要时运行main方法
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MyBatisAutoFillInterceptorBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MyBatisAutoFillInterceptor interceptor = new MyBatisAutoFillInterceptor();
+    private MappedStatement insert;
+    private List<Lesson> batch;
+
+    @Setup
+    public void setUp() {
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        insert = new MappedStatement.Builder(
+                configuration, "insert", new StaticSqlSource(configuration, ""), SqlCommandType.INSERT).build();
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new Lesson());
+        }
+        UserContext.setUser(2L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        UserContext.removeUser();
+    }
+
+    /**
+     * saveBatch对每个实体单独执行一次insert
+     */
+    @Benchmark
+    public List<Lesson> cached() throws Exception {
+        for (Lesson lesson : batch) {
+            interceptor.beforeUpdate(null, insert, lesson);
+        }
+        return batch;
+    }
+
+    /**
+     * 原来的实现：每次insert都通过反射查找并设置字段
+     */
+    @Benchmark
+    public List<Lesson> reflection() {
+        Long userId = UserContext.getUser();
+        for (Lesson lesson : batch) {
+            if (ReflectUtils.containField(DATA_FIELD_NAME_UPDATER, lesson.getClass())) {
+                ReflectUtils.setFieldValue(lesson, DATA_FIELD_NAME_UPDATER, userId);
+            }
+            if (ReflectUtils.containField(DATA_FIELD_NAME_CREATER, lesson.getClass())) {
+                ReflectUtils.setFieldValue(lesson, DATA_FIELD_NAME_CREATER, userId);
+            }
+        }
+        return batch;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MyBatisAutoFillInterceptorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
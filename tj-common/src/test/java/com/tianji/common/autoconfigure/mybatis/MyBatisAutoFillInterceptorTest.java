@@ -0,0 +1,91 @@
+package com.tianji.common.autoconfigure.mybatis;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.tianji.common.utils.UserContext;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyBatisAutoFillInterceptorTest {
+
+    @Data
+    public static class BaseEntity {
+        private Long creater;
+        private Long updater;
+    }
+
+    @Data
+    @EqualsAndHashCode(callSuper = false)
+    public static class Lesson extends BaseEntity {
+        private Long id;
+    }
+
+    private final MybatisConfiguration configuration = new MybatisConfiguration();
+    private final MappedStatement insert = statement("insert", SqlCommandType.INSERT);
+    private final MappedStatement update = statement("update", SqlCommandType.UPDATE);
+    private final MyBatisAutoFillInterceptor interceptor = new MyBatisAutoFillInterceptor();
+
+    private MappedStatement statement(String id, SqlCommandType type) {
+        return new MappedStatement.Builder(configuration, id, new StaticSqlSource(configuration, ""), type).build();
+    }
+
+    @BeforeEach
+    void setUp() {
+        UserContext.setUser(2L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserContext.removeUser();
+    }
+
+    @Test
+    void testFillEntity() throws Exception {
+        Lesson lesson = new Lesson();
+        interceptor.beforeUpdate(null, insert, lesson);
+        assertEquals(2L, lesson.getCreater());
+        assertEquals(2L, lesson.getUpdater());
+
+        Lesson updated = new Lesson();
+        interceptor.beforeUpdate(null, update, updated);
+        assertNull(updated.getCreater());
+        assertEquals(2L, updated.getUpdater());
+    }
+
+    @Test
+    void testFillParamMap() throws Exception {
+        // updateById
+        Lesson lesson = new Lesson();
+        MapperMethod.ParamMap<Object> et = new MapperMethod.ParamMap<>();
+        et.put("et", lesson);
+        et.put("param1", lesson);
+        interceptor.beforeUpdate(null, update, et);
+        assertEquals(2L, lesson.getUpdater());
+
+        // 批量插入
+        List<Lesson> lessons = List.of(new Lesson(), new Lesson());
+        MapperMethod.ParamMap<Object> list = new MapperMethod.ParamMap<>();
+        list.put("list", lessons);
+        list.put("param1", lessons);
+        interceptor.beforeUpdate(null, insert, list);
+        lessons.forEach(l -> assertEquals(2L, l.getCreater()));
+    }
+
+    @Test
+    void testNoUser() throws Exception {
+        UserContext.removeUser();
+        Lesson lesson = new Lesson();
+        interceptor.beforeUpdate(null, insert, lesson);
+        assertNull(lesson.getCreater());
+    }
+}
@@ -0,0 +1,158 @@
+package com.tianji.common.autoconfigure.outbox;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 内存中的本地消息表及其事务管理器：事务中写入的消息只有提交后才可见，回滚则丢弃
+ */
+class InMemoryOutboxTable extends AbstractPlatformTransactionManager {
+
+    /**
+     * 已提交的消息
+     */
+    final Map<Long, OutboxEvent> rows = new ConcurrentSkipListMap<>();
+    private final ThreadLocal<List<OutboxEvent>> staged = new ThreadLocal<>();
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    OutboxEvent row(String eventKey) {
+        return rows.values().stream().filter(e -> e.getEventKey().equals(eventKey)).findFirst().orElse(null);
+    }
+
+    OutboxEvent addRow(String eventKey, int status, LocalDateTime nextRetryTime) {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(idGenerator.incrementAndGet());
+        event.setEventKey(eventKey);
+        event.setExchange("test.topic");
+        event.setRoutingKey("test.key");
+        event.setPayloadType(String.class.getName());
+        event.setPayload("\"" + eventKey + "\"");
+        event.setStatus(status);
+        event.setRetryTimes(0);
+        event.setNextRetryTime(nextRetryTime);
+        rows.put(event.getId(), event);
+        return event;
+    }
+
+    @SuppressWarnings("unchecked")
+    OutboxMapper mapper() {
+        OutboxMapper mapper = mock(OutboxMapper.class);
+        when(mapper.insert(any())).thenAnswer(inv -> {
+            OutboxEvent event = inv.getArgument(0);
+            List<OutboxEvent> tx = staged.get();
+            boolean exists = rows.values().stream().anyMatch(e -> e.getEventKey().equals(event.getEventKey()))
+                    || (tx != null && tx.stream().anyMatch(e -> e.getEventKey().equals(event.getEventKey())));
+            if (exists) {
+                throw new DuplicateKeyException(event.getEventKey());
+            }
+            event.setId(idGenerator.incrementAndGet());
+            if (tx != null) {
+                tx.add(event);
+            } else {
+                rows.put(event.getId(), event);
+            }
+            return 1;
+        });
+        when(mapper.lockClaimableEvents(any(), anyInt())).thenAnswer(inv -> {
+            LocalDateTime now = inv.getArgument(0);
+            int limit = inv.getArgument(1);
+            return rows.values().stream()
+                    .filter(e -> e.getStatus() == OutboxEvent.STATUS_PENDING || e.getStatus() == OutboxEvent.STATUS_SENDING)
+                    .filter(e -> !e.getNextRetryTime().isAfter(now))
+                    .limit(limit)
+                    .map(InMemoryOutboxTable::copy)
+                    .collect(Collectors.toList());
+        });
+        when(mapper.claim(anyList(), anyString(), any())).thenAnswer(inv -> {
+            List<Long> ids = inv.getArgument(0);
+            for (Long id : ids) {
+                OutboxEvent e = rows.get(id);
+                e.setStatus(OutboxEvent.STATUS_SENDING);
+                e.setOwner(inv.getArgument(1));
+                e.setNextRetryTime(inv.getArgument(2));
+            }
+            return ids.size();
+        });
+        when(mapper.markSent(anyList(), anyString())).thenAnswer(inv -> {
+            int count = 0;
+            for (Long id : (List<Long>) inv.getArgument(0)) {
+                OutboxEvent e = rows.get(id);
+                if (isClaimedBy(e, inv.getArgument(1))) {
+                    e.setStatus(OutboxEvent.STATUS_SENT);
+                    count++;
+                }
+            }
+            return count;
+        });
+        when(mapper.release(anyLong(), anyString(), anyInt(), anyInt(), any())).thenAnswer(inv -> {
+            OutboxEvent e = rows.get(inv.<Long>getArgument(0));
+            if (!isClaimedBy(e, inv.getArgument(1))) {
+                return 0;
+            }
+            e.setStatus(inv.getArgument(2));
+            e.setRetryTimes(inv.getArgument(3));
+            e.setNextRetryTime(inv.getArgument(4));
+            return 1;
+        });
+        return mapper;
+    }
+
+    private static boolean isClaimedBy(OutboxEvent e, String owner) {
+        return e != null && e.getStatus() == OutboxEvent.STATUS_SENDING && owner.equals(e.getOwner());
+    }
+
+    private static OutboxEvent copy(OutboxEvent e) {
+        OutboxEvent c = new OutboxEvent();
+        c.setId(e.getId());
+        c.setEventKey(e.getEventKey());
+        c.setExchange(e.getExchange());
+        c.setRoutingKey(e.getRoutingKey());
+        c.setPayloadType(e.getPayloadType());
+        c.setPayload(e.getPayload());
+        c.setStatus(e.getStatus());
+        c.setOwner(e.getOwner());
+        c.setRetryTimes(e.getRetryTimes());
+        c.setNextRetryTime(e.getNextRetryTime());
+        return c;
+    }
+
+    @Override
+    protected Object doGetTransaction() {
+        return new ArrayList<OutboxEvent>();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        staged.set((List<OutboxEvent>) transaction);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void doCommit(DefaultTransactionStatus status) {
+        for (OutboxEvent event : (List<OutboxEvent>) status.getTransaction()) {
+            rows.put(event.getId(), event);
+        }
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+        // 丢弃事务中写入的消息
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        staged.remove();
+    }
+}
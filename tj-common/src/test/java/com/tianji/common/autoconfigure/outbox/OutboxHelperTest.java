@@ -0,0 +1,69 @@
+package com.tianji.common.autoconfigure.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class OutboxHelperTest {
+
+    private InMemoryOutboxTable table;
+    private OutboxRelay relay;
+    private OutboxHelper helper;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        table = new InMemoryOutboxTable();
+        relay = mock(OutboxRelay.class);
+        helper = new OutboxHelper(table.mapper(), new ObjectMapper(), relay);
+        transactionTemplate = new TransactionTemplate(table);
+    }
+
+    @Test
+    void testVisibleAfterCommit() {
+        transactionTemplate.executeWithoutResult(status -> {
+            helper.publish("test.topic", "test.key", "hello", "event-1");
+            // 提交前消息不可见，也不会唤醒投递
+            assertTrue(table.rows.isEmpty());
+            verify(relay, never()).wakeUp();
+        });
+
+        OutboxEvent event = table.row("event-1");
+        assertNotNull(event);
+        assertEquals(OutboxEvent.STATUS_PENDING, event.getStatus());
+        assertEquals("\"hello\"", event.getPayload());
+        verify(relay).wakeUp();
+    }
+
+    @Test
+    void testDiscardedOnRollback() {
+        transactionTemplate.executeWithoutResult(status -> {
+            helper.publish("test.topic", "test.key", "hello", "event-1");
+            status.setRollbackOnly();
+        });
+
+        assertTrue(table.rows.isEmpty());
+        verify(relay, never()).wakeUp();
+    }
+
+    @Test
+    void testWakeUpWithoutTransaction() {
+        helper.publish("test.topic", "test.key", "hello");
+
+        assertEquals(1, table.rows.size());
+        verify(relay).wakeUp();
+    }
+
+    @Test
+    void testDuplicateEventKey() {
+        helper.publish("test.topic", "test.key", "hello", "event-1");
+        helper.publish("test.topic", "test.key", "hello", "event-1");
+
+        assertEquals(1, table.rows.size());
+        verify(relay, times(1)).wakeUp();
+    }
+}
@@ -0,0 +1,118 @@
+package com.tianji.common.autoconfigure.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tianji.common.autoconfigure.mq.BatchingRabbitPublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OutboxRelayTest {
+
+    private InMemoryOutboxTable table;
+    private BatchingRabbitPublisher publisher;
+    private OutboxProperties properties;
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        table = new InMemoryOutboxTable();
+        publisher = mock(BatchingRabbitPublisher.class);
+        properties = new OutboxProperties();
+        properties.setBatchSize(10);
+        properties.setMaxRetries(3);
+        properties.setRetryInterval(Duration.ofHours(1));
+        properties.setSendTimeout(Duration.ofSeconds(1));
+        relay = new OutboxRelay(table.mapper(), publisher, new ObjectMapper(), new TransactionTemplate(table), properties);
+    }
+
+    private static CompletableFuture<Void> failed() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException("nack"));
+        return future;
+    }
+
+    @Test
+    void testSendOutsideClaimTransaction() {
+        OutboxEvent event = table.addRow("event-1", OutboxEvent.STATUS_PENDING, LocalDateTime.now());
+        when(publisher.publish(anyString(), anyString(), any(), isNull(), anyString())).thenAnswer(inv -> {
+            // 发送时认领事务已经提交，消息处于发送中并记录了认领者
+            assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+            assertEquals(OutboxEvent.STATUS_SENDING, event.getStatus());
+            assertNotNull(event.getOwner());
+            assertTrue(event.getNextRetryTime().isAfter(LocalDateTime.now()));
+            return CompletableFuture.completedFuture(null);
+        });
+
+        relay.relay();
+
+        verify(publisher).publish("test.topic", "test.key", "event-1", null, "event-1");
+        assertEquals(OutboxEvent.STATUS_SENT, event.getStatus());
+    }
+
+    @Test
+    void testRetryWithBackoff() {
+        OutboxEvent event = table.addRow("event-1", OutboxEvent.STATUS_PENDING, LocalDateTime.now());
+        when(publisher.publish(anyString(), anyString(), any(), isNull(), anyString())).thenAnswer(inv -> failed());
+
+        LocalDateTime begin = LocalDateTime.now();
+        relay.relay();
+        assertEquals(OutboxEvent.STATUS_PENDING, event.getStatus());
+        assertEquals(1, event.getRetryTimes());
+        assertFalse(event.getNextRetryTime().isBefore(begin.plusHours(1)));
+        assertTrue(event.getNextRetryTime().isBefore(begin.plusHours(2)));
+
+        // 未到重试时间不会再次发送
+        relay.relay();
+        verify(publisher, times(1)).publish(anyString(), anyString(), any(), isNull(), anyString());
+
+        // 到期后重试，间隔翻倍
+        event.setNextRetryTime(LocalDateTime.now());
+        begin = LocalDateTime.now();
+        relay.relay();
+        assertEquals(2, event.getRetryTimes());
+        assertFalse(event.getNextRetryTime().isBefore(begin.plusHours(2)));
+        assertTrue(event.getNextRetryTime().isBefore(begin.plusHours(3)));
+    }
+
+    @Test
+    void testMarkFailedAfterMaxRetries() {
+        OutboxEvent event = table.addRow("event-1", OutboxEvent.STATUS_PENDING, LocalDateTime.now());
+        event.setRetryTimes(properties.getMaxRetries());
+        when(publisher.publish(anyString(), anyString(), any(), isNull(), anyString())).thenAnswer(inv -> failed());
+
+        relay.relay();
+
+        assertEquals(OutboxEvent.STATUS_FAILED, event.getStatus());
+        assertEquals(properties.getMaxRetries() + 1, event.getRetryTimes());
+        // 发送失败的消息不再投递
+        relay.relay();
+        verify(publisher, times(1)).publish(anyString(), anyString(), any(), isNull(), anyString());
+    }
+
+    @Test
+    void testReclaimExpiredLease() {
+        OutboxEvent expired = table.addRow("event-1", OutboxEvent.STATUS_SENDING, LocalDateTime.now().minusSeconds(1));
+        expired.setOwner("crashed");
+        OutboxEvent leased = table.addRow("event-2", OutboxEvent.STATUS_SENDING, LocalDateTime.now().plusMinutes(1));
+        leased.setOwner("other");
+        when(publisher.publish(anyString(), anyString(), any(), isNull(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        relay.relay();
+
+        // 租约过期的消息被重新认领并发送，租约内的消息保持不变
+        assertEquals(OutboxEvent.STATUS_SENT, expired.getStatus());
+        assertEquals(OutboxEvent.STATUS_SENDING, leased.getStatus());
+        assertEquals("other", leased.getOwner());
+        verify(publisher, times(1)).publish(anyString(), anyString(), any(), isNull(), anyString());
+    }
+}
@@ -0,0 +1,55 @@
+package com.tianji.common.autoconfigure.redisson.aspect;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.tianji.common.autoconfigure.redisson.aspect.LockNameTemplateTest.DISCOVERER;
+
+/**
+ * 每次加锁解析锁名称的开销：原来每次新建解析器并解析SPEL，与预编译的模板对比。
+ * <p>
+ * 不在单元测试中执行，需要时运行main方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LockNameTemplateBenchmark {
+
+    private static final String NAME = "pay:apply:bizOrderNo:#{payApplyDTO.bizOrderNo}";
+
+    private Method method;
+    private Object[] args;
+    private LockNameTemplate template;
+
+    @Setup
+    public void setUp() throws Exception {
+        method = LockNameTemplateTest.class.getMethod(
+                "applyPayOrder", LockNameTemplateTest.Apply.class, Long.class, List.class);
+        args = new Object[]{new LockNameTemplateTest.Apply(1001L), 2002L, null};
+        template = LockNameTemplate.compile(NAME, method, DISCOVERER);
+    }
+
+    @Benchmark
+    public String spel() {
+        return LockNameTemplateTest.parseBySpel(NAME, method, args);
+    }
+
+    @Benchmark
+    public String compiled() {
+        return template.format(args);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LockNameTemplateBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,82 @@
+package com.tianji.common.autoconfigure.redisson.aspect;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.util.ObjectUtils;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockNameTemplateTest {
+
+    static final ParameterNameDiscoverer DISCOVERER = new DefaultParameterNameDiscoverer();
+    private static final Pattern PATTERN = Pattern.compile("\\#\\{([^\\}]*)\\}");
+
+    public static class Apply {
+        private final Long bizOrderNo;
+
+        public Apply(Long bizOrderNo) {
+            this.bizOrderNo = bizOrderNo;
+        }
+
+        public Long getBizOrderNo() {
+            return bizOrderNo;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public void applyPayOrder(Apply payApplyDTO, Long tradingOrderNo, List<Long> ids) {
+    }
+
+    @Test
+    void testSameResultAsSpel() throws Exception {
+        Method method = getClass().getMethod("applyPayOrder", Apply.class, Long.class, List.class);
+        Object[] args = {new Apply(1001L), 2002L, List.of(1L, 2L, 3L)};
+        String[] names = {
+                "pay:apply:bizOrderNo:#{payApplyDTO.bizOrderNo}",
+                "pay:notify:payOrderNo:#{tradingOrderNo}",
+                "pay:#{p1}:#{a0.bizOrderNo}:end",
+                "pay:size:#{ids.size()}",
+                "pay:constant",
+        };
+        for (String name : names) {
+            LockNameTemplate template = LockNameTemplate.compile(name, method, DISCOVERER);
+            assertEquals(parseBySpel(name, method, args), template.format(args), name);
+        }
+    }
+
+    @Test
+    void testNullProperty() throws Exception {
+        Method method = getClass().getMethod("applyPayOrder", Apply.class, Long.class, List.class);
+        LockNameTemplate template =
+                LockNameTemplate.compile("pay:apply:#{payApplyDTO.bizOrderNo}", method, DISCOVERER);
+        assertThrows(IllegalArgumentException.class, () -> template.format(new Object[]{null, 1L, null}));
+        assertEquals("pay:apply:null", template.format(new Object[]{new Apply(null), 1L, null}));
+    }
+
+    /**
+     * 原来的实现：每次调用都新建解析器并解析表达式
+     */
+    static String parseBySpel(String name, Method method, Object[] args) {
+        if (!name.contains("#")) {
+            return name;
+        }
+        MethodBasedEvaluationContext context =
+                new MethodBasedEvaluationContext(TypedValue.NULL, method, args, DISCOVERER);
+        SpelExpressionParser parser = new SpelExpressionParser();
+        Matcher matcher = PATTERN.matcher(name);
+        while (matcher.find()) {
+            Object value = parser.parseExpression("#" + matcher.group(1)).getValue(context);
+            name = name.replace(matcher.group(), ObjectUtils.nullSafeToString(value));
+        }
+        return name;
+    }
+}
@@ -0,0 +1,56 @@
+package com.tianji.common.utils;
+
+import cn.hutool.core.bean.BeanUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.tianji.common.utils.BeanUtilsTest.OrderPO;
+import static com.tianji.common.utils.BeanUtilsTest.OrderVO;
+
+/**
+ * 集合拷贝与hutool的性能对比，元素数量分别为1、100、10000。
+ * <p>
+ * 不在单元测试中执行，需要时运行main方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanUtilsBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int size;
+
+    private List<OrderPO> list;
+
+    @Setup
+    public void setUp() {
+        list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(BeanUtilsTest.newOrder(i));
+        }
+    }
+
+    @Benchmark
+    public List<OrderVO> hutool() {
+        return BeanUtil.copyToList(list, OrderVO.class);
+    }
+
+    @Benchmark
+    public List<OrderVO> cached() {
+        return BeanUtils.copyList(list, OrderVO.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BeanUtilsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
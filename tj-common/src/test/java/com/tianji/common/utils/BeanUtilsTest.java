@@ -0,0 +1,101 @@
+package com.tianji.common.utils;
+
+import cn.hutool.core.bean.BeanUtil;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BeanUtilsTest {
+
+    @Data
+    public static class OrderPO {
+        private Long id;
+        private Integer status;
+        private String name;
+        private Boolean isDeleted;
+        private int amount;
+        private LocalDateTime createTime;
+        private List<Long> courseIds;
+        private transient String secret;
+    }
+
+    @Data
+    @Accessors(chain = true)
+    public static class OrderVO {
+        private Long id;
+        private Long status;
+        private String name;
+        private Boolean isDeleted;
+        private Integer amount;
+        private LocalDateTime createTime;
+        private List<Long> courseIds;
+        private String secret;
+        private String statusDesc;
+    }
+
+    static OrderPO newOrder(long id) {
+        OrderPO po = new OrderPO();
+        po.setId(id);
+        po.setStatus(2);
+        po.setName("order-" + id);
+        po.setIsDeleted(false);
+        po.setAmount(100);
+        po.setCreateTime(LocalDateTime.now());
+        po.setCourseIds(List.of(1L, 2L));
+        po.setSecret("secret");
+        return po;
+    }
+
+    @Test
+    void testSameResultAsHutool() {
+        OrderPO po = newOrder(1L);
+        OrderVO expected = BeanUtil.toBean(po, OrderVO.class);
+        OrderVO actual = BeanUtils.toBean(po, OrderVO.class);
+        assertEquals(expected, actual);
+        assertEquals(2L, actual.getStatus());
+        // 与hutool一致，transient字段同样拷贝
+        assertEquals("secret", actual.getSecret());
+
+        // 反向拷贝，Long转Integer、Integer转int
+        assertEquals(BeanUtil.toBean(actual, OrderPO.class), BeanUtils.toBean(actual, OrderPO.class));
+    }
+
+    @Test
+    void testNullValues() {
+        OrderPO po = new OrderPO();
+        OrderVO vo = BeanUtils.toBean(po, OrderVO.class);
+        assertEquals(BeanUtil.toBean(po, OrderVO.class), vo);
+        // 包装类型的null值不会覆盖基本类型
+        OrderPO back = BeanUtils.toBean(vo, OrderPO.class);
+        assertEquals(0, back.getAmount());
+        assertNull(BeanUtils.toBean(null, OrderVO.class));
+    }
+
+    @Test
+    void testIgnorePropertiesAndConvert() {
+        OrderPO po = newOrder(1L);
+        OrderVO vo = BeanUtils.copyProperties(po, OrderVO.class, "name", "amount");
+        assertNull(vo.getName());
+        assertNull(vo.getAmount());
+        assertEquals(po.getId(), vo.getId());
+
+        OrderVO target = new OrderVO().setName("old");
+        BeanUtils.copyProperties(po, target, "id");
+        assertNull(target.getId());
+        assertEquals(po.getName(), target.getName());
+
+        OrderVO converted = BeanUtils.copyBean(po, OrderVO.class, (o, v) -> v.setStatusDesc("status-" + o.getStatus()));
+        assertEquals("status-2", converted.getStatusDesc());
+    }
+
+    @Test
+    void testMapSourceFallsBackToHutool() {
+        OrderVO vo = BeanUtils.toBean(BeanUtil.beanToMap(newOrder(3L)), OrderVO.class);
+        assertEquals(3L, vo.getId());
+    }
+}
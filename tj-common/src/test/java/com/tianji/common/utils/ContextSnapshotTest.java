@@ -0,0 +1,66 @@
+package com.tianji.common.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.Collections;
+import java.util.concurrent.*;
+
+import static com.tianji.common.constants.Constant.REQUEST_ID_HEADER;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextSnapshotTest {
+
+    @AfterEach
+    void tearDown() {
+        UserContext.removeUser();
+        MDC.clear();
+    }
+
+    @Test
+    void capturedContextAppliedInWorker() throws Exception {
+        UserContext.setUser(2L);
+        MDC.put(REQUEST_ID_HEADER, "req-1");
+        Callable<String> task = ContextSnapshot.capture()
+                .wrapCallable(() -> UserContext.getUser() + ":" + MDC.get(REQUEST_ID_HEADER));
+        // 提交之后调用者的上下文变化不影响快照
+        UserContext.setUser(3L);
+        MDC.put(REQUEST_ID_HEADER, "req-2");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals("2:req-1", executor.submit(task).get(1, TimeUnit.SECONDS));
+            // 执行完后工作线程恢复为空的上下文
+            assertEquals("null:null", executor.submit(
+                    () -> UserContext.getUser() + ":" + MDC.get(REQUEST_ID_HEADER)).get(1, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void previousContextRestoredInCallerThread() {
+        UserContext.setUser(2L);
+        MDC.put(REQUEST_ID_HEADER, "req-1");
+
+        ContextSnapshot.of(null, Collections.singletonMap(REQUEST_ID_HEADER, "batch-1")).wrap(() -> {
+            assertNull(UserContext.getUser());
+            assertEquals("batch-1", MDC.get(REQUEST_ID_HEADER));
+        }).run();
+
+        assertEquals(2L, UserContext.getUser());
+        assertEquals("req-1", MDC.get(REQUEST_ID_HEADER));
+    }
+
+    @Test
+    void previousContextRestoredOnFailure() {
+        UserContext.setUser(2L);
+        Runnable task = ContextSnapshot.empty().wrap(() -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThrows(IllegalStateException.class, task::run);
+        assertEquals(2L, UserContext.getUser());
+    }
+}
@@ -0,0 +1,99 @@
+package com.tianji.common.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.time.Duration;
+
+import static com.tianji.common.constants.Constant.REQUEST_ID_HEADER;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelUtilsTest {
+
+    @AfterEach
+    void tearDown() {
+        UserContext.removeUser();
+        MDC.clear();
+    }
+
+    private static <T> T slow(long millis, T value) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+
+    @Test
+    void callsRunConcurrently() {
+        long start = System.nanoTime();
+        ParallelUtils.Call<String> a = ParallelUtils.submit(() -> slow(200, "a"));
+        ParallelUtils.Call<String> b = ParallelUtils.submit(() -> slow(200, "b"));
+        ParallelUtils.Call<String> c = ParallelUtils.submit(() -> slow(200, "c"));
+        assertEquals("abc", a.get() + b.get() + c.get());
+        long millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        // 串行需要600ms，并行只需要最慢的一个调用的时间
+        assertTrue(millis < 450, "耗时：" + millis);
+    }
+
+    @Test
+    void contextPropagatedToWorker() {
+        UserContext.setUser(2L);
+        MDC.put(REQUEST_ID_HEADER, "req-1");
+
+        ParallelUtils.Call<String> call = ParallelUtils.submit(
+                () -> UserContext.getUser() + ":" + MDC.get(REQUEST_ID_HEADER));
+
+        assertEquals("2:req-1", call.get());
+    }
+
+    @Test
+    void contextClearedAfterCall() {
+        UserContext.setUser(2L);
+        ParallelUtils.submit(() -> slow(10, 1)).get();
+        UserContext.removeUser();
+
+        // 没有用户的调用不能读到上一个任务残留的用户
+        for (int i = 0; i < 50; i++) {
+            assertNull(ParallelUtils.submit(UserContext::getUser).get());
+        }
+    }
+
+    @Test
+    void timeoutReturnsFallback() {
+        long start = System.nanoTime();
+        ParallelUtils.Call<String> call = ParallelUtils.submit(
+                () -> slow(1000, "late"), Duration.ofMillis(100), "fallback");
+
+        assertEquals("fallback", call.get());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 800);
+    }
+
+    @Test
+    void failureReturnsFallback() {
+        ParallelUtils.Call<String> call = ParallelUtils.submit(() -> {
+            throw new IllegalStateException("boom");
+        }, Duration.ofSeconds(1), null);
+
+        assertNull(call.get());
+    }
+
+    @Test
+    void failureWithoutFallbackIsRethrown() {
+        ParallelUtils.Call<String> call = ParallelUtils.submit(() -> {
+            throw new IllegalArgumentException("boom");
+        });
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, call::get);
+        assertEquals("boom", e.getMessage());
+    }
+
+    @Test
+    void timeoutWithoutFallbackThrows() {
+        ParallelUtils.Call<String> call = ParallelUtils.submit(() -> slow(1000, "late"), Duration.ofMillis(50));
+
+        assertThrows(IllegalStateException.class, call::get);
+    }
+}
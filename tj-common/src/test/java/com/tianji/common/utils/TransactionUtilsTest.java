@@ -0,0 +1,47 @@
+package com.tianji.common.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionUtilsTest {
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testRunImmediatelyWithoutTransaction() {
+        AtomicInteger times = new AtomicInteger();
+        TransactionUtils.afterCommit(times::incrementAndGet);
+        assertEquals(1, times.get());
+    }
+
+    @Test
+    void testRunAfterCommit() {
+        AtomicInteger times = new AtomicInteger();
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionUtils.afterCommit(times::incrementAndGet);
+        TransactionUtils.afterCommit(() -> {
+            throw new IllegalStateException("redis down");
+        });
+        // 事务提交前不执行
+        assertEquals(0, times.get());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        // 提交后执行，任务的异常不抛给提交事务的调用者
+        assertDoesNotThrow(() -> TransactionSynchronizationUtils.invokeAfterCommit(synchronizations));
+        assertEquals(1, times.get());
+    }
+}
@@ -5,15 +5,15 @@ import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.tianji.api.batch.BatchLoader;
 import com.tianji.api.client.exam.ExamClient;
 import com.tianji.api.client.learning.LearningClient;
 import com.tianji.api.client.trade.TradeClient;
-import com.tianji.api.client.user.UserClient;
 import com.tianji.api.dto.course.CourseDTO;
 import com.tianji.api.dto.course.CoursePurchaseInfoDTO;
 import com.tianji.api.dto.exam.QuestionBizDTO;
 import com.tianji.api.dto.user.UserDTO;
-import com.tianji.common.autoconfigure.mq.RabbitMqHelper;
+import com.tianji.common.autoconfigure.outbox.OutboxHelper;
 import com.tianji.common.constants.ErrorInfo;
 import com.tianji.common.constants.MqConstants;
 import com.tianji.common.domain.dto.PageDTO;
@@ -88,13 +88,13 @@ public class CourseDraftServiceImpl extends ServiceImpl<CourseDraftMapper, Cours
     private CourseCataSubjectDraftMapper courseCataSubjectDraftMapper;
 
     @Autowired
-    private UserClient userClient;
+    private BatchLoader<Long, UserDTO> userBatchLoader;
 
     @Autowired
     private ICategoryService categoryService;
 
     @Autowired
-    private RabbitMqHelper rabbitMqHelper;
+    private OutboxHelper outboxHelper;
 
     @Autowired
     private TradeClient tradeClient;
@@ -259,7 +259,7 @@ public class CourseDraftServiceImpl extends ServiceImpl<CourseDraftMapper, Cours
         }
 
         //3.查询创建者，更新者姓名
-        List<UserDTO> userDTOS = userClient.queryUserByIds(
+        List<UserDTO> userDTOS = userBatchLoader.getAll(
                 Arrays.asList(courseBaseInfoVO.getCreater(), courseBaseInfoVO.getUpdater())
                         .stream()
                         .distinct()
@@ -403,8 +403,8 @@ public class CourseDraftServiceImpl extends ServiceImpl<CourseDraftMapper, Cours
             courseContentDraftMapper.deleteById(id);
 
         }
-        //5.课程上架mq
-        rabbitMqHelper.send(MqConstants.Exchange.COURSE_EXCHANGE, MqConstants.Key.COURSE_UP_KEY, id);
+        //5.课程上架mq，与课程数据在同一事务中写入本地消息表
+        outboxHelper.publish(MqConstants.Exchange.COURSE_EXCHANGE, MqConstants.Key.COURSE_UP_KEY, id);
     }
 
     @Override
@@ -470,8 +470,8 @@ public class CourseDraftServiceImpl extends ServiceImpl<CourseDraftMapper, Cours
         copySubject2Draft(id);
         //7.课程老师copy到草稿中
         courseTeacherDraftMapper.insertFromCourseTeacher(id);
-        //8.下架mq广播
-        rabbitMqHelper.send(MqConstants.Exchange.COURSE_EXCHANGE, MqConstants.Key.COURSE_DOWN_KEY, id);
+        //8.下架mq广播，与课程数据在同一事务中写入本地消息表
+        outboxHelper.publish(MqConstants.Exchange.COURSE_EXCHANGE, MqConstants.Key.COURSE_DOWN_KEY, id);
     }
 
     @GlobalTransactional
@@ -576,7 +576,7 @@ public class CourseDraftServiceImpl extends ServiceImpl<CourseDraftMapper, Cours
                 .map(CourseDraft::getUpdater)
                 .collect(Collectors.toList());
         //2.2.查询更新人用户信息
-        List<UserDTO> userDTOS = userClient.queryUserByIds(updaterList);
+        List<UserDTO> userDTOS = userBatchLoader.getAll(updaterList);
         //2.3.转化更新人用户id+name 映射关系
         Map<Long, String> updaterMap =
                 CollUtils.isEmpty(updaterList) ?
@@ -4,10 +4,10 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.tianji.api.batch.BatchLoader;
 import com.tianji.api.client.exam.ExamClient;
 import com.tianji.api.client.learning.LearningClient;
 import com.tianji.api.client.trade.TradeClient;
-import com.tianji.api.client.user.UserClient;
 import com.tianji.api.dto.IdAndNumDTO;
 import com.tianji.api.dto.course.*;
 import com.tianji.api.dto.leanring.LearningLessonDTO;
@@ -79,7 +79,7 @@ public class CourseServiceImpl extends ServiceImpl<CourseMapper, Course> impleme
     private ICategoryService categoryService;
 
     @Autowired
-    private UserClient userClient;
+    private BatchLoader<Long, UserDTO> userBatchLoader;
 
     @Autowired
     private TradeClient tradeClient;
@@ -242,25 +242,25 @@ public class CourseServiceImpl extends ServiceImpl<CourseMapper, Course> impleme
     public CourseAndSectionVO queryCourseAndCatalogById(Long courseId) {
         // 1.获取当前用户
         Long userId = UserContext.getUser();
-        // 2.查询课程详情
+        // 2.学习进度与课程详情无关，先并行查询学习记录
+        ParallelUtils.Call<LearningLessonDTO> lessonCall = learningClient == null ? null
+                : ParallelUtils.submit(() -> learningClient.queryLearningRecordByCourse(courseId));
+        // 3.查询课程详情
         CourseFullInfoDTO course = getInfoById(courseId, true, true);
         if (course == null) {
             return null;
         }
-        // 3.组织VO
+        // 4.并行查询教师信息，教师信息只用于展示，查询失败时降级为空
+        ParallelUtils.Call<List<UserDTO>> teacherCall = ParallelUtils.submit(
+                () -> userBatchLoader.getAll(course.getTeacherIds()),
+                ParallelUtils.DEFAULT_TIMEOUT, CollUtils.emptyList());
+        // 5.组织VO
         CourseAndSectionVO vo = new CourseAndSectionVO();
         vo.setId(courseId);
         vo.setName(course.getName());
         vo.setSections(course.getSectionNum());
         vo.setCoverUrl(course.getCoverUrl());
-        // 4.查询教师信息
-        List<UserDTO> teachers = userClient.queryUserByIds(course.getTeacherIds());
-        if (CollUtils.isNotEmpty(teachers)) {
-            UserDTO teacher = teachers.get(0);
-            vo.setTeacherName(teacher.getName());
-            vo.setTeacherIcon(teacher.getIcon());
-        }
-        // 5.组装小节信息
+        // 5.1.组装小节信息
         List<CatalogueDTO> catas = course.getChapters();
         List<ChapterVO> chapters = new ArrayList<>(catas.size());
         for (CatalogueDTO c : catas) {
@@ -274,12 +274,19 @@ public class CourseServiceImpl extends ServiceImpl<CourseMapper, Course> impleme
             chapters.add(cv);
         }
         vo.setChapters(chapters);
+        // 5.2.填充教师信息
+        List<UserDTO> teachers = teacherCall.get();
+        if (CollUtils.isNotEmpty(teachers)) {
+            UserDTO teacher = teachers.get(0);
+            vo.setTeacherName(teacher.getName());
+            vo.setTeacherIcon(teacher.getIcon());
+        }
         // 6.查询学习进度
-        if (learningClient == null) {
+        if (lessonCall == null) {
             return vo;
         }
         // 6.1.查询学习记录
-        LearningLessonDTO lessonDTO = learningClient.queryLearningRecordByCourse(courseId);
+        LearningLessonDTO lessonDTO = lessonCall.get();
         if (lessonDTO == null) {
             // 没有查询到课表信息，说明是免费试看，直接返回
             return vo;
@@ -473,7 +480,7 @@ public class CourseServiceImpl extends ServiceImpl<CourseMapper, Course> impleme
                 .map(Course::getUpdater)
                 .collect(Collectors.toList());
         //2.1查询更新人用户信息
-        List<UserDTO> userDTOS = userClient.queryUserByIds(updaterList);
+        List<UserDTO> userDTOS = userBatchLoader.getAll(updaterList);
         //2.2.转化课程更新人id+name map
         Map<Long, String> updaterMap =
                 CollUtils.isEmpty(updaterList) ?
@@ -3,6 +3,8 @@ package com.tianji.data.constants;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+import java.util.Objects;
+
 /**
  * @ClassName DataTypeEnum
  * @Author wusongsong
@@ -31,7 +33,7 @@ public enum DataTypeEnum {
 
     public static DataTypeEnum get(Integer type){
         for (DataTypeEnum dataTypeEnum : values()){
-            if(dataTypeEnum.getType().equals(type)){
+            if(Objects.equals(dataTypeEnum.getType(), type)){
                 return dataTypeEnum;
             }
         }
@@ -0,0 +1,37 @@
+package com.tianji.data.constants;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 实时统计的指标，金额类指标单位为分
+ */
+@Getter
+@AllArgsConstructor
+public enum MetricType {
+
+    VISITS("visits", "访问量"),
+    ORDER_NUM("orderNum", "订单笔数"),
+    ORDER_AMOUNT("orderAmount", "订单金额"),
+    ENROLL_NUM("enrollNum", "报名课程数"),
+    REFUND_NUM("refundNum", "退款笔数"),
+    REFUND_AMOUNT("refundAmount", "退款金额"),
+    STU_NEW_NUM("stuNewNum", "新增学员"),
+    SECTION_LEARNED_NUM("sectionLearnedNum", "学完小节数"),
+    COURSE_UP_NUM("courseUpNum", "上架课程数");
+
+    /**
+     * 计数器中的字段名
+     */
+    private final String field;
+    private final String desc;
+
+    public static MetricType ofField(String field) {
+        for (MetricType type : values()) {
+            if (type.field.equals(field)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
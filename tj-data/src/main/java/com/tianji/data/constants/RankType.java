@@ -0,0 +1,20 @@
+package com.tianji.data.constants;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 排行榜类型，每种排行榜每天一个sorted set，成员为课程id或分类id
+ */
+@Getter
+@AllArgsConstructor
+public enum RankType {
+
+    COURSE_ENROLL("course:enroll", "热门课程，按新增学员数排名，包括免费报名"),
+    COURSE_SALES("course:sales", "畅销课程，按付费购买次数排名"),
+    COURSE_REVENUE("course:revenue", "热销课程，按销售额排名，单位分"),
+    CATEGORY_REVENUE("category:revenue", "热销分类，按一级分类的销售额排名，单位分");
+
+    private final String code;
+    private final String desc;
+}
@@ -8,9 +8,47 @@ package com.tianji.data.constants;
  **/
 public class RedisConstants {
 
-    public static final String KEY_BOARD_DATA = "DATA:BORAD:";
+    /**
+     * 看板数据的时间序列，参数为数据类型，例如 DATA:BOARD:SERIES:1
+     */
+    public static final String KEY_BOARD_SERIES = "DATA:BOARD:SERIES:";
+
+    /**
+     * 写入看板时间序列的分布式锁，参数为数据类型
+     */
+    public static final String LOCK_BOARD_SERIES = "lock:data:board:series:";
+
+    /**
+     * 旧版本的看板数据，每种数据类型一个字段，值为截止到昨天的最近15天数据的JSON数组，只用于导入时间序列
+     */
+    public static final String KEY_LEGACY_BOARD_DATA = "DATA:BORAD:0";
 
     public static final String KEY_TOP10 = "DATA:TOP10:";
 
     public static final String KEY_TODAY = "DATA:TODAY:";
+
+    /**
+     * 实时统计的计数器，参数为时间粒度和时间桶编号，例如 DATA:METRIC:d:20221018
+     */
+    public static final String KEY_METRIC_TEMPLATE = "DATA:METRIC:{}:{}";
+
+    /**
+     * 已经统计过的事件，用于消息重复投递时去重
+     */
+    public static final String KEY_METRIC_EVENT = "DATA:METRIC:EVENT:";
+
+    /**
+     * 去重统计的HyperLogLog，参数为统计对象、时间窗口和窗口编号，例如 DATA:UV:active:d:20221018
+     */
+    public static final String KEY_UV_TEMPLATE = "DATA:UV:{}:{}:{}";
+
+    /**
+     * 排行榜的sorted set，参数为排行榜类型、时间窗口和窗口编号，例如 DATA:RANK:course:enroll:d:20221018
+     */
+    public static final String KEY_RANK_TEMPLATE = "DATA:RANK:{}:{}:{}";
+
+    /**
+     * 已经计入排行榜的事件，用于消息重复投递时去重
+     */
+    public static final String KEY_RANK_EVENT = "DATA:RANK:EVENT:";
 }
@@ -0,0 +1,55 @@
+package com.tianji.data.constants;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 实时统计的时间粒度，每个粒度的每个时间段（时间桶）一个计数器
+ */
+@Getter
+public enum TimeGranularity {
+
+    MINUTE("m", "yyyyMMddHHmm", ChronoUnit.MINUTES, Duration.ofDays(2)),
+    HOUR("h", "yyyyMMddHH", ChronoUnit.HOURS, Duration.ofDays(8)),
+    DAY("d", "yyyyMMdd", ChronoUnit.DAYS, Duration.ofDays(40));
+
+    private final String code;
+    private final DateTimeFormatter formatter;
+    private final ChronoUnit unit;
+    /**
+     * 计数器在redis中的保留时间，更早的数据从数据库的汇总数据中查询
+     */
+    private final Duration retention;
+
+    TimeGranularity(String code, String pattern, ChronoUnit unit, Duration retention) {
+        this.code = code;
+        this.formatter = DateTimeFormatter.ofPattern(pattern);
+        this.unit = unit;
+        this.retention = retention;
+    }
+
+    /**
+     * 时间所在时间桶的开始时间
+     */
+    public LocalDateTime truncate(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    /**
+     * 时间所在时间桶的编号
+     */
+    public String format(LocalDateTime time) {
+        return formatter.format(time);
+    }
+
+    /**
+     * 下一个时间桶的开始时间
+     */
+    public LocalDateTime next(LocalDateTime bucket) {
+        return bucket.plus(1, unit);
+    }
+}
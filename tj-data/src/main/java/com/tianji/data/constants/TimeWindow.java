@@ -0,0 +1,71 @@
+package com.tianji.data.constants;
+
+import lombok.Getter;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * 去重统计和排行榜的时间窗口。周和月的数据由当期每天的数据合并而来，合并后的数据比天的数据保留更久
+ */
+@Getter
+public enum TimeWindow {
+
+    DAY("d", "yyyyMMdd", Duration.ofDays(40)),
+    /**
+     * 周一开始，以周一的日期作为编号
+     */
+    WEEK("w", "yyyyMMdd", Duration.ofDays(120)),
+    MONTH("M", "yyyyMM", Duration.ofDays(400));
+
+    private final String code;
+    private final DateTimeFormatter formatter;
+    /**
+     * 数据在redis中的保留时间
+     */
+    private final Duration retention;
+
+    TimeWindow(String code, String pattern, Duration retention) {
+        this.code = code;
+        this.formatter = DateTimeFormatter.ofPattern(pattern);
+        this.retention = retention;
+    }
+
+    /**
+     * 日期所在窗口的第一天
+     */
+    public LocalDate begin(LocalDate date) {
+        switch (this) {
+            case WEEK:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH:
+                return date.withDayOfMonth(1);
+            default:
+                return date;
+        }
+    }
+
+    /**
+     * 日期所在窗口的最后一天
+     */
+    public LocalDate end(LocalDate date) {
+        switch (this) {
+            case WEEK:
+                return begin(date).plusDays(6);
+            case MONTH:
+                return date.with(TemporalAdjusters.lastDayOfMonth());
+            default:
+                return date;
+        }
+    }
+
+    /**
+     * 日期所在窗口的编号
+     */
+    public String format(LocalDate date) {
+        return formatter.format(begin(date));
+    }
+}
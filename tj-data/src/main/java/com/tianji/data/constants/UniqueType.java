@@ -0,0 +1,25 @@
+package com.tianji.data.constants;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 去重统计的用户类型
+ */
+@Getter
+@AllArgsConstructor
+public enum UniqueType {
+
+    ACTIVE("active", "活跃用户，登录或者学习过的用户"),
+    VISITOR("visitor", "访客，登录过的用户");
+
+    private final String code;
+    private final String desc;
+
+    /**
+     * 课程学员的统计对象，学习过课程的用户
+     */
+    public static String courseLearner(Long courseId) {
+        return "course:" + courseId;
+    }
+}
@@ -1,15 +1,21 @@
 package com.tianji.data.controller;
 
+import com.tianji.common.utils.DateUtils;
 import com.tianji.data.model.dto.BoardDataSetDTO;
 import com.tianji.data.model.vo.EchartsVO;
+import com.tianji.data.model.vo.UniqueCountVO;
+import com.tianji.data.model.vo.UniqueUserVO;
 import com.tianji.data.service.BoardService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -29,8 +35,15 @@ public class BoardController {
 
     @GetMapping("")
     @ApiOperation("看板数据获取")
-    public EchartsVO boardData(@RequestParam("types") List<Integer> types) {
-        return boardService.boardData(types);
+    public EchartsVO boardData(
+            @RequestParam("types") List<Integer> types,
+            @ApiParam("开始日期，默认为结束日期前的第14天")
+            @RequestParam(value = "begin", required = false)
+            @DateTimeFormat(pattern = DateUtils.DEFAULT_DATE_FORMAT) LocalDate begin,
+            @ApiParam("结束日期，默认为昨天")
+            @RequestParam(value = "end", required = false)
+            @DateTimeFormat(pattern = DateUtils.DEFAULT_DATE_FORMAT) LocalDate end) {
+        return boardService.boardData(types, begin, end);
     }
 
     @PutMapping("set")
@@ -38,4 +51,16 @@ public class BoardController {
     public void setBoardData(@Validated @RequestBody BoardDataSetDTO boardDataSetDTO) {
         boardService.setBoardData(boardDataSetDTO);
     }
+
+    @GetMapping("unique-users")
+    @ApiOperation("活跃用户和访客数获取")
+    public UniqueUserVO uniqueUsers() {
+        return boardService.uniqueUsers();
+    }
+
+    @GetMapping("course/{courseId}/learners")
+    @ApiOperation("课程学员数获取")
+    public UniqueCountVO courseLearners(@PathVariable("courseId") Long courseId) {
+        return boardService.courseLearners(courseId);
+    }
 }
@@ -1,10 +1,12 @@
 package com.tianji.data.controller;
 
+import com.tianji.data.constants.TimeWindow;
 import com.tianji.data.model.dto.Top10DataSetDTO;
 import com.tianji.data.model.vo.Top10DataVO;
 import com.tianji.data.service.Top10Service;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
@@ -25,8 +27,10 @@ public class Top10Controller {
 
     @GetMapping("")
     @ApiOperation("top10数据获取")
-    public Top10DataVO getTop10Data() {
-        return top10Service.getTop10Data();
+    public Top10DataVO getTop10Data(
+            @ApiParam("时间窗口：DAY、WEEK、MONTH，默认MONTH")
+            @RequestParam(value = "window", defaultValue = "MONTH") TimeWindow window) {
+        return top10Service.getTop10Data(window);
     }
 
     @PutMapping("set")
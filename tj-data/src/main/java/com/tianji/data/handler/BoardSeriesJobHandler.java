@@ -0,0 +1,48 @@
+package com.tianji.data.handler;
+
+import com.tianji.common.utils.StringUtils;
+import com.tianji.data.service.BoardSeriesService;
+import com.tianji.data.service.BoardService;
+import com.xxl.job.core.context.XxlJobHelper;
+import com.xxl.job.core.handler.annotation.XxlJob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * 看板时间序列的定时任务
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BoardSeriesJobHandler {
+
+    private final BoardSeriesService boardSeriesService;
+    private final BoardService boardService;
+
+    /**
+     * 把今天和昨天的实时统计写入看板时间序列，建议每10分钟执行一次。
+     * 写入的是当天的最新值，重复执行不影响结果；同时刷新昨天，保证跨天前最后一段时间的数据也能写入
+     */
+    @XxlJob("boardSeriesRefresh")
+    public void boardSeriesRefresh() {
+        LocalDate today = LocalDate.now();
+        boardSeriesService.refresh(today.minusDays(1));
+        boardSeriesService.refresh(today);
+        log.debug("刷新{}的看板时间序列完成", today);
+    }
+
+    /**
+     * 一次性任务，手动执行：把旧版本（DATA:BORAD:0）的看板数据导入时间序列。
+     * 任务参数为旧数据的最后一天，格式为yyyy-MM-dd，默认为昨天
+     */
+    @XxlJob("boardSeriesImportLegacy")
+    public void boardSeriesImportLegacy() {
+        String jobParam = XxlJobHelper.getJobParam();
+        LocalDate end = StringUtils.isBlank(jobParam) ? LocalDate.now().minusDays(1) : LocalDate.parse(jobParam.trim());
+        int count = boardService.importLegacyData(end);
+        log.info("导入截止到{}的旧版本看板数据完成，共{}天", end, count);
+    }
+}
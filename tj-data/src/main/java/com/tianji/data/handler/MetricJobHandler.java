@@ -0,0 +1,33 @@
+package com.tianji.data.handler;
+
+import com.tianji.data.constants.TimeGranularity;
+import com.tianji.data.service.MetricService;
+import com.xxl.job.core.handler.annotation.XxlJob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * 实时统计的定时任务
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MetricJobHandler {
+
+    private final MetricService metricService;
+
+    /**
+     * 把最近两个小时、两天的计数器汇总到数据库，建议每5分钟执行一次。
+     * 汇总数据每次都被覆盖为最新的累计值，上一个时间段迟到的事件也会在下一次执行时写入
+     */
+    @XxlJob("metricRollup")
+    public void metricRollup() {
+        LocalDateTime now = LocalDateTime.now();
+        int hours = metricService.rollup(TimeGranularity.HOUR, now.minusHours(1), now);
+        int days = metricService.rollup(TimeGranularity.DAY, now.minusDays(1), now);
+        log.debug("汇总统计数据完成，小时数据{}条，天数据{}条", hours, days);
+    }
+}
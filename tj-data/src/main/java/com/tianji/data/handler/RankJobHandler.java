@@ -0,0 +1,30 @@
+package com.tianji.data.handler;
+
+import com.tianji.data.service.RankService;
+import com.xxl.job.core.handler.annotation.XxlJob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * 排行榜的定时任务
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RankJobHandler {
+
+    private final RankService rankService;
+
+    /**
+     * 昨天是一周或一个月的最后一天时，合并保存这一周或这个月的排行榜，建议每天凌晨执行一次
+     */
+    @XxlJob("rankMerge")
+    public void rankMerge() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        rankService.merge(yesterday);
+        log.debug("合并{}所在周、月的排行榜完成", yesterday);
+    }
+}
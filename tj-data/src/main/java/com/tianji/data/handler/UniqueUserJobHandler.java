@@ -0,0 +1,34 @@
+package com.tianji.data.handler;
+
+import com.tianji.data.constants.UniqueType;
+import com.tianji.data.service.UniqueUserService;
+import com.xxl.job.core.handler.annotation.XxlJob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * 去重用户统计的定时任务
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UniqueUserJobHandler {
+
+    private final UniqueUserService uniqueUserService;
+
+    /**
+     * 把昨天所在周、月的每天的数据合并保存，建议每天凌晨执行一次。
+     * 合并是取并集，重复执行不影响结果；天的数据保留40天，期间任意一次合并成功即可
+     */
+    @XxlJob("uniqueUserMerge")
+    public void uniqueUserMerge() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        for (UniqueType type : UniqueType.values()) {
+            uniqueUserService.merge(type.getCode(), yesterday);
+        }
+        log.debug("合并{}所在周、月的去重用户统计完成", yesterday);
+    }
+}
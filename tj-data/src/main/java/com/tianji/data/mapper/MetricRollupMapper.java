@@ -0,0 +1,23 @@
+package com.tianji.data.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tianji.data.model.po.MetricRollup;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 统计数据汇总表 Mapper 接口
+ */
+public interface MetricRollupMapper extends BaseMapper<MetricRollup> {
+
+    /**
+     * 批量写入汇总数据，已存在的覆盖为最新的累计值，重复汇总是幂等的
+     * 依赖表上(granularity, bucket_time, metric)的唯一键，见resources/sql/metric_rollup.sql
+     */
+    @Insert("<script>INSERT INTO metric_rollup (metric, granularity, bucket_time, metric_value) VALUES " +
+            "<foreach collection='rows' item='r' separator=','>(#{r.metric}, #{r.granularity}, #{r.bucketTime}, " +
+            "#{r.metricValue})</foreach> ON DUPLICATE KEY UPDATE metric_value = VALUES(metric_value)</script>")
+    int upsertBatch(@Param("rows") List<MetricRollup> rows);
+}
@@ -6,6 +6,7 @@ import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -16,13 +17,20 @@ import java.util.List;
  **/
 @Data
 public class BoardDataSetDTO {
-    @NotNull(message = "版本")
+    /**
+     * 已废弃，看板数据按日期保存，不再区分版本
+     */
+    @Deprecated
     private Integer version;
+    /**
+     * 第一个数据对应的日期，为空时数据对应截止到昨天的最近几天
+     */
+    private LocalDate begin;
     @NotNull(message = "数据类型不能为空")
     @Min(value = 1, message = "数据类型1-9")
     @Max(value = 9, message = "数据类型1-9")
     private Integer type;
     @NotNull(message = "设置数据不能为空")
-    @Size(min = 15, max = 15, message = "需要设置15天的数据")
+    @Size(min = 1, max = 366, message = "需要设置1-366天的数据")
     private List<Double> data;
 }
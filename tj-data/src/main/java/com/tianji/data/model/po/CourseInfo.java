@@ -16,4 +16,5 @@ public class CourseInfo implements Serializable {
     private String name;
     private Integer newStuNum;
     private Double orderAmount;
+    private Integer salesNum;
 }
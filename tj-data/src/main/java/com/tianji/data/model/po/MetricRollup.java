@@ -0,0 +1,43 @@
+package com.tianji.data.model.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 实时统计的汇总数据，定时从redis计数器写入，redis中过期的历史数据从这里查询。
+ * 表结构见resources/sql/metric_rollup.sql，(granularity, bucket_time, metric)上的唯一键保证重复汇总是覆盖写入
+ */
+@Data
+@TableName("metric_rollup")
+public class MetricRollup implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+    /**
+     * 指标，见{@link com.tianji.data.constants.MetricType#getField()}
+     */
+    private String metric;
+    /**
+     * 时间粒度，见{@link com.tianji.data.constants.TimeGranularity#getCode()}
+     */
+    private String granularity;
+    /**
+     * 时间段的开始时间
+     */
+    private LocalDateTime bucketTime;
+    /**
+     * 累计值
+     */
+    private Long metricValue;
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
@@ -1,11 +1,13 @@
 package com.tianji.data.model.vo;
 
-import com.tianji.common.utils.DateUtils;
+import com.tianji.common.utils.NumberUtils;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -42,14 +44,18 @@ public class AxisVO {
     private Double interval;
 
 
-    public static AxisVO last15Day() {
-
+    public static AxisVO days(LocalDate begin, LocalDate end) {
+        List<String> days = new ArrayList<>();
+        for (LocalDate day = begin; !day.isAfter(end); day = day.plusDays(1)) {
+            days.add(String.format("%s.%s",
+                    NumberUtils.repair0(day.getMonthValue(), 2), NumberUtils.repair0(day.getDayOfMonth(), 2)));
+        }
         return new AxisVO(
                 TYPE_CATEGORY,
                 null,
                 null,
                 null,
-                DateUtils.last15Day(),
+                days,
                 null
         );
     }
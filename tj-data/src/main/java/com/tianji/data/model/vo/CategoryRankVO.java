@@ -0,0 +1,21 @@
+package com.tianji.data.model.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 分类排行
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "分类排行")
+public class CategoryRankVO {
+    @ApiModelProperty("一级分类名称")
+    private String category;
+    @ApiModelProperty("订单金额，单位元")
+    private Double orderAmount;
+}
@@ -31,6 +31,10 @@ public class SerierVO {
     private List<?> data;
     private String max;
     private String min;
+    //时间段内的合计
+    private Double sum;
+    //上一个相同长度的时间段内的合计
+    private Double compareSum;
 
 
 }
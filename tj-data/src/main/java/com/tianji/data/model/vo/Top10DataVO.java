@@ -17,4 +17,8 @@ public class Top10DataVO {
     private List<CourseInfo> hot;
     // 热销课程
     private List<CourseInfo> hotSales;
+    // 畅销课程
+    private List<CourseInfo> bestSellers;
+    // 热销分类
+    private List<CategoryRankVO> hotCategories;
 }
@@ -0,0 +1,23 @@
+package com.tianji.data.model.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 去重用户数，估算值，误差约1%
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "去重用户数")
+public class UniqueCountVO {
+    @ApiModelProperty("今日用户数")
+    private Long daily;
+    @ApiModelProperty("本周用户数")
+    private Long weekly;
+    @ApiModelProperty("本月用户数")
+    private Long monthly;
+}
@@ -0,0 +1,21 @@
+package com.tianji.data.model.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 活跃用户和访客数
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "活跃用户和访客数")
+public class UniqueUserVO {
+    @ApiModelProperty("活跃用户数，日活、周活、月活")
+    private UniqueCountVO active;
+    @ApiModelProperty("访客数")
+    private UniqueCountVO visitor;
+}
@@ -0,0 +1,158 @@
+package com.tianji.data.mq;
+
+import com.tianji.api.dto.trade.OrderBasicDTO;
+import com.tianji.api.dto.user.UserEventDTO;
+import com.tianji.common.constants.MqConstants;
+import com.tianji.common.utils.CollUtils;
+import com.tianji.common.utils.DateUtils;
+import com.tianji.data.constants.MetricType;
+import com.tianji.data.service.MetricService;
+import com.tianji.data.service.RankService;
+import com.tianji.data.service.UniqueUserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 监听订单、用户、学习、课程相关的事件，累加到实时统计中。
+ * <p>
+ * 每个事件以业务id作为唯一标识，消息重复投递时不会重复统计；事件按照事件本身的发生时间计入统计，
+ * 消息积压或重放时也能计入正确的时间段。订单事件同时计入排行榜，登录和学习事件同时计入去重用户统计。
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DataEventListener {
+
+    private final MetricService metricService;
+    private final UniqueUserService uniqueUserService;
+    private final RankService rankService;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(value = "data.order.pay.queue", durable = "true"),
+            exchange = @Exchange(name = MqConstants.Exchange.ORDER_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = MqConstants.Key.ORDER_PAY_KEY
+    ))
+    public void listenOrderPay(OrderBasicDTO order) {
+        if (order == null || order.getOrderId() == null) {
+            log.error("接收到MQ消息有误，订单数据为空");
+            return;
+        }
+        Map<MetricType, Long> deltas = new EnumMap<>(MetricType.class);
+        deltas.put(MetricType.ORDER_NUM, 1L);
+        deltas.put(MetricType.ORDER_AMOUNT, toLong(order.getAmount()));
+        deltas.put(MetricType.ENROLL_NUM, (long) CollUtils.size(order.getCourseIds()));
+        metricService.record("order:pay:" + order.getOrderId(), timeOrNow(order.getFinishTime()), deltas);
+        rankService.recordPay(order);
+    }
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(value = "data.order.refund.queue", durable = "true"),
+            exchange = @Exchange(name = MqConstants.Exchange.ORDER_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = MqConstants.Key.ORDER_REFUND_KEY
+    ))
+    public void listenOrderRefund(OrderBasicDTO order) {
+        if (order == null || order.getOrderId() == null || CollUtils.isEmpty(order.getCourseIds())) {
+            log.error("接收到MQ消息有误，订单数据为空");
+            return;
+        }
+        // 一个订单可以分多次退款，每次退一门课程
+        Map<MetricType, Long> deltas = new EnumMap<>(MetricType.class);
+        deltas.put(MetricType.REFUND_NUM, 1L);
+        deltas.put(MetricType.REFUND_AMOUNT, toLong(order.getAmount()));
+        metricService.record("order:refund:" + order.getOrderId() + ":" + order.getCourseIds().get(0),
+                timeOrNow(order.getFinishTime()), deltas);
+        rankService.recordRefund(order);
+    }
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(value = "data.user.register.queue", durable = "true"),
+            exchange = @Exchange(name = MqConstants.Exchange.USER_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = MqConstants.Key.USER_REGISTER_KEY
+    ))
+    public void listenUserRegister(UserEventDTO event) {
+        if (isInvalid(event)) {
+            return;
+        }
+        metricService.record("user:register:" + event.getUserId(), timeOrNow(event.getTime()),
+                Map.of(MetricType.STU_NEW_NUM, 1L));
+    }
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(value = "data.user.login.queue", durable = "true"),
+            exchange = @Exchange(name = MqConstants.Exchange.USER_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = MqConstants.Key.USER_LOGIN_KEY
+    ))
+    public void listenUserLogin(UserEventDTO event) {
+        if (isInvalid(event)) {
+            return;
+        }
+        LocalDateTime time = timeOrNow(event.getTime());
+        metricService.record("user:login:" + event.getUserId() + ":" + toMillis(time), time,
+                Map.of(MetricType.VISITS, 1L));
+        uniqueUserService.recordVisit(event.getUserId(), time);
+    }
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(value = "data.section.learned.queue", durable = "true"),
+            exchange = @Exchange(name = MqConstants.Exchange.LEARNING_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = MqConstants.Key.LEARN_SECTION
+    ))
+    public void listenSectionLearned(UserEventDTO event) {
+        if (isInvalid(event)) {
+            return;
+        }
+        LocalDateTime time = timeOrNow(event.getTime());
+        metricService.record("section:learned:" + event.getUserId() + ":" + toMillis(time), time,
+                Map.of(MetricType.SECTION_LEARNED_NUM, 1L));
+        uniqueUserService.recordLearning(event.getUserId(), event.getCourseId(), time);
+    }
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(value = "data.course.up.queue", durable = "true"),
+            exchange = @Exchange(name = MqConstants.Exchange.COURSE_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = MqConstants.Key.COURSE_UP_KEY
+    ))
+    public void listenCourseUp(Long courseId, @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
+        if (courseId == null) {
+            return;
+        }
+        // 课程可以多次上架，本地消息表发出的消息以messageId去重
+        LocalDateTime now = LocalDateTime.now();
+        String eventId = messageId != null ? messageId : "course:up:" + courseId + ":" + toMillis(now);
+        metricService.record(eventId, now, Map.of(MetricType.COURSE_UP_NUM, 1L));
+    }
+
+    private static boolean isInvalid(UserEventDTO event) {
+        if (event == null || event.getUserId() == null) {
+            log.error("接收到MQ消息有误，用户数据为空");
+            return true;
+        }
+        return false;
+    }
+
+    private static LocalDateTime timeOrNow(LocalDateTime time) {
+        return time == null ? DateUtils.now() : time;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static long toLong(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,49 @@
+package com.tianji.data.service;
+
+import com.tianji.data.constants.DataTypeEnum;
+import com.tianji.data.utils.SeriesSummary;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 看板数据的时间序列，每种数据类型一个序列，保存每天的数据以及每周、每月预先计算好的汇总值
+ */
+public interface BoardSeriesService {
+
+    /**
+     * 写入多天的数据，同时更新这些日期所在周、月的汇总值
+     *
+     * @param type   数据类型
+     * @param values 日期和数据
+     */
+    void put(DataTypeEnum type, Map<LocalDate, Double> values);
+
+    /**
+     * 查询一段时间内每天的数据
+     *
+     * @param type  数据类型
+     * @param begin 开始日期，包含
+     * @param end   结束日期，包含
+     * @return 每天的数据，没有数据的日期为null
+     */
+    List<Double> values(DataTypeEnum type, LocalDate begin, LocalDate end);
+
+    /**
+     * 查询一段时间内数据的合计、最大值、最小值和平均值，完整的月和周直接使用预先计算的汇总值
+     *
+     * @param type  数据类型
+     * @param begin 开始日期，包含
+     * @param end   结束日期，包含
+     * @return 汇总值
+     */
+    SeriesSummary summarize(DataTypeEnum type, LocalDate begin, LocalDate end);
+
+    /**
+     * 从实时统计计算某一天的看板数据并写入时间序列，没有实时统计的数据类型不受影响
+     *
+     * @param day 日期
+     */
+    void refresh(LocalDate day);
+}
@@ -3,7 +3,10 @@ package com.tianji.data.service;
 
 import com.tianji.data.model.dto.BoardDataSetDTO;
 import com.tianji.data.model.vo.EchartsVO;
+import com.tianji.data.model.vo.UniqueCountVO;
+import com.tianji.data.model.vo.UniqueUserVO;
 
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -18,9 +21,11 @@ public interface BoardService {
      * 看板数据获取
      *
      * @param types 数据类型
-     * @return
+     * @param begin 开始日期，为空时为结束日期前的第14天
+     * @param end   结束日期，为空时为昨天
+     * @return 每天的数据，以及时间段内和上一个相同长度的时间段内的汇总值
      */
-    EchartsVO boardData(List<Integer> types);
+    EchartsVO boardData(List<Integer> types, LocalDate begin, LocalDate end);
 
     /**
      * 设置看板数据
@@ -28,4 +33,27 @@ public interface BoardService {
      * @param boardDataSetDTO
      */
     void setBoardData(BoardDataSetDTO boardDataSetDTO);
-}
\ No newline at end of file
+
+    /**
+     * 把旧版本的看板数据导入时间序列，已经有数据的日期不覆盖，重复导入不影响结果
+     *
+     * @param end 旧数据的最后一天，通常为旧数据写入时的昨天
+     * @return 导入的天数
+     */
+    int importLegacyData(LocalDate end);
+
+    /**
+     * 今日、本周、本月的活跃用户和访客数
+     *
+     * @return 活跃用户和访客数
+     */
+    UniqueUserVO uniqueUsers();
+
+    /**
+     * 今日、本周、本月学习过课程的学员数
+     *
+     * @param courseId 课程id
+     * @return 学员数
+     */
+    UniqueCountVO courseLearners(Long courseId);
+}
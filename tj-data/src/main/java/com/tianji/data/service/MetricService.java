@@ -0,0 +1,52 @@
+package com.tianji.data.service;
+
+import com.tianji.data.constants.MetricType;
+import com.tianji.data.constants.TimeGranularity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 实时统计，按分钟、小时、天累计各项指标
+ */
+public interface MetricService {
+
+    /**
+     * 统计一个事件，同一个事件重复统计时忽略
+     *
+     * @param eventId 事件的唯一标识
+     * @param time    事件发生的时间，决定计入哪个时间段
+     * @param deltas  指标和增量
+     * @return 是否统计，事件已经统计过时返回false
+     */
+    boolean record(String eventId, LocalDateTime time, Map<MetricType, Long> deltas);
+
+    /**
+     * 查询时间所在时间段的各项指标
+     *
+     * @param granularity 时间粒度
+     * @param time        时间
+     * @return 指标和累计值，没有数据的指标不包含在内
+     */
+    Map<MetricType, Long> getTotals(TimeGranularity granularity, LocalDateTime time);
+
+    /**
+     * 批量查询多个时间段的各项指标
+     *
+     * @param granularity 时间粒度
+     * @param times       时间
+     * @return 与时间一一对应的指标和累计值
+     */
+    List<Map<MetricType, Long>> getTotals(TimeGranularity granularity, List<LocalDateTime> times);
+
+    /**
+     * 把一段时间内的计数器汇总到数据库，已汇总的数据会被覆盖
+     *
+     * @param granularity 时间粒度
+     * @param from        开始时间，包含
+     * @param to          结束时间，包含
+     * @return 写入的汇总数据条数
+     */
+    int rollup(TimeGranularity granularity, LocalDateTime from, LocalDateTime to);
+}
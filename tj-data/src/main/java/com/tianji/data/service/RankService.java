@@ -0,0 +1,58 @@
+package com.tianji.data.service;
+
+import com.tianji.api.dto.trade.OrderBasicDTO;
+import com.tianji.data.constants.RankType;
+import com.tianji.data.constants.TimeWindow;
+import com.tianji.data.utils.RankItem;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 排行榜，根据订单事件增量更新每天的排行榜，周和月的排行榜由每天的排行榜合并而来
+ */
+public interface RankService {
+
+    /**
+     * 订单支付或报名成功，计入排行榜，同一个订单重复计入时忽略
+     *
+     * @param order 订单
+     */
+    void recordPay(OrderBasicDTO order);
+
+    /**
+     * 退款成功，从排行榜中扣除，同一个退款重复扣除时忽略
+     *
+     * @param order 退款的订单和课程
+     */
+    void recordRefund(OrderBasicDTO order);
+
+    /**
+     * 查询日期所在的天、周或月的排行榜前n名
+     *
+     * @param type   排行榜类型
+     * @param window 时间窗口
+     * @param date   日期
+     * @param n      数量
+     * @return 按分数从高到低排列的成员和分数
+     */
+    List<RankItem> top(RankType type, TimeWindow window, LocalDate date, int n);
+
+    /**
+     * 查询成员在日期所在的天、周或月的排行榜中的分数
+     *
+     * @param type    排行榜类型
+     * @param window  时间窗口
+     * @param date    日期
+     * @param members 成员
+     * @return 与成员一一对应的分数，没有分数时为0
+     */
+    List<Double> scores(RankType type, TimeWindow window, LocalDate date, List<String> members);
+
+    /**
+     * 日期是一周或一个月的最后一天时，把这一周或这个月的排行榜合并保存，天的排行榜过期后仍能查询
+     *
+     * @param date 日期
+     */
+    void merge(LocalDate date);
+}
@@ -1,6 +1,7 @@
 package com.tianji.data.service;
 
 
+import com.tianji.data.constants.TimeWindow;
 import com.tianji.data.model.dto.Top10DataSetDTO;
 import com.tianji.data.model.vo.Top10DataVO;
 
@@ -13,9 +14,10 @@ public interface Top10Service {
     /**
      * 获取top数据
      *
+     * @param window 时间窗口，今天、本周或本月
      * @return
      */
-    Top10DataVO getTop10Data();
+    Top10DataVO getTop10Data(TimeWindow window);
 
     /**
      * top 10数据设置
@@ -0,0 +1,64 @@
+package com.tianji.data.service;
+
+import com.tianji.data.constants.TimeGranularity;
+import com.tianji.data.constants.TimeWindow;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 去重用户统计，例如日活、访客数、课程学员数。
+ * <p>
+ * 统计对象见{@link com.tianji.data.constants.UniqueType}，课程学员的统计对象为
+ * {@link com.tianji.data.constants.UniqueType#courseLearner(Long)}。
+ * 活跃用户、访客按小时和天统计，课程学员按天统计，周和月的数据由每天的数据合并而来
+ * </p>
+ */
+public interface UniqueUserService {
+
+    /**
+     * 记录用户访问（登录）
+     *
+     * @param userId 用户id
+     * @param time   访问时间
+     */
+    void recordVisit(Long userId, LocalDateTime time);
+
+    /**
+     * 记录用户学习了课程
+     *
+     * @param userId   用户id
+     * @param courseId 课程id，可以为空
+     * @param time     学习时间
+     */
+    void recordLearning(Long userId, Long courseId, LocalDateTime time);
+
+    /**
+     * 批量查询多个小时或多天的去重用户数
+     *
+     * @param subject     统计对象
+     * @param granularity 时间粒度，小时或天
+     * @param times       时间
+     * @return 与时间一一对应的用户数
+     */
+    List<Long> count(String subject, TimeGranularity granularity, List<LocalDateTime> times);
+
+    /**
+     * 查询日期所在的天、周或月的去重用户数，只读取不合并，周和月的数据由{@link #merge}合并保存
+     *
+     * @param subject 统计对象
+     * @param window  时间窗口
+     * @param date    日期
+     * @return 用户数
+     */
+    long count(String subject, TimeWindow window, LocalDate date);
+
+    /**
+     * 把日期所在周、月的每天的数据合并保存，天的数据过期后仍能查询周和月的数据
+     *
+     * @param subject 统计对象
+     * @param date    日期
+     */
+    void merge(String subject, LocalDate date);
+}
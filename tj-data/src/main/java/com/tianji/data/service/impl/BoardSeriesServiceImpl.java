@@ -0,0 +1,326 @@
+package com.tianji.data.service.impl;
+
+import com.tianji.common.utils.CollUtils;
+import com.tianji.common.utils.NumberUtils;
+import com.tianji.data.constants.DataTypeEnum;
+import com.tianji.data.constants.MetricType;
+import com.tianji.data.constants.TimeGranularity;
+import com.tianji.data.constants.TimeWindow;
+import com.tianji.data.constants.UniqueType;
+import com.tianji.data.service.BoardSeriesService;
+import com.tianji.data.service.MetricService;
+import com.tianji.data.service.UniqueUserService;
+import com.tianji.data.utils.BoardSeriesStore;
+import com.tianji.data.utils.DataUtils;
+import com.tianji.data.utils.SeriesSummary;
+import lombok.RequiredArgsConstructor;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+import static com.tianji.data.constants.RedisConstants.KEY_BOARD_SERIES;
+import static com.tianji.data.constants.RedisConstants.LOCK_BOARD_SERIES;
+
+/**
+ * 基于环形缓冲区的看板时间序列：
+ * <ul>
+ *     <li>每个序列一个hash，每天的数据按日期循环写入固定数量的槽位，超过容量后覆盖最早的数据，内存占用固定</li>
+ *     <li>写入时重新计算所在周、月的合计、最大值、最小值和天数，同样保存在固定数量的槽位中</li>
+ *     <li>查询任意时间段的汇总值时，把时间段拆分为完整的月、完整的周和零散的天，一次读取这些槽位后合并，
+ *     不需要读取每一天的数据</li>
+ *     <li>每个槽位的值以日期（或周、月）编号开头，编号不一致说明槽位已被覆盖，视为没有数据</li>
+ * </ul>
+ * 定时任务和手动设置可能同时写入同一个序列，写入时读取、计算和写回期间持有该序列的分布式锁
+ */
+@Service
+@RequiredArgsConstructor
+public class BoardSeriesServiceImpl implements BoardSeriesService {
+
+    /**
+     * 每天数据的槽位数，最多保留的天数
+     */
+    static final int DAY_CAPACITY = 400;
+    /**
+     * 周汇总的槽位数
+     */
+    static final int WEEK_CAPACITY = 60;
+    /**
+     * 月汇总的槽位数
+     */
+    static final int MONTH_CAPACITY = 24;
+
+    private final BoardSeriesStore seriesStore;
+    private final RedissonClient redissonClient;
+    private final MetricService metricService;
+    private final UniqueUserService uniqueUserService;
+
+    @Override
+    public void put(DataTypeEnum type, Map<LocalDate, Double> values) {
+        if (CollUtils.isEmpty(values)) {
+            return;
+        }
+        RLock lock = redissonClient.getLock(LOCK_BOARD_SERIES + type.getType());
+        lock.lock();
+        try {
+            putSeries(KEY_BOARD_SERIES + type.getType(), values);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void putSeries(String key, Map<LocalDate, Double> values) {
+        // 1.受影响的周和月，以及它们包含的每一天
+        Set<LocalDate> weeks = new TreeSet<>();
+        Set<LocalDate> months = new TreeSet<>();
+        Set<LocalDate> days = new TreeSet<>();
+        for (LocalDate day : values.keySet()) {
+            LocalDate week = day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            LocalDate month = day.withDayOfMonth(1);
+            if (weeks.add(week)) {
+                addDays(days, week, week.plusDays(6));
+            }
+            if (months.add(month)) {
+                addDays(days, month, month.with(TemporalAdjusters.lastDayOfMonth()));
+            }
+        }
+        // 2.读取当前的数据，包括周、月汇总的槽位
+        List<String> fields = new ArrayList<>(days.size() + weeks.size() + months.size());
+        days.forEach(d -> fields.add(dayField(d)));
+        weeks.forEach(w -> fields.add(weekField(w)));
+        months.forEach(m -> fields.add(monthField(m)));
+        List<String> raws = seriesStore.getAll(key, fields);
+        Map<String, String> current = new HashMap<>(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            current.put(fields.get(i), raws.get(i));
+        }
+        Map<LocalDate, Double> dayValues = new HashMap<>(days.size());
+        Set<LocalDate> evicted = new HashSet<>();
+        for (LocalDate day : days) {
+            String raw = current.get(dayField(day));
+            if (idOf(raw) > day.toEpochDay()) {
+                evicted.add(day);
+            }
+            Double value = decodeDay(day.toEpochDay(), raw);
+            if (value != null) {
+                dayValues.put(day, value);
+            }
+        }
+        // 3.按日期顺序写入每天的数据，槽位冲突时保留更新的日期。
+        // 所在周、月有日期已被更新的日期覆盖时，汇总值无法重新计算，不再写入
+        Map<String, String> updates = new HashMap<>();
+        Set<LocalDate> changedWeeks = new TreeSet<>();
+        Set<LocalDate> changedMonths = new TreeSet<>();
+        new TreeMap<>(values).forEach((day, value) -> {
+            LocalDate week = day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            LocalDate month = day.withDayOfMonth(1);
+            if (value == null || containsAny(evicted, week, week.plusDays(6))
+                    || containsAny(evicted, month, month.with(TemporalAdjusters.lastDayOfMonth()))) {
+                return;
+            }
+            dayValues.put(day, value);
+            updates.put(dayField(day), day.toEpochDay() + ":" + value);
+            changedWeeks.add(week);
+            changedMonths.add(month);
+        });
+        // 4.重新计算周、月的汇总值
+        for (LocalDate week : changedWeeks) {
+            putSummary(updates, current, weekField(week), week.toEpochDay(), dayValues, week, week.plusDays(6));
+        }
+        for (LocalDate month : changedMonths) {
+            putSummary(updates, current, monthField(month), monthIndex(month), dayValues,
+                    month, month.with(TemporalAdjusters.lastDayOfMonth()));
+        }
+        seriesStore.putAll(key, updates);
+    }
+
+    @Override
+    public List<Double> values(DataTypeEnum type, LocalDate begin, LocalDate end) {
+        List<LocalDate> days = new ArrayList<>();
+        addDays(days, begin, end);
+        List<String> fields = new ArrayList<>(days.size());
+        days.forEach(d -> fields.add(dayField(d)));
+        List<String> raws = seriesStore.getAll(KEY_BOARD_SERIES + type.getType(), fields);
+        List<Double> values = new ArrayList<>(days.size());
+        for (int i = 0; i < days.size(); i++) {
+            values.add(decodeDay(days.get(i).toEpochDay(), raws.get(i)));
+        }
+        return values;
+    }
+
+    @Override
+    public SeriesSummary summarize(DataTypeEnum type, LocalDate begin, LocalDate end) {
+        // 1.拆分为完整的月、完整的周和零散的天
+        List<String> fields = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        List<Boolean> isDay = new ArrayList<>();
+        LocalDate d = begin;
+        while (!d.isAfter(end)) {
+            LocalDate monthEnd = d.with(TemporalAdjusters.lastDayOfMonth());
+            if (d.getDayOfMonth() == 1 && !monthEnd.isAfter(end)) {
+                fields.add(monthField(d));
+                ids.add(monthIndex(d));
+                isDay.add(false);
+                d = monthEnd.plusDays(1);
+            } else if (d.getDayOfWeek() == DayOfWeek.MONDAY && !d.plusDays(6).isAfter(end)
+                    && !crossesIntoWholeMonth(d, monthEnd, end)) {
+                fields.add(weekField(d));
+                ids.add(d.toEpochDay());
+                isDay.add(false);
+                d = d.plusDays(7);
+            } else {
+                fields.add(dayField(d));
+                ids.add(d.toEpochDay());
+                isDay.add(true);
+                d = d.plusDays(1);
+            }
+        }
+        // 2.一次读取后合并
+        List<String> raws = seriesStore.getAll(KEY_BOARD_SERIES + type.getType(), fields);
+        SeriesSummary summary = new SeriesSummary();
+        for (int i = 0; i < fields.size(); i++) {
+            if (isDay.get(i)) {
+                Double value = decodeDay(ids.get(i), raws.get(i));
+                summary.merge(value == null ? null : SeriesSummary.of(value));
+            } else {
+                summary.merge(decodeSummary(ids.get(i), raws.get(i)));
+            }
+        }
+        return summary;
+    }
+
+    @Override
+    public void refresh(LocalDate day) {
+        // 1.基于实时统计的数据类型
+        Map<MetricType, Long> totals = metricService.getTotals(TimeGranularity.DAY, day.atStartOfDay());
+        if (!totals.isEmpty()) {
+            for (DataTypeEnum type : DataTypeEnum.values()) {
+                Double value = liveValue(type, totals);
+                if (value != null) {
+                    put(type, Map.of(day, value));
+                }
+            }
+        }
+        // 2.基于去重统计的数据类型
+        putUniqueCount(DataTypeEnum.DAILY_LIVING_NUM, UniqueType.ACTIVE, day);
+        putUniqueCount(DataTypeEnum.VISITOR_NUM, UniqueType.VISITOR, day);
+    }
+
+    private void putUniqueCount(DataTypeEnum type, UniqueType uniqueType, LocalDate day) {
+        long count = uniqueUserService.count(uniqueType.getCode(), TimeWindow.DAY, day);
+        if (count > 0) {
+            put(type, Map.of(day, (double) count));
+        }
+    }
+
+    /**
+     * 从实时统计计算一天的数据
+     *
+     * @return 一天的数据，不是实时统计的数据类型返回null
+     */
+    private static Double liveValue(DataTypeEnum type, Map<MetricType, Long> totals) {
+        switch (type) {
+            case VISITS:
+                return value(totals, MetricType.VISITS);
+            case ORDER_AMOUNT:
+                return DataUtils.fenToYuan(totals.get(MetricType.ORDER_AMOUNT));
+            case ORDER_NUM:
+                return value(totals, MetricType.ORDER_NUM);
+            case STU_NEW_NUM:
+                return value(totals, MetricType.STU_NEW_NUM);
+            case CUSTOMER_UNIT_PRICE:
+                double orderNum = value(totals, MetricType.ORDER_NUM);
+                return orderNum == 0 ? 0.0
+                        : NumberUtils.setScale(DataUtils.fenToYuan(totals.get(MetricType.ORDER_AMOUNT)) / orderNum);
+            case PURCHASE_NUM:
+                return value(totals, MetricType.ENROLL_NUM);
+            default:
+                return null;
+        }
+    }
+
+    private static Double value(Map<MetricType, Long> totals, MetricType type) {
+        return NumberUtils.null2Zero(totals.get(type)).doubleValue();
+    }
+
+    private static void putSummary(Map<String, String> updates, Map<String, String> current, String field, long id,
+                                   Map<LocalDate, Double> dayValues, LocalDate begin, LocalDate end) {
+        if (idOf(current.get(field)) > id) {
+            return;
+        }
+        SeriesSummary summary = new SeriesSummary();
+        for (LocalDate d = begin; !d.isAfter(end); d = d.plusDays(1)) {
+            Double value = dayValues.get(d);
+            if (value != null) {
+                summary.merge(SeriesSummary.of(value));
+            }
+        }
+        if (summary.getCount() > 0) {
+            updates.put(field, id + ":" + summary.getSum() + ":" + summary.getMin() + ":"
+                    + summary.getMax() + ":" + summary.getCount());
+        }
+    }
+
+    /**
+     * 跨月的一周，下个月完整地在时间段内时不使用周汇总，以便下个月直接使用月汇总
+     */
+    private static boolean crossesIntoWholeMonth(LocalDate monday, LocalDate monthEnd, LocalDate end) {
+        return monday.plusDays(6).isAfter(monthEnd)
+                && !monthEnd.plusDays(1).with(TemporalAdjusters.lastDayOfMonth()).isAfter(end);
+    }
+
+    private static boolean containsAny(Set<LocalDate> days, LocalDate begin, LocalDate end) {
+        for (LocalDate d = begin; !d.isAfter(end); d = d.plusDays(1)) {
+            if (days.contains(d)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addDays(Collection<LocalDate> days, LocalDate begin, LocalDate end) {
+        for (LocalDate d = begin; !d.isAfter(end); d = d.plusDays(1)) {
+            days.add(d);
+        }
+    }
+
+    private static String dayField(LocalDate day) {
+        return "d:" + Math.floorMod(day.toEpochDay(), DAY_CAPACITY);
+    }
+
+    private static String weekField(LocalDate monday) {
+        return "w:" + Math.floorMod(Math.floorDiv(monday.toEpochDay(), 7), WEEK_CAPACITY);
+    }
+
+    private static String monthField(LocalDate month) {
+        return "M:" + Math.floorMod(monthIndex(month), MONTH_CAPACITY);
+    }
+
+    private static long monthIndex(LocalDate date) {
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+
+    private static long idOf(String raw) {
+        return raw == null ? Long.MIN_VALUE : Long.parseLong(raw.substring(0, raw.indexOf(':')));
+    }
+
+    private static Double decodeDay(long id, String raw) {
+        if (raw == null || idOf(raw) != id) {
+            return null;
+        }
+        return Double.valueOf(raw.substring(raw.indexOf(':') + 1));
+    }
+
+    private static SeriesSummary decodeSummary(long id, String raw) {
+        if (raw == null || idOf(raw) != id) {
+            return null;
+        }
+        String[] parts = raw.split(":");
+        return new SeriesSummary(Double.parseDouble(parts[1]), Double.valueOf(parts[2]),
+                Double.valueOf(parts[3]), Integer.parseInt(parts[4]));
+    }
+}
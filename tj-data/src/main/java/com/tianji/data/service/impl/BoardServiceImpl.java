@@ -1,23 +1,32 @@
 package com.tianji.data.service.impl;
 
+import com.tianji.common.exceptions.BadRequestException;
+import com.tianji.common.utils.CollUtils;
 import com.tianji.common.utils.JsonUtils;
 import com.tianji.common.utils.NumberUtils;
 import com.tianji.data.constants.DataTypeEnum;
+import com.tianji.data.constants.TimeWindow;
+import com.tianji.data.constants.UniqueType;
 import com.tianji.data.model.dto.BoardDataSetDTO;
 import com.tianji.data.model.vo.AxisVO;
 import com.tianji.data.model.vo.EchartsVO;
 import com.tianji.data.model.vo.SerierVO;
+import com.tianji.data.model.vo.UniqueCountVO;
+import com.tianji.data.model.vo.UniqueUserVO;
+import com.tianji.data.service.BoardSeriesService;
 import com.tianji.data.service.BoardService;
-import com.tianji.data.utils.DataUtils;
+import com.tianji.data.service.UniqueUserService;
+import com.tianji.data.utils.SeriesSummary;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
 
-import static com.tianji.data.constants.RedisConstants.KEY_BOARD_DATA;
+import static com.tianji.data.constants.RedisConstants.KEY_LEGACY_BOARD_DATA;
 
 /**
  * @ClassName BoardServiceImpl
@@ -28,64 +37,145 @@ import static com.tianji.data.constants.RedisConstants.KEY_BOARD_DATA;
 @Service
 public class BoardServiceImpl implements BoardService {
 
+    /**
+     * 默认查询的天数
+     */
+    private static final int DEFAULT_DAYS = 15;
+    /**
+     * 最多查询的天数
+     */
+    private static final int MAX_DAYS = 366;
+
+    @Autowired
+    private BoardSeriesService boardSeriesService;
+
+    @Autowired
+    private UniqueUserService uniqueUserService;
+
     @Autowired
     private StringRedisTemplate redisTemplate;
 
     @Override
-    public EchartsVO boardData(List<Integer> types) {
-        // 1.定义echarts变量
+    public EchartsVO boardData(List<Integer> types, LocalDate begin, LocalDate end) {
+        // 1.查询的时间段，默认为最近15天（不含今天），对比上一个相同长度的时间段
+        if (end == null) {
+            end = LocalDate.now().minusDays(1);
+        }
+        if (begin == null) {
+            begin = end.minusDays(DEFAULT_DAYS - 1);
+        }
+        long days = ChronoUnit.DAYS.between(begin, end) + 1;
+        if (days <= 0 || days > MAX_DAYS) {
+            throw new BadRequestException("查询时间段不正确，最多查询" + MAX_DAYS + "天");
+        }
+        LocalDate compareEnd = begin.minusDays(1);
+        LocalDate compareBegin = compareEnd.minusDays(days - 1);
+        // 2.定义echarts变量
         EchartsVO echartsVO = new EchartsVO();
         List<AxisVO> yAxis = new ArrayList<>();
         List<SerierVO> series = new ArrayList<>();
-        // 2.遍历数据类型types
-        // 2.1.数据版本
-        int version = DataUtils.getVersion(1);
-
+        // 3.遍历数据类型types
         for (Integer type : types) {
-            // 2.1.获取数据类型
+            // 3.1.获取数据类型
             DataTypeEnum dataTypeEnum = DataTypeEnum.get(type);
-            // 2.2.获取数据
-            Object originData = redisTemplate.opsForHash().get(KEY_BOARD_DATA + version, type.toString());
-            List<Double> data = originData == null
-                    ? new ArrayList<>()
-                    : JsonUtils.toList(originData.toString(), Double.class);
-            // 2.3.计算最大最小值
-            Double max = NumberUtils.null2Zero(NumberUtils.max(data));
-            Double min = NumberUtils.null2Zero(NumberUtils.min(data));
-            // 2.2.设置数据
+            // 3.2.获取每天的数据，没有数据的日期为0
+            List<Double> data = boardSeriesService.values(dataTypeEnum, begin, end).stream()
+                    .map(NumberUtils::null2Zero)
+                    .collect(Collectors.toList());
+            // 3.3.最大最小值、平均值和合计直接使用预先计算的汇总值
+            SeriesSummary summary = boardSeriesService.summarize(dataTypeEnum, begin, end);
+            SeriesSummary compare = boardSeriesService.summarize(dataTypeEnum, compareBegin, compareEnd);
+            Double max = NumberUtils.null2Zero(summary.getMax());
+            Double min = NumberUtils.null2Zero(summary.getMin());
+            // 3.4.设置数据
             series.add(new SerierVO(
                     dataTypeEnum.nameWithUnit(),
                     dataTypeEnum.getAxisType(),
                     data,
                     max + dataTypeEnum.getUnit(),
-                    min + dataTypeEnum.getUnit()
+                    min + dataTypeEnum.getUnit(),
+                    NumberUtils.setScale(summary.getSum()),
+                    NumberUtils.setScale(compare.getSum())
                     ));
-            // 2.3.设置y轴数据
+            // 3.5.设置y轴数据
             yAxis.add(AxisVO.builder()
                     .max(max)
                     .min(NumberUtils.setScale(min * 0.9))
                     .interval(((int)NumberUtils.div((max - min * 0.9), 10.0) + 1) * 1.0)
                     .average(
-                            NumberUtils.setScale(NumberUtils.null2Zero(NumberUtils.average(data))))
+                            NumberUtils.setScale(NumberUtils.null2Zero(summary.getAverage())))
                     .type(AxisVO.TYPE_VALUE)
                     .build());
         }
-        // 3.封装数据
-        // 3.1.x轴数据
-        echartsVO.setXAxis(Collections.singletonList(AxisVO.last15Day()));
-        // 3.2.y轴数据
+        // 4.封装数据
+        // 4.1.x轴数据
+        echartsVO.setXAxis(Collections.singletonList(AxisVO.days(begin, end)));
+        // 4.2.y轴数据
         echartsVO.setYAxis(yAxis);
-        // 3.3.series数据
+        // 4.3.series数据
         echartsVO.setSeries(series);
         return echartsVO;
     }
 
+    @Override
+    public UniqueUserVO uniqueUsers() {
+        return new UniqueUserVO(
+                uniqueCount(UniqueType.ACTIVE.getCode()),
+                uniqueCount(UniqueType.VISITOR.getCode()));
+    }
+
+    @Override
+    public UniqueCountVO courseLearners(Long courseId) {
+        return uniqueCount(UniqueType.courseLearner(courseId));
+    }
+
+    private UniqueCountVO uniqueCount(String subject) {
+        LocalDate today = LocalDate.now();
+        return new UniqueCountVO(
+                uniqueUserService.count(subject, TimeWindow.DAY, today),
+                uniqueUserService.count(subject, TimeWindow.WEEK, today),
+                uniqueUserService.count(subject, TimeWindow.MONTH, today));
+    }
+
     @Override
     public void setBoardData(BoardDataSetDTO boardDataSetDTO) {
-        String key = KEY_BOARD_DATA + boardDataSetDTO.getVersion();
-        redisTemplate.opsForHash()
-                .put(key,
-                        boardDataSetDTO.getType().toString(),
-                        JsonUtils.toJsonStr(boardDataSetDTO.getData()));
+        // 1.数据对应的日期，默认为截止到昨天的最近几天
+        List<Double> data = boardDataSetDTO.getData();
+        LocalDate begin = boardDataSetDTO.getBegin() != null
+                ? boardDataSetDTO.getBegin()
+                : LocalDate.now().minusDays(data.size());
+        Map<LocalDate, Double> values = new HashMap<>(data.size());
+        for (int i = 0; i < data.size(); i++) {
+            values.put(begin.plusDays(i), data.get(i));
+        }
+        // 2.写入时间序列，同时更新周、月的汇总值
+        boardSeriesService.put(DataTypeEnum.get(boardDataSetDTO.getType()), values);
+    }
+
+    @Override
+    public int importLegacyData(LocalDate end) {
+        int imported = 0;
+        // 1.旧版本每种数据类型一个字段，值为截止到end的最近几天的数据
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(KEY_LEGACY_BOARD_DATA);
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            DataTypeEnum type = DataTypeEnum.get(Integer.valueOf(entry.getKey().toString()));
+            List<Double> data = JsonUtils.toList(entry.getValue().toString(), Double.class);
+            if (type == DataTypeEnum.NULL || CollUtils.isEmpty(data)) {
+                continue;
+            }
+            // 2.已经有数据的日期不覆盖，例如定时任务写入的实时统计
+            LocalDate begin = end.minusDays(data.size() - 1);
+            List<Double> existing = boardSeriesService.values(type, begin, end);
+            Map<LocalDate, Double> values = new HashMap<>(data.size());
+            for (int i = 0; i < data.size(); i++) {
+                if (existing.get(i) == null && data.get(i) != null) {
+                    values.put(begin.plusDays(i), data.get(i));
+                }
+            }
+            // 3.写入时间序列，同时更新周、月的汇总值
+            boardSeriesService.put(type, values);
+            imported += values.size();
+        }
+        return imported;
     }
 }
@@ -0,0 +1,162 @@
+package com.tianji.data.service.impl;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.tianji.common.utils.CollUtils;
+import com.tianji.common.utils.StringUtils;
+import com.tianji.data.constants.MetricType;
+import com.tianji.data.constants.TimeGranularity;
+import com.tianji.data.mapper.MetricRollupMapper;
+import com.tianji.data.model.po.MetricRollup;
+import com.tianji.data.service.MetricService;
+import com.tianji.data.utils.MetricStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static com.tianji.data.constants.RedisConstants.KEY_METRIC_EVENT;
+import static com.tianji.data.constants.RedisConstants.KEY_METRIC_TEMPLATE;
+
+/**
+ * 实时统计：
+ * <ul>
+ *     <li>每个事件同时累加到所在分钟、小时、天的计数器，计数器保存在redis中，到期自动删除</li>
+ *     <li>事件的唯一标识保留一段时间，消息重复投递时不会重复统计</li>
+ *     <li>小时和天的计数器定时汇总到数据库，redis中已过期的历史数据从数据库查询</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MetricServiceImpl implements MetricService {
+
+    /**
+     * 事件标识的保留时间，MQ消息的重复投递一般发生在消费失败重试时，不会间隔太久
+     */
+    private static final Duration EVENT_TTL = Duration.ofDays(3);
+
+    private final MetricStore metricStore;
+    private final MetricRollupMapper rollupMapper;
+
+    @Override
+    public boolean record(String eventId, LocalDateTime time, Map<MetricType, Long> deltas) {
+        // 1.要累加的字段
+        Map<String, Long> fields = new HashMap<>(deltas.size());
+        deltas.forEach((type, delta) -> {
+            if (delta != null && delta != 0) {
+                fields.put(type.getField(), delta);
+            }
+        });
+        if (fields.isEmpty()) {
+            return false;
+        }
+        // 2.事件所在的各个时间段的计数器
+        Map<String, Duration> counters = new LinkedHashMap<>(TimeGranularity.values().length);
+        for (TimeGranularity g : TimeGranularity.values()) {
+            counters.put(counterKey(g, time), g.getRetention());
+        }
+        // 3.累加
+        boolean recorded = metricStore.incrementOnce(KEY_METRIC_EVENT + eventId, EVENT_TTL, counters, fields);
+        if (!recorded) {
+            log.debug("事件{}已经统计过，忽略", eventId);
+        }
+        return recorded;
+    }
+
+    @Override
+    public Map<MetricType, Long> getTotals(TimeGranularity granularity, LocalDateTime time) {
+        return getTotals(granularity, CollUtils.singletonList(time)).get(0);
+    }
+
+    @Override
+    public List<Map<MetricType, Long>> getTotals(TimeGranularity granularity, List<LocalDateTime> times) {
+        if (CollUtils.isEmpty(times)) {
+            return CollUtils.emptyList();
+        }
+        // 1.查询redis中的计数器
+        List<String> keys = new ArrayList<>(times.size());
+        for (LocalDateTime time : times) {
+            keys.add(counterKey(granularity, time));
+        }
+        List<Map<String, Long>> values = metricStore.getAll(keys);
+        // 2.转换为指标
+        List<Map<MetricType, Long>> result = new ArrayList<>(times.size());
+        Map<LocalDateTime, Integer> expired = new HashMap<>();
+        LocalDateTime retainedFrom = LocalDateTime.now().minus(granularity.getRetention());
+        for (int i = 0; i < times.size(); i++) {
+            Map<String, Long> fields = values.get(i);
+            result.add(toMetrics(fields));
+            LocalDateTime bucket = granularity.truncate(times.get(i));
+            if (fields.isEmpty() && bucket.isBefore(retainedFrom)) {
+                // 计数器可能已经过期，需要查询数据库
+                expired.put(bucket, i);
+            }
+        }
+        // 3.redis中已过期的时间段，查询数据库中的汇总数据
+        if (!expired.isEmpty()) {
+            List<MetricRollup> rows = rollupMapper.selectList(Wrappers.<MetricRollup>lambdaQuery()
+                    .eq(MetricRollup::getGranularity, granularity.getCode())
+                    .in(MetricRollup::getBucketTime, expired.keySet()));
+            for (MetricRollup row : rows) {
+                MetricType type = MetricType.ofField(row.getMetric());
+                Integer index = expired.get(row.getBucketTime());
+                if (type != null && index != null) {
+                    result.get(index).put(type, row.getMetricValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int rollup(TimeGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        // 1.时间段内的全部计数器
+        List<LocalDateTime> buckets = new ArrayList<>();
+        for (LocalDateTime b = granularity.truncate(from); !b.isAfter(to); b = granularity.next(b)) {
+            buckets.add(b);
+        }
+        if (buckets.isEmpty()) {
+            return 0;
+        }
+        List<String> keys = new ArrayList<>(buckets.size());
+        for (LocalDateTime bucket : buckets) {
+            keys.add(counterKey(granularity, bucket));
+        }
+        List<Map<String, Long>> values = metricStore.getAll(keys);
+        // 2.转换为汇总数据
+        List<MetricRollup> rows = new ArrayList<>();
+        for (int i = 0; i < buckets.size(); i++) {
+            for (Map.Entry<MetricType, Long> e : toMetrics(values.get(i)).entrySet()) {
+                MetricRollup row = new MetricRollup();
+                row.setMetric(e.getKey().getField());
+                row.setGranularity(granularity.getCode());
+                row.setBucketTime(buckets.get(i));
+                row.setMetricValue(e.getValue());
+                rows.add(row);
+            }
+        }
+        // 3.写入数据库
+        if (!rows.isEmpty()) {
+            rollupMapper.upsertBatch(rows);
+        }
+        return rows.size();
+    }
+
+    private static Map<MetricType, Long> toMetrics(Map<String, Long> fields) {
+        Map<MetricType, Long> metrics = new EnumMap<>(MetricType.class);
+        fields.forEach((field, value) -> {
+            MetricType type = MetricType.ofField(field);
+            if (type != null) {
+                metrics.put(type, value);
+            }
+        });
+        return metrics;
+    }
+
+    private static String counterKey(TimeGranularity granularity, LocalDateTime time) {
+        return StringUtils.format(KEY_METRIC_TEMPLATE, granularity.getCode(), granularity.format(time));
+    }
+}
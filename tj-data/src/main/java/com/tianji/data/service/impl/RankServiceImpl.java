@@ -0,0 +1,162 @@
+package com.tianji.data.service.impl;
+
+import com.tianji.api.cache.CourseCache;
+import com.tianji.api.dto.course.CourseSimpleInfoDTO;
+import com.tianji.api.dto.trade.OrderBasicDTO;
+import com.tianji.common.utils.CollUtils;
+import com.tianji.common.utils.DateUtils;
+import com.tianji.common.utils.StringUtils;
+import com.tianji.data.constants.RankType;
+import com.tianji.data.constants.TimeWindow;
+import com.tianji.data.service.RankService;
+import com.tianji.data.utils.RankItem;
+import com.tianji.data.utils.RankStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static com.tianji.data.constants.RedisConstants.KEY_RANK_EVENT;
+import static com.tianji.data.constants.RedisConstants.KEY_RANK_TEMPLATE;
+
+/**
+ * 基于sorted set的排行榜：
+ * <ul>
+ *     <li>订单事件到达时用ZINCRBY增量更新当天的排行榜，查询当天排行时直接ZREVRANGE</li>
+ *     <li>周和月的排行榜用ZUNIONSTORE合并当期每天的排行榜，进行中的时间段短暂缓存，已结束的时间段长期保存</li>
+ *     <li>查询的代价为O(log n + 10)，不再需要反序列化和排序全部数据</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RankServiceImpl implements RankService {
+
+    /**
+     * 事件标识的保留时间
+     */
+    private static final Duration EVENT_TTL = Duration.ofDays(3);
+    /**
+     * 进行中的周、月排行榜的缓存时间，期间新增的数据不可见
+     */
+    private static final Duration CURRENT_WINDOW_TTL = Duration.ofMinutes(1);
+
+    private final RankStore rankStore;
+    private final CourseCache courseCache;
+
+    @Override
+    public void recordPay(OrderBasicDTO order) {
+        record("order:pay:" + order.getOrderId(), order, 1);
+    }
+
+    @Override
+    public void recordRefund(OrderBasicDTO order) {
+        record("order:refund:" + order.getOrderId() + ":" + order.getCourseIds().get(0), order, -1);
+    }
+
+    private void record(String eventId, OrderBasicDTO order, int sign) {
+        LocalDate day = (order.getFinishTime() == null ? DateUtils.now() : order.getFinishTime()).toLocalDate();
+        Map<String, Map<String, Double>> deltas = new HashMap<>(RankType.values().length);
+        // 1.学员数，包括免费报名
+        Map<String, Double> enrolls = new HashMap<>();
+        for (Long courseId : CollUtils.emptyIfNull(order.getCourseIds())) {
+            enrolls.merge(courseId.toString(), (double) sign, Double::sum);
+        }
+        putIfNotEmpty(deltas, RankType.COURSE_ENROLL, day, enrolls);
+        // 2.付费购买的次数和金额，免费报名没有金额
+        Map<Long, Integer> amounts = order.getCourseAmounts();
+        if (CollUtils.isNotEmpty(amounts)) {
+            Map<String, Double> sales = new HashMap<>(amounts.size());
+            Map<String, Double> revenues = new HashMap<>(amounts.size());
+            Map<String, Double> categories = new HashMap<>(amounts.size());
+            Map<Long, CourseSimpleInfoDTO> courses = courseCache.getSimpleInfoMap(amounts.keySet());
+            amounts.forEach((courseId, amount) -> {
+                sales.put(courseId.toString(), (double) sign);
+                if (amount == null || amount == 0) {
+                    return;
+                }
+                revenues.put(courseId.toString(), (double) sign * amount);
+                CourseSimpleInfoDTO course = courses.get(courseId);
+                if (course != null && course.getFirstCateId() != null) {
+                    categories.merge(course.getFirstCateId().toString(), (double) sign * amount, Double::sum);
+                }
+            });
+            putIfNotEmpty(deltas, RankType.COURSE_SALES, day, sales);
+            putIfNotEmpty(deltas, RankType.COURSE_REVENUE, day, revenues);
+            putIfNotEmpty(deltas, RankType.CATEGORY_REVENUE, day, categories);
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        // 3.累加
+        boolean recorded = rankStore.incrementOnce(KEY_RANK_EVENT + eventId, EVENT_TTL, TimeWindow.DAY.getRetention(), deltas);
+        if (!recorded) {
+            log.debug("事件{}已经计入排行榜，忽略", eventId);
+        }
+    }
+
+    @Override
+    public List<RankItem> top(RankType type, TimeWindow window, LocalDate date, int n) {
+        return rankStore.top(prepare(type, window, date), n);
+    }
+
+    @Override
+    public List<Double> scores(RankType type, TimeWindow window, LocalDate date, List<String> members) {
+        List<Double> scores = rankStore.scores(prepare(type, window, date), members);
+        List<Double> result = new ArrayList<>(scores.size());
+        for (Double score : scores) {
+            result.add(score == null ? 0 : score);
+        }
+        return result;
+    }
+
+    @Override
+    public void merge(LocalDate date) {
+        for (TimeWindow window : TimeWindow.values()) {
+            if (window == TimeWindow.DAY || !window.end(date).equals(date)) {
+                continue;
+            }
+            for (RankType type : RankType.values()) {
+                rankStore.union(key(type, window, date), window.getRetention(), dayKeys(type, window, date), true);
+            }
+        }
+    }
+
+    /**
+     * 准备好日期所在时间段的排行榜，返回它的key
+     */
+    private String prepare(RankType type, TimeWindow window, LocalDate date) {
+        String key = key(type, window, date);
+        if (window == TimeWindow.DAY) {
+            return key;
+        }
+        // 已结束的时间段长期保存，进行中的时间段短暂缓存，缓存过期后重新合并
+        boolean finished = window.end(date).isBefore(LocalDate.now());
+        rankStore.union(key, finished ? window.getRetention() : CURRENT_WINDOW_TTL, dayKeys(type, window, date), false);
+        return key;
+    }
+
+    private static List<String> dayKeys(RankType type, TimeWindow window, LocalDate date) {
+        LocalDate end = window.end(date);
+        List<String> keys = new ArrayList<>(31);
+        for (LocalDate day = window.begin(date); !day.isAfter(end); day = day.plusDays(1)) {
+            keys.add(key(type, TimeWindow.DAY, day));
+        }
+        return keys;
+    }
+
+    private static void putIfNotEmpty(Map<String, Map<String, Double>> deltas,
+                                      RankType type, LocalDate day, Map<String, Double> members) {
+        if (!members.isEmpty()) {
+            deltas.put(key(type, TimeWindow.DAY, day), members);
+        }
+    }
+
+    private static String key(RankType type, TimeWindow window, LocalDate date) {
+        return StringUtils.format(KEY_RANK_TEMPLATE, type.getCode(), window.getCode(), window.format(date));
+    }
+}
@@ -2,16 +2,23 @@ package com.tianji.data.service.impl;
 
 import com.tianji.common.utils.BeanUtils;
 import com.tianji.common.utils.JsonUtils;
+import com.tianji.common.utils.NumberUtils;
+import com.tianji.data.constants.MetricType;
 import com.tianji.data.constants.RedisConstants;
+import com.tianji.data.constants.TimeGranularity;
 import com.tianji.data.model.dto.TodayDataDTO;
 import com.tianji.data.model.po.TodayDataInfo;
 import com.tianji.data.model.vo.TodayDataVO;
+import com.tianji.data.service.MetricService;
 import com.tianji.data.service.TodayDataService;
 import com.tianji.data.utils.DataUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.Map;
+
 /**
  * @ClassName TodayDataServiceImpl
  * @Author wusongsong
@@ -24,10 +31,29 @@ public class TodayDataServiceImpl implements TodayDataService {
     @Autowired
     private StringRedisTemplate redisTemplate;
 
+    @Autowired
+    private MetricService metricService;
+
     @Override
     public TodayDataVO get() {
+        // 1.查询今日的实时统计
+        Map<MetricType, Long> totals = metricService.getTotals(TimeGranularity.DAY, LocalDateTime.now());
+        if (totals.isEmpty()) {
+            // 1.1.今日还没有实时统计，返回手动设置的数据
+            return getPresetData();
+        }
+        // 2.数据组装，访问量单位万次，金额单位万元
+        TodayDataVO vo = new TodayDataVO();
+        vo.setVisits(DataUtils.toTenThousand(totals.get(MetricType.VISITS)));
+        vo.setOrderAmount(DataUtils.toTenThousand(DataUtils.fenToYuan(totals.get(MetricType.ORDER_AMOUNT))));
+        vo.setOrderNum(NumberUtils.null2Zero(totals.get(MetricType.ORDER_NUM)).intValue());
+        vo.setStuNewNum(NumberUtils.null2Zero(totals.get(MetricType.STU_NEW_NUM)).intValue());
+        return vo;
+    }
+
+    private TodayDataVO getPresetData() {
         // 1.数据redis存储key
-        String key = RedisConstants.KEY_TODAY + DataUtils.getVersion(1);
+        String key = RedisConstants.KEY_TODAY + DataUtils.PRESET_VERSION;
         // 2.获取数据
         Object originData = redisTemplate.opsForValue().get(key);
         // 2.1.数据判空
@@ -1,19 +1,28 @@
 package com.tianji.data.service.impl;
 
+import com.tianji.api.cache.CategoryCache;
+import com.tianji.api.cache.CourseCache;
+import com.tianji.api.dto.course.CategoryBasicDTO;
+import com.tianji.api.dto.course.CourseSimpleInfoDTO;
 import com.tianji.common.utils.BeanUtils;
 import com.tianji.common.utils.JsonUtils;
+import com.tianji.data.constants.RankType;
 import com.tianji.data.constants.RedisConstants;
+import com.tianji.data.constants.TimeWindow;
 import com.tianji.data.model.dto.Top10DataSetDTO;
 import com.tianji.data.model.po.CourseInfo;
+import com.tianji.data.model.vo.CategoryRankVO;
 import com.tianji.data.model.vo.Top10DataVO;
+import com.tianji.data.service.RankService;
 import com.tianji.data.service.Top10Service;
 import com.tianji.data.utils.DataUtils;
+import com.tianji.data.utils.RankItem;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.Comparator;
-import java.util.List;
+import java.time.LocalDate;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -25,13 +34,105 @@ import java.util.stream.Collectors;
 @Service
 public class Top10ServiceImpl implements Top10Service {
 
+    private static final int TOP_N = 10;
+
     @Autowired
     private StringRedisTemplate redisTemplate;
 
+    @Autowired
+    private RankService rankService;
+
+    @Autowired
+    private CourseCache courseCache;
+
+    @Autowired
+    private CategoryCache categoryCache;
+
     @Override
-    public Top10DataVO getTop10Data() {
+    public Top10DataVO getTop10Data(TimeWindow window) {
+        // 1.查询排行榜，直接读取sorted set的前10名
+        LocalDate today = LocalDate.now();
+        List<RankItem> hot = rankService.top(RankType.COURSE_ENROLL, window, today, TOP_N);
+        List<RankItem> hotSales = rankService.top(RankType.COURSE_REVENUE, window, today, TOP_N);
+        if (hot.isEmpty() && hotSales.isEmpty()) {
+            // 1.1.还没有任何订单事件，返回手动设置的数据
+            return getPresetData();
+        }
+        List<RankItem> bestSellers = rankService.top(RankType.COURSE_SALES, window, today, TOP_N);
+        List<RankItem> categories = rankService.top(RankType.CATEGORY_REVENUE, window, today, TOP_N);
+        // 2.上榜课程的各项数据
+        List<Long> courseIds = new ArrayList<>();
+        for (List<RankItem> items : List.of(hot, hotSales, bestSellers)) {
+            for (RankItem item : items) {
+                Long courseId = Long.valueOf(item.getMember());
+                if (!courseIds.contains(courseId)) {
+                    courseIds.add(courseId);
+                }
+            }
+        }
+        Map<Long, CourseInfo> courseInfos = queryCourseInfos(courseIds, window, today);
+        // 3.数据组装
+        Top10DataVO top10DataVO = new Top10DataVO();
+        top10DataVO.setHot(toCourseInfos(hot, courseInfos));
+        top10DataVO.setHotSales(toCourseInfos(hotSales, courseInfos));
+        top10DataVO.setBestSellers(toCourseInfos(bestSellers, courseInfos));
+        top10DataVO.setHotCategories(toCategoryRanks(categories));
+        return top10DataVO;
+    }
+
+    private Map<Long, CourseInfo> queryCourseInfos(List<Long> courseIds, TimeWindow window, LocalDate today) {
+        // 1.课程的名称和分类
+        Map<Long, CourseSimpleInfoDTO> courses = courseCache.getSimpleInfoMap(courseIds);
+        // 2.课程在各个排行榜中的分数
+        List<String> members = courseIds.stream().map(String::valueOf).collect(Collectors.toList());
+        List<Double> enrolls = rankService.scores(RankType.COURSE_ENROLL, window, today, members);
+        List<Double> revenues = rankService.scores(RankType.COURSE_REVENUE, window, today, members);
+        List<Double> sales = rankService.scores(RankType.COURSE_SALES, window, today, members);
+        // 3.组装
+        Map<Long, CourseInfo> map = new HashMap<>(courseIds.size());
+        for (int i = 0; i < courseIds.size(); i++) {
+            CourseSimpleInfoDTO course = courses.get(courseIds.get(i));
+            if (course == null) {
+                // 课程已删除
+                continue;
+            }
+            CourseInfo info = new CourseInfo();
+            info.setName(course.getName());
+            info.setCategory(categoryCache.getCategoryNames(course.getCategoryIds()));
+            info.setNewStuNum(enrolls.get(i).intValue());
+            info.setOrderAmount(DataUtils.fenToYuan(revenues.get(i).longValue()));
+            info.setSalesNum(sales.get(i).intValue());
+            map.put(courseIds.get(i), info);
+        }
+        return map;
+    }
+
+    private static List<CourseInfo> toCourseInfos(List<RankItem> items, Map<Long, CourseInfo> courseInfos) {
+        List<CourseInfo> list = new ArrayList<>(items.size());
+        for (RankItem item : items) {
+            CourseInfo info = courseInfos.get(Long.valueOf(item.getMember()));
+            if (info != null) {
+                list.add(info);
+            }
+        }
+        return list;
+    }
+
+    private List<CategoryRankVO> toCategoryRanks(List<RankItem> items) {
+        Map<Long, CategoryBasicDTO> categoryMap = categoryCache.getCategoryMap();
+        List<CategoryRankVO> list = new ArrayList<>(items.size());
+        for (RankItem item : items) {
+            CategoryBasicDTO category = categoryMap.get(Long.valueOf(item.getMember()));
+            if (category != null) {
+                list.add(new CategoryRankVO(category.getName(), DataUtils.fenToYuan(item.getScore().longValue())));
+            }
+        }
+        return list;
+    }
+
+    private Top10DataVO getPresetData() {
         // 1.数据redis存储key
-        String key = RedisConstants.KEY_TOP10 + DataUtils.getVersion(1);
+        String key = RedisConstants.KEY_TOP10 + DataUtils.PRESET_VERSION;
         // 2.获取数据
         Object originData = redisTemplate.opsForValue().get(key);
         // 2.1.数据判空
@@ -0,0 +1,121 @@
+package com.tianji.data.service.impl;
+
+import com.tianji.common.utils.CollUtils;
+import com.tianji.common.utils.StringUtils;
+import com.tianji.data.constants.TimeGranularity;
+import com.tianji.data.constants.TimeWindow;
+import com.tianji.data.constants.UniqueType;
+import com.tianji.data.service.UniqueUserService;
+import com.tianji.data.utils.UniqueCounter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.tianji.data.constants.RedisConstants.KEY_UV_TEMPLATE;
+
+/**
+ * 基于HyperLogLog的去重用户统计：
+ * <ul>
+ *     <li>每个统计对象每小时、每天一个HyperLogLog，用户id作为元素添加进去，重复添加不影响结果，因此不需要对消息去重</li>
+ *     <li>周和月的数据由定时任务通过PFMERGE合并当期每天的数据得到，合并后单独保存，保留时间比天的数据更长</li>
+ *     <li>查询周和月时用一次多key的PFCOUNT统计已合并的数据与当期每天的数据的并集，只读不写，尚未合并的天也能统计到</li>
+ *     <li>每个HyperLogLog最多占用约12KB内存，与用户数无关，标准误差约0.81%</li>
+ * </ul>
+ */
+@Service
+@RequiredArgsConstructor
+public class UniqueUserServiceImpl implements UniqueUserService {
+
+    private final UniqueCounter uniqueCounter;
+
+    @Override
+    public void recordVisit(Long userId, LocalDateTime time) {
+        Map<String, Duration> counters = new HashMap<>(4);
+        addHourAndDay(counters, UniqueType.VISITOR.getCode(), time);
+        addHourAndDay(counters, UniqueType.ACTIVE.getCode(), time);
+        uniqueCounter.add(userId.toString(), counters);
+    }
+
+    @Override
+    public void recordLearning(Long userId, Long courseId, LocalDateTime time) {
+        Map<String, Duration> counters = new HashMap<>(3);
+        addHourAndDay(counters, UniqueType.ACTIVE.getCode(), time);
+        if (courseId != null) {
+            counters.put(dayKey(UniqueType.courseLearner(courseId), time.toLocalDate()),
+                    TimeWindow.DAY.getRetention());
+        }
+        uniqueCounter.add(userId.toString(), counters);
+    }
+
+    @Override
+    public List<Long> count(String subject, TimeGranularity granularity, List<LocalDateTime> times) {
+        if (CollUtils.isEmpty(times)) {
+            return CollUtils.emptyList();
+        }
+        List<List<String>> keys = new ArrayList<>(times.size());
+        for (LocalDateTime time : times) {
+            keys.add(CollUtils.singletonList(
+                    StringUtils.format(KEY_UV_TEMPLATE, subject, granularity.getCode(), granularity.format(time))));
+        }
+        return uniqueCounter.countAll(keys);
+    }
+
+    @Override
+    public long count(String subject, TimeWindow window, LocalDate date) {
+        if (window == TimeWindow.DAY) {
+            return uniqueCounter.countAll(CollUtils.singletonList(
+                    CollUtils.singletonList(dayKey(subject, date)))).get(0);
+        }
+        // 已合并的数据与当期每一天的数据取并集，天的数据过期后仍有合并的数据
+        List<String> keys = new ArrayList<>(32);
+        keys.add(windowKey(subject, window, date));
+        keys.addAll(dayKeys(subject, window, date));
+        return uniqueCounter.countAll(CollUtils.singletonList(keys)).get(0);
+    }
+
+    @Override
+    public void merge(String subject, LocalDate date) {
+        mergeWindow(subject, TimeWindow.WEEK, date);
+        mergeWindow(subject, TimeWindow.MONTH, date);
+    }
+
+    private void mergeWindow(String subject, TimeWindow window, LocalDate date) {
+        // 合并到当期的数据中，天的数据已过期时，当期已合并的数据仍然保留
+        uniqueCounter.mergeAndCount(windowKey(subject, window, date), window.getRetention(),
+                dayKeys(subject, window, date));
+    }
+
+    /**
+     * 当期到今天为止的每一天
+     */
+    private static List<String> dayKeys(String subject, TimeWindow window, LocalDate date) {
+        LocalDate today = LocalDate.now();
+        LocalDate end = window.end(date).isAfter(today) ? today : window.end(date);
+        List<String> days = new ArrayList<>(31);
+        for (LocalDate day = window.begin(date); !day.isAfter(end); day = day.plusDays(1)) {
+            days.add(dayKey(subject, day));
+        }
+        return days;
+    }
+
+    private static String windowKey(String subject, TimeWindow window, LocalDate date) {
+        return StringUtils.format(KEY_UV_TEMPLATE, subject, window.getCode(), window.format(date));
+    }
+
+    private static void addHourAndDay(Map<String, Duration> counters, String subject, LocalDateTime time) {
+        counters.put(StringUtils.format(KEY_UV_TEMPLATE, subject, TimeGranularity.HOUR.getCode(),
+                TimeGranularity.HOUR.format(time)), TimeGranularity.HOUR.getRetention());
+        counters.put(dayKey(subject, time.toLocalDate()), TimeWindow.DAY.getRetention());
+    }
+
+    private static String dayKey(String subject, LocalDate date) {
+        return StringUtils.format(KEY_UV_TEMPLATE, subject, TimeWindow.DAY.getCode(), TimeWindow.DAY.format(date));
+    }
+}
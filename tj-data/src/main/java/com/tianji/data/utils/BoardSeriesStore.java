@@ -0,0 +1,27 @@
+package com.tianji.data.utils;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 看板时间序列的存储，每个序列一个hash，数据的布局由{@link com.tianji.data.service.BoardSeriesService}决定
+ */
+public interface BoardSeriesStore {
+
+    /**
+     * 批量读取字段
+     *
+     * @param key    序列的key
+     * @param fields 字段
+     * @return 与字段一一对应的值，不存在时为null
+     */
+    List<String> getAll(String key, List<String> fields);
+
+    /**
+     * 批量写入字段
+     *
+     * @param key    序列的key
+     * @param values 字段和值
+     */
+    void putAll(String key, Map<String, String> values);
+}
@@ -1,6 +1,6 @@
 package com.tianji.data.utils;
 
-import com.tianji.common.utils.DateUtils;
+import com.tianji.common.utils.NumberUtils;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -12,7 +12,22 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class DataUtils {
 
-    public static int getVersion(int totalVersion) {
-        return DateUtils.now().getDayOfMonth() % totalVersion;
+    /**
+     * 手动设置的今日数据和Top10数据的版本，没有实时统计时使用
+     */
+    public static final int PRESET_VERSION = 0;
+
+    /**
+     * 金额单位分转换为元
+     */
+    public static Double fenToYuan(Long fen) {
+        return NumberUtils.setScale(NumberUtils.null2Zero(fen) / 100.0);
+    }
+
+    /**
+     * 数值转换为万为单位
+     */
+    public static Double toTenThousand(Number number) {
+        return NumberUtils.setScale(number == null ? 0 : number.doubleValue() / 10000.0);
     }
 }
@@ -0,0 +1,30 @@
+package com.tianji.data.utils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 实时统计计数器的存储
+ */
+public interface MetricStore {
+
+    /**
+     * 事件没有统计过时，给每个计数器累加相同的增量，并记录该事件已统计。整个操作是原子的
+     *
+     * @param eventKey 事件的唯一标识
+     * @param eventTtl 事件标识的保留时间，超过该时间后重复投递的事件无法去重
+     * @param counters 计数器的key和保留时间
+     * @param deltas   字段和增量
+     * @return 是否累加，事件已经统计过时返回false
+     */
+    boolean incrementOnce(String eventKey, Duration eventTtl, Map<String, Duration> counters, Map<String, Long> deltas);
+
+    /**
+     * 批量查询计数器
+     *
+     * @param keys 计数器的key
+     * @return 与key一一对应的字段和值，计数器不存在时为空map
+     */
+    List<Map<String, Long>> getAll(List<String> keys);
+}
@@ -0,0 +1,22 @@
+package com.tianji.data.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 排行榜的一项
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RankItem {
+    /**
+     * 成员，例如课程id
+     */
+    private String member;
+    /**
+     * 分数
+     */
+    private Double score;
+}
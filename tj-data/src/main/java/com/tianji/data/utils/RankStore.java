@@ -0,0 +1,50 @@
+package com.tianji.data.utils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 排行榜的存储，基于sorted set
+ */
+public interface RankStore {
+
+    /**
+     * 事件没有计入过时，给多个排行榜的成员累加分数，并记录该事件已计入。整个操作是原子的
+     *
+     * @param eventKey 事件的唯一标识
+     * @param eventTtl 事件标识的保留时间
+     * @param ttl      排行榜首次创建时设置的保留时间
+     * @param deltas   排行榜的key，以及其中成员的分数增量
+     * @return 是否累加，事件已经计入过时返回false
+     */
+    boolean incrementOnce(String eventKey, Duration eventTtl, Duration ttl, Map<String, Map<String, Double>> deltas);
+
+    /**
+     * 把多个排行榜的分数相加，保存到目标排行榜
+     *
+     * @param target  目标排行榜
+     * @param ttl     目标排行榜的保留时间
+     * @param sources 来源排行榜
+     * @param refresh 目标排行榜已存在时是否重新合并，为false时已存在则不做任何修改
+     */
+    void union(String target, Duration ttl, List<String> sources, boolean refresh);
+
+    /**
+     * 查询分数最高的前n项
+     *
+     * @param key 排行榜
+     * @param n   数量
+     * @return 按分数从高到低排列的成员和分数
+     */
+    List<RankItem> top(String key, int n);
+
+    /**
+     * 批量查询成员的分数
+     *
+     * @param key     排行榜
+     * @param members 成员
+     * @return 与成员一一对应的分数，成员不存在时为null
+     */
+    List<Double> scores(String key, List<String> members);
+}
@@ -0,0 +1,39 @@
+package com.tianji.data.utils;
+
+import com.tianji.common.utils.CollUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于redis hash的看板时间序列存储，一次HMGET或HMSET读写多个字段
+ */
+@Component
+@RequiredArgsConstructor
+public class RedisBoardSeriesStore implements BoardSeriesStore {
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public List<String> getAll(String key, List<String> fields) {
+        if (CollUtils.isEmpty(fields)) {
+            return CollUtils.emptyList();
+        }
+        HashOperations<String, String, String> ops = redisTemplate.opsForHash();
+        List<String> values = ops.multiGet(key, fields);
+        return values == null ? new ArrayList<>() : values;
+    }
+
+    @Override
+    public void putAll(String key, Map<String, String> values) {
+        if (CollUtils.isEmpty(values)) {
+            return;
+        }
+        redisTemplate.opsForHash().putAll(key, values);
+    }
+}
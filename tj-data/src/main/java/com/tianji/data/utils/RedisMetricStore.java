@@ -0,0 +1,76 @@
+package com.tianji.data.utils;
+
+import com.tianji.common.utils.CollUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * 基于redis hash的计数器，每个计数器一个hash，field为指标，value为累计值
+ */
+@Component
+@RequiredArgsConstructor
+public class RedisMetricStore implements MetricStore {
+
+    /**
+     * KEYS[1]为事件标识，KEYS[2..n]为计数器；ARGV[1]为事件标识的保留时间，ARGV[2..n]为对应计数器的保留时间，
+     * 之后依次为字段和增量。事件标识已存在时不做任何修改；计数器首次创建时设置过期时间
+     */
+    private static final RedisScript<Long> INCR_ONCE_SCRIPT = new DefaultRedisScript<>(
+            "if not redis.call('set', KEYS[1], '1', 'NX', 'EX', ARGV[1]) then return 0 end " +
+            "for i = 2, #KEYS do " +
+            "  for j = #KEYS + 1, #ARGV, 2 do redis.call('hincrby', KEYS[i], ARGV[j], ARGV[j + 1]) end " +
+            "  if redis.call('ttl', KEYS[i]) < 0 then redis.call('expire', KEYS[i], ARGV[i]) end " +
+            "end " +
+            "return 1", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public boolean incrementOnce(String eventKey, Duration eventTtl, Map<String, Duration> counters, Map<String, Long> deltas) {
+        List<String> keys = new ArrayList<>(counters.size() + 1);
+        List<String> args = new ArrayList<>(counters.size() + 1 + deltas.size() * 2);
+        keys.add(eventKey);
+        args.add(String.valueOf(eventTtl.getSeconds()));
+        counters.forEach((key, ttl) -> {
+            keys.add(key);
+            args.add(String.valueOf(ttl.getSeconds()));
+        });
+        deltas.forEach((field, delta) -> {
+            args.add(field);
+            args.add(delta.toString());
+        });
+        Long r = redisTemplate.execute(INCR_ONCE_SCRIPT, keys, args.toArray());
+        return r != null && r == 1;
+    }
+
+    @Override
+    public List<Map<String, Long>> getAll(List<String> keys) {
+        if (CollUtils.isEmpty(keys)) {
+            return CollUtils.emptyList();
+        }
+        // 一次往返查询全部计数器
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.hashCommands().hGetAll(key.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        List<Map<String, Long>> list = new ArrayList<>(keys.size());
+        for (Object result : results) {
+            Map<String, Long> values = new HashMap<>();
+            if (result instanceof Map) {
+                ((Map<?, ?>) result).forEach((field, value) -> values.put(field.toString(), Long.valueOf(value.toString())));
+            }
+            list.add(values);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,111 @@
+package com.tianji.data.utils;
+
+import com.tianji.common.utils.CollUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * 基于redis sorted set的排行榜，累加为ZINCRBY，查询为ZREVRANGE，都是O(log n)的操作
+ */
+@Component
+@RequiredArgsConstructor
+public class RedisRankStore implements RankStore {
+
+    /**
+     * KEYS[1]为事件标识，KEYS[2..n]为排行榜；ARGV[1]为事件标识的保留时间，ARGV[2]为排行榜的保留时间，
+     * 之后依次为每个排行榜的成员个数，以及该排行榜的成员和增量。事件标识已存在时不做任何修改
+     */
+    private static final RedisScript<Long> INCR_ONCE_SCRIPT = new DefaultRedisScript<>(
+            "if not redis.call('set', KEYS[1], '1', 'NX', 'EX', ARGV[1]) then return 0 end " +
+            "local j = 3 " +
+            "for i = 2, #KEYS do " +
+            "  local n = tonumber(ARGV[j]) " +
+            "  j = j + 1 " +
+            "  for k = 1, n do " +
+            "    redis.call('zincrby', KEYS[i], ARGV[j + 1], ARGV[j]) " +
+            "    j = j + 2 " +
+            "  end " +
+            "  if redis.call('ttl', KEYS[i]) < 0 then redis.call('expire', KEYS[i], ARGV[2]) end " +
+            "end " +
+            "return 1", Long.class);
+
+    /**
+     * KEYS[1]为目标排行榜，KEYS[2..n]为来源排行榜；ARGV[1]为保留时间，ARGV[2]为是否重新合并
+     */
+    private static final RedisScript<Long> UNION_SCRIPT = new DefaultRedisScript<>(
+            "if ARGV[2] ~= '1' and redis.call('exists', KEYS[1]) == 1 then return 0 end " +
+            "redis.call('zunionstore', KEYS[1], #KEYS - 1, unpack(KEYS, 2)) " +
+            "redis.call('expire', KEYS[1], ARGV[1]) " +
+            "return 1", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public boolean incrementOnce(String eventKey, Duration eventTtl, Duration ttl,
+                                 Map<String, Map<String, Double>> deltas) {
+        List<String> keys = new ArrayList<>(deltas.size() + 1);
+        List<String> args = new ArrayList<>();
+        keys.add(eventKey);
+        args.add(String.valueOf(eventTtl.getSeconds()));
+        args.add(String.valueOf(ttl.getSeconds()));
+        deltas.forEach((key, members) -> {
+            keys.add(key);
+            args.add(String.valueOf(members.size()));
+            members.forEach((member, delta) -> {
+                args.add(member);
+                args.add(delta.toString());
+            });
+        });
+        Long r = redisTemplate.execute(INCR_ONCE_SCRIPT, keys, args.toArray());
+        return r != null && r == 1;
+    }
+
+    @Override
+    public void union(String target, Duration ttl, List<String> sources, boolean refresh) {
+        List<String> keys = new ArrayList<>(sources.size() + 1);
+        keys.add(target);
+        keys.addAll(sources);
+        redisTemplate.execute(UNION_SCRIPT, keys, String.valueOf(ttl.getSeconds()), refresh ? "1" : "0");
+    }
+
+    @Override
+    public List<RankItem> top(String key, int n) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = redisTemplate.opsForZSet().reverseRangeWithScores(key, 0, n - 1);
+        if (CollUtils.isEmpty(tuples)) {
+            return CollUtils.emptyList();
+        }
+        List<RankItem> items = new ArrayList<>(tuples.size());
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            items.add(new RankItem(tuple.getValue(), tuple.getScore()));
+        }
+        return items;
+    }
+
+    @Override
+    public List<Double> scores(String key, List<String> members) {
+        if (CollUtils.isEmpty(members)) {
+            return CollUtils.emptyList();
+        }
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String member : members) {
+                connection.zSetCommands().zScore(rawKey, member.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        List<Double> scores = new ArrayList<>(results.size());
+        for (Object result : results) {
+            scores.add(result instanceof Number ? ((Number) result).doubleValue() : null);
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,90 @@
+package com.tianji.data.utils;
+
+import com.tianji.common.utils.CollUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于redis HyperLogLog的去重计数器
+ */
+@Component
+@RequiredArgsConstructor
+public class RedisUniqueCounter implements UniqueCounter {
+
+    /**
+     * KEYS为计数器；ARGV[1]为元素，ARGV[2..n]为对应计数器的保留时间。计数器首次创建时设置过期时间
+     */
+    private static final RedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS do " +
+            "  redis.call('pfadd', KEYS[i], ARGV[1]) " +
+            "  if redis.call('ttl', KEYS[i]) < 0 then redis.call('expire', KEYS[i], ARGV[i + 1]) end " +
+            "end " +
+            "return 1", Long.class);
+
+    /**
+     * KEYS[1]为目标计数器，KEYS[2..n]为来源计数器；ARGV[1]为目标计数器的保留时间
+     */
+    private static final RedisScript<Long> MERGE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('pfmerge', unpack(KEYS)) " +
+            "redis.call('expire', KEYS[1], ARGV[1]) " +
+            "return redis.call('pfcount', KEYS[1])", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public void add(String member, Map<String, Duration> counters) {
+        if (CollUtils.isEmpty(counters)) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(counters.size());
+        List<String> args = new ArrayList<>(counters.size() + 1);
+        args.add(member);
+        counters.forEach((key, ttl) -> {
+            keys.add(key);
+            args.add(String.valueOf(ttl.getSeconds()));
+        });
+        redisTemplate.execute(ADD_SCRIPT, keys, args.toArray());
+    }
+
+    @Override
+    public List<Long> countAll(List<List<String>> unions) {
+        if (CollUtils.isEmpty(unions)) {
+            return CollUtils.emptyList();
+        }
+        // 一次往返查询全部计数器，PFCOUNT多个key时返回并集的基数
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (List<String> keys : unions) {
+                byte[][] rawKeys = new byte[keys.size()][];
+                for (int i = 0; i < keys.size(); i++) {
+                    rawKeys[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+                }
+                connection.hyperLogLogCommands().pfCount(rawKeys);
+            }
+            return null;
+        });
+        List<Long> counts = new ArrayList<>(results.size());
+        for (Object result : results) {
+            counts.add(result instanceof Number ? ((Number) result).longValue() : 0L);
+        }
+        return counts;
+    }
+
+    @Override
+    public long mergeAndCount(String target, Duration ttl, List<String> sources) {
+        List<String> keys = new ArrayList<>(sources.size() + 1);
+        keys.add(target);
+        keys.addAll(sources);
+        Long count = redisTemplate.execute(MERGE_SCRIPT, keys, String.valueOf(ttl.getSeconds()));
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,46 @@
+package com.tianji.data.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 时间序列在一段时间内的汇总值，只统计有数据的日期
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeriesSummary {
+    private double sum;
+    private Double min;
+    private Double max;
+    /**
+     * 有数据的天数
+     */
+    private int count;
+
+    public static SeriesSummary of(double value) {
+        return new SeriesSummary(value, value, value, 1);
+    }
+
+    /**
+     * 合并另一段时间的汇总值
+     */
+    public SeriesSummary merge(SeriesSummary other) {
+        if (other == null || other.count == 0) {
+            return this;
+        }
+        sum += other.sum;
+        min = min == null ? other.min : Math.min(min, other.min);
+        max = max == null ? other.max : Math.max(max, other.max);
+        count += other.count;
+        return this;
+    }
+
+    /**
+     * 平均值，没有数据时为null
+     */
+    public Double getAverage() {
+        return count == 0 ? null : sum / count;
+    }
+}
@@ -0,0 +1,39 @@
+package com.tianji.data.utils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 去重计数器，基于HyperLogLog，无论元素多少每个计数器占用的内存固定（redis中最多约12KB），
+ * 计数结果是估算值，标准误差约0.81%
+ */
+public interface UniqueCounter {
+
+    /**
+     * 把元素添加到多个计数器，计数器首次创建时设置过期时间
+     *
+     * @param member   元素
+     * @param counters 计数器和对应的保留时间
+     */
+    void add(String member, Map<String, Duration> counters);
+
+    /**
+     * 批量计数，每一组计数器返回它们的并集的元素个数
+     *
+     * @param unions 多组计数器
+     * @return 与每一组计数器一一对应的元素个数，计数器不存在时为0
+     */
+    List<Long> countAll(List<List<String>> unions);
+
+    /**
+     * 把多个计数器合并到目标计数器，并返回合并后的元素个数。合并是取并集，重复合并不影响结果，
+     * 目标计数器中已有的元素会保留，因此来源计数器过期后再合并也不会丢失数据
+     *
+     * @param target  目标计数器
+     * @param ttl     目标计数器的保留时间
+     * @param sources 来源计数器
+     * @return 合并后的元素个数
+     */
+    long mergeAndCount(String target, Duration ttl, List<String> sources);
+}
@@ -0,0 +1,11 @@
+-- 统计数据汇总表，tj-data的库中执行。汇总任务按照唯一键覆盖写入，唯一键不能省略
+CREATE TABLE IF NOT EXISTS `metric_rollup` (
+  `id` bigint NOT NULL AUTO_INCREMENT COMMENT '主键',
+  `metric` varchar(32) NOT NULL COMMENT '指标',
+  `granularity` char(1) NOT NULL COMMENT '时间粒度：h-小时，d-天',
+  `bucket_time` datetime NOT NULL COMMENT '时间段的开始时间',
+  `metric_value` bigint NOT NULL DEFAULT '0' COMMENT '累计值，金额单位为分',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_granularity_bucket_metric` (`granularity`, `bucket_time`, `metric`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='统计数据汇总表';
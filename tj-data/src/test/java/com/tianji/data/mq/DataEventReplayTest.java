@@ -0,0 +1,189 @@
+package com.tianji.data.mq;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tianji.api.dto.trade.OrderBasicDTO;
+import com.tianji.api.dto.user.UserEventDTO;
+import com.tianji.data.constants.MetricType;
+import com.tianji.data.constants.TimeGranularity;
+import com.tianji.data.mapper.MetricRollupMapper;
+import com.tianji.data.model.po.MetricRollup;
+import com.tianji.data.service.RankService;
+import com.tianji.data.service.UniqueUserService;
+import com.tianji.data.service.impl.MetricServiceImpl;
+import com.tianji.data.utils.InMemoryMetricStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static com.tianji.data.constants.MetricType.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 重放录制的事件流，校验各个时间段的统计结果。
+ * 事件流包含跨天、跨小时的事件，以及7条重复投递的消息（共56条消息，49个不同的事件）
+ */
+class DataEventReplayTest {
+
+    private static final LocalDateTime DAY_1 = LocalDateTime.of(2022, 10, 17, 0, 0);
+    private static final LocalDateTime DAY_2 = LocalDateTime.of(2022, 10, 18, 0, 0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private InMemoryMetricStore store;
+    private MetricRollupMapper rollupMapper;
+    private MetricServiceImpl metricService;
+    private DataEventListener listener;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new InMemoryMetricStore();
+        rollupMapper = mock(MetricRollupMapper.class);
+        metricService = new MetricServiceImpl(store, rollupMapper);
+        listener = new DataEventListener(metricService, mock(UniqueUserService.class), mock(RankService.class));
+        replay("/replay/data-events.jsonl");
+    }
+
+    @Test
+    void testDailyTotals() {
+        assertEquals(Map.of(VISITS, 1L, STU_NEW_NUM, 2L, ORDER_NUM, 4L, ENROLL_NUM, 6L, ORDER_AMOUNT, 39700L),
+                metricService.getTotals(TimeGranularity.DAY, DAY_1));
+
+        Map<MetricType, Long> day2 = metricService.getTotals(TimeGranularity.DAY, DAY_2.plusHours(12));
+        assertEquals(14L, day2.get(VISITS));
+        assertEquals(16L, day2.get(ORDER_NUM));
+        assertEquals(194180L, day2.get(ORDER_AMOUNT));
+        assertEquals(34L, day2.get(ENROLL_NUM));
+        assertEquals(6L, day2.get(SECTION_LEARNED_NUM));
+        assertEquals(3L, day2.get(REFUND_NUM));
+        assertEquals(18690L, day2.get(REFUND_AMOUNT));
+        assertEquals(3L, day2.get(STU_NEW_NUM));
+    }
+
+    @Test
+    void testHourlyTotals() {
+        List<Map<MetricType, Long>> hours = metricService.getTotals(TimeGranularity.HOUR,
+                List.of(DAY_1.withHour(23), DAY_2, DAY_2.withHour(1).withMinute(30)));
+        assertEquals(metricService.getTotals(TimeGranularity.DAY, DAY_1), hours.get(0));
+        assertEquals(12L, hours.get(1).get(VISITS));
+        assertEquals(12L, hours.get(1).get(ORDER_NUM));
+        assertEquals(164280L, hours.get(1).get(ORDER_AMOUNT));
+        assertEquals(17700L, hours.get(1).get(REFUND_AMOUNT));
+        assertEquals(Map.of(REFUND_NUM, 1L, REFUND_AMOUNT, 990L, VISITS, 2L, ORDER_NUM, 4L, ENROLL_NUM, 10L,
+                STU_NEW_NUM, 1L, SECTION_LEARNED_NUM, 1L, ORDER_AMOUNT, 29900L), hours.get(2));
+    }
+
+    @Test
+    void testMinuteTotals() {
+        // 免费报名的订单金额为0，不产生金额字段
+        assertEquals(Map.of(STU_NEW_NUM, 1L, ORDER_NUM, 1L, ENROLL_NUM, 1L),
+                metricService.getTotals(TimeGranularity.MINUTE, DAY_1.withHour(23).withMinute(57)));
+        assertEquals(Map.of(ORDER_NUM, 3L, ORDER_AMOUNT, 39700L, ENROLL_NUM, 5L),
+                metricService.getTotals(TimeGranularity.MINUTE, DAY_1.withHour(23).withMinute(59).withSecond(30)));
+        // 每个粒度的合计一致
+        assertEquals(sum(TimeGranularity.DAY), sum(TimeGranularity.HOUR));
+        assertEquals(sum(TimeGranularity.DAY), sum(TimeGranularity.MINUTE));
+        assertEquals(20L, sum(TimeGranularity.MINUTE).get(ORDER_NUM));
+    }
+
+    @Test
+    void testReplayIsIdempotent() throws IOException {
+        Map<MetricType, Long> before = metricService.getTotals(TimeGranularity.DAY, DAY_2);
+
+        replay("/replay/data-events.jsonl");
+
+        assertEquals(before, metricService.getTotals(TimeGranularity.DAY, DAY_2));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void testRollup() {
+        int rows = metricService.rollup(TimeGranularity.HOUR, DAY_1.withHour(23), DAY_2.withHour(1));
+
+        ArgumentCaptor<List<MetricRollup>> captor = ArgumentCaptor.forClass(List.class);
+        verify(rollupMapper).upsertBatch(captor.capture());
+        assertEquals(rows, captor.getValue().size());
+        // 3个小时的全部指标
+        assertEquals(5 + 8 + 8, rows);
+        long amount = captor.getValue().stream()
+                .filter(r -> r.getMetric().equals(ORDER_AMOUNT.getField()))
+                .mapToLong(MetricRollup::getMetricValue)
+                .sum();
+        assertEquals(39700L + 194180L, amount);
+        assertTrue(captor.getValue().stream().allMatch(r -> "h".equals(r.getGranularity())));
+    }
+
+    private Map<MetricType, Long> sum(TimeGranularity granularity) {
+        Map<MetricType, Long> sum = new EnumMap<>(MetricType.class);
+        String prefix = "DATA:METRIC:" + granularity.getCode() + ":";
+        List<String> keys = new ArrayList<>();
+        for (String key : store.keys()) {
+            if (key.startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        for (Map<String, Long> counter : store.getAll(keys)) {
+            counter.forEach((field, value) -> sum.merge(MetricType.ofField(field), value, Long::sum));
+        }
+        return sum;
+    }
+
+    private void replay(String resource) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Objects.requireNonNull(getClass().getResourceAsStream(resource)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode event = objectMapper.readTree(line);
+                dispatch(event.get("key").asText(), event.get("body"));
+            }
+        }
+    }
+
+    private void dispatch(String key, JsonNode body) {
+        switch (key) {
+            case "order.pay":
+                listener.listenOrderPay(toOrder(body));
+                break;
+            case "order.refund":
+                listener.listenOrderRefund(toOrder(body));
+                break;
+            case "user.register":
+                listener.listenUserRegister(toUserEvent(body));
+                break;
+            case "user.login":
+                listener.listenUserLogin(toUserEvent(body));
+                break;
+            case "section.learned":
+                listener.listenSectionLearned(toUserEvent(body));
+                break;
+            default:
+                fail("未知的事件：" + key);
+        }
+    }
+
+    private static OrderBasicDTO toOrder(JsonNode body) {
+        List<Long> courseIds = new ArrayList<>();
+        body.get("courseIds").forEach(n -> courseIds.add(n.asLong()));
+        return OrderBasicDTO.builder()
+                .orderId(body.get("orderId").asLong())
+                .userId(body.get("userId").asLong())
+                .courseIds(courseIds)
+                .finishTime(LocalDateTime.parse(body.get("finishTime").asText()))
+                .amount(body.get("amount").asInt())
+                .build();
+    }
+
+    private static UserEventDTO toUserEvent(JsonNode body) {
+        return UserEventDTO.of(body.get("userId").asLong(), LocalDateTime.parse(body.get("time").asText()));
+    }
+}
@@ -0,0 +1,211 @@
+package com.tianji.data.service.impl;
+
+import com.tianji.data.constants.DataTypeEnum;
+import com.tianji.data.constants.MetricType;
+import com.tianji.data.constants.TimeGranularity;
+import com.tianji.data.constants.TimeWindow;
+import com.tianji.data.constants.UniqueType;
+import com.tianji.data.service.MetricService;
+import com.tianji.data.service.UniqueUserService;
+import com.tianji.data.utils.InMemoryBoardSeriesStore;
+import com.tianji.data.utils.SeriesSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.tianji.data.constants.RedisConstants.KEY_BOARD_SERIES;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BoardSeriesServiceImplTest {
+
+    private static final DataTypeEnum TYPE = DataTypeEnum.VISITS;
+    /**
+     * 2022年1月1日为周六，1月3日为周一
+     */
+    private static final LocalDate BEGIN = LocalDate.of(2022, 1, 1);
+
+    private InMemoryBoardSeriesStore store;
+    private MetricService metricService;
+    private UniqueUserService uniqueUserService;
+    private BoardSeriesServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryBoardSeriesStore();
+        metricService = mock(MetricService.class);
+        uniqueUserService = mock(UniqueUserService.class);
+        // 分布式锁用本地锁模拟，所有序列共用一把锁
+        ReentrantLock localLock = new ReentrantLock();
+        RLock lock = mock(RLock.class);
+        doAnswer(inv -> {
+            localLock.lock();
+            return null;
+        }).when(lock).lock();
+        doAnswer(inv -> {
+            localLock.unlock();
+            return null;
+        }).when(lock).unlock();
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        when(redissonClient.getLock(anyString())).thenReturn(lock);
+        service = new BoardSeriesServiceImpl(store, redissonClient, metricService, uniqueUserService);
+    }
+
+    @Test
+    void testValues() {
+        service.put(TYPE, Map.of(BEGIN, 1.0, BEGIN.plusDays(2), 3.0));
+
+        assertEquals(Arrays.asList(1.0, null, 3.0, null), service.values(TYPE, BEGIN, BEGIN.plusDays(3)));
+        assertEquals(Arrays.asList(null, null), service.values(DataTypeEnum.ORDER_NUM, BEGIN, BEGIN.plusDays(1)));
+    }
+
+    @Test
+    void testSummaryMatchesDailyValues() {
+        // 1.一年的数据，随机缺失一部分日期
+        Random random = new Random(42);
+        Map<LocalDate, Double> values = new HashMap<>();
+        for (int i = 0; i < 365; i++) {
+            if (random.nextInt(10) > 0) {
+                values.put(BEGIN.plusDays(i), (double) random.nextInt(1000));
+            }
+        }
+        service.put(TYPE, values);
+        // 2.任意时间段的汇总值都与逐天计算的结果一致
+        for (int i = 0; i < 200; i++) {
+            LocalDate begin = BEGIN.plusDays(random.nextInt(365));
+            LocalDate end = begin.plusDays(random.nextInt(120));
+            assertSummary(values, begin, end);
+        }
+    }
+
+    @Test
+    void testSummaryUsesPrecomputedPeriods() {
+        Map<LocalDate, Double> values = new HashMap<>();
+        for (int i = 0; i < 365; i++) {
+            values.put(BEGIN.plusDays(i), 1.0);
+        }
+        service.put(TYPE, values);
+
+        // 完整的6个月只读取6个字段
+        SeriesSummary summary = service.summarize(TYPE, BEGIN, LocalDate.of(2022, 6, 30));
+        assertEquals(181, summary.getCount());
+        assertEquals(6, store.lastReadFields());
+        // 1月2日 + 1月3日开始的4周 + 1月31日 + 2月
+        summary = service.summarize(TYPE, BEGIN.plusDays(1), LocalDate.of(2022, 2, 28));
+        assertEquals(58, summary.getCount());
+        assertEquals(7, store.lastReadFields());
+    }
+
+    @Test
+    void testOverwriteUpdatesSummary() {
+        service.put(TYPE, Map.of(BEGIN, 5.0, BEGIN.plusDays(1), 9.0));
+        service.put(TYPE, Map.of(BEGIN.plusDays(1), 2.0));
+
+        SeriesSummary summary = service.summarize(TYPE, BEGIN, LocalDate.of(2022, 1, 31));
+        assertEquals(7.0, summary.getSum());
+        assertEquals(5.0, summary.getMax());
+        assertEquals(2.0, summary.getMin());
+        assertEquals(3.5, summary.getAverage());
+    }
+
+    @Test
+    void testRingBufferKeepsLatestDays() {
+        int days = BoardSeriesServiceImpl.DAY_CAPACITY + 30;
+        for (int i = 0; i < days; i++) {
+            service.put(TYPE, Map.of(BEGIN.plusDays(i), (double) i));
+        }
+        // 1.容量固定，超出容量的日期被覆盖，2022年1月到2023年3月共15个月
+        assertEquals(BoardSeriesServiceImpl.DAY_CAPACITY + BoardSeriesServiceImpl.WEEK_CAPACITY + 15,
+                store.size(KEY_BOARD_SERIES + TYPE.getType()));
+        assertEquals(Arrays.asList(null, null), service.values(TYPE, BEGIN, BEGIN.plusDays(1)));
+        LocalDate last = BEGIN.plusDays(days - 1);
+        assertEquals(List.of((double) days - 1), service.values(TYPE, last, last));
+        // 2.被覆盖的日期不能再写入旧数据，否则会覆盖更新的日期
+        service.put(TYPE, Map.of(BEGIN, 100.0));
+        assertNull(service.values(TYPE, BEGIN, BEGIN).get(0));
+        LocalDate overwrittenBy = BEGIN.plusDays(BoardSeriesServiceImpl.DAY_CAPACITY);
+        assertEquals((double) BoardSeriesServiceImpl.DAY_CAPACITY,
+                service.values(TYPE, overwrittenBy, overwrittenBy).get(0));
+        // 3.月汇总保留得更久，一月份的每天虽然被覆盖，汇总值仍然可以查询
+        SeriesSummary january = service.summarize(TYPE, BEGIN, LocalDate.of(2022, 1, 31));
+        assertEquals(31, january.getCount());
+        assertEquals(465.0, january.getSum());
+    }
+
+    @Test
+    void testComparePeriod() {
+        Map<LocalDate, Double> values = new HashMap<>();
+        for (int i = 0; i < 30; i++) {
+            values.put(BEGIN.plusDays(i), i < 15 ? 1.0 : 2.0);
+        }
+        service.put(TYPE, values);
+
+        assertEquals(15.0, service.summarize(TYPE, BEGIN, BEGIN.plusDays(14)).getSum());
+        assertEquals(30.0, service.summarize(TYPE, BEGIN.plusDays(15), BEGIN.plusDays(29)).getSum());
+    }
+
+    @Test
+    void testConcurrentPutsKeepSummary() throws Exception {
+        // 定时任务和手动设置同时写入同一个月的不同日期，汇总值不能丢失任何一天
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 31; i++) {
+            LocalDate day = BEGIN.plusDays(i);
+            futures.add(pool.submit(() -> {
+                start.await();
+                service.put(TYPE, Map.of(day, 1.0));
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        SeriesSummary january = service.summarize(TYPE, BEGIN, LocalDate.of(2022, 1, 31));
+        assertEquals(31, january.getCount());
+        assertEquals(31.0, january.getSum());
+    }
+
+    @Test
+    void testRefresh() {
+        LocalDate day = LocalDate.of(2022, 10, 17);
+        Map<MetricType, Long> totals = new EnumMap<>(MetricType.class);
+        totals.put(MetricType.VISITS, 120L);
+        totals.put(MetricType.ORDER_NUM, 4L);
+        totals.put(MetricType.ORDER_AMOUNT, 39600L);
+        when(metricService.getTotals(eq(TimeGranularity.DAY), eq(day.atStartOfDay()))).thenReturn(totals);
+        when(uniqueUserService.count(eq(UniqueType.ACTIVE.getCode()), eq(TimeWindow.DAY), any(LocalDate.class)))
+                .thenReturn(80L);
+
+        service.refresh(day);
+
+        assertEquals(List.of(120.0), service.values(DataTypeEnum.VISITS, day, day));
+        assertEquals(List.of(396.0), service.values(DataTypeEnum.ORDER_AMOUNT, day, day));
+        assertEquals(List.of(99.0), service.values(DataTypeEnum.CUSTOMER_UNIT_PRICE, day, day));
+        assertEquals(List.of(80.0), service.values(DataTypeEnum.DAILY_LIVING_NUM, day, day));
+        // 没有数据的去重统计和不是实时统计的数据类型不写入，保留手动设置的数据
+        assertEquals(Collections.singletonList(null), service.values(DataTypeEnum.VISITOR_NUM, day, day));
+        assertEquals(Collections.singletonList(null), service.values(DataTypeEnum.STU_TOTAL_NUM, day, day));
+    }
+
+    private void assertSummary(Map<LocalDate, Double> values, LocalDate begin, LocalDate end) {
+        SeriesSummary expected = new SeriesSummary();
+        for (LocalDate d = begin; !d.isAfter(end); d = d.plusDays(1)) {
+            Double value = values.get(d);
+            if (value != null) {
+                expected.merge(SeriesSummary.of(value));
+            }
+        }
+        assertEquals(expected, service.summarize(TYPE, begin, end), begin + "~" + end);
+    }
+}
@@ -0,0 +1,89 @@
+package com.tianji.data.service.impl;
+
+import com.tianji.data.constants.DataTypeEnum;
+import com.tianji.data.service.BoardSeriesService;
+import com.tianji.data.service.MetricService;
+import com.tianji.data.service.UniqueUserService;
+import com.tianji.data.utils.InMemoryBoardSeriesStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static com.tianji.data.constants.RedisConstants.KEY_LEGACY_BOARD_DATA;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class BoardServiceImplTest {
+
+    private static final LocalDate END = LocalDate.of(2022, 10, 16);
+
+    private final Map<Object, Object> legacy = new HashMap<>();
+    private BoardSeriesService seriesService;
+    private BoardServiceImpl boardService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        when(redissonClient.getLock(anyString())).thenReturn(mock(RLock.class));
+        seriesService = new BoardSeriesServiceImpl(new InMemoryBoardSeriesStore(), redissonClient,
+                mock(MetricService.class), mock(UniqueUserService.class));
+
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOps);
+        when(hashOps.entries(KEY_LEGACY_BOARD_DATA)).thenReturn(legacy);
+
+        boardService = new BoardServiceImpl();
+        ReflectionTestUtils.setField(boardService, "boardSeriesService", seriesService);
+        ReflectionTestUtils.setField(boardService, "uniqueUserService", mock(UniqueUserService.class));
+        ReflectionTestUtils.setField(boardService, "redisTemplate", redisTemplate);
+    }
+
+    private static String days(int n, double first) {
+        StringJoiner joiner = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < n; i++) {
+            joiner.add(String.valueOf(first + i));
+        }
+        return joiner.toString();
+    }
+
+    @Test
+    void testImportLegacyData() {
+        legacy.put(DataTypeEnum.VISITS.getType().toString(), days(15, 1));
+        legacy.put(DataTypeEnum.STU_TOTAL_NUM.getType().toString(), days(15, 100));
+        // 未知的数据类型忽略
+        legacy.put("999", days(15, 1));
+
+        assertEquals(30, boardService.importLegacyData(END));
+
+        // 15天的数据以end为最后一天
+        List<Double> visits = seriesService.values(DataTypeEnum.VISITS, END.minusDays(14), END);
+        assertEquals(1.0, visits.get(0));
+        assertEquals(15.0, visits.get(14));
+        assertNull(seriesService.values(DataTypeEnum.VISITS, END.minusDays(15), END.minusDays(15)).get(0));
+        // 100~114
+        assertEquals(1605.0, seriesService.summarize(DataTypeEnum.STU_TOTAL_NUM, END.minusDays(14), END).getSum());
+    }
+
+    @Test
+    void testImportKeepsExistingDays() {
+        // 定时任务已经写入了最后一天的实时统计
+        seriesService.put(DataTypeEnum.VISITS, Map.of(END, 500.0));
+        legacy.put(DataTypeEnum.VISITS.getType().toString(), days(15, 1));
+
+        assertEquals(14, boardService.importLegacyData(END));
+        assertEquals(List.of(14.0, 500.0), seriesService.values(DataTypeEnum.VISITS, END.minusDays(1), END));
+
+        // 重复导入不影响结果
+        assertEquals(0, boardService.importLegacyData(END));
+    }
+}
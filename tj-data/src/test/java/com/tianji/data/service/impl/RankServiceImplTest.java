@@ -0,0 +1,143 @@
+package com.tianji.data.service.impl;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tianji.api.cache.CourseCache;
+import com.tianji.api.dto.course.CourseSimpleInfoDTO;
+import com.tianji.api.dto.trade.OrderBasicDTO;
+import com.tianji.data.constants.RankType;
+import com.tianji.data.constants.TimeWindow;
+import com.tianji.data.utils.InMemoryRankStore;
+import com.tianji.data.utils.RankItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RankServiceImplTest {
+
+    /**
+     * 10月17日为周一，10月31日为月末
+     */
+    private static final LocalDate MONDAY = LocalDate.of(2022, 10, 17);
+
+    private InMemoryRankStore store;
+    private RankServiceImpl rankService;
+    private long orderId = 1;
+
+    @BeforeEach
+    void setUp() {
+        // 课程1、2属于分类100，课程3属于分类200
+        CourseCache courseCache = new CourseCache(Caffeine.newBuilder().build(), ids -> ids.stream().map(id -> {
+            CourseSimpleInfoDTO dto = new CourseSimpleInfoDTO();
+            dto.setId(id);
+            dto.setFirstCateId(id < 3 ? 100L : 200L);
+            return dto;
+        }).collect(Collectors.toList()), null);
+        store = new InMemoryRankStore();
+        rankService = new RankServiceImpl(store, courseCache);
+    }
+
+    @Test
+    void testDailyRanking() {
+        LocalDateTime time = MONDAY.atTime(10, 0);
+        pay(time, Map.of(1L, 9900, 3L, 19900));
+        pay(time, Map.of(2L, 29900));
+        pay(time, Map.of(1L, 9900));
+        enroll(time, 2L);
+        enroll(time, 2L);
+
+        assertEquals(List.of(new RankItem("2", 3.0), new RankItem("1", 2.0), new RankItem("3", 1.0)),
+                rankService.top(RankType.COURSE_ENROLL, TimeWindow.DAY, MONDAY, 10));
+        assertEquals(List.of(new RankItem("1", 2.0), new RankItem("3", 1.0)),
+                rankService.top(RankType.COURSE_SALES, TimeWindow.DAY, MONDAY, 2));
+        assertEquals(List.of(new RankItem("2", 29900.0), new RankItem("3", 19900.0), new RankItem("1", 19800.0)),
+                rankService.top(RankType.COURSE_REVENUE, TimeWindow.DAY, MONDAY, 10));
+        assertEquals(List.of(new RankItem("100", 49700.0), new RankItem("200", 19900.0)),
+                rankService.top(RankType.CATEGORY_REVENUE, TimeWindow.DAY, MONDAY, 10));
+        assertEquals(List.of(19800.0, 0.0), rankService.scores(RankType.COURSE_REVENUE, TimeWindow.DAY, MONDAY,
+                List.of("1", "4")));
+    }
+
+    @Test
+    void testDuplicateAndRefund() {
+        LocalDateTime time = MONDAY.atTime(10, 0);
+        OrderBasicDTO order = order(time, Map.of(1L, 9900, 2L, 29900));
+        rankService.recordPay(order);
+        rankService.recordPay(order);
+        // 退款课程2
+        OrderBasicDTO refund = OrderBasicDTO.builder().orderId(order.getOrderId()).courseIds(List.of(2L))
+                .finishTime(time.plusHours(1)).amount(29900).courseAmounts(Map.of(2L, 29900)).build();
+        rankService.recordRefund(refund);
+        rankService.recordRefund(refund);
+
+        assertEquals(List.of(new RankItem("1", 9900.0), new RankItem("2", 0.0)),
+                rankService.top(RankType.COURSE_REVENUE, TimeWindow.DAY, MONDAY, 10));
+        assertEquals(List.of(1.0, 0.0), rankService.scores(RankType.COURSE_ENROLL, TimeWindow.DAY, MONDAY,
+                List.of("1", "2")));
+        assertEquals(List.of(new RankItem("100", 9900.0)),
+                rankService.top(RankType.CATEGORY_REVENUE, TimeWindow.DAY, MONDAY, 10));
+    }
+
+    @Test
+    void testWeeklyAndMonthlyUnion() {
+        // 本周每天课程1卖出1次，课程2只在周日卖出10次；上周日课程3卖出20次
+        for (int d = 0; d < 7; d++) {
+            pay(MONDAY.plusDays(d).atTime(9, 0), Map.of(1L, 100));
+        }
+        for (int i = 0; i < 10; i++) {
+            pay(MONDAY.plusDays(6).atTime(20, 0), Map.of(2L, 100));
+        }
+        for (int i = 0; i < 20; i++) {
+            pay(MONDAY.minusDays(1).atTime(20, 0), Map.of(3L, 100));
+        }
+
+        assertEquals(List.of(new RankItem("2", 10.0), new RankItem("1", 7.0)),
+                rankService.top(RankType.COURSE_SALES, TimeWindow.WEEK, MONDAY.plusDays(3), 10));
+        assertEquals(List.of(new RankItem("3", 20.0), new RankItem("2", 10.0)),
+                rankService.top(RankType.COURSE_SALES, TimeWindow.MONTH, MONDAY, 2));
+        assertEquals(List.of(7.0, 10.0, 0.0), rankService.scores(RankType.COURSE_SALES, TimeWindow.WEEK, MONDAY,
+                List.of("1", "2", "3")));
+    }
+
+    @Test
+    void testMergedWindowSurvivesExpiredDays() {
+        LocalDate monthEnd = LocalDate.of(2022, 10, 31);
+        pay(MONDAY.atTime(9, 0), Map.of(1L, 100));
+        pay(monthEnd.atTime(9, 0), Map.of(2L, 300));
+        // 不是周末或月末，什么都不做
+        rankService.merge(MONDAY);
+        assertTrue(store.keys().stream().noneMatch(k -> k.contains(":M:") || k.contains(":w:")));
+
+        rankService.merge(monthEnd);
+        store.keys().stream().filter(k -> k.contains(":d:")).forEach(store::delete);
+
+        assertEquals(List.of(new RankItem("2", 300.0), new RankItem("1", 100.0)),
+                rankService.top(RankType.COURSE_REVENUE, TimeWindow.MONTH, monthEnd, 10));
+        assertTrue(rankService.top(RankType.COURSE_REVENUE, TimeWindow.DAY, monthEnd, 10).isEmpty());
+    }
+
+    private void pay(LocalDateTime time, Map<Long, Integer> courseAmounts) {
+        rankService.recordPay(order(time, courseAmounts));
+    }
+
+    private void enroll(LocalDateTime time, Long courseId) {
+        rankService.recordPay(OrderBasicDTO.builder()
+                .orderId(orderId++).courseIds(List.of(courseId)).finishTime(time).amount(0).build());
+    }
+
+    private OrderBasicDTO order(LocalDateTime time, Map<Long, Integer> courseAmounts) {
+        return OrderBasicDTO.builder()
+                .orderId(orderId++)
+                .courseIds(List.copyOf(courseAmounts.keySet()))
+                .finishTime(time)
+                .amount(courseAmounts.values().stream().mapToInt(Integer::intValue).sum())
+                .courseAmounts(courseAmounts)
+                .build();
+    }
+}
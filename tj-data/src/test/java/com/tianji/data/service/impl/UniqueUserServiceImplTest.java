@@ -0,0 +1,138 @@
+package com.tianji.data.service.impl;
+
+import com.tianji.data.constants.TimeGranularity;
+import com.tianji.data.constants.TimeWindow;
+import com.tianji.data.constants.UniqueType;
+import com.tianji.data.utils.InMemoryUniqueCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用合成数据校验去重统计服务的计数器组织：写入了哪些计数器、查询时对哪些计数器取并集、合并后的数据能否保留。
+ * 计数器是内存中的HyperLogLog，不是redis，误差断言（允许3倍标准误差）只用于区分重复计数、漏算等组织错误，
+ * 不代表redis的估算精度
+ */
+class UniqueUserServiceImplTest {
+
+    private static final double MAX_ERROR = 0.025;
+    private static final String ACTIVE = UniqueType.ACTIVE.getCode();
+    private static final String VISITOR = UniqueType.VISITOR.getCode();
+    private static final long COURSE_ID = 1L;
+    private static final LocalDate MONDAY = LocalDate.of(2022, 10, 17);
+
+    private InMemoryUniqueCounter counter;
+    private UniqueUserServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        counter = new InMemoryUniqueCounter();
+        service = new UniqueUserServiceImpl(counter);
+    }
+
+    @Test
+    void testDailyErrorBound() {
+        LocalDateTime time = MONDAY.atTime(9, 0);
+        // 20万用户，每人访问3次
+        for (int i = 0; i < 3; i++) {
+            for (long userId = 1; userId <= 200_000; userId++) {
+                service.recordVisit(userId, time.plusSeconds(userId % 3600));
+            }
+        }
+
+        assertWithinError(200_000, service.count(VISITOR, TimeWindow.DAY, MONDAY));
+        assertWithinError(200_000, service.count(ACTIVE, TimeWindow.DAY, MONDAY));
+        assertWithinError(200_000, service.count(VISITOR, TimeGranularity.HOUR, List.of(time)).get(0));
+        // 每个统计对象每小时、每天一个计数器，与用户数无关
+        assertEquals(4, counter.keys().size());
+    }
+
+    @Test
+    void testSmallCardinalityIsAccurate() {
+        for (long userId = 1; userId <= 1000; userId++) {
+            service.recordVisit(userId, MONDAY.atTime(10, 0));
+        }
+
+        assertEquals(1000, service.count(VISITOR, TimeWindow.DAY, MONDAY), 10);
+        assertEquals(0, service.count(VISITOR, TimeWindow.DAY, MONDAY.plusDays(1)));
+    }
+
+    @Test
+    void testActiveUsersAreUnionOfVisitorsAndLearners() {
+        LocalDateTime time = MONDAY.atTime(20, 0);
+        // 1~30000访问过，20001~50000学习过
+        for (long userId = 1; userId <= 30_000; userId++) {
+            service.recordVisit(userId, time);
+        }
+        for (long userId = 20_001; userId <= 50_000; userId++) {
+            service.recordLearning(userId, COURSE_ID, time);
+        }
+
+        List<Long> days = service.count(ACTIVE, TimeGranularity.DAY, List.of(time, time.minusDays(1)));
+        assertWithinError(50_000, days.get(0));
+        assertEquals(0, days.get(1));
+        assertWithinError(30_000, service.count(VISITOR, TimeWindow.DAY, MONDAY));
+        assertWithinError(30_000, service.count(UniqueType.courseLearner(COURSE_ID), TimeWindow.DAY, MONDAY));
+    }
+
+    @Test
+    void testWeeklyAndMonthlyMerge() {
+        recordOctober();
+
+        // 本周为10月17日~23日，第d天学习的用户为 [d*3000, d*3000+10000)
+        assertWithinError(28_000, service.count(ACTIVE, TimeWindow.WEEK, MONDAY));
+        assertWithinError(28_000, service.count(ACTIVE, TimeWindow.WEEK, MONDAY.plusDays(6)));
+        assertWithinError(100_000, service.count(ACTIVE, TimeWindow.MONTH, MONDAY));
+        assertWithinError(100_000, service.count(UniqueType.courseLearner(COURSE_ID), TimeWindow.MONTH, MONDAY));
+        assertWithinError(10_000, service.count(ACTIVE, TimeWindow.DAY, MONDAY));
+    }
+
+    @Test
+    void testWindowCountDoesNotMerge() {
+        recordOctober();
+
+        service.count(ACTIVE, TimeWindow.WEEK, MONDAY);
+        service.count(ACTIVE, TimeWindow.MONTH, MONDAY);
+
+        // 查询只读，不会写入周和月的计数器
+        assertTrue(counter.keys().stream().noneMatch(key -> key.contains(":w:") || key.contains(":M:")));
+    }
+
+    @Test
+    void testMergedDataSurvivesExpiredDays() {
+        recordOctober();
+        service.merge(ACTIVE, MONDAY);
+        long week = service.count(ACTIVE, TimeWindow.WEEK, MONDAY);
+        long month = service.count(ACTIVE, TimeWindow.MONTH, MONDAY);
+
+        // 天和小时的数据全部过期
+        counter.keys().stream()
+                .filter(key -> key.contains(":d:") || key.contains(":h:"))
+                .forEach(counter::delete);
+
+        assertEquals(0, service.count(ACTIVE, TimeWindow.DAY, MONDAY));
+        assertEquals(week, service.count(ACTIVE, TimeWindow.WEEK, MONDAY));
+        assertEquals(month, service.count(ACTIVE, TimeWindow.MONTH, MONDAY));
+    }
+
+    private void recordOctober() {
+        LocalDate first = LocalDate.of(2022, 10, 1);
+        for (int d = 0; d < 31; d++) {
+            LocalDateTime time = first.plusDays(d).atTime(8, 30);
+            for (long userId = d * 3000L; userId < d * 3000L + 10_000; userId++) {
+                service.recordLearning(userId, COURSE_ID, time);
+            }
+        }
+    }
+
+    private static void assertWithinError(long expected, long actual) {
+        double error = Math.abs(actual - expected) / (double) expected;
+        assertTrue(error <= MAX_ERROR,
+                String.format("期望%d，实际%d，误差%.2f%%超过上限", expected, actual, error * 100));
+    }
+}
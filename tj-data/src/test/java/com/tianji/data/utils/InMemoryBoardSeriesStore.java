@@ -0,0 +1,42 @@
+package com.tianji.data.utils;
+
+import java.util.*;
+
+/**
+ * 内存中的看板时间序列存储，与{@link RedisBoardSeriesStore}的语义一致，同时记录读取的字段数
+ */
+public class InMemoryBoardSeriesStore implements BoardSeriesStore {
+
+    private final Map<String, Map<String, String>> hashes = new HashMap<>();
+    private int lastReadFields;
+
+    @Override
+    public synchronized List<String> getAll(String key, List<String> fields) {
+        Map<String, String> hash = hashes.getOrDefault(key, Collections.emptyMap());
+        List<String> values = new ArrayList<>(fields.size());
+        for (String field : fields) {
+            values.add(hash.get(field));
+        }
+        lastReadFields = fields.size();
+        return values;
+    }
+
+    @Override
+    public synchronized void putAll(String key, Map<String, String> values) {
+        hashes.computeIfAbsent(key, k -> new HashMap<>()).putAll(values);
+    }
+
+    /**
+     * 序列的字段数
+     */
+    public synchronized int size(String key) {
+        return hashes.getOrDefault(key, Collections.emptyMap()).size();
+    }
+
+    /**
+     * 最近一次读取的字段数
+     */
+    public synchronized int lastReadFields() {
+        return lastReadFields;
+    }
+}
@@ -0,0 +1,39 @@
+package com.tianji.data.utils;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * 内存中的计数器，与{@link RedisMetricStore}的语义一致，不模拟过期
+ */
+public class InMemoryMetricStore implements MetricStore {
+
+    private final Set<String> events = new HashSet<>();
+    private final Map<String, Map<String, Long>> counters = new HashMap<>();
+
+    @Override
+    public synchronized boolean incrementOnce(String eventKey, Duration eventTtl,
+                                              Map<String, Duration> keys, Map<String, Long> deltas) {
+        if (!events.add(eventKey)) {
+            return false;
+        }
+        for (String key : keys.keySet()) {
+            Map<String, Long> counter = counters.computeIfAbsent(key, k -> new HashMap<>());
+            deltas.forEach((field, delta) -> counter.merge(field, delta, Long::sum));
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized List<Map<String, Long>> getAll(List<String> keys) {
+        List<Map<String, Long>> list = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            list.add(new HashMap<>(counters.getOrDefault(key, Collections.emptyMap())));
+        }
+        return list;
+    }
+
+    public synchronized Set<String> keys() {
+        return new HashSet<>(counters.keySet());
+    }
+}
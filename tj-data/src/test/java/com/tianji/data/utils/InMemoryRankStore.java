@@ -0,0 +1,73 @@
+package com.tianji.data.utils;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * 内存中的排行榜，与{@link RedisRankStore}的语义一致，不模拟过期
+ */
+public class InMemoryRankStore implements RankStore {
+
+    private final Set<String> events = new HashSet<>();
+    private final Map<String, Map<String, Double>> ranks = new HashMap<>();
+
+    @Override
+    public synchronized boolean incrementOnce(String eventKey, Duration eventTtl, Duration ttl,
+                                              Map<String, Map<String, Double>> deltas) {
+        if (!events.add(eventKey)) {
+            return false;
+        }
+        deltas.forEach((key, members) -> {
+            Map<String, Double> rank = ranks.computeIfAbsent(key, k -> new HashMap<>());
+            members.forEach((member, delta) -> rank.merge(member, delta, Double::sum));
+        });
+        return true;
+    }
+
+    @Override
+    public synchronized void union(String target, Duration ttl, List<String> sources, boolean refresh) {
+        if (!refresh && ranks.containsKey(target)) {
+            return;
+        }
+        Map<String, Double> union = new HashMap<>();
+        for (String source : sources) {
+            ranks.getOrDefault(source, Collections.emptyMap()).forEach((m, s) -> union.merge(m, s, Double::sum));
+        }
+        // 与ZUNIONSTORE一致，结果为空时删除目标
+        if (union.isEmpty()) {
+            ranks.remove(target);
+        } else {
+            ranks.put(target, union);
+        }
+    }
+
+    @Override
+    public synchronized List<RankItem> top(String key, int n) {
+        List<RankItem> items = new ArrayList<>();
+        ranks.getOrDefault(key, Collections.emptyMap()).forEach((m, s) -> items.add(new RankItem(m, s)));
+        // 与ZREVRANGE一致，分数相同时按成员倒序
+        items.sort(Comparator.comparing(RankItem::getScore).thenComparing(RankItem::getMember).reversed());
+        return items.size() > n ? new ArrayList<>(items.subList(0, n)) : items;
+    }
+
+    @Override
+    public synchronized List<Double> scores(String key, List<String> members) {
+        Map<String, Double> rank = ranks.getOrDefault(key, Collections.emptyMap());
+        List<Double> scores = new ArrayList<>(members.size());
+        for (String member : members) {
+            scores.add(rank.get(member));
+        }
+        return scores;
+    }
+
+    /**
+     * 删除排行榜，模拟过期
+     */
+    public synchronized void delete(String key) {
+        ranks.remove(key);
+    }
+
+    public synchronized Set<String> keys() {
+        return new HashSet<>(ranks.keySet());
+    }
+}
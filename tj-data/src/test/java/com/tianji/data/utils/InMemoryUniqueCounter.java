@@ -0,0 +1,124 @@
+package com.tianji.data.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * 内存中的HyperLogLog，寄存器个数、哈希位数与估算方法参照redis实现，不模拟过期。
+ * <p>
+ * 只用于测试统计服务如何组织和合并计数器，哈希函数与redis不同，基于它的误差断言不能代表redis的实际误差。
+ * </p>
+ */
+public class InMemoryUniqueCounter implements UniqueCounter {
+
+    private static final int P = 14;
+    private static final int M = 1 << P;
+    private static final int Q = 64 - P;
+    private static final double ALPHA_INF = 0.5 / Math.log(2);
+
+    private final Map<String, byte[]> sketches = new HashMap<>();
+
+    @Override
+    public synchronized void add(String member, Map<String, Duration> counters) {
+        long hash = MurmurHash.hash64(member);
+        int index = (int) (hash & (M - 1));
+        // 高位加一个哨兵，最大值为Q+1
+        byte rank = (byte) (Long.numberOfTrailingZeros((hash >>> P) | (1L << Q)) + 1);
+        for (String key : counters.keySet()) {
+            byte[] registers = sketches.computeIfAbsent(key, k -> new byte[M]);
+            if (registers[index] < rank) {
+                registers[index] = rank;
+            }
+        }
+    }
+
+    @Override
+    public synchronized List<Long> countAll(List<List<String>> unions) {
+        List<Long> counts = new ArrayList<>(unions.size());
+        for (List<String> keys : unions) {
+            counts.add(estimate(union(keys)));
+        }
+        return counts;
+    }
+
+    @Override
+    public synchronized long mergeAndCount(String target, Duration ttl, List<String> sources) {
+        List<String> keys = new ArrayList<>(sources);
+        keys.add(target);
+        byte[] merged = union(keys);
+        sketches.put(target, merged);
+        return estimate(merged);
+    }
+
+    /**
+     * 删除计数器，模拟过期
+     */
+    public synchronized void delete(String key) {
+        sketches.remove(key);
+    }
+
+    public synchronized Set<String> keys() {
+        return new HashSet<>(sketches.keySet());
+    }
+
+    private byte[] union(Collection<String> keys) {
+        byte[] result = new byte[M];
+        for (String key : keys) {
+            byte[] registers = sketches.get(key);
+            if (registers == null) {
+                continue;
+            }
+            for (int i = 0; i < M; i++) {
+                result[i] = (byte) Math.max(result[i], registers[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ertl的改进估算方法，与redis的hllCount相同
+     */
+    private static long estimate(byte[] registers) {
+        int[] histogram = new int[Q + 2];
+        for (byte r : registers) {
+            histogram[r]++;
+        }
+        double z = M * tau((M - histogram[Q + 1]) / (double) M);
+        for (int k = Q; k >= 1; k--) {
+            z += histogram[k];
+            z *= 0.5;
+        }
+        z += M * sigma(histogram[0] / (double) M);
+        return Math.round(ALPHA_INF * M * M / z);
+    }
+
+    private static double sigma(double x) {
+        if (x == 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1, z = x, zPrev;
+        do {
+            x *= x;
+            zPrev = z;
+            z += x * y;
+            y += y;
+        } while (zPrev != z);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0.0 || x == 1.0) {
+            return 0.0;
+        }
+        double y = 1.0, z = 1 - x, zPrev;
+        do {
+            x = Math.sqrt(x);
+            zPrev = z;
+            y *= 0.5;
+            z -= Math.pow(1 - x, 2) * y;
+        } while (zPrev != z);
+        return z / 3;
+    }
+}
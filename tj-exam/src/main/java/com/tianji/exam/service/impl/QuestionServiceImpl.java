@@ -2,6 +2,7 @@ package com.tianji.exam.service.impl;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.tianji.api.batch.BatchLoader;
 import com.tianji.api.cache.CategoryCache;
 import com.tianji.api.client.user.UserClient;
 import com.tianji.api.dto.IdAndNumDTO;
@@ -48,6 +49,7 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
     private final IQuestionDetailService detailService;
     private final IQuestionBizService bizService;
     private final UserClient userClient;
+    private final BatchLoader<Long, UserDTO> userBatchLoader;
     private final CategoryCache categoryCache;
 
     @Override
@@ -134,7 +136,7 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         // 3.2.查询用户
         Map<Long, UserDTO> userMap = new HashMap<>(uIds.size());
         if (CollUtils.isNotEmpty(uIds)) {
-            List<UserDTO> users = userClient.queryUserByIds(uIds);
+            List<UserDTO> users = userBatchLoader.getAll(uIds);
             userMap = users.stream().collect(Collectors.toMap(UserDTO::getId, u -> u));
         }
         // 4.处理vo
@@ -1,6 +1,9 @@
 package com.tianji.gateway.config;
 
+import com.tianji.authsdk.gateway.util.AntPathIndex;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Setter;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
@@ -13,6 +16,11 @@ import java.util.Set;
 public class AuthProperties implements InitializingBean {
 
     private Set<String> excludePath;
+    /**
+     * 由excludePath构建的匹配索引。配置刷新时属性会重新绑定并再次执行afterPropertiesSet，索引随之重建
+     */
+    @Setter(AccessLevel.NONE)
+    private volatile AntPathIndex excludePathIndex = AntPathIndex.empty();
 
     @Override
     public void afterPropertiesSet() throws Exception {
@@ -22,5 +30,6 @@ public class AuthProperties implements InitializingBean {
         excludePath.add("/accounts/login");
         excludePath.add("/accounts/admin/login");
         excludePath.add("/accounts/refresh");
+        excludePathIndex = AntPathIndex.of(excludePath);
     }
 }
@@ -9,7 +9,6 @@ import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
@@ -23,7 +22,6 @@ public class AccountAuthFilter implements GlobalFilter, Ordered {
 
     private final AuthUtil authUtil;
     private final AuthProperties authProperties;
-    private final AntPathMatcher antPathMatcher = new AntPathMatcher();
 
     public AccountAuthFilter(AuthUtil authUtil, AuthProperties authProperties) {
         this.authUtil = authUtil;
@@ -64,12 +62,7 @@ public class AccountAuthFilter implements GlobalFilter, Ordered {
     }
 
     private boolean isExcludePath(String antPath) {
-        for (String pathPattern : authProperties.getExcludePath()) {
-            if(antPathMatcher.match(pathPattern, antPath)){
-                return true;
-            }
-        }
-        return false;
+        return authProperties.getExcludePathIndex().matches(antPath);
     }
 
     @Override
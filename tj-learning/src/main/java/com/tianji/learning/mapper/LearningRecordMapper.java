@@ -2,6 +2,9 @@ package com.tianji.learning.mapper;
 
 import com.tianji.learning.domain.po.LearningRecord;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +16,11 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface LearningRecordMapper extends BaseMapper<LearningRecord> {
 
+    /**
+     * 批量更新学习记录的播放进度
+     * @param records 学习记录，只需要id和moment
+     * @return 更新的行数
+     */
+    int updateMomentBatch(@Param("records") List<LearningRecord> records);
+
 }
@@ -1,8 +1,11 @@
 package com.tianji.learning.mq;
 
+import com.tianji.api.cache.LessonEntitlementCache;
+import com.tianji.api.cache.LessonEntitlementCache.LessonEntitlement;
 import com.tianji.api.dto.trade.OrderBasicDTO;
 import com.tianji.common.constants.MqConstants;
 import com.tianji.common.utils.CollUtils;
+import com.tianji.learning.domain.po.LearningLesson;
 import com.tianji.learning.service.ILearningLessonService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,12 +16,15 @@ import org.springframework.amqp.rabbit.annotation.QueueBinding;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class LessonChangeListener {
 
     private final ILearningLessonService lessonService;
+    private final LessonEntitlementCache entitlementCache;
 
     /**
      * 监听订单支付或课程报名的消息
@@ -39,6 +45,16 @@ public class LessonChangeListener {
         // 2.添加课程
         log.debug("监听到用户{}的订单{}，需要添加课程{}到课表中", order.getUserId(), order.getOrderId(), order.getCourseIds());
         lessonService.addUserLesson(order.getUserId(), order.getCourseIds());
+        // 3.课表已提交，写入课程权益缓存，播放视频时无需再查询课表
+        List<LearningLesson> lessons = lessonService.lambdaQuery()
+                .select(LearningLesson::getId, LearningLesson::getCourseId, LearningLesson::getExpireTime)
+                .eq(LearningLesson::getUserId, order.getUserId())
+                .in(LearningLesson::getCourseId, order.getCourseIds())
+                .list();
+        for (LearningLesson lesson : lessons) {
+            entitlementCache.add(order.getUserId(), lesson.getCourseId(),
+                    LessonEntitlement.of(lesson.getId(), lesson.getExpireTime()));
+        }
     }
 
     @RabbitListener(bindings = @QueueBinding(
@@ -56,6 +72,7 @@ public class LessonChangeListener {
 
         // 2.删除课程
         log.debug("监听到用户{}的订单{}，需要添加课程{}到课表中", order.getUserId(), order.getOrderId(), order.getCourseIds());
+        // 删除课表的同时移除课程权益缓存
         lessonService.deleteCourseFromLesson(order.getUserId(), order.getCourseIds().get(0));
 
 
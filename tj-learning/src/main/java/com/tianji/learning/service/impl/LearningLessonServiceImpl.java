@@ -4,9 +4,11 @@ import cn.hutool.core.io.unit.DataUnit;
 import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
-import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
-import com.tianji.api.client.course.CatalogueClient;
+import com.tianji.api.batch.BatchLoader;
+import com.tianji.api.cache.CourseCache;
+import com.tianji.api.cache.LessonEntitlementCache;
+import com.tianji.api.cache.LessonEntitlementCache.LessonEntitlement;
 import com.tianji.api.client.course.CourseClient;
 import com.tianji.api.dto.course.CataSimpleInfoDTO;
 import com.tianji.api.dto.course.CourseFullInfoDTO;
@@ -17,19 +19,19 @@ import com.tianji.common.exceptions.BadRequestException;
 import com.tianji.common.exceptions.BizIllegalException;
 import com.tianji.common.utils.BeanUtils;
 import com.tianji.common.utils.CollUtils;
-import com.tianji.common.utils.DateUtils;
+import com.tianji.common.utils.ParallelUtils;
+import com.tianji.common.utils.TransactionUtils;
 import com.tianji.common.utils.UserContext;
 import com.tianji.learning.domain.dto.LearningPlanDTO;
 import com.tianji.learning.domain.po.LearningLesson;
-import com.tianji.learning.domain.po.LearningRecord;
 import com.tianji.learning.domain.vo.LearningLessonVO;
 import com.tianji.learning.domain.vo.LearningPlanPageVO;
 import com.tianji.learning.domain.vo.LearningPlanVO;
 import com.tianji.learning.enums.LessonStatus;
 import com.tianji.learning.enums.PlanStatus;
 import com.tianji.learning.mapper.LearningLessonMapper;
-import com.tianji.learning.mapper.LearningRecordMapper;
 import com.tianji.learning.service.ILearningLessonService;
+import com.tianji.learning.utils.LearningPlanStatsCache;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import io.swagger.models.auth.In;
 import lombok.RequiredArgsConstructor;
@@ -37,9 +39,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -60,15 +62,27 @@ import java.util.stream.Collectors;
 public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper, LearningLesson> implements ILearningLessonService {
 
     final CourseClient courseClient;
-    final CatalogueClient catalogueClient;
+    final CourseCache courseCache;
+    final BatchLoader<Long, CataSimpleInfoDTO> catalogueBatchLoader;
 
-    final LearningRecordMapper learningRecordMapper;
+    final LearningPlanStatsCache planStatsCache;
+
+    final LessonEntitlementCache entitlementCache;
 
     @Override
     @Transactional
     public void addUserLesson(Long userId, List<Long> courseIds) {
-        // 1.查询课程有效期
-        List<CourseSimpleInfoDTO> cInfoList = courseClient.getSimpleInfoList(courseIds);
+        // 0.订单消息至少投递一次，重复投递时跳过课表中已有的课程
+        Set<Long> owned = queryOwnedCourseIds(userId, courseIds);
+        if (!owned.isEmpty()) {
+            log.debug("用户{}的课表中已有课程{}，不再重复添加", userId, owned);
+            courseIds = courseIds.stream().filter(id -> !owned.contains(id)).collect(Collectors.toList());
+            if (courseIds.isEmpty()) {
+                return;
+            }
+        }
+        // 1.查询课程有效期，同时把课程信息批量写入本地缓存，后续学习时判断小节总数无需远程调用
+        List<CourseSimpleInfoDTO> cInfoList = courseCache.getSimpleInfoList(courseIds);
         if (CollUtils.isEmpty(cInfoList)) {
             // 课程不存在，无法添加
             log.error("课程信息不存在，无法添加到课表");
@@ -120,7 +134,7 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
 
         //3.远程调用课程服务，给vo中的课程名   封面  张结束赋值
         Set<Long> courseIds = records.stream().map(LearningLesson::getCourseId).collect(Collectors.toSet());
-        List<CourseSimpleInfoDTO> cinfos = courseClient.getSimpleInfoList(courseIds);
+        List<CourseSimpleInfoDTO> cinfos = courseCache.getSimpleInfoList(courseIds);
         if (CollUtils.isEmpty(cinfos)){
             throw new BizIllegalException("课程不存在");
         }
@@ -168,19 +182,29 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
                 .last("limit 1")
                 .one();
 
-        //3.远程调用课程服务，给vo中的课程名   封面  张结束赋值
-        CourseFullInfoDTO cinfo = courseClient.getCourseInfoById(lesson.getCourseId(), false, false);
-        if (cinfo == null){
-            throw new BizIllegalException("课程不存在");
+        if (lesson == null) {
+            return null;
         }
-        //4.查询当前用户课表中   总的课程数
+
+        //3.并行远程调用课程服务，查询课程信息和最近学习的小节，二者互不依赖
+        ParallelUtils.Call<CourseFullInfoDTO> courseCall = ParallelUtils.submit(
+                () -> courseClient.getCourseInfoById(lesson.getCourseId(), false, false));
+        Long latestSectionId = lesson.getLatestSectionId(); //最近学习的小节id
+        //小节信息只用于展示，查询失败时降级为空
+        ParallelUtils.Call<List<CataSimpleInfoDTO>> cataCall = latestSectionId == null ? null : ParallelUtils.submit(
+                () -> catalogueBatchLoader.getAll(CollUtils.singletonList(latestSectionId)),
+                ParallelUtils.DEFAULT_TIMEOUT, CollUtils.emptyList());
+
+        //4.远程调用的同时，查询当前用户课表中   总的课程数
         //select count(*) from learning lesson where user_id = xxx
         Integer count = this.lambdaQuery().eq(LearningLesson::getUserId, userId).count();
 
-        //5.通过feign远程调用课程服务     获取小节名称  和小节编号
-        Long latestSectionId = lesson.getLatestSectionId(); //最近学习的小节id
-        //使用单个集合的方法去进行。比较节省空间，默认创建集合的大小是十个
-        List<CataSimpleInfoDTO> cataSimpleInfoDTOS = catalogueClient.batchQueryCatalogue(CollUtils.singletonList(latestSectionId));
+        //5.等待远程调用结果
+        CourseFullInfoDTO cinfo = courseCall.get();
+        if (cinfo == null){
+            throw new BizIllegalException("课程不存在");
+        }
+        List<CataSimpleInfoDTO> cataSimpleInfoDTOS = cataCall == null ? null : cataCall.get();
 
         //6.封装到vo返回
         LearningLessonVO vo = BeanUtils.copyBean(lesson, LearningLessonVO.class);
@@ -188,9 +212,11 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
         vo.setCourseCoverUrl(cinfo.getCoverUrl());
         vo.setSections(cinfo.getSectionNum());
         vo.setCourseAmount(count);   //当前用户能学习课程总数
-        CataSimpleInfoDTO cataSimpleInfoDTO = cataSimpleInfoDTOS.get(0);
-        vo.setLatestSectionName(cataSimpleInfoDTO.getName());  //最近学习的小节
-        vo.setLatestSectionIndex(cataSimpleInfoDTO.getCIndex()); //最近学习的小节序号
+        if (CollUtils.isNotEmpty(cataSimpleInfoDTOS)) {
+            CataSimpleInfoDTO cataSimpleInfoDTO = cataSimpleInfoDTOS.get(0);
+            vo.setLatestSectionName(cataSimpleInfoDTO.getName());  //最近学习的小节
+            vo.setLatestSectionIndex(cataSimpleInfoDTO.getCIndex()); //最近学习的小节序号
+        }
 
         return vo;
     }
@@ -208,6 +234,10 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
         }
         // 2.删除课程
         remove(buildUserIdAndCourseIdWrapper(userId, courseId));
+        // 3.课表变化，事务提交后移除课程权益，本周学习计划的统计需要重建
+        Long uid = userId;
+        TransactionUtils.afterCommit(() -> entitlementCache.remove(uid, courseId));
+        planStatsCache.invalidate(userId);
     }
 
     /**
@@ -220,23 +250,54 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
         //1.获取当前登录用户id
         Long userId = UserContext.getUser();
 
-        //2.查询课表learning_lesson     条件 user_id 和 course_id
-        LearningLesson lesson = this.lambdaQuery()
-                .eq(LearningLesson::getUserId, userId)
-                .eq(LearningLesson::getCourseId, courseId)
-                .one();
-        if(lesson == null){
-            return null;
+        //2.查询课程权益缓存
+        LessonEntitlement entitlement = entitlementCache.get(userId, courseId);
+        if (entitlement == null) {
+            //3.缓存中没有用户的课表，从数据库加载全部课表后写入缓存，加载期间课表有变化时不写入
+            String version = entitlementCache.currentVersion(userId);
+            Map<Long, LessonEntitlement> entitlements = loadEntitlements(userId);
+            entitlementCache.putAll(userId, entitlements, version);
+            entitlement = entitlements.getOrDefault(courseId, LessonEntitlement.NONE);
         }
-        //3.判断课程状态是否有效
-        LocalDateTime expireTime = lesson.getExpireTime();
-        LocalDateTime now = LocalDateTime.now();
-        if(now.isAfter(expireTime)){
-            return null;
+        //4.判断课程是否有效，有效则返回课表id
+        return entitlement.getValidLessonId();
+    }
+
+    /**
+     * 查询用户全部课表的课程权益
+     * sql: select id, course_id, expire_time from learning_lesson where user_id = xxx
+     * @param userId 用户id
+     * @return 课程id和课程权益
+     */
+    Map<Long, LessonEntitlement> loadEntitlements(Long userId) {
+        List<LearningLesson> lessons = this.lambdaQuery()
+                .select(LearningLesson::getId, LearningLesson::getCourseId, LearningLesson::getExpireTime)
+                .eq(LearningLesson::getUserId, userId)
+                .list();
+        Map<Long, LessonEntitlement> map = new HashMap<>(lessons.size());
+        for (LearningLesson lesson : lessons) {
+            //没有过期时间的课程永久有效
+            map.put(lesson.getCourseId(), LessonEntitlement.of(lesson.getId(), lesson.getExpireTime()));
         }
+        return map;
+    }
 
-        //4.返回
-        return lesson.getId();
+    /**
+     * 查询课程中已经在用户课表中的
+     * sql: select course_id from learning_lesson where user_id = xxx and course_id in (xxx)
+     * @param userId 用户id
+     * @param courseIds 课程id
+     * @return 课表中已有的课程id
+     */
+    Set<Long> queryOwnedCourseIds(Long userId, List<Long> courseIds) {
+        return this.lambdaQuery()
+                .select(LearningLesson::getCourseId)
+                .eq(LearningLesson::getUserId, userId)
+                .in(LearningLesson::getCourseId, courseIds)
+                .list()
+                .stream()
+                .map(LearningLesson::getCourseId)
+                .collect(Collectors.toSet());
     }
 
     /**
@@ -290,6 +351,8 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
                 .set(LearningLesson::getPlanStatus, PlanStatus.PLAN_RUNNING)
                 .eq(LearningLesson::getId,lesson.getId())
                 .update();
+        //4.计划总小节数变化，本周学习计划的统计需要重建
+        planStatsCache.invalidate(userId);
     }
 
     /**
@@ -301,33 +364,10 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
     public LearningPlanPageVO queryMyPlans(PageQuery query) {
         //1.获取当前登录用户id
         Long userId = UserContext.getUser();
-        //todo 2.查询几份
-        //3.查询本周学习计划总数据 learning_lesson 条件userId    status  in(0,1) plan_status=1  ， 查询sum(week_freq)
-        //sql   select sum(week_freq) from learning_lesson where user_id = 2 and plan_status = 1
-        //      and status in(0,1)
-        QueryWrapper<LearningLesson> wrapper = new QueryWrapper<>();
-        wrapper.select("sum(week_freq) as plansTotal");
-        wrapper.eq("user_id",userId);
-        wrapper.in("status",LessonStatus.NOT_BEGIN,LessonStatus.LEARNING);
-        wrapper.eq("plan_status",PlanStatus.PLAN_RUNNING);
-        Map<String, Object> map = this.getMap(wrapper);//map有可能为null
-        //{plansTotal:7}
-        Integer plansTotal = 0;
-        if (map != null && map.get("plansTotal") != null){
-            plansTotal = Integer.valueOf(map.get("plansTotal").toString());
-        }
-        //4.查询本周  实际  已学习计划总数据  learning_record 条件userId finish_time仔本周区间   finished为true   count(*)
-        //* SELECT COUNT(*) FROM learning_record
-        //where user_id = 2
-        //AND finished = 1    AND finish_time BETWEEN '周一 00:00:01' AND '周日23:59:59'
-        LocalDate now = LocalDate.now();
-        LocalDateTime weekBeginTime = DateUtils.getWeekBeginTime(now);//本周开始时间
-        LocalDateTime weekEndTime = DateUtils.getWeekEndTime(now);//本周结束时间
-        Integer weekFinishedPlanNum = learningRecordMapper.selectCount(Wrappers.<LearningRecord>lambdaQuery()
-                .eq(LearningRecord::getUserId, userId)
-                .eq(LearningRecord::getFinished, true)
-                .between(LearningRecord::getFinishTime, weekBeginTime, weekEndTime));
-        //5.查询课表数据  learning_lessons    条件userId    status  in(0,1) plan_status=1   分页
+        //2.查询本周学习计划的统计数据：计划总小节数、已学完小节数、每门课已学完小节数
+        //  统计数据物化在redis中，学完小节时递增，缓存不存在时才查询数据库重建，与历史学习记录的数量无关
+        LearningPlanStatsCache.WeekPlanStats weekStats = planStatsCache.getWeekStats(userId);
+        //3.查询课表数据  learning_lessons    条件userId    status  in(0,1) plan_status=1   分页
         Page<LearningLesson> page = this.lambdaQuery()
                 .eq(LearningLesson::getUserId, userId)
                 .in(LearningLesson::getStatus, LessonStatus.NOT_BEGIN, LessonStatus.LEARNING)
@@ -341,33 +381,19 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
             voNull.setList(CollUtils.emptyList());
             return voNull;
         }
-        //6.远程调用课程服务    获取课程信息
+        //4.远程调用课程服务    获取课程信息
         Set<Long> courseIds = records.stream().map(LearningLesson::getCourseId).collect(Collectors.toSet());
-        List<CourseSimpleInfoDTO> cinfos = courseClient.getSimpleInfoList(courseIds);
+        List<CourseSimpleInfoDTO> cinfos = courseCache.getSimpleInfoList(courseIds);
         if (CollUtils.isEmpty(cinfos)){
             throw new BizIllegalException("课程不存在");
         }
         //将cinfo list结构转map <课程id, CourseSimpleInfoDTO>
         Map<Long, CourseSimpleInfoDTO> cinfoMap = cinfos.stream().collect(Collectors.toMap(CourseSimpleInfoDTO::getId, c -> c));
 
-        //7.查询学习记录表 lreaning_record 本周 当前用户下   每一门课下   已学习的小节数量
-        //* SELECT lesson_id,COUNT(*) FROM learning_record
-        //where user_id = 2
-        //AND finished = 1    AND finish_time BETWEEN '周一 00:00:01' AND '周日23:59:59'
-        //GROUP BY lesson_id
-        QueryWrapper<LearningRecord> rWrapper = new QueryWrapper<>();
-        rWrapper.select("lesson_id as lessonId","count(*) as userId");  //由于没有对应属性 临时用userId来存储count(*)
-        rWrapper.eq("user_id",userId);
-        rWrapper.eq("finished",true);
-        rWrapper.between("finish_time",weekBeginTime,weekEndTime);
-        rWrapper.groupBy("lesson_id");
-        List<LearningRecord> learningRecords = learningRecordMapper.selectList(rWrapper);
-        //将集合转换成map     map中的key是 lessonId value是 当前用户对该课程下已学习的小节数量
-        Map<Long, Long> courseweekFinishNumMap = learningRecords.stream().collect(Collectors.toMap(LearningRecord::getLessonId, c -> c.getUserId()));
-        //8.封装vo返回
+        //5.封装vo返回
         LearningPlanPageVO vo =new LearningPlanPageVO();
-        vo.setWeekTotalPlan(plansTotal);
-        vo.setWeekFinished(weekFinishedPlanNum);
+        vo.setWeekTotalPlan(weekStats.getTotal());
+        vo.setWeekFinished(weekStats.getFinished());
         List<LearningPlanVO> voList = new ArrayList<>();
         for (LearningLesson record : records) {
             LearningPlanVO planVO = BeanUtils.copyBean(record, LearningPlanVO.class);
@@ -376,13 +402,7 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
                 planVO.setCourseName(infoDto.getName());
                 planVO.setSections(infoDto.getSectionNum());
             }
-            Long aLong = courseweekFinishNumMap.get(record.getId());
-           /* if (aLong !=null){
-                planVO.setWeekLearnedSections();    //本周已学习章节数
-            }else {
-                planVO.setWeekLearnedSections(0);
-            }*/
-            planVO.setWeekLearnedSections(courseweekFinishNumMap.getOrDefault(record.getId(),0L).intValue());
+            planVO.setWeekLearnedSections(weekStats.getLessonFinishedNum(record.getId()));    //本周已学习章节数
             voList.add(planVO);
         }
         vo.setList(voList);
@@ -1,9 +1,12 @@
 package com.tianji.learning.service.impl;
 
-import com.tianji.api.client.course.CourseClient;
-import com.tianji.api.dto.course.CourseFullInfoDTO;
+import com.tianji.api.cache.CourseCache;
+import com.tianji.api.dto.course.CourseSimpleInfoDTO;
 import com.tianji.api.dto.leanring.LearningLessonDTO;
 import com.tianji.api.dto.leanring.LearningRecordDTO;
+import com.tianji.api.dto.user.UserEventDTO;
+import com.tianji.common.autoconfigure.mq.RabbitMqHelper;
+import com.tianji.common.constants.MqConstants;
 import com.tianji.common.exceptions.BizIllegalException;
 import com.tianji.common.exceptions.DbException;
 import com.tianji.common.utils.BeanUtils;
@@ -16,12 +19,15 @@ import com.tianji.learning.enums.SectionType;
 import com.tianji.learning.mapper.LearningRecordMapper;
 import com.tianji.learning.service.ILearningLessonService;
 import com.tianji.learning.service.ILearningRecordService;
+import com.tianji.learning.utils.LearningPlanStatsCache;
+import com.tianji.learning.utils.LearningRecordDelayTaskHandler;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
@@ -38,7 +44,16 @@ public class LearningRecordServiceImpl extends ServiceImpl<LearningRecordMapper,
 
     private final ILearningLessonService iLearningLessonService;
 
-    private final CourseClient courseClient;
+    /**
+     * 课程信息的本地缓存，课程上下架等变更时由MQ消息清除
+     */
+    private final CourseCache courseCache;
+
+    private final LearningRecordDelayTaskHandler taskHandler;
+
+    private final LearningPlanStatsCache planStatsCache;
+
+    private final RabbitMqHelper mqHelper;
 
     /**
      * 根据id查询指定课程的学习记录
@@ -62,6 +77,14 @@ public class LearningRecordServiceImpl extends ServiceImpl<LearningRecordMapper,
                 .eq(LearningRecord::getLessonId, lesson.getId())
                 .eq(LearningRecord::getUserId, userId)
                 .list();
+        //3.1.尚未持久化的播放进度以缓存为准
+        Map<Long, LearningRecord> cacheMap = taskHandler.readRecordCaches(lesson.getId());
+        for (LearningRecord record : recordList) {
+            LearningRecord cache = cacheMap.get(record.getSectionId());
+            if (cache != null) {
+                record.setMoment(cache.getMoment());
+            }
+        }
 
         //4.封装结果返回
         LearningLessonDTO dto = new LearningLessonDTO();
@@ -106,19 +129,8 @@ public class LearningRecordServiceImpl extends ServiceImpl<LearningRecordMapper,
             throw new BizIllegalException("课表不存在");
         }
         //2.判断是否为第一次学完  isFinished是不是true
-        boolean allFninished = false;   //所有小节是否已学完
-        if(isFinished){
-            //3.远程调用课程服务    得到课程信息  小节总数
-            CourseFullInfoDTO cinfo = courseClient.getCourseInfoById(lesson.getCourseId(), false, false);
-            if (cinfo==null){
-                throw new BizIllegalException("课程不存在");
-            }
-            Integer sectionNum = cinfo.getSectionNum(); //该课程下小节总数
-            //4.如果isFinished为true 本小节是第一次学完     判断该用户对该课程是否完成学完
-            Integer learnedSections = lesson.getLearnedSections();  //当前用户对该课程已学的课程数
-            allFninished = learnedSections + 1 >= sectionNum;   //所有小节是否学完
-        }
-        //5.更新课表数据
+        boolean allFninished = isFinished && isAllSectionsLearned(lesson);   //所有小节是否已学完
+        //3.更新课表数据
         iLearningLessonService.lambdaUpdate()
                 .set(lesson.getStatus() == LessonStatus.NOT_BEGIN,LearningLesson::getStatus,LessonStatus.LEARNING)
                 .set(allFninished,LearningLesson::getStatus, LessonStatus.FINISHED)
@@ -127,6 +139,39 @@ public class LearningRecordServiceImpl extends ServiceImpl<LearningRecordMapper,
                 .setSql(isFinished,"learned_sections = learned_sections + 1")       //用sql防止线程并发过高导致都为1
                 .eq(LearningLesson::getId,lesson.getId())
                 .update();
+        //4.更新本周学习计划的统计
+        if (allFninished) {
+            // 课程已学完，不再计入学习计划，统计需要重建
+            planStatsCache.invalidate(lesson.getUserId());
+        } else if (isFinished) {
+            planStatsCache.incrFinished(lesson.getUserId(), lesson.getId(), dto.getCommitTime());
+        }
+        //5.学完小节，发送MQ消息用于学习数据统计，发送失败不影响学习记录
+        if (isFinished) {
+            mqHelper.sendAsync(MqConstants.Exchange.LEARNING_EXCHANGE, MqConstants.Key.LEARN_SECTION,
+                            UserEventDTO.of(lesson.getUserId(), lesson.getCourseId(), dto.getCommitTime()))
+                    .exceptionally(e -> {
+                        log.warn("发送用户{}学完小节的消息失败", lesson.getUserId(), e);
+                        return null;
+                    });
+        }
+    }
+
+    /**
+     * 判断学完一个新的小节后，课程的全部小节是否都已学完
+     * @param lesson 课表，learnedSections为本次学完之前已学的小节数
+     * @return 是否全部学完
+     */
+    boolean isAllSectionsLearned(LearningLesson lesson) {
+        //1.从本地缓存得到课程信息  小节总数
+        CourseSimpleInfoDTO cinfo = courseCache.getSimpleInfo(lesson.getCourseId());
+        if (cinfo == null){
+            throw new BizIllegalException("课程不存在");
+        }
+        Integer sectionNum = cinfo.getSectionNum(); //该课程下小节总数
+        //2.本小节是第一次学完     判断该用户对该课程是否完成学完
+        Integer learnedSections = lesson.getLearnedSections();  //当前用户对该课程已学的课程数
+        return sectionNum != null && learnedSections + 1 >= sectionNum;
     }
 
     //处理考试记录
@@ -146,12 +191,8 @@ public class LearningRecordServiceImpl extends ServiceImpl<LearningRecordMapper,
 
     //处理视频播放记录
     private boolean handleVideoRecord(Long userId, LearningRecordFormDTO dto) {
-        //1.查询旧的学习记录 learning_record    条件userId lessonId section_id
-        LearningRecord learningRecord = this.lambdaQuery()
-                .eq(LearningRecord::getUserId, userId)
-                .eq(LearningRecord::getLessonId, dto.getLessonId())
-                .eq(LearningRecord::getSectionId, dto.getSectionId())
-                .one();
+        //1.查询旧的学习记录 优先查缓存，缓存未命中再查learning_record    条件userId lessonId section_id
+        LearningRecord learningRecord = queryOldRecord(userId, dto.getLessonId(), dto.getSectionId());
         //2.判断是否存在
         if (learningRecord == null){
             //3 如果不存在则新增学习记录
@@ -166,17 +207,52 @@ public class LearningRecordServiceImpl extends ServiceImpl<LearningRecordMapper,
         //4.如果存在更新学习记录  learning_record 更新什么字段 moment
         //判断本小节是否是第一次学完     isFinshed为true代表第一次学完
         boolean isFinished = !learningRecord.getFinished() && dto.getMoment() * 2 >= dto.getDuration();
+        if (!isFinished) {
+            //4.1 非第一次学完，只更新缓存，由延迟任务合并后批量写入数据库
+            LearningRecord record = new LearningRecord();
+            record.setId(learningRecord.getId());
+            record.setLessonId(dto.getLessonId());
+            record.setSectionId(dto.getSectionId());
+            record.setMoment(dto.getMoment());
+            record.setFinished(learningRecord.getFinished());
+            taskHandler.addLearningRecordTask(record);
+            return false;
+        }
+        //4.2 第一次学完，直接写数据库，保证课表的学习进度立即可见
         // update learning_record set moment = xxx , finished = true, finish_time == xxxx where id = xxx
         boolean result = this.lambdaUpdate()
                 .set(LearningRecord::getMoment, dto.getMoment())
-                .set(isFinished, LearningRecord::getFinished, true)
-                .set(isFinished, LearningRecord::getFinishTime, dto.getCommitTime())
+                .set(LearningRecord::getFinished, true)
+                .set(LearningRecord::getFinishTime, dto.getCommitTime())
                 .eq(LearningRecord::getId, learningRecord.getId())
                 .update();
         if(!result){
             throw new DbException("更新视频学习记录失败");
         }
-        return isFinished;
+        //5.清理缓存，下次心跳时重新加载带有finished状态的记录
+        taskHandler.cleanRecordCache(dto.getLessonId(), dto.getSectionId());
+        return true;
+    }
+
+    //查询旧的学习记录，先查缓存，未命中则查数据库并写入缓存
+    private LearningRecord queryOldRecord(Long userId, Long lessonId, Long sectionId) {
+        //1.查询缓存
+        LearningRecord cache = taskHandler.readRecordCache(lessonId, sectionId);
+        if (cache != null) {
+            return cache;
+        }
+        //2.缓存未命中，查询数据库
+        LearningRecord dbRecord = this.lambdaQuery()
+                .eq(LearningRecord::getUserId, userId)
+                .eq(LearningRecord::getLessonId, lessonId)
+                .eq(LearningRecord::getSectionId, sectionId)
+                .one();
+        if (dbRecord == null) {
+            return null;
+        }
+        //3.写入缓存
+        taskHandler.writeRecordCache(dbRecord);
+        return dbRecord;
     }
 
 
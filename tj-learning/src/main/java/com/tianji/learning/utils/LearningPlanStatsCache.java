@@ -0,0 +1,255 @@
+package com.tianji.learning.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.tianji.common.utils.CollUtils;
+import com.tianji.common.utils.DateUtils;
+import com.tianji.common.utils.StringUtils;
+import com.tianji.common.utils.TransactionUtils;
+import com.tianji.learning.domain.po.LearningLesson;
+import com.tianji.learning.domain.po.LearningRecord;
+import com.tianji.learning.enums.LessonStatus;
+import com.tianji.learning.enums.PlanStatus;
+import com.tianji.learning.mapper.LearningLessonMapper;
+import com.tianji.learning.mapper.LearningRecordMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * 用户每周学习计划的统计数据，物化在redis中。
+ * <p>
+ * 每个用户每周一个hash：total为学习计划的每周总小节数，finished为本周已学完的小节数，l:{lessonId}为每门课本周已学完的小节数。
+ * 学完小节时只在hash存在时递增计数；计划变更、课程学完或删除时删除hash。hash不存在（新的一周或被删除）时，
+ * 下一次查询从数据库重建，因此新的一周不需要定时任务来清理上周的数据，旧的hash到期后自动删除。
+ * </p>
+ * <p>
+ * 递增和删除都在事务提交后执行，保证之后的重建能读到已提交的数据。每个用户还有一个版本号，每次递增或删除都会加一，
+ * 重建前先读取版本号，写入时版本号已经变化，说明重建期间数据库有了新的提交，放弃写入，下次查询再重建。
+ * 只有恰好在事务提交与提交后回调之间完成的重建会多计一次，到下一次删除或新的一周时修正。
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LearningPlanStatsCache {
+
+    /**
+     * 统计数据的key，参数为用户id和本周一的日期
+     */
+    private static final String STATS_KEY_TEMPLATE = "learning:plan:stats:{}:{}";
+    /**
+     * 统计数据的版本号，参数为用户id
+     */
+    private static final String VERSION_KEY_TEMPLATE = "learning:plan:stats:ver:{}";
+    /**
+     * 版本号的有效期，只需要覆盖一次重建的时间
+     */
+    private static final long VERSION_TTL_SECONDS = 7 * 24 * 3600;
+    private static final String FIELD_TOTAL = "total";
+    private static final String FIELD_FINISHED = "finished";
+    private static final String FIELD_LESSON_PREFIX = "l:";
+    private static final DateTimeFormatter WEEK_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /**
+     * 版本号加一，hash存在时才递增，避免在不完整的hash上计数
+     */
+    static final RedisScript<Long> INCR_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('incr', KEYS[2]) " +
+            "redis.call('expire', KEYS[2], ARGV[3]) " +
+            "if redis.call('exists', KEYS[1]) == 0 then return 0 end " +
+            "redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+            "redis.call('hincrby', KEYS[1], ARGV[2], 1) " +
+            "return 1", Long.class);
+    /**
+     * 版本号加一，并删除hash
+     */
+    static final RedisScript<Long> INVALIDATE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('incr', KEYS[2]) " +
+            "redis.call('expire', KEYS[2], ARGV[1]) " +
+            "return redis.call('del', KEYS[1])", Long.class);
+    /**
+     * hash不存在并且版本号没有变化时才写入重建的数据。hash已存在说明其它请求已经重建过，并且可能已经递增；
+     * 版本号变化说明重建期间有新的提交，读到的数据可能已经过时
+     */
+    static final RedisScript<Long> REBUILD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then return 0 end " +
+            "if (redis.call('get', KEYS[2]) or '0') ~= ARGV[2] then return 0 end " +
+            "redis.call('hset', KEYS[1], unpack(ARGV, 3)) " +
+            "redis.call('expireat', KEYS[1], ARGV[1]) " +
+            "return 1", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final LearningLessonMapper lessonMapper;
+    private final LearningRecordMapper recordMapper;
+
+    /**
+     * 查询用户本周的学习计划统计，缓存不存在时从数据库重建
+     *
+     * @param userId 用户id
+     * @return 本周的统计数据
+     */
+    public WeekPlanStats getWeekStats(Long userId) {
+        LocalDate today = LocalDate.now();
+        String key = statsKey(userId, today);
+        // 1.查询缓存
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+        if (CollUtils.isNotEmpty(entries)) {
+            return WeekPlanStats.of(entries);
+        }
+        // 2.缓存不存在，先读取版本号，再从数据库重建
+        String versionKey = versionKey(userId);
+        String version = redisTemplate.opsForValue().get(versionKey);
+        WeekPlanStats stats = loadFromDb(userId, today);
+        writeStats(key, versionKey, version == null ? "0" : version, stats, today);
+        return stats;
+    }
+
+    /**
+     * 用户学完了一个小节，递增学完时间所在周的计数。在事务中调用时，事务提交后才递增
+     *
+     * @param userId     用户id
+     * @param lessonId   课表id
+     * @param finishTime 学完的时间
+     */
+    public void incrFinished(Long userId, Long lessonId, LocalDateTime finishTime) {
+        LocalDate day = finishTime == null ? LocalDate.now() : finishTime.toLocalDate();
+        TransactionUtils.afterCommit(() -> redisTemplate.execute(INCR_SCRIPT, List.of(statsKey(userId, day), versionKey(userId)),
+                FIELD_FINISHED, FIELD_LESSON_PREFIX + lessonId, String.valueOf(VERSION_TTL_SECONDS)));
+    }
+
+    /**
+     * 学习计划或课表发生变化，删除本周的统计，下次查询时重建。在事务中调用时，事务提交后才删除
+     *
+     * @param userId 用户id
+     */
+    public void invalidate(Long userId) {
+        TransactionUtils.afterCommit(() -> redisTemplate.execute(INVALIDATE_SCRIPT,
+                List.of(statsKey(userId, LocalDate.now()), versionKey(userId)), String.valueOf(VERSION_TTL_SECONDS)));
+    }
+
+    private WeekPlanStats loadFromDb(Long userId, LocalDate today) {
+        // 1.查询学习计划的每周总小节数 select sum(week_freq) from learning_lesson where user_id = ? and plan_status = 1 and status in(0,1)
+        QueryWrapper<LearningLesson> wrapper = new QueryWrapper<>();
+        wrapper.select("sum(week_freq) as plansTotal");
+        wrapper.eq("user_id", userId);
+        wrapper.in("status", LessonStatus.NOT_BEGIN, LessonStatus.LEARNING);
+        wrapper.eq("plan_status", PlanStatus.PLAN_RUNNING);
+        List<Map<String, Object>> maps = lessonMapper.selectMaps(wrapper);
+        int total = 0;
+        if (CollUtils.isNotEmpty(maps) && maps.get(0) != null && maps.get(0).get("plansTotal") != null) {
+            total = Integer.parseInt(maps.get(0).get("plansTotal").toString());
+        }
+        // 2.查询本周每门课学完的小节数 select lesson_id, count(*) from learning_record where user_id = ? and finished = 1
+        //   and finish_time between 周一 and 周日 group by lesson_id
+        LocalDateTime weekBeginTime = DateUtils.getWeekBeginTime(today);
+        LocalDateTime weekEndTime = DateUtils.getWeekEndTime(today);
+        QueryWrapper<LearningRecord> rWrapper = new QueryWrapper<>();
+        rWrapper.select("lesson_id as lessonId", "count(*) as userId");  //由于没有对应属性 临时用userId来存储count(*)
+        rWrapper.eq("user_id", userId);
+        rWrapper.eq("finished", true);
+        rWrapper.between("finish_time", weekBeginTime, weekEndTime);
+        rWrapper.groupBy("lesson_id");
+        List<LearningRecord> records = recordMapper.selectList(rWrapper);
+        // 3.本周学完的总小节数就是各门课之和
+        Map<Long, Integer> lessonFinished = new HashMap<>(records.size());
+        int finished = 0;
+        for (LearningRecord r : records) {
+            int num = r.getUserId().intValue();
+            lessonFinished.put(r.getLessonId(), num);
+            finished += num;
+        }
+        return new WeekPlanStats(total, finished, lessonFinished);
+    }
+
+    private void writeStats(String key, String versionKey, String version, WeekPlanStats stats, LocalDate today) {
+        // 保留到下周一结束，过期前的最后一次查询一定已经换成了新一周的key
+        long expireAt = DateUtils.getWeekEndTime(today).plusDays(1)
+                .atZone(ZoneId.systemDefault()).toEpochSecond();
+        List<String> args = new ArrayList<>(6 + stats.lessonFinished.size() * 2);
+        args.add(String.valueOf(expireAt));
+        args.add(version);
+        args.add(FIELD_TOTAL);
+        args.add(String.valueOf(stats.total));
+        args.add(FIELD_FINISHED);
+        args.add(String.valueOf(stats.finished));
+        stats.lessonFinished.forEach((lessonId, num) -> {
+            args.add(FIELD_LESSON_PREFIX + lessonId);
+            args.add(String.valueOf(num));
+        });
+        try {
+            redisTemplate.execute(REBUILD_SCRIPT, List.of(key, versionKey), args.toArray());
+        } catch (Exception e) {
+            // 写缓存失败不影响查询结果，下次查询再重建
+            log.error("写入学习计划统计缓存失败，key：{}", key, e);
+        }
+    }
+
+    private static String versionKey(Long userId) {
+        return StringUtils.format(VERSION_KEY_TEMPLATE, userId);
+    }
+
+    static String statsKey(Long userId, LocalDate day) {
+        LocalDate monday = DateUtils.getWeekBeginTime(day).toLocalDate();
+        return StringUtils.format(STATS_KEY_TEMPLATE, userId, monday.format(WEEK_FORMATTER));
+    }
+
+    /**
+     * 一周的学习计划统计
+     */
+    @Getter
+    public static class WeekPlanStats {
+        /**
+         * 学习计划的每周总小节数
+         */
+        private final int total;
+        /**
+         * 本周已学完的小节数
+         */
+        private final int finished;
+        /**
+         * 课表id和本周学完的小节数
+         */
+        private final Map<Long, Integer> lessonFinished;
+
+        WeekPlanStats(int total, int finished, Map<Long, Integer> lessonFinished) {
+            this.total = total;
+            this.finished = finished;
+            this.lessonFinished = lessonFinished;
+        }
+
+        static WeekPlanStats of(Map<Object, Object> entries) {
+            int total = 0;
+            int finished = 0;
+            Map<Long, Integer> lessonFinished = new HashMap<>(entries.size());
+            for (Map.Entry<Object, Object> e : entries.entrySet()) {
+                String field = e.getKey().toString();
+                int value = Integer.parseInt(e.getValue().toString());
+                if (FIELD_TOTAL.equals(field)) {
+                    total = value;
+                } else if (FIELD_FINISHED.equals(field)) {
+                    finished = value;
+                } else if (field.startsWith(FIELD_LESSON_PREFIX)) {
+                    lessonFinished.put(Long.valueOf(field.substring(FIELD_LESSON_PREFIX.length())), value);
+                }
+            }
+            return new WeekPlanStats(total, finished, lessonFinished);
+        }
+
+        /**
+         * 某门课本周已学完的小节数
+         */
+        public int getLessonFinishedNum(Long lessonId) {
+            return lessonFinished.getOrDefault(lessonId, 0);
+        }
+    }
+}
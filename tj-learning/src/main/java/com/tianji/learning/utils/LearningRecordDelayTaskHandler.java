@@ -0,0 +1,280 @@
+package com.tianji.learning.utils;
+
+import com.tianji.common.utils.CollUtils;
+import com.tianji.common.utils.JsonUtils;
+import com.tianji.common.utils.StringUtils;
+import com.tianji.learning.domain.po.LearningRecord;
+import com.tianji.learning.mapper.LearningRecordMapper;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 视频播放记录的延迟写处理器：
+ * 播放进度心跳先写入redis，延迟一段时间后如果进度没有再变化（用户已停止播放），再批量持久化到数据库
+ * <p>
+ * 待持久化的小节保存在redis的zset中，member为“课表id:小节id”，score为到期时间（毫秒）。每次心跳都会把到期时间往后推，
+ * 因此同一小节的多次心跳自动合并，到期说明一段时间内没有新的心跳。后台线程定时领取到期的小节：领取时把score改为租约到期时间，
+ * 持久化成功后只删除score仍是该租约的成员（期间有新心跳的留给之后处理）。服务崩溃时未完成的小节在租约到期后被重新领取，
+ * 启动后后台线程立即处理所有已到期的小节，多个实例可以同时处理而不会重复领取。
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LearningRecordDelayTaskHandler {
+
+    /**
+     * 学习记录缓存key，hash结构，field为小节id，value为学习记录
+     */
+    private static final String RECORD_KEY_TEMPLATE = "learning:record:{}";
+    /**
+     * 待持久化的小节，zset结构，member为“课表id:小节id”，score为到期时间
+     */
+    static final String PENDING_KEY = "learning:record:pending";
+    /**
+     * 缓存有效期，需要覆盖服务重启的时间，否则重启后待持久化的进度已随缓存过期
+     */
+    private static final Duration RECORD_CACHE_TTL = Duration.ofMinutes(10);
+    /**
+     * 延迟持久化的时间，需要比播放器提交心跳的间隔（15秒）略长
+     */
+    static final Duration RECORD_DELAY_TIME = Duration.ofSeconds(20);
+    /**
+     * 领取后的租约时间，超过这个时间仍未完成持久化的小节会被重新领取
+     */
+    static final Duration CLAIM_LEASE = Duration.ofMinutes(1);
+    /**
+     * 没有到期的小节时，后台线程的检查间隔
+     */
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+    /**
+     * 每批次最多持久化的记录数
+     */
+    static final int FLUSH_BATCH_SIZE = 500;
+
+    /**
+     * 领取已到期的小节，把它们的score改为租约到期时间
+     */
+    static final RedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local members = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[3])) " +
+            "for _, m in ipairs(members) do redis.call('zadd', KEYS[1], ARGV[2], m) end " +
+            "return members", List.class);
+    /**
+     * 删除score仍为本次租约的小节，租约期间有新心跳的小节保留
+     */
+    static final RedisScript<Long> ACK_SCRIPT = new DefaultRedisScript<>(
+            "local n = 0 " +
+            "for i = 2, #ARGV do " +
+            "  local score = redis.call('zscore', KEYS[1], ARGV[i]) " +
+            "  if score and tonumber(score) == tonumber(ARGV[1]) then n = n + redis.call('zrem', KEYS[1], ARGV[i]) end " +
+            "end " +
+            "return n", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final LearningRecordMapper recordMapper;
+
+    private volatile boolean begin = true;
+    private Thread worker;
+
+    @PostConstruct
+    public void init() {
+        // 启动后立即处理已到期的小节，包括上次停机或崩溃时未持久化的
+        worker = new Thread(this::handleDelayTask, "learning-record-delay-task");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        begin = false;
+        worker.interrupt();
+        worker.join(POLL_INTERVAL_MILLIS);
+        // 尚未到期的小节也持久化，减少停机期间播放进度只存在于缓存中的时间；其它实例正在处理的小节租约更晚，不会被领取
+        long bound = System.currentTimeMillis() + RECORD_DELAY_TIME.toMillis();
+        try {
+            while (flushDue(bound) >= FLUSH_BATCH_SIZE) {
+                log.debug("停机前持久化学习记录");
+            }
+        } catch (Exception e) {
+            log.error("停机前持久化学习记录失败，将在重启后处理", e);
+        }
+        log.debug("学习记录延迟任务处理器已停止");
+    }
+
+    private void handleDelayTask() {
+        while (begin) {
+            try {
+                // 1.领取一批到期的小节并持久化，一批满了说明还有积压，继续处理
+                if (flushDue(System.currentTimeMillis()) < FLUSH_BATCH_SIZE) {
+                    // 2.没有积压，等待下一次检查
+                    Thread.sleep(POLL_INTERVAL_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("处理学习记录延迟任务发生异常", e);
+                try {
+                    Thread.sleep(POLL_INTERVAL_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 领取到期时间不晚于now的一批小节，持久化它们的缓存
+     *
+     * @param now 当前时间，毫秒
+     * @return 领取的小节数量
+     */
+    int flushDue(long now) {
+        // 1.领取到期的小节
+        String lease = String.valueOf(System.currentTimeMillis() + CLAIM_LEASE.toMillis());
+        List<?> claimed = redisTemplate.execute(CLAIM_SCRIPT, Collections.singletonList(PENDING_KEY),
+                String.valueOf(now), lease, String.valueOf(FLUSH_BATCH_SIZE));
+        if (CollUtils.isEmpty(claimed)) {
+            return 0;
+        }
+        // 2.查询缓存，缓存不存在说明已经直接写了数据库（第一次学完）或者已过期，无需持久化
+        List<LearningRecord> records = new ArrayList<>(claimed.size());
+        for (Object member : claimed) {
+            String[] ids = member.toString().split(":");
+            LearningRecord record = readRecordCache(Long.valueOf(ids[0]), Long.valueOf(ids[1]));
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        // 3.批量更新学习记录的播放进度，失败时不删除，租约到期后重新领取
+        if (!records.isEmpty()) {
+            recordMapper.updateMomentBatch(records);
+            log.debug("批量持久化学习记录{}条", records.size());
+        }
+        // 4.删除已持久化的小节
+        List<String> args = new ArrayList<>(claimed.size() + 1);
+        args.add(lease);
+        claimed.forEach(m -> args.add(m.toString()));
+        redisTemplate.execute(ACK_SCRIPT, Collections.singletonList(PENDING_KEY), args.toArray());
+        return claimed.size();
+    }
+
+    /**
+     * 写入缓存，并提交延迟持久化任务
+     */
+    public void addLearningRecordTask(LearningRecord record) {
+        // 1.添加数据到redis缓存
+        writeRecordCache(record);
+        // 2.推迟小节的到期时间，同一小节只保留一个待持久化的成员
+        long deadline = System.currentTimeMillis() + RECORD_DELAY_TIME.toMillis();
+        redisTemplate.opsForZSet().add(PENDING_KEY, pendingMember(record.getLessonId(), record.getSectionId()), deadline);
+    }
+
+    private static String pendingMember(Long lessonId, Long sectionId) {
+        return lessonId + ":" + sectionId;
+    }
+
+    /**
+     * 写入学习记录缓存
+     */
+    public void writeRecordCache(LearningRecord record) {
+        log.debug("更新学习记录的缓存数据");
+        try {
+            // 1.数据转换
+            String json = JsonUtils.toJsonStr(new RecordCacheData(record));
+            // 2.写入redis
+            String key = StringUtils.format(RECORD_KEY_TEMPLATE, record.getLessonId());
+            redisTemplate.opsForHash().put(key, record.getSectionId().toString(), json);
+            // 3.添加缓存过期时间
+            redisTemplate.expire(key, RECORD_CACHE_TTL);
+        } catch (Exception e) {
+            log.error("更新学习记录缓存异常", e);
+        }
+    }
+
+    /**
+     * 读取某个小节的学习记录缓存，未命中返回null
+     */
+    public LearningRecord readRecordCache(Long lessonId, Long sectionId) {
+        try {
+            // 1.读取redis数据
+            String key = StringUtils.format(RECORD_KEY_TEMPLATE, lessonId);
+            Object cacheData = redisTemplate.opsForHash().get(key, sectionId.toString());
+            if (cacheData == null) {
+                return null;
+            }
+            // 2.数据检查和转换
+            return toRecord(lessonId, sectionId, cacheData.toString());
+        } catch (Exception e) {
+            log.error("缓存读取异常", e);
+            return null;
+        }
+    }
+
+    /**
+     * 读取某个课表下所有小节的学习记录缓存，key为小节id
+     */
+    public Map<Long, LearningRecord> readRecordCaches(Long lessonId) {
+        try {
+            String key = StringUtils.format(RECORD_KEY_TEMPLATE, lessonId);
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+            if (CollUtils.isEmpty(entries)) {
+                return CollUtils.emptyMap();
+            }
+            Map<Long, LearningRecord> result = new HashMap<>(entries.size());
+            entries.forEach((field, value) -> {
+                Long sectionId = Long.valueOf(field.toString());
+                result.put(sectionId, toRecord(lessonId, sectionId, value.toString()));
+            });
+            return result;
+        } catch (Exception e) {
+            log.error("缓存读取异常", e);
+            return CollUtils.emptyMap();
+        }
+    }
+
+    /**
+     * 删除某个小节的学习记录缓存
+     */
+    public void cleanRecordCache(Long lessonId, Long sectionId) {
+        String key = StringUtils.format(RECORD_KEY_TEMPLATE, lessonId);
+        redisTemplate.opsForHash().delete(key, sectionId.toString());
+    }
+
+    private LearningRecord toRecord(Long lessonId, Long sectionId, String json) {
+        LearningRecord record = JsonUtils.toBean(json, LearningRecord.class);
+        record.setLessonId(lessonId);
+        record.setSectionId(sectionId);
+        return record;
+    }
+
+    @Data
+    @NoArgsConstructor
+    private static class RecordCacheData {
+        private Long id;
+        private Integer moment;
+        private Boolean finished;
+
+        public RecordCacheData(LearningRecord record) {
+            this.id = record.getId();
+            this.moment = record.getMoment();
+            this.finished = record.getFinished();
+        }
+    }
+}
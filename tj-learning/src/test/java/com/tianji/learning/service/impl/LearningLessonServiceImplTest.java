@@ -0,0 +1,151 @@
+package com.tianji.learning.service.impl;
+
+import com.tianji.api.batch.BatchLoader;
+import com.tianji.api.cache.CourseCache;
+import com.tianji.api.cache.LessonEntitlementCache;
+import com.tianji.api.cache.LessonEntitlementCache.LessonEntitlement;
+import com.tianji.api.client.course.CourseClient;
+import com.tianji.api.dto.course.CourseSimpleInfoDTO;
+import com.tianji.common.utils.UserContext;
+import com.tianji.learning.domain.po.LearningLesson;
+import com.tianji.learning.mapper.LearningLessonMapper;
+import com.tianji.learning.utils.LearningPlanStatsCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LearningLessonServiceImplTest {
+
+    private static final Long USER_ID = 1L;
+
+    private LearningLessonMapper lessonMapper;
+    private LessonEntitlementCache entitlementCache;
+    private CourseCache courseCache;
+    private LearningLessonServiceImpl lessonService;
+    /**
+     * 数据库中用户的课表
+     */
+    private final Map<Long, LessonEntitlement> lessons = new HashMap<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        lessonMapper = mock(LearningLessonMapper.class);
+        entitlementCache = mock(LessonEntitlementCache.class);
+        when(entitlementCache.currentVersion(USER_ID)).thenReturn("3");
+        courseCache = mock(CourseCache.class);
+        lessonService = spy(new LearningLessonServiceImpl(mock(CourseClient.class), courseCache,
+                mock(BatchLoader.class), mock(LearningPlanStatsCache.class), entitlementCache));
+        ReflectionTestUtils.setField(lessonService, "baseMapper", lessonMapper);
+        doAnswer(inv -> new HashMap<>(lessons)).when(lessonService).loadEntitlements(USER_ID);
+        UserContext.setUser(USER_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserContext.removeUser();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private void addLesson(Long id, Long courseId, LocalDateTime expireTime) {
+        lessons.put(courseId, LessonEntitlement.of(id, expireTime));
+    }
+
+    @Test
+    void testRedeliveredOrderSkipsOwnedCourses() {
+        doReturn(Set.of(1L, 2L)).when(lessonService).queryOwnedCourseIds(USER_ID, List.of(1L, 2L));
+
+        lessonService.addUserLesson(USER_ID, List.of(1L, 2L));
+
+        verifyNoInteractions(courseCache);
+        verify(lessonService, never()).saveBatch(anyCollection());
+    }
+
+    @Test
+    void testAddOnlyMissingCourses() {
+        doReturn(Set.of(1L)).when(lessonService).queryOwnedCourseIds(USER_ID, List.of(1L, 2L));
+        CourseSimpleInfoDTO course = new CourseSimpleInfoDTO();
+        course.setId(2L);
+        when(courseCache.getSimpleInfoList(List.of(2L))).thenReturn(List.of(course));
+        doReturn(true).when(lessonService).saveBatch(anyCollection());
+
+        lessonService.addUserLesson(USER_ID, List.of(1L, 2L));
+
+        verify(lessonService).saveBatch(argThat(list -> list.size() == 1
+                && ((LearningLesson) list.iterator().next()).getCourseId() == 2L));
+    }
+
+    @Test
+    void testValidFromCache() {
+        when(entitlementCache.get(USER_ID, 1L)).thenReturn(LessonEntitlement.of(10L, null));
+
+        assertEquals(10L, lessonService.isLessonValid(1L));
+        // 缓存命中，不查询数据库
+        verify(lessonService, never()).loadEntitlements(any());
+    }
+
+    @Test
+    void testNotOwnedFromCache() {
+        when(entitlementCache.get(USER_ID, 1L)).thenReturn(LessonEntitlement.NONE);
+
+        assertNull(lessonService.isLessonValid(1L));
+        verify(lessonService, never()).loadEntitlements(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testLoadOnMiss() {
+        addLesson(10L, 1L, null);
+        addLesson(20L, 2L, LocalDateTime.now().minusDays(1));
+
+        assertEquals(10L, lessonService.isLessonValid(1L));
+        // 课程已过期
+        assertNull(lessonService.isLessonValid(2L));
+        // 没有这门课程
+        assertNull(lessonService.isLessonValid(3L));
+
+        // 先读取版本号再查询数据库，写入时带上版本号
+        InOrder inOrder = inOrder(entitlementCache, lessonService);
+        inOrder.verify(entitlementCache).currentVersion(USER_ID);
+        inOrder.verify(lessonService).loadEntitlements(USER_ID);
+        inOrder.verify(entitlementCache).putAll(eq(USER_ID), (Map<Long, LessonEntitlement>) argThat(m -> ((Map<?, ?>) m).size() == 2), eq("3"));
+    }
+
+    @Test
+    void testRemoveAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        lessonService.deleteCourseFromLesson(USER_ID, 1L);
+        // 事务提交前不移除
+        verify(entitlementCache, never()).remove(any(), any());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+
+        verify(entitlementCache).remove(USER_ID, 1L);
+    }
+
+    @Test
+    void testRemoveWithoutTransaction() {
+        lessonService.deleteCourseFromLesson(USER_ID, 1L);
+
+        verify(entitlementCache).remove(USER_ID, 1L);
+    }
+}
@@ -0,0 +1,94 @@
+package com.tianji.learning.service.impl;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tianji.api.cache.CourseCache;
+import com.tianji.api.cache.CourseCacheInvalidator;
+import com.tianji.api.client.course.CourseClient;
+import com.tianji.api.dto.course.CourseSimpleInfoDTO;
+import com.tianji.common.autoconfigure.mq.RabbitMqHelper;
+import com.tianji.common.exceptions.BizIllegalException;
+import com.tianji.learning.domain.po.LearningLesson;
+import com.tianji.learning.service.ILearningLessonService;
+import com.tianji.learning.utils.LearningPlanStatsCache;
+import com.tianji.learning.utils.LearningRecordDelayTaskHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LearningRecordServiceImplTest {
+
+    private static final Long COURSE_ID = 1L;
+
+    private CourseClient courseClient;
+    private CourseCacheInvalidator invalidator;
+    private LearningRecordServiceImpl recordService;
+    /**
+     * 课程服务中课程的小节总数
+     */
+    private int sectionNum = 3;
+
+    @BeforeEach
+    void setUp() {
+        courseClient = mock(CourseClient.class);
+        when(courseClient.getSimpleInfoList(any())).thenAnswer(invocation -> {
+            Iterable<Long> ids = invocation.getArgument(0);
+            return StreamSupport.stream(ids.spliterator(), false).map(id -> {
+                CourseSimpleInfoDTO dto = new CourseSimpleInfoDTO();
+                dto.setId(id);
+                dto.setSectionNum(sectionNum);
+                return dto;
+            }).collect(Collectors.toList());
+        });
+        CourseCache courseCache = new CourseCache(
+                Caffeine.newBuilder().maximumSize(100).recordStats().build(), courseClient::getSimpleInfoList, null);
+        invalidator = new CourseCacheInvalidator(courseCache);
+        recordService = new LearningRecordServiceImpl(
+                mock(ILearningLessonService.class), courseCache,
+                mock(LearningRecordDelayTaskHandler.class), mock(LearningPlanStatsCache.class),
+                mock(RabbitMqHelper.class));
+    }
+
+    private static LearningLesson lesson(int learnedSections) {
+        LearningLesson lesson = new LearningLesson();
+        lesson.setCourseId(COURSE_ID);
+        lesson.setLearnedSections(learnedSections);
+        return lesson;
+    }
+
+    @Test
+    void testCompletionUsesLocalCache() {
+        assertFalse(recordService.isAllSectionsLearned(lesson(1)));
+        assertTrue(recordService.isAllSectionsLearned(lesson(2)));
+
+        // 学完小节时不再远程调用课程服务
+        verify(courseClient, times(1)).getSimpleInfoList(any());
+    }
+
+    @Test
+    void testCompletionAfterCatalogueChanged() {
+        assertTrue(recordService.isAllSectionsLearned(lesson(2)));
+
+        // 课程新增了小节并重新上架，收到课程变更消息
+        sectionNum = 5;
+        invalidator.listenCourseChange(COURSE_ID);
+
+        assertFalse(recordService.isAllSectionsLearned(lesson(2)));
+        assertFalse(recordService.isAllSectionsLearned(lesson(3)));
+        assertTrue(recordService.isAllSectionsLearned(lesson(4)));
+        verify(courseClient, times(2)).getSimpleInfoList(any());
+    }
+
+    @Test
+    void testCourseNotExists() {
+        doReturn(List.of()).when(courseClient).getSimpleInfoList(any());
+
+        assertThrows(BizIllegalException.class, () -> recordService.isAllSectionsLearned(lesson(0)));
+    }
+}
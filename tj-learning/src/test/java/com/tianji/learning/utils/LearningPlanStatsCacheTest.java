@@ -0,0 +1,230 @@
+package com.tianji.learning.utils;
+
+import com.tianji.learning.domain.po.LearningRecord;
+import com.tianji.learning.mapper.LearningLessonMapper;
+import com.tianji.learning.mapper.LearningRecordMapper;
+import com.tianji.learning.utils.LearningPlanStatsCache.WeekPlanStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 使用内存中的redis替身测试统计缓存的读写协议，替身按照脚本的语义执行，不校验lua脚本本身
+ */
+class LearningPlanStatsCacheTest {
+
+    private static final Long USER_ID = 1L;
+    private static final Long LESSON_ID = 10L;
+
+    private final Map<String, Map<String, String>> hashes = new ConcurrentHashMap<>();
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+
+    private LearningLessonMapper lessonMapper;
+    private LearningRecordMapper recordMapper;
+    private LearningPlanStatsCache cache;
+    /**
+     * 数据库中本周学完的小节数
+     */
+    private int dbFinished = 2;
+    /**
+     * 从数据库加载时执行的操作，用于模拟重建期间的并发提交
+     */
+    private Runnable onLoad = () -> {};
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOps);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(hashOps.entries(anyString())).thenAnswer(inv -> new HashMap<>(hashes.getOrDefault(inv.getArgument(0), Map.of())));
+        when(valueOps.get(anyString())).thenAnswer(inv -> strings.get(inv.<String>getArgument(0)));
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(inv -> {
+            Object[] all = inv.getArguments();
+            List<String> keys = inv.getArgument(1);
+            String[] args = Arrays.stream(all, 2, all.length).map(String::valueOf).toArray(String[]::new);
+            return runScript(inv.getArgument(0), keys, args);
+        });
+
+        lessonMapper = mock(LearningLessonMapper.class);
+        when(lessonMapper.selectMaps(any())).thenAnswer(inv -> List.of(Map.of("plansTotal", 10)));
+        recordMapper = mock(LearningRecordMapper.class);
+        when(recordMapper.selectList(any())).thenAnswer(inv -> {
+            LearningRecord r = new LearningRecord();
+            r.setLessonId(LESSON_ID);
+            r.setUserId((long) dbFinished);
+            List<LearningRecord> records = List.of(r);
+            onLoad.run();
+            return records;
+        });
+        cache = new LearningPlanStatsCache(redisTemplate, lessonMapper, recordMapper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private Long runScript(RedisScript<?> script, List<String> keys, String[] args) {
+        String statsKey = keys.get(0);
+        if (script == LearningPlanStatsCache.INCR_SCRIPT) {
+            strings.merge(keys.get(1), "1", (a, b) -> String.valueOf(Long.parseLong(a) + 1));
+            Map<String, String> hash = hashes.get(statsKey);
+            if (hash == null) {
+                return 0L;
+            }
+            hash.merge(args[0], "1", (a, b) -> String.valueOf(Integer.parseInt(a) + 1));
+            hash.merge(args[1], "1", (a, b) -> String.valueOf(Integer.parseInt(a) + 1));
+            return 1L;
+        }
+        if (script == LearningPlanStatsCache.INVALIDATE_SCRIPT) {
+            strings.merge(keys.get(1), "1", (a, b) -> String.valueOf(Long.parseLong(a) + 1));
+            return hashes.remove(statsKey) == null ? 0L : 1L;
+        }
+        if (script == LearningPlanStatsCache.REBUILD_SCRIPT) {
+            if (hashes.containsKey(statsKey) || !strings.getOrDefault(keys.get(1), "0").equals(args[1])) {
+                return 0L;
+            }
+            Map<String, String> hash = new ConcurrentHashMap<>();
+            for (int i = 2; i < args.length; i += 2) {
+                hash.put(args[i], args[i + 1]);
+            }
+            hashes.put(statsKey, hash);
+            return 1L;
+        }
+        throw new IllegalArgumentException("unknown script");
+    }
+
+    private String currentKey() {
+        return LearningPlanStatsCache.statsKey(USER_ID, LocalDate.now());
+    }
+
+    @Test
+    void testRebuildAndIncr() {
+        WeekPlanStats stats = cache.getWeekStats(USER_ID);
+        assertEquals(10, stats.getTotal());
+        assertEquals(2, stats.getFinished());
+        assertTrue(hashes.containsKey(currentKey()));
+
+        cache.incrFinished(USER_ID, LESSON_ID, LocalDateTime.now());
+
+        stats = cache.getWeekStats(USER_ID);
+        assertEquals(3, stats.getFinished());
+        assertEquals(3, stats.getLessonFinishedNum(LESSON_ID));
+        // 缓存命中，只从数据库加载了一次
+        verify(recordMapper, times(1)).selectList(any());
+    }
+
+    @Test
+    void testIncrWithoutHashIgnored() {
+        cache.incrFinished(USER_ID, LESSON_ID, LocalDateTime.now());
+
+        // 不会创建不完整的hash
+        assertFalse(hashes.containsKey(currentKey()));
+    }
+
+    @Test
+    void testWeekRollover() {
+        cache.getWeekStats(USER_ID);
+        // 上周学完的小节计入上周的key，不影响本周
+        cache.incrFinished(USER_ID, LESSON_ID, LocalDateTime.now().minusWeeks(1));
+
+        assertEquals(2, cache.getWeekStats(USER_ID).getFinished());
+        String lastWeekKey = LearningPlanStatsCache.statsKey(USER_ID, LocalDate.now().minusWeeks(1));
+        assertNotEquals(lastWeekKey, currentKey());
+        assertFalse(hashes.containsKey(lastWeekKey));
+    }
+
+    @Test
+    void testInvalidate() {
+        cache.getWeekStats(USER_ID);
+
+        dbFinished = 5;
+        cache.invalidate(USER_ID);
+
+        assertFalse(hashes.containsKey(currentKey()));
+        assertEquals(5, cache.getWeekStats(USER_ID).getFinished());
+        verify(recordMapper, times(2)).selectList(any());
+    }
+
+    @Test
+    void testMutationsAfterCommit() {
+        cache.getWeekStats(USER_ID);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.incrFinished(USER_ID, LESSON_ID, LocalDateTime.now());
+        cache.invalidate(USER_ID);
+        // 事务提交前缓存不变
+        assertEquals("2", hashes.get(currentKey()).get("finished"));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+
+        assertFalse(hashes.containsKey(currentKey()));
+    }
+
+    @Test
+    void testRollbackKeepsCache() {
+        cache.getWeekStats(USER_ID);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidate(USER_ID);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertTrue(hashes.containsKey(currentKey()));
+    }
+
+    @Test
+    void testRebuildRaceWithInvalidate() {
+        // 重建读取数据库之后、写入缓存之前，另一个请求提交并删除了缓存
+        onLoad = () -> {
+            onLoad = () -> {};
+            dbFinished = 5;
+            cache.invalidate(USER_ID);
+        };
+
+        assertEquals(2, cache.getWeekStats(USER_ID).getFinished());
+        // 读到的数据已经过时，不写入缓存
+        assertFalse(hashes.containsKey(currentKey()));
+        assertEquals(5, cache.getWeekStats(USER_ID).getFinished());
+        assertTrue(hashes.containsKey(currentKey()));
+    }
+
+    @Test
+    void testRebuildRaceWithIncr() {
+        // 重建读取数据库之后、写入缓存之前，另一个请求学完了一个小节
+        onLoad = () -> {
+            onLoad = () -> {};
+            dbFinished = 3;
+            cache.incrFinished(USER_ID, LESSON_ID, LocalDateTime.now());
+        };
+
+        cache.getWeekStats(USER_ID);
+
+        assertFalse(hashes.containsKey(currentKey()));
+        assertEquals(3, cache.getWeekStats(USER_ID).getFinished());
+    }
+}
@@ -0,0 +1,200 @@
+package com.tianji.learning.utils;
+
+import com.tianji.learning.domain.po.LearningRecord;
+import com.tianji.learning.mapper.LearningRecordMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static com.tianji.learning.utils.LearningRecordDelayTaskHandler.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 使用内存中的redis替身测试学习记录的合并与持久化，替身按照脚本的语义执行，不校验lua脚本本身
+ */
+class LearningRecordDelayTaskHandlerTest {
+
+    private static final Long LESSON_ID = 10L;
+    private static final Long SECTION_ID = 100L;
+    private static final String MEMBER = LESSON_ID + ":" + SECTION_ID;
+
+    private final Map<String, Map<String, String>> hashes = new ConcurrentHashMap<>();
+    private final Map<String, Double> pending = new ConcurrentHashMap<>();
+    private final List<List<LearningRecord>> flushed = new CopyOnWriteArrayList<>();
+
+    private StringRedisTemplate redisTemplate;
+    private LearningRecordMapper recordMapper;
+    private LearningRecordDelayTaskHandler handler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOps);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
+        doAnswer(inv -> hashes.computeIfAbsent(inv.getArgument(0), k -> new ConcurrentHashMap<>())
+                .put(inv.getArgument(1), inv.getArgument(2)))
+                .when(hashOps).put(anyString(), any(), any());
+        when(hashOps.get(anyString(), any())).thenAnswer(
+                inv -> hashes.getOrDefault(inv.<String>getArgument(0), Map.of()).get(inv.<String>getArgument(1)));
+        when(hashOps.delete(anyString(), any())).thenAnswer(inv -> {
+            Map<String, String> hash = hashes.get(inv.<String>getArgument(0));
+            return hash != null && hash.remove(inv.<String>getArgument(1)) != null ? 1L : 0L;
+        });
+        when(zSetOps.add(eq(PENDING_KEY), anyString(), anyDouble())).thenAnswer(
+                inv -> pending.put(inv.getArgument(1), inv.getArgument(2)) == null);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(inv -> {
+            Object[] all = inv.getArguments();
+            String[] args = Arrays.stream(all, 2, all.length).map(String::valueOf).toArray(String[]::new);
+            return runScript(inv.getArgument(0), args);
+        });
+
+        recordMapper = mock(LearningRecordMapper.class);
+        when(recordMapper.updateMomentBatch(anyList())).thenAnswer(inv -> {
+            List<LearningRecord> records = new ArrayList<>(inv.getArgument(0));
+            flushed.add(records);
+            return records.size();
+        });
+        handler = new LearningRecordDelayTaskHandler(redisTemplate, recordMapper);
+    }
+
+    private Object runScript(RedisScript<?> script, String[] args) {
+        if (script == CLAIM_SCRIPT) {
+            double now = Double.parseDouble(args[0]);
+            double lease = Double.parseDouble(args[1]);
+            List<String> members = pending.entrySet().stream()
+                    .filter(e -> e.getValue() <= now)
+                    .sorted(Map.Entry.comparingByValue())
+                    .limit(Long.parseLong(args[2]))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            members.forEach(m -> pending.put(m, lease));
+            return members;
+        }
+        if (script == ACK_SCRIPT) {
+            double lease = Double.parseDouble(args[0]);
+            long n = 0;
+            for (int i = 1; i < args.length; i++) {
+                if (pending.remove(args[i], lease)) {
+                    n++;
+                }
+            }
+            return n;
+        }
+        throw new IllegalArgumentException("unknown script");
+    }
+
+    private LearningRecord record(int moment) {
+        LearningRecord r = new LearningRecord();
+        r.setId(1L);
+        r.setLessonId(LESSON_ID);
+        r.setSectionId(SECTION_ID);
+        r.setMoment(moment);
+        r.setFinished(false);
+        return r;
+    }
+
+    private long due() {
+        return System.currentTimeMillis() + RECORD_DELAY_TIME.toMillis() + 1000;
+    }
+
+    @Test
+    void testHeartbeatsMerged() {
+        handler.addLearningRecordTask(record(10));
+        handler.addLearningRecordTask(record(20));
+        handler.addLearningRecordTask(record(30));
+        assertEquals(Set.of(MEMBER), pending.keySet());
+
+        // 还在播放，没有到期
+        assertEquals(0, handler.flushDue(System.currentTimeMillis()));
+        verify(recordMapper, never()).updateMomentBatch(anyList());
+
+        // 停止播放后到期，只持久化最新的进度
+        assertEquals(1, handler.flushDue(due()));
+        assertEquals(1, flushed.size());
+        assertEquals(1, flushed.get(0).size());
+        assertEquals(30, flushed.get(0).get(0).getMoment());
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    void testHeartbeatDuringFlushKept() {
+        handler.addLearningRecordTask(record(10));
+        doAnswer(inv -> {
+            // 持久化期间又收到心跳
+            handler.addLearningRecordTask(record(40));
+            return 1;
+        }).when(recordMapper).updateMomentBatch(anyList());
+
+        assertEquals(1, handler.flushDue(due()));
+        // 新的心跳推迟了到期时间，留给之后处理
+        assertTrue(pending.containsKey(MEMBER));
+        assertTrue(pending.get(MEMBER) < System.currentTimeMillis() + CLAIM_LEASE.toMillis());
+    }
+
+    @Test
+    void testFailedFlushReclaimedAfterLease() {
+        handler.addLearningRecordTask(record(10));
+        doThrow(new IllegalStateException("db down"))
+                .doAnswer(inv -> {
+                    flushed.add(new ArrayList<>(inv.getArgument(0)));
+                    return 1;
+                })
+                .when(recordMapper).updateMomentBatch(anyList());
+
+        assertThrows(IllegalStateException.class, () -> handler.flushDue(due()));
+        // 持久化失败的小节仍在租约中，不会被立即重新领取
+        assertTrue(pending.containsKey(MEMBER));
+        assertEquals(0, handler.flushDue(due()));
+
+        // 租约到期后重新领取
+        long afterLease = System.currentTimeMillis() + CLAIM_LEASE.toMillis() + 1000;
+        assertEquals(1, handler.flushDue(afterLease));
+        assertEquals(10, flushed.get(0).get(0).getMoment());
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    void testFinishedSectionSkipped() {
+        handler.addLearningRecordTask(record(10));
+        // 第一次学完时直接写数据库并删除缓存
+        handler.cleanRecordCache(LESSON_ID, SECTION_ID);
+
+        assertEquals(1, handler.flushDue(due()));
+        verify(recordMapper, never()).updateMomentBatch(anyList());
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    void testPendingDrainedOnStartup() throws Exception {
+        // 上一个实例崩溃前留下的待持久化小节
+        handler.addLearningRecordTask(record(50));
+        pending.put(MEMBER, (double) System.currentTimeMillis() - 1000);
+
+        LearningRecordDelayTaskHandler restarted = new LearningRecordDelayTaskHandler(redisTemplate, recordMapper);
+        restarted.init();
+        try {
+            long deadline = System.currentTimeMillis() + 2000;
+            while (flushed.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            restarted.destroy();
+        }
+        assertEquals(1, flushed.size());
+        assertEquals(50, flushed.get(0).get(0).getMoment());
+        assertTrue(pending.isEmpty());
+    }
+}
@@ -10,7 +10,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
-@EnableConfigurationProperties(AliProperties.class)
+@EnableConfigurationProperties({AliProperties.class, MultipartUploadProperties.class})
 public class AliConfig {
 
     @Bean
@@ -22,7 +22,7 @@ public class AliConfig {
 
     @Bean
     @ConditionalOnProperty(prefix = "tj.file", name = "platform", havingValue = "ALI")
-    public IFileStorage aliFileStorage(OSS aliOssClient, AliProperties prop) {
-        return new AliFileStorage(aliOssClient, prop.getOos().getBucket());
+    public IFileStorage aliFileStorage(OSS aliOssClient, AliProperties prop, MultipartUploadProperties uploadProperties) {
+        return new AliFileStorage(aliOssClient, prop.getOos().getBucket(), uploadProperties);
     }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.tianji.media.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "tj.multipart")
+public class MultipartUploadProperties {
+    /*触发分片上传的阈值，小于该值的文件直接上传*/
+    private long threshold = 8 * 1024 * 1024;
+    /*分片大小，文件过大时会自动调大以保证分片数不超过上限*/
+    private long partSize = 5 * 1024 * 1024;
+    /*单个文件同时上传的分片数，也是单个文件占用的缓冲区数量*/
+    private int concurrency = 4;
+    /*所有文件共用的上传线程数*/
+    private int threads = 8;
+    /*单个分片失败后的重试次数*/
+    private int maxRetries = 3;
+}
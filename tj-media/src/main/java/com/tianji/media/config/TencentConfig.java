@@ -5,8 +5,6 @@ import com.qcloud.cos.ClientConfig;
 import com.qcloud.cos.auth.BasicCOSCredentials;
 import com.qcloud.cos.auth.COSCredentials;
 import com.qcloud.cos.region.Region;
-import com.qcloud.cos.transfer.TransferManager;
-import com.qcloud.cos.transfer.TransferManagerConfiguration;
 import com.qcloud.vod.VodUploadClient;
 import com.tencentcloudapi.common.Credential;
 import com.tencentcloudapi.common.profile.ClientProfile;
@@ -21,11 +19,8 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 @Configuration
-@EnableConfigurationProperties({TencentProperties.class})
+@EnableConfigurationProperties({TencentProperties.class, MultipartUploadProperties.class})
 public class TencentConfig {
 
     @Bean
@@ -70,30 +65,10 @@ public class TencentConfig {
         return new COSClient(cred, clientConfig);
     }
 
-    @Bean
-    @ConditionalOnProperty(prefix = "tj.platform", name = "file", havingValue = "TENCENT")
-    public TransferManager transferManager(COSClient tencentCosClient, TencentProperties properties){
-        // 自定义线程池大小，建议在客户端与 COS 网络充足（例如使用腾讯云的 CVM，同地域上传 COS）的情况下，设置成16或32即可，可较充分的利用网络资源
-        // 对于使用公网传输且网络带宽质量不高的情况，建议减小该值，避免因网速过慢，造成请求超时。
-        ExecutorService threadPool = Executors.newFixedThreadPool(4);
-
-        // 传入一个 threadPool, 若不传入线程池，默认 TransferManager 中会生成一个单线程的线程池。
-        TransferManager transferManager = new TransferManager(tencentCosClient, threadPool);
-
-        // 设置高级接口的配置项
-        // 分块上传阈值和分块大小分别为 5MB 和 1MB
-        TransferManagerConfiguration transferManagerConfiguration = new TransferManagerConfiguration();
-        transferManagerConfiguration.setMultipartUploadThreshold(properties.getCos().getMultipartUploadThreshold());
-        transferManagerConfiguration.setMinimumUploadPartSize(properties.getCos().getMinimumUploadPartSize());
-        transferManager.setConfiguration(transferManagerConfiguration);
-
-        return transferManager;
-    }
-
     @Bean
     @ConditionalOnProperty(prefix = "tj.platform", name = "file", havingValue = "TENCENT")
     public IFileStorage tencentFileStorage(
-            COSClient tencentCosClient, TransferManager transferManager, TencentProperties properties){
-        return new TencentFileStorage(tencentCosClient, transferManager, properties);
+            COSClient tencentCosClient, TencentProperties properties, MultipartUploadProperties uploadProperties){
+        return new TencentFileStorage(tencentCosClient, properties, uploadProperties);
     }
 }
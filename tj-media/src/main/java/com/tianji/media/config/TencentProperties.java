@@ -25,6 +25,10 @@ public class TencentProperties {
         private String urlKey;
         /*播放器配置*/
         private String pfcg;
+        /*播放签名有效期，需要覆盖最长视频的播放时间，签名在有效期的前1/4内会被缓存复用*/
+        private long playSignatureValidSeconds = 14400;
+        /*缓存的播放签名数量上限*/
+        private long playSignatureCacheSize = 10_000;
     }
     @Data
     public static class CosProperties{
@@ -32,9 +36,5 @@ public class TencentProperties {
         private String region;
         /*存储桶*/
         private String bucket;
-        /*触发分块上传的阈值*/
-        private long multipartUploadThreshold;
-        /*分块上传的最小分块大小*/
-        private long minimumUploadPartSize;
     }
 }
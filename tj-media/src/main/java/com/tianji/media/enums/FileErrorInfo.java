@@ -14,6 +14,8 @@ public interface FileErrorInfo {
         String MEDIA_UPLOAD_ERROR = "上传视频失败";
         String MEDIA_COMMIT_UPLOAD_ERROR = "确认上传视频失败";
         String MEDIA_DELETE_ERROR = "删除视频失败";
+        String MEDIA_PULL_EVENT_ERROR = "拉取视频事件失败";
+        String MEDIA_CONFIRM_EVENT_ERROR = "确认视频事件失败";
 
     }
 }
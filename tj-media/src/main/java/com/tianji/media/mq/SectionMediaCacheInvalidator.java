@@ -0,0 +1,37 @@
+package com.tianji.media.mq;
+
+import com.tianji.common.constants.MqConstants;
+import com.tianji.media.utils.SectionMediaCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 监听课程变更事件，清除该课程的小节媒资缓存。每个实例使用自己的匿名队列，保证所有实例都能收到消息
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SectionMediaCacheInvalidator {
+
+    private final SectionMediaCache sectionMediaCache;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(name = MqConstants.Exchange.COURSE_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = {MqConstants.Key.COURSE_UP_KEY, MqConstants.Key.COURSE_DOWN_KEY,
+                    MqConstants.Key.COURSE_EXPIRE_KEY, MqConstants.Key.COURSE_DELETE_KEY}
+    ))
+    public void listenCourseChange(Long courseId) {
+        if (courseId == null) {
+            return;
+        }
+        log.debug("课程{}发生变更，清除小节媒资缓存", courseId);
+        sectionMediaCache.invalidateByCourseId(courseId);
+    }
+}
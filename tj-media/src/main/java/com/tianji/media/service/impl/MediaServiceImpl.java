@@ -4,11 +4,12 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.OrderItem;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.tianji.api.batch.BatchLoader;
+import com.tianji.api.cache.LessonEntitlementCache;
+import com.tianji.api.cache.LessonEntitlementCache.LessonEntitlement;
 import com.tianji.api.client.course.CourseClient;
 import com.tianji.api.client.learning.LearningClient;
-import com.tianji.api.client.user.UserClient;
 import com.tianji.api.dto.course.MediaQuoteDTO;
-import com.tianji.api.dto.course.SectionInfoDTO;
 import com.tianji.api.dto.user.UserDTO;
 import com.tianji.common.domain.dto.PageDTO;
 import com.tianji.common.exceptions.ForbiddenException;
@@ -24,6 +25,7 @@ import com.tianji.media.enums.FileStatus;
 import com.tianji.media.mapper.MediaMapper;
 import com.tianji.media.service.IMediaService;
 import com.tianji.media.storage.IMediaStorage;
+import com.tianji.media.utils.SectionMediaCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -51,7 +53,11 @@ public class MediaServiceImpl extends ServiceImpl<MediaMapper, Media> implements
 
     private final LearningClient learningClient;
 
-    private final UserClient userClient;
+    private final BatchLoader<Long, UserDTO> userBatchLoader;
+
+    private final SectionMediaCache sectionMediaCache;
+
+    private final LessonEntitlementCache entitlementCache;
 
     @Override
     public String getUploadSignature() {
@@ -60,44 +66,51 @@ public class MediaServiceImpl extends ServiceImpl<MediaMapper, Media> implements
 
     @Override
     public VideoPlayVO getPlaySignatureBySectionId(Long sectionId) {
-        // 1.根据sectionId查询媒课程信息
-        SectionInfoDTO sectionInfo = courseClient.sectionInfo(sectionId);
-        Long courseId = sectionInfo.getCourseId();
+        // 1.根据sectionId查询小节所属课程和媒资，优先读取本地缓存
+        SectionMediaCache.SectionMedia sectionMedia = sectionMediaCache.get(sectionId);
+        Long courseId = sectionMedia.getCourseId();
         // 2.查询用户课程表，是否是购买过的课程
-        Long lessonId = learningClient.isLessonValid(courseId);
+        Long lessonId = queryValidLessonId(courseId);
 
         if(lessonId != null){
-            // 2.1.是，查询媒资信息，直接获取签名
-            Media media = getById(sectionInfo.getMediaId());
-            AssertUtils.isNotNull(media, MEDIA_NOT_EXISTS);
-            // 1）获取签名
-            String signature =  mediaStorage.getPlaySignature(media.getFileId(), UserContext.getUser(), null);
-            // 2）返回
+            // 2.1.是，直接获取签名
+            String signature =  mediaStorage.getPlaySignature(sectionMedia.getFileId(), UserContext.getUser(), null);
             VideoPlayVO vo = new VideoPlayVO();
             vo.setSignature(signature);
-            vo.setFileId(media.getFileId());
+            vo.setFileId(sectionMedia.getFileId());
             return vo;
         }
         // 2.2.否，判断课程章节是否免费
-        Boolean trailer = sectionInfo.getTrailer();
+        Boolean trailer = sectionMedia.getTrailer();
         if(BooleanUtils.isFalse(trailer)) {
             // 2.3.不免费，抛出异常
             throw new ForbiddenException(FileErrorInfo.MEDIA_NOT_FREE);
         }
 
-        // 3.免费，获取课程信息
-        Media media = getById(sectionInfo.getMediaId());
-        AssertUtils.isNotNull(media, MEDIA_NOT_EXISTS);
-        // 4.获取签名
+        // 3.免费，获取签名
         String signature =  mediaStorage.getPlaySignature(
-                media.getFileId(), UserContext.getUser(), sectionInfo.getFreeDuration());
-        // 5.返回
+                sectionMedia.getFileId(), UserContext.getUser(), sectionMedia.getFreeDuration());
+        // 4.返回
         VideoPlayVO vo = new VideoPlayVO();
         vo.setSignature(signature);
-        vo.setFileId(media.getFileId());
+        vo.setFileId(sectionMedia.getFileId());
         return vo;
     }
 
+    /**
+     * 查询用户购买的课程是否有效，优先读取redis中的课程权益，学习服务尚未缓存该用户的课表时再远程查询
+     * @param courseId 课程id
+     * @return 有效时返回课表id，否则返回null
+     */
+    private Long queryValidLessonId(Long courseId) {
+        LessonEntitlement entitlement = entitlementCache.get(UserContext.getUser(), courseId);
+        if (entitlement != null) {
+            return entitlement.getValidLessonId();
+        }
+        // 远程查询时，学习服务会把用户的全部课表写入缓存
+        return learningClient.isLessonValid(courseId);
+    }
+
 
     @Override
     public VideoPlayVO getPlaySignatureByMediaId(Long mediaId) {
@@ -145,7 +158,7 @@ public class MediaServiceImpl extends ServiceImpl<MediaMapper, Media> implements
         // 5.查询创建者信息
         Map<Long, String> userMap = null;
         if(CollUtils.isNotEmpty(createIds)) {
-            List<UserDTO> users = userClient.queryUserByIds(createIds);
+            List<UserDTO> users = userBatchLoader.getAll(createIds);
             AssertUtils.isNotEmpty(users, FileErrorInfo.USER_NOT_EXISTS);
             userMap = users.stream().collect(Collectors.toMap(UserDTO::getId, UserDTO::getName));
         }
@@ -204,5 +217,7 @@ public class MediaServiceImpl extends ServiceImpl<MediaMapper, Media> implements
         mediaStorage.deleteFile(fileId);
         // 2.删除本地信息
         remove(new LambdaQueryWrapper<Media>().eq(Media::getFileId, fileId));
+        // 3.清除引用了该媒资的小节缓存
+        sectionMediaCache.invalidateByFileId(fileId);
     }
 }
@@ -48,4 +48,16 @@ public interface IMediaStorage {
      * @return 文件信息列表
      */
     List<Media> queryMediaInfos(String ... fileIds);
+
+    /**
+     * 拉取媒资平台的事件通知，例如视频处理完成
+     * @return 事件列表，暂无事件时返回空集合
+     */
+    List<MediaEvent> pullEvents();
+
+    /**
+     * 确认事件已处理，未确认的事件会被重新推送
+     * @param eventHandles 事件句柄
+     */
+    void confirmEvents(List<String> eventHandles);
 }
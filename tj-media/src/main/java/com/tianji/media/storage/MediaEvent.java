@@ -0,0 +1,23 @@
+package com.tianji.media.storage;
+
+import com.tianji.media.domain.po.Media;
+import lombok.Data;
+
+/**
+ * 媒资平台推送的事件
+ */
+@Data
+public class MediaEvent {
+    /**
+     * 事件句柄，处理完后用于确认事件
+     */
+    private String eventHandle;
+    /**
+     * 事件关联的文件id，同一个文件的事件需要按顺序处理
+     */
+    private String fileId;
+    /**
+     * 需要保存到数据库的媒资处理结果，为null代表事件无需处理，直接确认即可
+     */
+    private Media media;
+}
@@ -7,11 +7,17 @@ import com.tianji.common.exceptions.BadRequestException;
 import com.tianji.common.exceptions.CommonException;
 import com.tianji.common.utils.AssertUtils;
 import com.tianji.common.utils.CollUtils;
+import com.tianji.media.config.MultipartUploadProperties;
 import com.tianji.media.storage.IFileStorage;
+import com.tianji.media.storage.multipart.MultipartObjectStore;
+import com.tianji.media.storage.multipart.MultipartUploader;
+import com.tianji.media.storage.multipart.UploadedPart;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static com.tianji.media.enums.FileErrorInfo.Msg.*;
 
@@ -20,10 +26,12 @@ public class AliFileStorage implements IFileStorage {
 
     private final OSS ossClient;
     private final String bucketName;
+    private final MultipartUploader uploader;
 
-    public AliFileStorage(OSS aliOssClient, String bucketName) {
+    public AliFileStorage(OSS aliOssClient, String bucketName, MultipartUploadProperties uploadProperties) {
         this.ossClient = aliOssClient;
         this.bucketName = bucketName;
+        this.uploader = new MultipartUploader(new OssObjectStore(), uploadProperties);
     }
 
     @Override
@@ -32,24 +40,8 @@ public class AliFileStorage implements IFileStorage {
         AssertUtils.isNotBlank(bucketName, BUCKET_NAME_IS_NULL);
         AssertUtils.isNotBlank(key, FILE_KEY_IS_NULL);
         AssertUtils.isNotNull(inputStream);
-        try {
-            // 2.上传文件元数据处理
-            ObjectMetadata objectMeta = new ObjectMetadata();
-            objectMeta.setContentLength(contentLength);
-            // 3.请求参数
-            PutObjectRequest request = new PutObjectRequest(bucketName, key, inputStream, objectMeta);
-            // 4.上传
-            PutObjectResult result = ossClient.putObject(request);
-            ResponseMessage response = result.getResponse();
-            if (!response.isSuccessful()) {
-                log.info("上传文件[{}]失败, 原因：{}", key, response.getErrorResponseAsString());
-                throw new CommonException("上传文件失败!");
-            }
-            return result.getRequestId();
-        } catch (Exception e) {
-            log.error("上传文件[{}]失败 ", key, e);
-            throw new CommonException("上传文件失败!", e);
-        }
+        // 2.上传，大文件分片并行上传
+        return uploader.upload(key, inputStream, contentLength);
     }
 
     @Override
@@ -100,4 +92,67 @@ public class AliFileStorage implements IFileStorage {
             throw new CommonException("删除异常。", e);
         }
     }
+
+    /**
+     * OSS的分片上传接口
+     */
+    private class OssObjectStore implements MultipartObjectStore {
+
+        @Override
+        public String putObject(String key, InputStream inputStream, long contentLength) {
+            try {
+                // 1.上传文件元数据处理
+                ObjectMetadata objectMeta = new ObjectMetadata();
+                objectMeta.setContentLength(contentLength);
+                // 2.请求参数
+                PutObjectRequest request = new PutObjectRequest(bucketName, key, inputStream, objectMeta);
+                // 3.上传
+                PutObjectResult result = ossClient.putObject(request);
+                ResponseMessage response = result.getResponse();
+                if (response != null && !response.isSuccessful()) {
+                    log.info("上传文件[{}]失败, 原因：{}", key, response.getErrorResponseAsString());
+                    throw new CommonException("上传文件失败!");
+                }
+                return result.getRequestId();
+            } catch (CommonException e) {
+                throw e;
+            } catch (Exception e) {
+                log.error("上传文件[{}]失败 ", key, e);
+                throw new CommonException("上传文件失败!", e);
+            }
+        }
+
+        @Override
+        public String initiate(String key) {
+            InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(bucketName, key);
+            return ossClient.initiateMultipartUpload(request).getUploadId();
+        }
+
+        @Override
+        public String uploadPart(String key, String uploadId, int partNumber, byte[] data, int length) {
+            UploadPartRequest request = new UploadPartRequest();
+            request.setBucketName(bucketName);
+            request.setKey(key);
+            request.setUploadId(uploadId);
+            request.setPartNumber(partNumber);
+            request.setInputStream(new ByteArrayInputStream(data, 0, length));
+            request.setPartSize(length);
+            return ossClient.uploadPart(request).getPartETag().getETag();
+        }
+
+        @Override
+        public String complete(String key, String uploadId, List<UploadedPart> parts) {
+            List<PartETag> partETags = parts.stream()
+                    .map(p -> new PartETag(p.getPartNumber(), p.getEtag()))
+                    .collect(Collectors.toList());
+            CompleteMultipartUploadRequest request =
+                    new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags);
+            return ossClient.completeMultipartUpload(request).getRequestId();
+        }
+
+        @Override
+        public void abort(String key, String uploadId) {
+            ossClient.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+        }
+    }
 }
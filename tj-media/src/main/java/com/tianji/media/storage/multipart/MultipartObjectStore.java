@@ -0,0 +1,58 @@
+package com.tianji.media.storage.multipart;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * 对象存储的分片上传接口，由各个云平台适配，{@link MultipartUploader}基于它实现并行的分片上传
+ */
+public interface MultipartObjectStore {
+
+    /**
+     * 整体上传一个文件
+     *
+     * @param key           文件key
+     * @param inputStream   文件流
+     * @param contentLength 文件大小
+     * @return 请求id
+     */
+    String putObject(String key, InputStream inputStream, long contentLength);
+
+    /**
+     * 初始化分片上传
+     *
+     * @param key 文件key
+     * @return uploadId
+     */
+    String initiate(String key);
+
+    /**
+     * 上传一个分片，同一个分片可以重复上传，以最后一次为准
+     *
+     * @param key        文件key
+     * @param uploadId   uploadId
+     * @param partNumber 分片序号，从1开始
+     * @param data       分片数据
+     * @param length     分片数据的有效长度
+     * @return 分片的ETag
+     */
+    String uploadPart(String key, String uploadId, int partNumber, byte[] data, int length);
+
+    /**
+     * 合并分片，完成上传
+     *
+     * @param key      文件key
+     * @param uploadId uploadId
+     * @param parts    全部分片，按序号排列
+     * @return 请求id
+     */
+    String complete(String key, String uploadId, List<UploadedPart> parts);
+
+    /**
+     * 取消分片上传，删除已上传的分片
+     *
+     * @param key      文件key
+     * @param uploadId uploadId
+     */
+    void abort(String key, String uploadId);
+}
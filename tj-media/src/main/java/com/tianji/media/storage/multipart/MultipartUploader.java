@@ -0,0 +1,192 @@
+package com.tianji.media.storage.multipart;
+
+import com.tianji.common.exceptions.CommonException;
+import com.tianji.media.config.MultipartUploadProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.tianji.media.enums.FileErrorInfo.Msg.FILE_UPLOAD_ERROR;
+
+/**
+ * 并行的分片上传：
+ * <ul>
+ *     <li>小于阈值的文件直接整体上传</li>
+ *     <li>大文件按分片顺序读取文件流，读到的分片交给上传线程并行上传，单个文件同时上传的分片数有上限，
+ *     上传慢时读取线程阻塞等待，因此单个文件最多占用 concurrency * partSize 的内存</li>
+ *     <li>单个分片失败时按指数退避重试，重试次数用完后整个上传失败，并立即取消分片上传，清理已上传的分片</li>
+ * </ul>
+ * 不支持断点续传：文件在一次请求中完整上传到服务端，对象key每次随机生成，重新上传是一次新的分片上传
+ */
+@Slf4j
+public class MultipartUploader {
+    /**
+     * 对象存储允许的最大分片数
+     */
+    static final int MAX_PART_COUNT = 10_000;
+    private static final long RETRY_BASE_MILLIS = 200;
+    private static final long RETRY_MAX_MILLIS = 5_000;
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+
+    private final MultipartObjectStore store;
+    private final MultipartUploadProperties properties;
+    private final ExecutorService executor;
+
+    public MultipartUploader(MultipartObjectStore store, MultipartUploadProperties properties) {
+        this(store, properties, newExecutor(properties.getThreads()));
+    }
+
+    MultipartUploader(MultipartObjectStore store, MultipartUploadProperties properties, ExecutorService executor) {
+        this.store = store;
+        this.properties = properties;
+        this.executor = executor;
+    }
+
+    /**
+     * 上传文件
+     *
+     * @param key           文件key
+     * @param inputStream   文件流
+     * @param contentLength 文件大小
+     * @return 请求id
+     */
+    public String upload(String key, InputStream inputStream, long contentLength) {
+        // 1.小文件直接上传
+        if (contentLength < properties.getThreshold()) {
+            return store.putObject(key, inputStream, contentLength);
+        }
+        // 2.计算分片，分片数不能超过上限
+        long partSize = Math.max(properties.getPartSize(), (contentLength + MAX_PART_COUNT - 1) / MAX_PART_COUNT);
+        int partCount = (int) ((contentLength + partSize - 1) / partSize);
+        // 3.初始化分片上传
+        String uploadId = store.initiate(key);
+        Map<Integer, UploadedPart> uploaded = new ConcurrentHashMap<>(partCount);
+        try {
+            // 4.并行上传分片
+            uploadParts(key, uploadId, inputStream, contentLength, partSize, partCount, uploaded);
+            // 5.合并分片
+            List<UploadedPart> parts = new ArrayList<>(partCount);
+            for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+                parts.add(uploaded.get(partNumber));
+            }
+            return store.complete(key, uploadId, parts);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // 6.取消分片上传，避免已上传的分片残留在对象存储中
+            log.error("分片上传文件[{}]失败，已上传分片{}/{}", key, uploaded.size(), partCount, e);
+            abortQuietly(key, uploadId);
+            throw e instanceof CommonException ? (CommonException) e : new CommonException(FILE_UPLOAD_ERROR, e);
+        }
+    }
+
+    private void uploadParts(String key, String uploadId, InputStream in, long contentLength,
+                             long partSize, int partCount, Map<Integer, UploadedPart> uploaded) throws Exception {
+        Semaphore permits = new Semaphore(properties.getConcurrency());
+        List<Future<?>> futures = new ArrayList<>(partCount);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        try {
+            for (int partNumber = 1; partNumber <= partCount && failure.get() == null; partNumber++) {
+                int size = (int) Math.min(partSize, contentLength - (partNumber - 1) * partSize);
+                // 1.获取许可后才读取数据，限制同时占用的缓冲区数量
+                permits.acquire();
+                byte[] data;
+                try {
+                    data = readFully(in, size);
+                } catch (IOException e) {
+                    permits.release();
+                    throw e;
+                }
+                int n = partNumber;
+                futures.add(executor.submit(() -> {
+                    try {
+                        String etag = uploadPartWithRetry(key, uploadId, n, data, size);
+                        uploaded.put(n, new UploadedPart(n, etag, size));
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        } finally {
+            // 2.等待已提交的分片结束，无论成功失败
+            for (Future<?> future : futures) {
+                awaitQuietly(future);
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private String uploadPartWithRetry(String key, String uploadId, int partNumber, byte[] data, int size)
+            throws InterruptedException {
+        int attempt = 0;
+        while (true) {
+            try {
+                return store.uploadPart(key, uploadId, partNumber, data, size);
+            } catch (RuntimeException e) {
+                if (attempt >= properties.getMaxRetries()) {
+                    throw e;
+                }
+                long backoff = Math.min(RETRY_BASE_MILLIS << attempt, RETRY_MAX_MILLIS);
+                attempt++;
+                log.warn("上传文件[{}]的分片{}失败，{}ms后第{}次重试", key, partNumber, backoff, attempt, e);
+                TimeUnit.MILLISECONDS.sleep(backoff);
+            }
+        }
+    }
+
+    private void abortQuietly(String key, String uploadId) {
+        try {
+            store.abort(key, uploadId);
+        } catch (Exception e) {
+            // 未能取消的分片由对象存储的生命周期规则清理
+            log.warn("取消文件[{}]的分片上传失败，uploadId：{}", key, uploadId, e);
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int size) throws IOException {
+        byte[] data = in.readNBytes(size);
+        if (data.length < size) {
+            throw new EOFException("文件流长度小于文件大小");
+        }
+        return data;
+    }
+
+    private static void awaitQuietly(Future<?> future) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                future.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "multipart-upload-" + THREAD_INDEX.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,18 @@
+package com.tianji.media.storage.multipart;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 已上传的分片
+ */
+@Data
+@AllArgsConstructor
+public class UploadedPart {
+    /*分片序号，从1开始*/
+    private int partNumber;
+    /*分片的ETag，合并分片时使用*/
+    private String etag;
+    /*分片大小*/
+    private long size;
+}
@@ -4,15 +4,18 @@ import com.tianji.common.exceptions.BadRequestException;
 import com.tianji.common.exceptions.CommonException;
 import com.tianji.common.utils.AssertUtils;
 import com.tianji.common.utils.CollUtils;
+import com.tianji.media.config.MultipartUploadProperties;
 import com.tianji.media.config.TencentProperties;
 import com.tianji.media.storage.IFileStorage;
+import com.tianji.media.storage.multipart.MultipartObjectStore;
+import com.tianji.media.storage.multipart.MultipartUploader;
+import com.tianji.media.storage.multipart.UploadedPart;
 import com.qcloud.cos.COSClient;
 import com.qcloud.cos.model.*;
 import com.qcloud.cos.model.DeleteObjectsRequest.KeyVersion;
-import com.qcloud.cos.transfer.TransferManager;
-import com.qcloud.cos.transfer.Upload;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -23,13 +26,14 @@ import static com.tianji.media.enums.FileErrorInfo.Msg.*;
 public class TencentFileStorage implements IFileStorage {
 
     private final COSClient cosClient;
-    private final TransferManager transferManager;
     private final String bucketName;
+    private final MultipartUploader uploader;
 
-    public TencentFileStorage(COSClient tencentCosClient, TransferManager transferManager, TencentProperties properties) {
+    public TencentFileStorage(COSClient tencentCosClient, TencentProperties properties,
+                              MultipartUploadProperties uploadProperties) {
         this.cosClient = tencentCosClient;
-        this.transferManager = transferManager;
         this.bucketName = properties.getCos().getBucket() + "-" + properties.getAppId();
+        this.uploader = new MultipartUploader(new CosObjectStore(), uploadProperties);
     }
 
     @Override
@@ -39,24 +43,8 @@ public class TencentFileStorage implements IFileStorage {
         AssertUtils.isNotBlank(key, FILE_KEY_IS_NULL);
         AssertUtils.isNotNull(inputStream);
 
-        // 2.元信息，主要是文件大小，这样才可以利用分片上传功能
-        ObjectMetadata objectMetadata = new ObjectMetadata();
-        objectMetadata.setContentLength(contentLength);
-
-        // 3.请求对象
-        PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName, key, inputStream, objectMetadata);
-
-        try {
-            // 4.异步发起上传，返回异步结果upload
-            Upload upload = transferManager.upload(putObjectRequest);
-            // 5.等待结果
-            UploadResult result = upload.waitForUploadResult();
-            // 6.返回信息
-            return result.getRequestId();
-        } catch (Exception e) {
-            log.error("上传文件[{}]时发生异常：", key, e);
-            throw new CommonException("文件上传异常。", e);
-        }
+        // 2.上传，大文件分片并行上传
+        return uploader.upload(key, inputStream, contentLength);
     }
 
     @Override
@@ -114,4 +102,59 @@ public class TencentFileStorage implements IFileStorage {
             throw new CommonException("删除异常。", e);
         }
     }
+
+    /**
+     * COS的分片上传接口
+     */
+    private class CosObjectStore implements MultipartObjectStore {
+
+        @Override
+        public String putObject(String key, InputStream inputStream, long contentLength) {
+            // 1.元信息，主要是文件大小
+            ObjectMetadata objectMetadata = new ObjectMetadata();
+            objectMetadata.setContentLength(contentLength);
+            // 2.请求对象
+            PutObjectRequest request = new PutObjectRequest(bucketName, key, inputStream, objectMetadata);
+            try {
+                // 3.上传
+                return cosClient.putObject(request).getRequestId();
+            } catch (Exception e) {
+                log.error("上传文件[{}]时发生异常：", key, e);
+                throw new CommonException("文件上传异常。", e);
+            }
+        }
+
+        @Override
+        public String initiate(String key) {
+            InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(bucketName, key);
+            return cosClient.initiateMultipartUpload(request).getUploadId();
+        }
+
+        @Override
+        public String uploadPart(String key, String uploadId, int partNumber, byte[] data, int length) {
+            UploadPartRequest request = new UploadPartRequest();
+            request.setBucketName(bucketName);
+            request.setKey(key);
+            request.setUploadId(uploadId);
+            request.setPartNumber(partNumber);
+            request.setInputStream(new ByteArrayInputStream(data, 0, length));
+            request.setPartSize(length);
+            return cosClient.uploadPart(request).getETag();
+        }
+
+        @Override
+        public String complete(String key, String uploadId, List<UploadedPart> parts) {
+            List<PartETag> partETags = parts.stream()
+                    .map(p -> new PartETag(p.getPartNumber(), p.getEtag()))
+                    .collect(Collectors.toList());
+            CompleteMultipartUploadRequest request =
+                    new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags);
+            return cosClient.completeMultipartUpload(request).getRequestId();
+        }
+
+        @Override
+        public void abort(String key, String uploadId) {
+            cosClient.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+        }
+    }
 }
@@ -6,6 +6,8 @@ import cn.hutool.core.util.RandomUtil;
 import cn.hutool.crypto.digest.HMac;
 import cn.hutool.crypto.digest.HmacAlgorithm;
 import cn.hutool.jwt.JWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.qcloud.cos.COSClient;
 import com.qcloud.cos.ClientConfig;
 import com.qcloud.cos.auth.BasicCOSCredentials;
@@ -27,12 +29,14 @@ import com.tianji.media.config.TencentProperties;
 import com.tianji.media.domain.po.Media;
 import com.tianji.media.enums.FileStatus;
 import com.tianji.media.storage.IMediaStorage;
+import com.tianji.media.storage.MediaEvent;
 import com.tianji.media.storage.MediaUploadResult;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.InputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -44,10 +48,26 @@ import static com.tianji.media.enums.FileErrorInfo.Msg.*;
 public class TencentMediaStorage implements IMediaStorage {
     private final VodClient vodClient;
     private final TencentProperties tencentProperties;
+    /**
+     * 播放签名的缓存，key为fileId和试看时长。签名中不包含用户信息，观看同一个视频的用户共享签名
+     */
+    private final Cache<String, String> playSignatureCaches;
 
     public TencentMediaStorage(VodClient vodClient, TencentProperties tencentProperties) {
         this.vodClient = vodClient;
         this.tencentProperties = tencentProperties;
+        TencentProperties.VodProperties vod = tencentProperties.getVod();
+        this.playSignatureCaches = Caffeine.newBuilder()
+                .maximumSize(vod.getPlaySignatureCacheSize())
+                .expireAfterWrite(playSignatureCacheTtl(vod.getPlaySignatureValidSeconds()))
+                .build();
+    }
+
+    /**
+     * 签名只在有效期的前1/4内复用，保证返回给用户的签名至少还有3/4的有效期，能够覆盖整个视频的播放
+     */
+    static Duration playSignatureCacheTtl(long validSeconds) {
+        return Duration.ofSeconds(Math.max(0, validSeconds / PLAY_SIGNATURE_REUSE_DIVISOR));
     }
 
     private static final String CONTEXT_TEMPLATE =
@@ -55,6 +75,13 @@ public class TencentMediaStorage implements IMediaStorage {
     private static final String CONTEXT_TEMPLATE_WITH_PROCEDURE =
             "secretId=%s&currentTimeStamp=%d&expireTime=%d&random=%d&procedure=%s";
     private static final String[] MEDIA_INFO_FILTERS = new String[]{"basicInfo", "metaData"};
+    private static final String PROCEDURE_EVENT = "ProcedureStateChanged";
+    private static final String PROCEDURE_EVENT_FINISH = "FINISH";
+    private static final String NO_EVENT = "no event";
+    /**
+     * 播放签名在有效期的1/PLAY_SIGNATURE_REUSE_DIVISOR内复用
+     */
+    private static final long PLAY_SIGNATURE_REUSE_DIVISOR = 4;
     @Override
     public String getUploadSignature() {
         // 1.获取加密工具
@@ -88,6 +115,11 @@ public class TencentMediaStorage implements IMediaStorage {
 
     @Override
     public String getPlaySignature(String fieldId, Long userId, Integer freeExpired) {
+        // 同一个视频、同样试看时长的签名完全相同，在有效期内复用，避免每次播放都重新签名
+        return playSignatureCaches.get(fieldId + ":" + freeExpired, key -> createPlaySignature(fieldId, freeExpired));
+    }
+
+    String createPlaySignature(String fieldId, Integer freeExpired) {
         long currentTime = System.currentTimeMillis() / 1000;
 
         HashMap<String, Object> urlAccessInfo = new HashMap<>(2);
@@ -102,6 +134,7 @@ public class TencentMediaStorage implements IMediaStorage {
                 .setPayload("appId", tencentProperties.getAppId())
                 .setPayload("fileId", fieldId)
                 .setPayload("currentTimeStamp", currentTime)
+                .setPayload("expireTimeStamp", currentTime + tencentProperties.getVod().getPlaySignatureValidSeconds())
                 .setPayload("pcfg", tencentProperties.getVod().getPfcg())
                 .setPayload("urlAccessInfo", urlAccessInfo)
                 .sign();
@@ -257,4 +290,77 @@ public class TencentMediaStorage implements IMediaStorage {
         }
         return list;
     }
+
+    @Override
+    public List<MediaEvent> pullEvents() {
+        // 1.拉取事件通知
+        PullEventsResponse response;
+        try {
+            response = vodClient.PullEvents(new PullEventsRequest());
+        } catch (TencentCloudSDKException e) {
+            if (NO_EVENT.equals(e.getMessage())) {
+                return Collections.emptyList();
+            }
+            throw new CommonException(MEDIA_PULL_EVENT_ERROR, e);
+        }
+        EventContent[] eventSet = response.getEventSet();
+        if (eventSet == null || eventSet.length == 0) {
+            return Collections.emptyList();
+        }
+        // 2.解析事件
+        List<MediaEvent> events = new ArrayList<>(eventSet.length);
+        for (EventContent ec : eventSet) {
+            MediaEvent event = new MediaEvent();
+            event.setEventHandle(ec.getEventHandle());
+            // 只处理任务流状态变更事件，其它事件直接确认
+            if (PROCEDURE_EVENT.equals(ec.getEventType())) {
+                ProcedureTask pt = ec.getProcedureStateChangeEvent();
+                event.setFileId(pt.getFileId());
+                event.setMedia(parseProcedureResult(pt));
+            }
+            events.add(event);
+        }
+        return events;
+    }
+
+    private Media parseProcedureResult(ProcedureTask pt) {
+        // 1.任务流状态变更，判断是否结束
+        if (!PROCEDURE_EVENT_FINISH.equals(pt.getStatus())) {
+            return null;
+        }
+        // 2.任务流已经结束，获取视频元信息
+        MediaMetaData md = pt.getMetaData();
+        String coverUrl = null;
+        if (pt.getMediaProcessResultSet() != null) {
+            for (MediaProcessTaskResult r : pt.getMediaProcessResultSet()) {
+                if ("CoverBySnapshot".equals(r.getType())) {
+                    coverUrl = r.getCoverBySnapshotTask().getOutput().getCoverUrl();
+                    break;
+                }
+            }
+        }
+        Media media = new Media();
+        media.setFileId(pt.getFileId());
+        media.setFilename(pt.getFileName());
+        media.setMediaUrl(pt.getFileUrl());
+        media.setCoverUrl(coverUrl);
+        media.setDuration(md.getDuration());
+        media.setSize(md.getSize());
+        media.setStatus(FileStatus.PROCESSED);
+        return media;
+    }
+
+    @Override
+    public void confirmEvents(List<String> eventHandles) {
+        if (eventHandles == null || eventHandles.isEmpty()) {
+            return;
+        }
+        ConfirmEventsRequest req = new ConfirmEventsRequest();
+        req.setEventHandles(eventHandles.toArray(new String[0]));
+        try {
+            vodClient.ConfirmEvents(req);
+        } catch (TencentCloudSDKException e) {
+            throw new CommonException(MEDIA_CONFIRM_EVENT_ERROR, e);
+        }
+    }
 }
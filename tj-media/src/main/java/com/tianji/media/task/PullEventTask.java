@@ -1,111 +1,191 @@
 package com.tianji.media.task;
 
-import com.tencentcloudapi.common.exception.TencentCloudSDKException;
-import com.tencentcloudapi.vod.v20180717.VodClient;
-import com.tencentcloudapi.vod.v20180717.models.*;
-import com.tianji.media.domain.po.Media;
-import com.tianji.media.enums.FileStatus;
 import com.tianji.media.service.IMediaService;
-import lombok.RequiredArgsConstructor;
+import com.tianji.media.storage.IMediaStorage;
+import com.tianji.media.storage.MediaEvent;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 媒资事件的拉取与处理：
+ * <ul>
+ *     <li>一个线程持续拉取事件，有事件时立即再次拉取，没有事件时逐步延长等待时间</li>
+ *     <li>事件按照fileId分配给固定的处理线程，同一个文件的事件按顺序处理，不同文件的事件并行处理。
+ *     处理线程的队列有上限，处理不过来时拉取线程等待，等待期间继续确认已处理完的事件</li>
+ *     <li>处理完成的事件由拉取线程批量确认，处理失败的事件不确认，稍后会被重新推送</li>
+ * </ul>
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class PullEventTask {
 
-    private static final String PROCEDURE_EVENT = "ProcedureStateChanged";
-    private static final String UPLOAD_EVENT = "NewFileUpload";
-    private static final String PROCEDURE_EVENT_FINISH = "FINISH";
+    /**
+     * 每次确认的事件数上限
+     */
+    static final int CONFIRM_BATCH_SIZE = 16;
+    private static final int WORKER_NUM = 4;
+    private static final int WORKER_QUEUE_CAPACITY = 200;
+    private static final long MIN_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 5_000;
+    private static final long WORKER_POLL_MILLIS = 100;
 
-    private final VodClient vodClient;
+    private final IMediaStorage mediaStorage;
     private final IMediaService mediaService;
+    private final long minBackoffMillis;
+    private final long maxBackoffMillis;
 
-    @Scheduled(fixedDelay = 10000)
-    public void pullEvent() {
-        // 1.准备请求参数
-        PullEventsRequest req = new PullEventsRequest();
+    /**
+     * 每个处理线程的事件队列
+     */
+    private final List<BlockingQueue<MediaEvent>> lanes;
+    /**
+     * 已处理、等待确认的事件句柄
+     */
+    private final BlockingQueue<String> handledEvents = new LinkedBlockingQueue<>();
+
+    private volatile boolean begin = true;
+    private Thread puller;
+    private final List<Thread> workers = new ArrayList<>();
+
+    @Autowired
+    public PullEventTask(IMediaStorage mediaStorage, IMediaService mediaService) {
+        this(mediaStorage, mediaService, WORKER_NUM, WORKER_QUEUE_CAPACITY, MIN_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+    }
+
+    PullEventTask(IMediaStorage mediaStorage, IMediaService mediaService,
+                  int workerNum, int queueCapacity, long minBackoffMillis, long maxBackoffMillis) {
+        this.mediaStorage = mediaStorage;
+        this.mediaService = mediaService;
+        this.minBackoffMillis = minBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.lanes = new ArrayList<>(workerNum);
+        for (int i = 0; i < workerNum; i++) {
+            lanes.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < lanes.size(); i++) {
+            BlockingQueue<MediaEvent> lane = lanes.get(i);
+            Thread worker = new Thread(() -> handleEvents(lane), "vod-event-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        puller = new Thread(this::pullEvents, "vod-event-puller");
+        puller.setDaemon(true);
+        puller.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        begin = false;
+        puller.interrupt();
+        // 等待已拉取的事件处理完，再确认最后一批
         try {
-            // 2.发出请求，拉取事件通知
-            log.debug("准备拉取vod事件");
-            PullEventsResponse response = vodClient.PullEvents(req);
-            // 3.解析响应
-            EventContent[] eventSet = response.getEventSet();
-            // 3.1.遍历
-            List<String> ehs = new ArrayList<>();
-            for (EventContent ec : eventSet) {
-                // 3.2.获取事件类型
-                String eventType = ec.getEventType();
-                // 3.3.处理事件
-                if (PROCEDURE_EVENT.equals(eventType)) {
-                    handleProcedureStateChangeEvent(ec);
-                } /*else if(UPLOAD_EVENT.equals(eventType)){
-                    handleUploadEvent(ec);
-                }*/
-                ehs.add(ec.getEventHandle());
+            puller.join(TimeUnit.SECONDS.toMillis(5));
+            for (Thread worker : workers) {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
             }
-            ConfirmEventsRequest confirmReq = new ConfirmEventsRequest();
-            confirmReq.setEventHandles(ehs.toArray(new String[0]));
-            vodClient.ConfirmEvents(confirmReq);
-            log.info("事件处理完毕");
-        } catch (TencentCloudSDKException e) {
-            if(e.getMessage().equals("no event")){
-                log.debug("暂无event事件");
-            }else{
-                log.error("VOD事件处理异常", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        confirmHandledEvents();
+        log.debug("vod事件处理器已停止");
+    }
+
+    private void pullEvents() {
+        long backoff = minBackoffMillis;
+        while (begin) {
+            try {
+                // 1.确认已经处理完的事件
+                confirmHandledEvents();
+                // 2.拉取事件
+                List<MediaEvent> events = mediaStorage.pullEvents();
+                if (events.isEmpty()) {
+                    // 2.1.暂无事件，等待一段时间再拉取，连续没有事件时逐步延长等待时间
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                    backoff = Math.min(backoff * 2, maxBackoffMillis);
+                    continue;
+                }
+                backoff = minBackoffMillis;
+                log.debug("拉取到vod事件{}个", events.size());
+                // 3.分发给处理线程
+                for (MediaEvent event : events) {
+                    dispatch(event);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("拉取VOD事件异常", e);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(maxBackoffMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
             }
         }
     }
 
-    private void handleUploadEvent(EventContent ec) {
-        // 1.文件上传事件
-        FileUploadTask fut = ec.getFileUploadEvent();
-        String fileId = fut.getFileId();
-        // 2.获取文件详情
-        MediaMetaData md = fut.getMetaData();
-        MediaBasicInfo info = fut.getMediaBasicInfo();
-        // 3.组织结果
-        Media media = new Media();
-        media.setFileId(fut.getFileId());
-        media.setFilename(info.getName());
-        media.setMediaUrl(info.getMediaUrl());
-        media.setCoverUrl(info.getCoverUrl());
-        media.setDuration(md.getDuration());
-        media.setSize(md.getSize());
-        media.setStatus(FileStatus.UPLOADED);
-        mediaService.updateMediaProcedureResult(media);
+    private void dispatch(MediaEvent event) throws InterruptedException {
+        if (event.getMedia() == null) {
+            // 无需处理的事件，直接确认
+            handledEvents.add(event.getEventHandle());
+            return;
+        }
+        // 同一个文件的事件总是进入同一个队列，队列已满时等待，避免等待期间已处理的事件迟迟得不到确认
+        int index = Math.floorMod(event.getFileId().hashCode(), lanes.size());
+        BlockingQueue<MediaEvent> lane = lanes.get(index);
+        while (!lane.offer(event, WORKER_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            confirmHandledEvents();
+        }
+    }
+
+    private void handleEvents(BlockingQueue<MediaEvent> lane) {
+        // 停止时先把队列中剩余的事件处理完
+        while (begin || !lane.isEmpty()) {
+            MediaEvent event;
+            try {
+                event = lane.poll(WORKER_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (event == null) {
+                continue;
+            }
+            try {
+                mediaService.updateMediaProcedureResult(event.getMedia());
+                handledEvents.add(event.getEventHandle());
+            } catch (Exception e) {
+                log.error("处理VOD事件异常，文件：{}，事件稍后会被重新推送", event.getFileId(), e);
+            }
+        }
     }
 
-    private void handleProcedureStateChangeEvent(EventContent ec) {
-        // 3.3.1.任务流状态变更，判断是否结束
-        ProcedureTask pt = ec.getProcedureStateChangeEvent();
-        if (PROCEDURE_EVENT_FINISH.equals(pt.getStatus())) {
-            // 3.3.2.任务流已经结束，获取视频元信息
-            MediaMetaData md = pt.getMetaData();
-            Optional<MediaProcessTaskResult> optional = Arrays.stream(pt.getMediaProcessResultSet())
-                    .filter(r -> "CoverBySnapshot".equals(r.getType()))
-                    .findFirst();
-            String coverUrl = null;
-            if (optional.isPresent()) {
-                coverUrl = optional.get().getCoverBySnapshotTask().getOutput().getCoverUrl();
+    private void confirmHandledEvents() {
+        List<String> handles = new ArrayList<>(CONFIRM_BATCH_SIZE);
+        while (handledEvents.drainTo(handles, CONFIRM_BATCH_SIZE) > 0) {
+            try {
+                mediaStorage.confirmEvents(handles);
+            } catch (Exception e) {
+                // 确认失败的事件会被重新推送，重复处理是幂等的
+                log.error("确认VOD事件异常，事件数：{}", handles.size(), e);
             }
-            // 3.3.3.保存到数据库
-            Media media = new Media();
-            media.setFileId(pt.getFileId());
-            media.setFilename(pt.getFileName());
-            media.setMediaUrl(pt.getFileUrl());
-            media.setCoverUrl(coverUrl);
-            media.setDuration(md.getDuration());
-            media.setSize(md.getSize());
-            media.setStatus(FileStatus.PROCESSED);
-            mediaService.updateMediaProcedureResult(media);
+            handles.clear();
         }
     }
 }
@@ -0,0 +1,102 @@
+package com.tianji.media.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tianji.api.client.course.CourseClient;
+import com.tianji.api.dto.course.SectionInfoDTO;
+import com.tianji.common.utils.AssertUtils;
+import com.tianji.media.domain.po.Media;
+import com.tianji.media.mapper.MediaMapper;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+import static com.tianji.media.constants.FileErrorInfo.MEDIA_NOT_EXISTS;
+
+/**
+ * 小节与媒资的对应关系的本地缓存。
+ * <p>
+ * 播放视频时需要知道小节所属的课程、是否可以试看以及媒资的fileId，这些信息只有课程重新发布时才会变化，
+ * 缓存一段时间后重新查询即可，不需要每次播放都远程调用课程服务并查询数据库。
+ * 课程上架、下架、过期、删除时由{@link com.tianji.media.mq.SectionMediaCacheInvalidator}清除该课程的小节，
+ * 避免小节从试看改为付费后仍然可以免费播放。
+ * </p>
+ */
+@Component
+public class SectionMediaCache {
+    /**
+     * 缓存有效期，没有收到课程变更消息时，课程目录修改后最多这么久才能生效
+     */
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    private final Cache<Long, SectionMedia> sectionCaches = Caffeine.newBuilder()
+            .initialCapacity(128)
+            .maximumSize(100_000)
+            .expireAfterWrite(TTL)
+            .build();
+
+    private final CourseClient courseClient;
+    private final MediaMapper mediaMapper;
+
+    public SectionMediaCache(CourseClient courseClient, MediaMapper mediaMapper) {
+        this.courseClient = courseClient;
+        this.mediaMapper = mediaMapper;
+    }
+
+    /**
+     * 查询小节的媒资信息
+     *
+     * @param sectionId 小节id
+     * @return 小节的媒资信息，小节或媒资不存在时抛出异常
+     */
+    public SectionMedia get(Long sectionId) {
+        return sectionCaches.get(sectionId, this::load);
+    }
+
+    /**
+     * 媒资被删除，清除引用了它的小节
+     *
+     * @param fileId 媒资文件id
+     */
+    public void invalidateByFileId(String fileId) {
+        sectionCaches.asMap().values().removeIf(m -> m.getFileId().equals(fileId));
+    }
+
+    /**
+     * 课程重新发布或下架，清除该课程的全部小节
+     *
+     * @param courseId 课程id
+     */
+    public void invalidateByCourseId(Long courseId) {
+        sectionCaches.asMap().values().removeIf(m -> courseId.equals(m.getCourseId()));
+    }
+
+    private SectionMedia load(Long sectionId) {
+        // 1.根据sectionId查询小节信息
+        SectionInfoDTO sectionInfo = courseClient.sectionInfo(sectionId);
+        AssertUtils.isNotNull(sectionInfo, MEDIA_NOT_EXISTS);
+        // 2.查询媒资信息
+        Media media = mediaMapper.selectById(sectionInfo.getMediaId());
+        AssertUtils.isNotNull(media, MEDIA_NOT_EXISTS);
+        return new SectionMedia(sectionInfo, media.getFileId());
+    }
+
+    /**
+     * 小节的媒资信息
+     */
+    @Getter
+    public static class SectionMedia {
+        private final Long courseId;
+        private final Boolean trailer;
+        private final Integer freeDuration;
+        private final String fileId;
+
+        private SectionMedia(SectionInfoDTO sectionInfo, String fileId) {
+            this.courseId = sectionInfo.getCourseId();
+            this.trailer = sectionInfo.getTrailer();
+            this.freeDuration = sectionInfo.getFreeDuration();
+            this.fileId = fileId;
+        }
+    }
+}
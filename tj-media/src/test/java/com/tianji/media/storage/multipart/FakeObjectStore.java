@@ -0,0 +1,116 @@
+package com.tianji.media.storage.multipart;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内存中的对象存储，模拟分片上传的行为，可以指定分片失败的次数
+ */
+class FakeObjectStore implements MultipartObjectStore {
+
+    final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    final Set<String> aborted = ConcurrentHashMap.newKeySet();
+    /**
+     * 分片序号和剩余的失败次数
+     */
+    final Map<Integer, AtomicInteger> failures = new ConcurrentHashMap<>();
+    /**
+     * 分片序号和成功上传的次数
+     */
+    final Map<Integer, AtomicInteger> partUploads = new ConcurrentHashMap<>();
+    final AtomicInteger initiateCount = new AtomicInteger();
+    final AtomicInteger putCount = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger uploadIds = new AtomicInteger();
+    private final long partDelayMillis;
+
+    FakeObjectStore(long partDelayMillis) {
+        this.partDelayMillis = partDelayMillis;
+    }
+
+    void failPart(int partNumber, int times) {
+        failures.put(partNumber, new AtomicInteger(times));
+    }
+
+    @Override
+    public String putObject(String key, InputStream inputStream, long contentLength) {
+        try {
+            objects.put(key, inputStream.readNBytes((int) contentLength));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        putCount.incrementAndGet();
+        return "put-" + key;
+    }
+
+    @Override
+    public String initiate(String key) {
+        initiateCount.incrementAndGet();
+        String uploadId = key + "#" + uploadIds.incrementAndGet();
+        uploads.put(uploadId, new ConcurrentHashMap<>());
+        return uploadId;
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, byte[] data, int length) {
+        Map<Integer, byte[]> parts = uploads.get(uploadId);
+        if (parts == null) {
+            throw new IllegalStateException("NoSuchUpload");
+        }
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            TimeUnit.MILLISECONDS.sleep(partDelayMillis);
+            AtomicInteger remaining = failures.get(partNumber);
+            if (remaining != null && remaining.getAndDecrement() > 0) {
+                throw new IllegalStateException("模拟分片" + partNumber + "上传失败");
+            }
+            parts.put(partNumber, Arrays.copyOf(data, length));
+            partUploads.computeIfAbsent(partNumber, k -> new AtomicInteger()).incrementAndGet();
+            return etag(partNumber, length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public String complete(String key, String uploadId, List<UploadedPart> parts) {
+        Map<Integer, byte[]> uploaded = uploads.remove(uploadId);
+        int size = 0;
+        for (UploadedPart part : parts) {
+            byte[] data = uploaded.get(part.getPartNumber());
+            if (data == null || !etag(part.getPartNumber(), data.length).equals(part.getEtag())) {
+                throw new IllegalStateException("InvalidPart " + part.getPartNumber());
+            }
+            size += data.length;
+        }
+        byte[] object = new byte[size];
+        int offset = 0;
+        for (UploadedPart part : parts) {
+            byte[] data = uploaded.get(part.getPartNumber());
+            System.arraycopy(data, 0, object, offset, data.length);
+            offset += data.length;
+        }
+        objects.put(key, object);
+        return "complete-" + uploadId;
+    }
+
+    @Override
+    public void abort(String key, String uploadId) {
+        uploads.remove(uploadId);
+        aborted.add(uploadId);
+    }
+
+    private static String etag(int partNumber, int length) {
+        return partNumber + "-" + length;
+    }
+}
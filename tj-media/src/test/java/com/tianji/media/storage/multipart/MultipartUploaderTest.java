@@ -0,0 +1,100 @@
+package com.tianji.media.storage.multipart;
+
+import com.tianji.common.exceptions.CommonException;
+import com.tianji.media.config.MultipartUploadProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartUploaderTest {
+
+    private static final int PART_SIZE = 1024;
+
+    private FakeObjectStore store;
+    private MultipartUploadProperties properties;
+    private MultipartUploader uploader;
+
+    @BeforeEach
+    void setUp() {
+        store = new FakeObjectStore(20);
+        properties = new MultipartUploadProperties();
+        properties.setThreshold(4 * PART_SIZE);
+        properties.setPartSize(PART_SIZE);
+        properties.setConcurrency(3);
+        properties.setThreads(8);
+        properties.setMaxRetries(2);
+        uploader = new MultipartUploader(store, properties);
+    }
+
+    @Test
+    void testSmallFileUploadedWhole() {
+        byte[] data = randomBytes(PART_SIZE);
+
+        String requestId = uploader.upload("small", new ByteArrayInputStream(data), data.length);
+
+        assertEquals("put-small", requestId);
+        assertArrayEquals(data, store.objects.get("small"));
+        assertEquals(0, store.initiateCount.get());
+    }
+
+    @Test
+    void testPartsUploadedInParallel() {
+        // 最后一个分片不满
+        byte[] data = randomBytes(10 * PART_SIZE + 100);
+
+        uploader.upload("big", new ByteArrayInputStream(data), data.length);
+
+        assertArrayEquals(data, store.objects.get("big"));
+        assertEquals(0, store.putCount.get());
+        assertEquals(11, store.partUploads.size());
+        // 并行上传，但同时上传的分片数不超过concurrency
+        assertTrue(store.maxInFlight.get() > 1);
+        assertTrue(store.maxInFlight.get() <= properties.getConcurrency());
+    }
+
+    @Test
+    void testFailedPartRetried() {
+        byte[] data = randomBytes(6 * PART_SIZE);
+        store.failPart(3, 2);
+
+        uploader.upload("retry", new ByteArrayInputStream(data), data.length);
+
+        assertArrayEquals(data, store.objects.get("retry"));
+        assertEquals(1, store.partUploads.get(3).get());
+    }
+
+    @Test
+    void testFailedUploadAborted() {
+        byte[] data = randomBytes(12 * PART_SIZE);
+        // 重试次数用完，上传失败
+        store.failPart(5, properties.getMaxRetries() + 1);
+
+        assertThrows(CommonException.class,
+                () -> uploader.upload("failed", new ByteArrayInputStream(data), data.length));
+
+        // 立即取消分片上传，已上传的分片被清理
+        assertNull(store.objects.get("failed"));
+        assertEquals(1, store.aborted.size());
+        assertTrue(store.uploads.isEmpty());
+    }
+
+    @Test
+    void testShortStreamFails() {
+        byte[] data = randomBytes(6 * PART_SIZE);
+
+        assertThrows(CommonException.class,
+                () -> uploader.upload("short", new ByteArrayInputStream(data), data.length + PART_SIZE));
+        assertNull(store.objects.get("short"));
+        assertTrue(store.uploads.isEmpty());
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
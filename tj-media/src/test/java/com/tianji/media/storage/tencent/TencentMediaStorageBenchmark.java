@@ -0,0 +1,62 @@
+package com.tianji.media.storage.tencent;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 播放签名的吞吐量：每次重新签名与复用缓存的签名对比，100个视频轮流播放。
+ * <p>
+ * 不在单元测试中执行，需要时运行main方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class TencentMediaStorageBenchmark {
+
+    private static final int FILE_COUNT = 100;
+
+    private TencentMediaStorage storage;
+    private String[] fileIds;
+
+    @Setup
+    public void setUp() {
+        storage = TencentMediaStorageTest.newStorage();
+        fileIds = new String[FILE_COUNT];
+        for (int i = 0; i < FILE_COUNT; i++) {
+            fileIds[i] = "file-" + i;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        String nextFileId(String[] fileIds) {
+            next = (next + 1) % fileIds.length;
+            return fileIds[next];
+        }
+    }
+
+    @Benchmark
+    public String sign(Cursor cursor) {
+        return storage.createPlaySignature(cursor.nextFileId(fileIds), null);
+    }
+
+    @Benchmark
+    public String cached(Cursor cursor) {
+        return storage.getPlaySignature(cursor.nextFileId(fileIds), 1L, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TencentMediaStorageBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,69 @@
+package com.tianji.media.storage.tencent;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.jwt.JWT;
+import cn.hutool.jwt.JWTUtil;
+import com.tianji.media.config.TencentProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TencentMediaStorageTest {
+
+    private static final String URL_KEY = "test-url-key";
+
+    private TencentMediaStorage storage;
+
+    static TencentMediaStorage newStorage() {
+        TencentProperties properties = new TencentProperties();
+        properties.setAppId(1L);
+        TencentProperties.VodProperties vod = new TencentProperties.VodProperties();
+        vod.setUrlKey(URL_KEY);
+        vod.setPfcg("basicDrmPreset");
+        properties.setVod(vod);
+        return new TencentMediaStorage(null, properties);
+    }
+
+    @BeforeEach
+    void setUp() {
+        storage = newStorage();
+    }
+
+    @Test
+    void testSignatureReused() {
+        String s1 = storage.getPlaySignature("file-1", 1L, null);
+        // 签名不包含用户信息，不同用户复用同一个签名
+        String s2 = storage.getPlaySignature("file-1", 2L, null);
+        assertSame(s1, s2);
+
+        // 不同的视频、不同的试看时长使用不同的签名
+        assertNotEquals(s1, storage.getPlaySignature("file-2", 1L, null));
+        String trial = storage.getPlaySignature("file-1", 1L, 5);
+        assertNotEquals(s1, trial);
+        JSONObject urlAccessInfo = (JSONObject) JWT.of(trial).getPayload("urlAccessInfo");
+        assertEquals(300, urlAccessInfo.getInt("exper"));
+    }
+
+    @Test
+    void testSignatureExpiry() {
+        String signature = storage.getPlaySignature("file-1", 1L, null);
+
+        assertTrue(JWTUtil.verify(signature, URL_KEY.getBytes(StandardCharsets.UTF_8)));
+        JWT jwt = JWT.of(signature);
+        long current = Long.parseLong(jwt.getPayload("currentTimeStamp").toString());
+        long expire = Long.parseLong(jwt.getPayload("expireTimeStamp").toString());
+        assertEquals(14400, expire - current);
+    }
+
+    @Test
+    void testCacheTtl() {
+        // 只在有效期的前1/4内复用
+        assertEquals(Duration.ofSeconds(3600), TencentMediaStorage.playSignatureCacheTtl(14400));
+        assertEquals(Duration.ofSeconds(900), TencentMediaStorage.playSignatureCacheTtl(3600));
+        assertEquals(Duration.ZERO, TencentMediaStorage.playSignatureCacheTtl(3));
+    }
+}
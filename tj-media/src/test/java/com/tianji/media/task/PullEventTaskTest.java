@@ -0,0 +1,227 @@
+package com.tianji.media.task;
+
+import com.tianji.media.domain.po.Media;
+import com.tianji.media.service.IMediaService;
+import com.tianji.media.storage.IMediaStorage;
+import com.tianji.media.storage.MediaEvent;
+import com.tianji.media.storage.MediaUploadResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PullEventTaskTest {
+
+    private static final int FILE_NUM = 16;
+    private static final int EVENTS_PER_FILE = 10;
+    private static final long HANDLE_MILLIS = 10;
+    private static final int WORKER_NUM = 8;
+
+    /**
+     * 媒资平台的替身，每次拉取返回一批事件，并记录确认的事件
+     */
+    static class FakeMediaStorage implements IMediaStorage {
+        private final Queue<List<MediaEvent>> batches = new ConcurrentLinkedQueue<>();
+        private final List<List<String>> confirmed = new CopyOnWriteArrayList<>();
+        private volatile int pullCount;
+
+        @Override
+        public List<MediaEvent> pullEvents() {
+            pullCount++;
+            List<MediaEvent> batch = batches.poll();
+            return batch == null ? Collections.emptyList() : batch;
+        }
+
+        @Override
+        public void confirmEvents(List<String> eventHandles) {
+            confirmed.add(new ArrayList<>(eventHandles));
+        }
+
+        int confirmedCount() {
+            return confirmed.stream().mapToInt(List::size).sum();
+        }
+
+        @Override
+        public String getUploadSignature() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getPlaySignature(String fieldId, Long userId, Integer freeExpire) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MediaUploadResult uploadFile(String filename, InputStream inputStream, long contentLength) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteFile(String fileId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteFiles(List<String> fileIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Media> queryMediaInfos(String... fileIds) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private PullEventTask task;
+
+    @AfterEach
+    void tearDown() {
+        if (task != null) {
+            task.destroy();
+        }
+    }
+
+    private static MediaEvent event(String fileId, int seq) {
+        Media media = new Media();
+        media.setFileId(fileId);
+        media.setFilename(String.valueOf(seq));
+        MediaEvent event = new MediaEvent();
+        event.setEventHandle(fileId + "-" + seq);
+        event.setFileId(fileId);
+        event.setMedia(media);
+        return event;
+    }
+
+    private static void awaitConfirmed(FakeMediaStorage storage, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (storage.confirmedCount() < expected && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    @Test
+    void testOrdering() throws InterruptedException {
+        FakeMediaStorage storage = new FakeMediaStorage();
+        // 事件按顺序交错到达，每批20个
+        List<MediaEvent> all = new ArrayList<>();
+        for (int seq = 0; seq < EVENTS_PER_FILE; seq++) {
+            for (int f = 0; f < FILE_NUM; f++) {
+                all.add(event("file-" + f, seq));
+            }
+        }
+        for (int i = 0; i < all.size(); i += 20) {
+            storage.batches.add(new ArrayList<>(all.subList(i, Math.min(i + 20, all.size()))));
+        }
+        // 记录每个文件的事件处理顺序
+        Map<String, List<Integer>> handled = new ConcurrentHashMap<>();
+        // 记录同时处理的事件数的峰值
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        IMediaService mediaService = mock(IMediaService.class);
+        doAnswer(invocation -> {
+            Media media = invocation.getArgument(0);
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                TimeUnit.MILLISECONDS.sleep(HANDLE_MILLIS);
+                handled.computeIfAbsent(media.getFileId(), k -> new CopyOnWriteArrayList<>())
+                        .add(Integer.valueOf(media.getFilename()));
+            } finally {
+                running.decrementAndGet();
+            }
+            return null;
+        }).when(mediaService).updateMediaProcedureResult(any());
+
+        task = new PullEventTask(storage, mediaService, WORKER_NUM, 16, 10, 50);
+        task.init();
+        awaitConfirmed(storage, all.size());
+
+        // 1.全部事件都被处理和确认，每批不超过上限
+        assertEquals(all.size(), storage.confirmedCount());
+        assertTrue(storage.confirmed.stream().allMatch(b -> b.size() <= PullEventTask.CONFIRM_BATCH_SIZE));
+        // 2.同一个文件的事件按顺序处理
+        assertEquals(FILE_NUM, handled.size());
+        for (List<Integer> seqs : handled.values()) {
+            assertEquals(EVENTS_PER_FILE, seqs.size());
+            for (int i = 0; i < seqs.size(); i++) {
+                assertEquals(i, seqs.get(i));
+            }
+        }
+        // 3.不同文件的事件并行处理，并发数不超过处理线程数
+        assertTrue(peak.get() > 1, "并发峰值：" + peak.get());
+        assertTrue(peak.get() <= WORKER_NUM, "并发峰值：" + peak.get());
+    }
+
+    @Test
+    void testConfirmWhileQueueFull() throws InterruptedException {
+        FakeMediaStorage storage = new FakeMediaStorage();
+        List<MediaEvent> batch = new ArrayList<>();
+        for (int seq = 0; seq < 10; seq++) {
+            batch.add(event("file", seq));
+        }
+        storage.batches.add(batch);
+        // 第一个事件处理完后，处理线程卡住，队列随即被填满
+        CountDownLatch latch = new CountDownLatch(1);
+        IMediaService mediaService = mock(IMediaService.class);
+        doAnswer(invocation -> {
+            Media media = invocation.getArgument(0);
+            if (!"0".equals(media.getFilename())) {
+                latch.await();
+            }
+            return null;
+        }).when(mediaService).updateMediaProcedureResult(any());
+
+        task = new PullEventTask(storage, mediaService, 1, 1, 10, 50);
+        task.init();
+        try {
+            // 拉取线程等待队列空位期间，已处理的事件仍然被确认
+            awaitConfirmed(storage, 1);
+            assertEquals(List.of(List.of("file-0")), storage.confirmed);
+        } finally {
+            latch.countDown();
+        }
+        awaitConfirmed(storage, batch.size());
+        assertEquals(batch.size(), storage.confirmedCount());
+    }
+
+    @Test
+    void testFailedEventNotConfirmed() throws InterruptedException {
+        FakeMediaStorage storage = new FakeMediaStorage();
+        MediaEvent ignored = new MediaEvent();
+        ignored.setEventHandle("ignored");
+        storage.batches.add(List.of(event("ok", 0), event("bad", 0), ignored));
+        IMediaService mediaService = mock(IMediaService.class);
+        doThrow(new IllegalStateException("db down")).when(mediaService)
+                .updateMediaProcedureResult(argThat(m -> "bad".equals(m.getFileId())));
+
+        task = new PullEventTask(storage, mediaService, 2, 16, 10, 50);
+        task.init();
+        awaitConfirmed(storage, 2);
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        Set<String> confirmed = new HashSet<>();
+        storage.confirmed.forEach(confirmed::addAll);
+        assertEquals(Set.of("ok-0", "ignored"), confirmed);
+    }
+
+    @Test
+    void testBackoffWhenEmpty() throws InterruptedException {
+        FakeMediaStorage storage = new FakeMediaStorage();
+        task = new PullEventTask(storage, mock(IMediaService.class), 1, 16, 10, 50);
+        task.init();
+        TimeUnit.MILLISECONDS.sleep(500);
+
+        // 等待时间从10ms翻倍到50ms，500ms内只会拉取十几次
+        assertTrue(storage.pullCount < 20, "拉取次数：" + storage.pullCount);
+    }
+}
@@ -0,0 +1,119 @@
+package com.tianji.media.utils;
+
+import com.tianji.api.client.course.CourseClient;
+import com.tianji.api.dto.course.SectionInfoDTO;
+import com.tianji.common.exceptions.BadRequestException;
+import com.tianji.media.domain.po.Media;
+import com.tianji.media.mapper.MediaMapper;
+import com.tianji.media.mq.SectionMediaCacheInvalidator;
+import com.tianji.media.utils.SectionMediaCache.SectionMedia;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class SectionMediaCacheTest {
+
+    private CourseClient courseClient;
+    private MediaMapper mediaMapper;
+    private SectionMediaCache cache;
+
+    @BeforeEach
+    void setUp() {
+        courseClient = mock(CourseClient.class);
+        when(courseClient.sectionInfo(anyLong())).thenAnswer(inv -> {
+            Long sectionId = inv.getArgument(0);
+            SectionInfoDTO dto = new SectionInfoDTO();
+            dto.setCourseId(100L);
+            dto.setMediaId(sectionId);
+            dto.setTrailer(sectionId == 1L);
+            dto.setFreeDuration(60);
+            return dto;
+        });
+        mediaMapper = mock(MediaMapper.class);
+        when(mediaMapper.selectById(any())).thenAnswer(inv -> {
+            Long mediaId = inv.getArgument(0);
+            Media media = new Media();
+            media.setId(mediaId);
+            media.setFileId("file-" + mediaId);
+            return media;
+        });
+        cache = new SectionMediaCache(courseClient, mediaMapper);
+    }
+
+    @Test
+    void testLoadOnce() {
+        SectionMedia media = cache.get(1L);
+        assertEquals(100L, media.getCourseId());
+        assertTrue(media.getTrailer());
+        assertEquals(60, media.getFreeDuration());
+        assertEquals("file-1", media.getFileId());
+
+        assertSame(media, cache.get(1L));
+        // 再次播放不再远程调用课程服务和查询数据库
+        verify(courseClient, times(1)).sectionInfo(1L);
+        verify(mediaMapper, times(1)).selectById(any());
+    }
+
+    @Test
+    void testInvalidateByFileId() {
+        cache.get(1L);
+        cache.get(2L);
+
+        cache.invalidateByFileId("file-1");
+
+        cache.get(1L);
+        cache.get(2L);
+        verify(courseClient, times(2)).sectionInfo(1L);
+        verify(courseClient, times(1)).sectionInfo(2L);
+    }
+
+    @Test
+    void testInvalidateByCourse() {
+        cache.get(1L);
+        cache.get(2L);
+
+        // 课程重新发布，小节从试看改为付费
+        when(courseClient.sectionInfo(1L)).thenAnswer(inv -> {
+            SectionInfoDTO dto = new SectionInfoDTO();
+            dto.setCourseId(100L);
+            dto.setMediaId(1L);
+            dto.setTrailer(false);
+            return dto;
+        });
+        new SectionMediaCacheInvalidator(cache).listenCourseChange(100L);
+
+        assertFalse(cache.get(1L).getTrailer());
+        cache.get(2L);
+        verify(courseClient, times(2)).sectionInfo(2L);
+        // 其它课程的变更不影响
+        new SectionMediaCacheInvalidator(cache).listenCourseChange(200L);
+        cache.get(2L);
+        verify(courseClient, times(2)).sectionInfo(2L);
+    }
+
+    @Test
+    void testMissingMediaNotCached() {
+        when(mediaMapper.selectById(any())).thenReturn(null);
+        assertThrows(BadRequestException.class, () -> cache.get(1L));
+
+        // 媒资不存在的结果不缓存，补上媒资后可以正常播放
+        when(mediaMapper.selectById(any())).thenAnswer(inv -> {
+            Media media = new Media();
+            media.setFileId("file-1");
+            return media;
+        });
+        assertEquals("file-1", cache.get(1L).getFileId());
+    }
+
+    @Test
+    void testMissingSection() {
+        when(courseClient.sectionInfo(anyLong())).thenReturn(null);
+
+        assertThrows(BadRequestException.class, () -> cache.get(1L));
+        verify(mediaMapper, never()).selectById(any());
+    }
+}
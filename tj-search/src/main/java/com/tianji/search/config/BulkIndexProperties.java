@@ -0,0 +1,25 @@
+package com.tianji.search.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "tj.search.bulk")
+public class BulkIndexProperties {
+    /**
+     * 攒批等待时间，第一个操作到达后最多等待这么久再写入索引库
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+    /**
+     * 待写入的课程数达到这个数量时立即写入，也是每个bulk请求最多包含的操作数
+     */
+    private Integer batchSize = 500;
+    /**
+     * 写入完成后执行回调（确认消息、记录已累加的销量）的线程数
+     */
+    private Integer callbackThreads = 2;
+}
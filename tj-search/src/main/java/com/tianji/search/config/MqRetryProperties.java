@@ -0,0 +1,25 @@
+package com.tianji.search.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "tj.search.retry")
+public class MqRetryProperties {
+    /**
+     * 第一次重新投递前的延迟时间，之后每次翻倍
+     */
+    private Duration initialInterval = Duration.ofSeconds(1);
+    /**
+     * 重新投递的最大延迟时间
+     */
+    private Duration maxInterval = Duration.ofMinutes(1);
+    /**
+     * 最多重新投递的次数，超过后消息投递到失败消息队列
+     */
+    private Integer maxRetries = 10;
+}
@@ -13,6 +13,7 @@ import org.springframework.web.bind.annotation.*;
 import springfox.documentation.annotations.ApiIgnore;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("courses")
@@ -39,9 +40,12 @@ public class CourseController {
     @PostMapping("/up")
     public void handleCoursesUp(
             @ApiParam("课程id集合") @RequestParam("courseIds") List<Long> courseIds) {
-        for (Long courseId : courseIds) {
-            courseService.handleCourseUp(courseId);
+        CompletableFuture<?>[] futures = new CompletableFuture[courseIds.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = courseService.handleCourseUp(courseIds.get(i));
         }
+        // 等待全部写入索引库
+        CompletableFuture.allOf(futures).join();
     }
 
     @ApiOperation("处理指定课程下架失败的问题")
@@ -1,8 +1,10 @@
 package com.tianji.search.mq;
 
+import com.rabbitmq.client.Channel;
 import com.tianji.search.service.ICourseService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.Exchange;
 import org.springframework.amqp.rabbit.annotation.Queue;
 import org.springframework.amqp.rabbit.annotation.QueueBinding;
@@ -12,40 +14,65 @@ import org.springframework.stereotype.Component;
 
 import static com.tianji.common.constants.MqConstants.Exchange.COURSE_EXCHANGE;
 import static com.tianji.common.constants.MqConstants.Key.*;
+import static com.tianji.search.mq.MessageAcker.RETRY_EXCHANGE;
 
+/**
+ * 课程上架、下架、过期时更新课程索引，批量写入索引库后才确认消息，失败时延迟重新投递
+ */
 @Slf4j
 @Component
 public class CourseEventListener {
 
+    private static final String UP_QUEUE = "search.course.up.queue";
+    private static final String DOWN_QUEUE = "search.course.down.queue";
+    private static final String EXPIRE_QUEUE = "search.course.expire.queue";
+
     @Autowired
     private ICourseService courseService;
+    @Autowired
+    private MessageAcker acker;
 
-    @RabbitListener(bindings = @QueueBinding(
-            value = @Queue(name = "search.course.up.queue", durable = "true"),
-            exchange = @Exchange(name = COURSE_EXCHANGE, type = ExchangeTypes.TOPIC),
-            key = COURSE_UP_KEY
-    ))
-    public void listenCourseUp(Long courseId){
+    @RabbitListener(ackMode = "MANUAL", bindings = {
+            @QueueBinding(
+                    value = @Queue(name = UP_QUEUE, durable = "true"),
+                    exchange = @Exchange(name = COURSE_EXCHANGE, type = ExchangeTypes.TOPIC),
+                    key = COURSE_UP_KEY),
+            @QueueBinding(
+                    value = @Queue(name = UP_QUEUE, durable = "true"),
+                    exchange = @Exchange(name = RETRY_EXCHANGE, delayed = "true", type = ExchangeTypes.TOPIC),
+                    key = UP_QUEUE)
+    })
+    public void listenCourseUp(Long courseId, Channel channel, Message message){
         log.debug("监听到课程{}上架", courseId);
-        courseService.handleCourseUp(courseId);
+        acker.ackWhenDone(() -> courseService.handleCourseUp(courseId), channel, message);
     }
 
-    @RabbitListener(bindings = @QueueBinding(
-            value = @Queue(name = "search.course.down.queue", durable = "true"),
-            exchange = @Exchange(name = COURSE_EXCHANGE, type = ExchangeTypes.TOPIC),
-            key = COURSE_DOWN_KEY
-    ))
-    public void listenCourseDown(Long courseId){
+    @RabbitListener(ackMode = "MANUAL", bindings = {
+            @QueueBinding(
+                    value = @Queue(name = DOWN_QUEUE, durable = "true"),
+                    exchange = @Exchange(name = COURSE_EXCHANGE, type = ExchangeTypes.TOPIC),
+                    key = COURSE_DOWN_KEY),
+            @QueueBinding(
+                    value = @Queue(name = DOWN_QUEUE, durable = "true"),
+                    exchange = @Exchange(name = RETRY_EXCHANGE, delayed = "true", type = ExchangeTypes.TOPIC),
+                    key = DOWN_QUEUE)
+    })
+    public void listenCourseDown(Long courseId, Channel channel, Message message){
         log.debug("监听到课程{}下架", courseId);
-        courseService.handleCourseDelete(courseId);
+        acker.ackWhenDone(() -> courseService.handleCourseDelete(courseId), channel, message);
     }
 
-    @RabbitListener(bindings = @QueueBinding(
-            value = @Queue(name = "search.course.expire.queue", durable = "true"),
-            exchange = @Exchange(name = COURSE_EXCHANGE, type = ExchangeTypes.TOPIC),
-            key = COURSE_EXPIRE_KEY
-    ))
-    public void listenCourseExpire(Long courseId){
-        courseService.handleCourseDelete(courseId);
+    @RabbitListener(ackMode = "MANUAL", bindings = {
+            @QueueBinding(
+                    value = @Queue(name = EXPIRE_QUEUE, durable = "true"),
+                    exchange = @Exchange(name = COURSE_EXCHANGE, type = ExchangeTypes.TOPIC),
+                    key = COURSE_EXPIRE_KEY),
+            @QueueBinding(
+                    value = @Queue(name = EXPIRE_QUEUE, durable = "true"),
+                    exchange = @Exchange(name = RETRY_EXCHANGE, delayed = "true", type = ExchangeTypes.TOPIC),
+                    key = EXPIRE_QUEUE)
+    })
+    public void listenCourseExpire(Long courseId, Channel channel, Message message){
+        acker.ackWhenDone(() -> courseService.handleCourseDelete(courseId), channel, message);
     }
 }
@@ -0,0 +1,121 @@
+package com.tianji.search.mq;
+
+import com.rabbitmq.client.Channel;
+import com.tianji.search.config.MqRetryProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static com.tianji.common.constants.MqConstants.Exchange.ERROR_EXCHANGE;
+import static com.tianji.common.constants.MqConstants.Key.ERROR_KEY_PREFIX;
+
+/**
+ * 手动确认MQ消息：消息处理的结果写入索引库后才确认，保证至少一次。
+ * <p>
+ * 处理失败的消息不直接拒绝并重新入队（索引库持续返回429或5xx时会立即重新投递，形成空转），
+ * 而是带上重试次数，按照指数退避的延迟时间发送到延迟交换机{@link #RETRY_EXCHANGE}，再确认原消息。
+ * 延迟交换机以消费者的队列名作为RoutingKey，消息到期后回到原队列。超过最大重试次数的消息投递到失败消息队列。
+ * 使用重试的队列需要以队列名为key绑定到{@link #RETRY_EXCHANGE}。
+ * </p>
+ */
+@Slf4j
+@Component
+public class MessageAcker {
+
+    /**
+     * 重新投递消息的延迟交换机
+     */
+    public static final String RETRY_EXCHANGE = "search.retry.delay.topic";
+    /**
+     * 消息已重新投递的次数
+     */
+    static final String RETRY_COUNT_HEADER = "x-retry-count";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final MqRetryProperties properties;
+    private final String errorRoutingKey;
+
+    public MessageAcker(RabbitTemplate rabbitTemplate, MqRetryProperties properties,
+                        @Value("${spring.application.name}") String appName) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.properties = properties;
+        this.errorRoutingKey = ERROR_KEY_PREFIX + appName;
+    }
+
+    /**
+     * 执行任务，任务返回的future完成后确认消息，任务抛出异常或future以异常结束时延迟重新投递
+     *
+     * @param task    要执行的任务
+     * @param channel 消息所在的channel
+     * @param message 消息
+     */
+    public void ackWhenDone(Supplier<CompletableFuture<Void>> task, Channel channel, Message message) {
+        CompletableFuture<Void> future;
+        try {
+            future = task.get();
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        future.whenComplete((r, e) -> {
+            try {
+                if (e != null) {
+                    retryLater(message, e);
+                }
+                channel.basicAck(deliveryTag, false);
+            } catch (Exception ex) {
+                // 重新投递失败时拒绝消息并重新入队；channel已关闭时，未确认的消息会被重新投递
+                log.warn("确认消息失败，deliveryTag：{}", deliveryTag, ex);
+                nack(channel, deliveryTag);
+            }
+        });
+    }
+
+    /**
+     * 直接确认消息，用于无需处理的消息
+     */
+    public void ack(Channel channel, Message message) {
+        ackWhenDone(() -> CompletableFuture.completedFuture(null), channel, message);
+    }
+
+    private void retryLater(Message message, Throwable cause) {
+        MessageProperties props = message.getMessageProperties();
+        Object header = props.getHeader(RETRY_COUNT_HEADER);
+        int retries = header == null ? 0 : Integer.parseInt(header.toString());
+        if (retries >= properties.getMaxRetries()) {
+            log.error("消息处理失败，已重试{}次，投递到失败消息队列，queue：{}", retries, props.getConsumerQueue(), cause);
+            props.setDelay(null);
+            props.setHeader("x-exception-message", String.valueOf(cause.getMessage()));
+            rabbitTemplate.send(ERROR_EXCHANGE, errorRoutingKey, message);
+            return;
+        }
+        long delay = retryDelay(retries);
+        log.warn("消息处理失败，{}毫秒后第{}次重新投递，queue：{}", delay, retries + 1, props.getConsumerQueue(), cause);
+        props.setHeader(RETRY_COUNT_HEADER, retries + 1);
+        props.setDelay((int) delay);
+        rabbitTemplate.send(RETRY_EXCHANGE, props.getConsumerQueue(), message);
+    }
+
+    /**
+     * 第retries + 1次重新投递的延迟时间，毫秒
+     */
+    long retryDelay(int retries) {
+        long max = properties.getMaxInterval().toMillis();
+        long delay = properties.getInitialInterval().toMillis() << Math.min(retries, 30);
+        return Math.min(delay, max);
+    }
+
+    private static void nack(Channel channel, long deliveryTag) {
+        try {
+            channel.basicNack(deliveryTag, false, true);
+        } catch (Exception ex) {
+            log.warn("拒绝消息失败，deliveryTag：{}", deliveryTag, ex);
+        }
+    }
+}
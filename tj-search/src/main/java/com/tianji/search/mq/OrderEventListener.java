@@ -1,10 +1,12 @@
 package com.tianji.search.mq;
 
+import com.rabbitmq.client.Channel;
 import com.tianji.api.dto.trade.OrderBasicDTO;
 import com.tianji.common.utils.CollUtils;
 import com.tianji.search.service.ICourseService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.Exchange;
 import org.springframework.amqp.rabbit.annotation.Queue;
 import org.springframework.amqp.rabbit.annotation.QueueBinding;
@@ -15,39 +17,63 @@ import org.springframework.stereotype.Component;
 import static com.tianji.common.constants.MqConstants.Exchange.ORDER_EXCHANGE;
 import static com.tianji.common.constants.MqConstants.Key.ORDER_PAY_KEY;
 import static com.tianji.common.constants.MqConstants.Key.ORDER_REFUND_KEY;
+import static com.tianji.search.mq.MessageAcker.RETRY_EXCHANGE;
 
+/**
+ * 订单支付、退款时更新课程销量。销量的累加先合并再批量写入索引库，写入后才确认消息。
+ * 同一订单的每门课程只累加一次，部分课程写入失败后重新投递时，只累加失败的课程
+ */
 @Slf4j
 @Component
 public class OrderEventListener {
 
+    private static final String PAY_QUEUE = "search.order.pay.queue";
+    private static final String REFUND_QUEUE = "search.order.refund.queue";
+
     @Autowired
     private ICourseService courseService;
+    @Autowired
+    private MessageAcker acker;
 
-    @RabbitListener(bindings = @QueueBinding(
-            value = @Queue(name = "search.order.pay.queue", durable = "true"),
-            exchange = @Exchange(name = ORDER_EXCHANGE, type = ExchangeTypes.TOPIC),
-            key = ORDER_PAY_KEY
-    ))
-    public void listenOrderPay(OrderBasicDTO order) {
+    @RabbitListener(ackMode = "MANUAL", bindings = {
+            @QueueBinding(
+                    value = @Queue(name = PAY_QUEUE, durable = "true"),
+                    exchange = @Exchange(name = ORDER_EXCHANGE, type = ExchangeTypes.TOPIC),
+                    key = ORDER_PAY_KEY),
+            @QueueBinding(
+                    value = @Queue(name = PAY_QUEUE, durable = "true"),
+                    exchange = @Exchange(name = RETRY_EXCHANGE, delayed = "true", type = ExchangeTypes.TOPIC),
+                    key = PAY_QUEUE)
+    })
+    public void listenOrderPay(OrderBasicDTO order, Channel channel, Message message) {
         if (order == null || order.getUserId() == null || CollUtils.isEmpty(order.getCourseIds())) {
             log.debug("订单支付，异常消息，信息未空");
+            acker.ack(channel, message);
             return;
         }
         log.debug("处理订单支付消息：{}", order);
-        courseService.updateCourseSold(order.getCourseIds(), 1);
+        acker.ackWhenDone(() -> courseService.updateCourseSold(
+                order.getOrderId(), order.getCourseIds(), 1), channel, message);
     }
 
-    @RabbitListener(bindings = @QueueBinding(
-            value = @Queue(name = "search.order.refund.queue", durable = "true"),
-            exchange = @Exchange(name = ORDER_EXCHANGE, type = ExchangeTypes.TOPIC),
-            key = ORDER_REFUND_KEY
-    ))
-    public void listenOrderRefund(OrderBasicDTO order) {
+    @RabbitListener(ackMode = "MANUAL", bindings = {
+            @QueueBinding(
+                    value = @Queue(name = REFUND_QUEUE, durable = "true"),
+                    exchange = @Exchange(name = ORDER_EXCHANGE, type = ExchangeTypes.TOPIC),
+                    key = ORDER_REFUND_KEY),
+            @QueueBinding(
+                    value = @Queue(name = REFUND_QUEUE, durable = "true"),
+                    exchange = @Exchange(name = RETRY_EXCHANGE, delayed = "true", type = ExchangeTypes.TOPIC),
+                    key = REFUND_QUEUE)
+    })
+    public void listenOrderRefund(OrderBasicDTO order, Channel channel, Message message) {
         if (order == null || order.getUserId() == null || CollUtils.isEmpty(order.getCourseIds())) {
             log.debug("订单退款，异常消息，信息未空");
+            acker.ack(channel, message);
             return;
         }
         log.debug("处理订单退款消息：{}", order);
-        courseService.updateCourseSold(order.getCourseIds(), -1);
+        acker.ackWhenDone(() -> courseService.updateCourseSold(
+                order.getOrderId(), order.getCourseIds(), -1), channel, message);
     }
 }
@@ -0,0 +1,244 @@
+package com.tianji.search.repository;
+
+import com.tianji.common.exceptions.CommonException;
+import com.tianji.search.config.BulkIndexProperties;
+import com.tianji.search.domain.po.Course;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.tianji.search.constants.SearchErrorInfo.SAVE_COURSE_ERROR;
+
+/**
+ * 课程索引的批量写入器：
+ * <ul>
+ *     <li>新增、删除、累加销量的操作先按课程id放入缓冲区，同一个课程的多个操作合并为一个，
+ *     例如37次销量+1合并为一次+37</li>
+ *     <li>后台线程在缓冲区的课程数达到批大小，或者第一个操作等待超过攒批时间时，通过一个bulk请求写入索引库</li>
+ *     <li>每个操作返回一个{@link CompletableFuture}，写入索引库后才完成，调用者可以在完成后再确认MQ消息。
+ *     写入失败时以异常结束，调用者让消息延迟重新投递即可，因此是至少一次的语义，
+ *     重复投递时销量累加的幂等由调用者保证</li>
+ *     <li>future在单独的回调线程池中完成，调用者在future上注册的确认消息、记录redis等阻塞操作不会占用写入线程</li>
+ * </ul>
+ * 缓冲区的大小由MQ消费者的prefetch限制：消息在写入索引库后才确认，未确认的消息数达到prefetch时不会再推送新消息
+ */
+@Slf4j
+@Component
+public class CourseBulkIndexer implements InitializingBean, DisposableBean {
+
+    private final CourseRepository courseRepository;
+    private final BulkIndexProperties properties;
+    private final Thread flusher;
+    /**
+     * 完成future的线程池，队列满时由写入线程自己完成，相当于限制写入速度
+     */
+    private final ThreadPoolExecutor callbackExecutor;
+
+    /**
+     * 待写入的操作，按照课程id合并，保持到达顺序
+     */
+    private Map<Long, PendingAction> buffer = new LinkedHashMap<>();
+    /**
+     * 缓冲区中第一个操作的到达时间
+     */
+    private long firstArrival;
+    private volatile boolean running = true;
+
+    public CourseBulkIndexer(CourseRepository courseRepository, BulkIndexProperties properties) {
+        this.courseRepository = courseRepository;
+        this.properties = properties;
+        this.flusher = new Thread(this::flushLoop, "course-bulk-indexer");
+        this.flusher.setDaemon(true);
+        AtomicInteger index = new AtomicInteger();
+        int threads = properties.getCallbackThreads();
+        this.callbackExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(1000), r -> {
+                    Thread t = new Thread(r, "course-bulk-callback-" + index.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        flusher.start();
+    }
+
+    /**
+     * 新增或覆盖课程文档
+     *
+     * @param course 课程
+     * @return 写入索引库后完成的future
+     */
+    public CompletableFuture<Void> index(Course course) {
+        return submit(CourseIndexAction.index(course));
+    }
+
+    /**
+     * 删除课程文档
+     *
+     * @param courseId 课程id
+     * @return 写入索引库后完成的future
+     */
+    public CompletableFuture<Void> delete(Long courseId) {
+        return submit(CourseIndexAction.delete(courseId));
+    }
+
+    /**
+     * 累加课程销量
+     *
+     * @param courseIds 课程id
+     * @param amount    销量的变化
+     * @return 全部课程写入索引库后完成的future
+     */
+    public CompletableFuture<Void> incrementSold(List<Long> courseIds, int amount) {
+        CompletableFuture<?>[] futures = new CompletableFuture[courseIds.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = submit(CourseIndexAction.incrementSold(courseIds.get(i), amount));
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    private synchronized CompletableFuture<Void> submit(CourseIndexAction action) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new CommonException("课程索引写入器已关闭"));
+        }
+        boolean first = buffer.isEmpty();
+        if (first) {
+            firstArrival = System.nanoTime();
+        }
+        PendingAction pending = buffer.get(action.getCourseId());
+        if (pending == null) {
+            pending = new PendingAction(action);
+            buffer.put(action.getCourseId(), pending);
+        } else {
+            pending.action = pending.action.merge(action);
+        }
+        if (first || buffer.size() >= properties.getBatchSize()) {
+            // 唤醒后台线程开始计时，或者立即写入
+            notifyAll();
+        }
+        return pending.future;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            Map<Long, PendingAction> batch;
+            try {
+                batch = awaitBatch();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (batch == null) {
+                break;
+            }
+            try {
+                flush(new ArrayList<>(batch.values()));
+            } catch (Exception e) {
+                log.error("批量写入课程索引异常", e);
+                List<PendingAction> failed = new ArrayList<>(batch.values());
+                callbackExecutor.execute(() -> failed.forEach(p -> p.future.completeExceptionally(e)));
+            }
+        }
+    }
+
+    /**
+     * 等待缓冲区的课程数达到批大小，或者第一个操作等待超过攒批时间，然后取出缓冲区中的全部操作
+     *
+     * @return 要写入的操作，已关闭且缓冲区为空时返回null
+     */
+    private synchronized Map<Long, PendingAction> awaitBatch() throws InterruptedException {
+        long interval = properties.getFlushInterval().toNanos();
+        while (true) {
+            if (buffer.isEmpty()) {
+                if (!running) {
+                    return null;
+                }
+                wait();
+                continue;
+            }
+            long remain = firstArrival + interval - System.nanoTime();
+            if (!running || remain <= 0 || buffer.size() >= properties.getBatchSize()) {
+                Map<Long, PendingAction> batch = buffer;
+                buffer = new LinkedHashMap<>();
+                return batch;
+            }
+            wait(remain / 1_000_000 + 1);
+        }
+    }
+
+    private void flush(List<PendingAction> batch) {
+        // 1.合并后没有变化的操作直接完成
+        List<PendingAction> pendings = new ArrayList<>(batch.size());
+        List<PendingAction> unchanged = new ArrayList<>();
+        for (PendingAction p : batch) {
+            if (p.action.getType() == CourseIndexAction.Type.INCREMENT_SOLD && p.action.getSoldDelta() == 0) {
+                unchanged.add(p);
+            } else {
+                pendings.add(p);
+            }
+        }
+        if (!unchanged.isEmpty()) {
+            callbackExecutor.execute(() -> unchanged.forEach(p -> p.future.complete(null)));
+        }
+        // 2.按批大小分多个bulk请求写入
+        int batchSize = properties.getBatchSize();
+        for (int from = 0; from < pendings.size(); from += batchSize) {
+            List<PendingAction> chunk = pendings.subList(from, Math.min(from + batchSize, pendings.size()));
+            List<CourseIndexAction> actions = new ArrayList<>(chunk.size());
+            chunk.forEach(p -> actions.add(p.action));
+            List<Boolean> results;
+            try {
+                results = courseRepository.bulk(actions);
+            } catch (Exception e) {
+                log.error("批量写入课程索引失败，操作数：{}", actions.size(), e);
+                callbackExecutor.execute(() -> chunk.forEach(p -> p.future.completeExceptionally(e)));
+                continue;
+            }
+            // 3.在回调线程池中完成每个操作
+            callbackExecutor.execute(() -> complete(chunk, results));
+        }
+    }
+
+    private static void complete(List<PendingAction> chunk, List<Boolean> results) {
+        for (int i = 0; i < chunk.size(); i++) {
+            PendingAction p = chunk.get(i);
+            if (results.get(i)) {
+                p.future.complete(null);
+            } else {
+                p.future.completeExceptionally(new CommonException(SAVE_COURSE_ERROR));
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        // 停止接收新操作，把缓冲区中的操作写入完再退出
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        flusher.join(properties.getFlushInterval().toMillis() + 5_000);
+        // 等待已写入的操作回调完成，消息才能在关闭前确认
+        callbackExecutor.shutdown();
+        callbackExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static class PendingAction {
+        private CourseIndexAction action;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingAction(CourseIndexAction action) {
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.tianji.search.repository;
+
+import com.tianji.search.domain.po.Course;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 对课程索引的一个写操作
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class CourseIndexAction {
+
+    public enum Type {
+        /**
+         * 新增或覆盖课程文档
+         */
+        INDEX,
+        /**
+         * 删除课程文档
+         */
+        DELETE,
+        /**
+         * 累加课程销量
+         */
+        INCREMENT_SOLD
+    }
+
+    private final Type type;
+    private final Long courseId;
+    private final Course course;
+    private final int soldDelta;
+
+    public static CourseIndexAction index(Course course) {
+        return new CourseIndexAction(Type.INDEX, course.getId(), course, 0);
+    }
+
+    public static CourseIndexAction delete(Long courseId) {
+        return new CourseIndexAction(Type.DELETE, courseId, null, 0);
+    }
+
+    public static CourseIndexAction incrementSold(Long courseId, int amount) {
+        return new CourseIndexAction(Type.INCREMENT_SOLD, courseId, null, amount);
+    }
+
+    /**
+     * 合并同一个课程上的后一个操作，结果与依次执行两个操作相同
+     *
+     * @param next 后一个操作
+     * @return 合并后的操作
+     */
+    public CourseIndexAction merge(CourseIndexAction next) {
+        if (next.type != Type.INCREMENT_SOLD) {
+            // 新增或删除会覆盖之前的所有操作
+            return next;
+        }
+        switch (type) {
+            case INDEX:
+                // 直接累加到要写入的文档上
+                int sold = course.getSold() == null ? 0 : course.getSold();
+                course.setSold(sold + next.soldDelta);
+                return this;
+            case DELETE:
+                // 课程已删除，不需要累加
+                return this;
+            default:
+                return incrementSold(courseId, soldDelta + next.soldDelta);
+        }
+    }
+}
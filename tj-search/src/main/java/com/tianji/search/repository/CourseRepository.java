@@ -47,4 +47,12 @@ public interface CourseRepository{
     void saveAll(List<Course> list);
 
     void deleteByIds(List<Long> courseIds);
+
+    /**
+     * 通过一个bulk请求执行多个写操作
+     *
+     * @param actions 写操作
+     * @return 与写操作一一对应，true代表已完成，包括重试也不会成功的失败（例如课程不存在），false代表需要重试
+     */
+    List<Boolean> bulk(List<CourseIndexAction> actions);
 }
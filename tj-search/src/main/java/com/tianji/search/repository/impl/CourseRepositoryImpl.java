@@ -1,6 +1,7 @@
 package com.tianji.search.repository.impl;
 
 import com.tianji.search.domain.po.Course;
+import com.tianji.search.repository.CourseIndexAction;
 import com.tianji.search.repository.CourseRepository;
 import com.tianji.common.exceptions.CommonException;
 import com.tianji.common.utils.JsonUtils;
@@ -23,6 +24,7 @@ import org.elasticsearch.script.ScriptType;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -114,15 +116,10 @@ public class CourseRepositoryImpl implements CourseRepository {
 
         for (Long courseId : courseIds) {
             // 2.创建Request
-            UpdateRequest request = new UpdateRequest(INDEX_NAME, courseId.toString());
-            // 3.更新字段
-            Map<String, Object> params = new HashMap<>();
-            params.put(INCREMENT_SOLD_SCRIPT_PARAM, amount);
-            request.script(new Script(ScriptType.STORED, null, INCREMENT_SOLD_SCRIPT_ID, params));
-            bulkRequest.add(request);
+            bulkRequest.add(incrementSoldRequest(courseId, amount));
         }
 
-        // 4.发送请求
+        // 3.发送请求
         try {
             restHighLevelClient.bulk(bulkRequest, RequestOptions.DEFAULT);
         } catch (Exception e) {
@@ -130,6 +127,14 @@ public class CourseRepositoryImpl implements CourseRepository {
         }
     }
 
+    private static UpdateRequest incrementSoldRequest(Long courseId, int amount) {
+        UpdateRequest request = new UpdateRequest(INDEX_NAME, courseId.toString());
+        Map<String, Object> params = new HashMap<>();
+        params.put(INCREMENT_SOLD_SCRIPT_PARAM, amount);
+        request.script(new Script(ScriptType.STORED, null, INCREMENT_SOLD_SCRIPT_ID, params));
+        return request;
+    }
+
     @Override
     public void saveAll(List<Course> list) {
         // 1.创建BulkRequest
@@ -173,4 +178,47 @@ public class CourseRepositoryImpl implements CourseRepository {
             throw new CommonException(SAVE_COURSE_ERROR, e);
         }
     }
+
+    @Override
+    public List<Boolean> bulk(List<CourseIndexAction> actions) {
+        // 1.创建BulkRequest
+        BulkRequest request = new BulkRequest(INDEX_NAME);
+        // 2.添加参数
+        for (CourseIndexAction action : actions) {
+            switch (action.getType()) {
+                case INDEX:
+                    request.add(new IndexRequest(INDEX_NAME)
+                            .id(action.getCourseId().toString())
+                            .source(JsonUtils.toJsonStr(action.getCourse()), XContentType.JSON));
+                    break;
+                case DELETE:
+                    request.add(new DeleteRequest(INDEX_NAME, action.getCourseId().toString()));
+                    break;
+                default:
+                    request.add(incrementSoldRequest(action.getCourseId(), action.getSoldDelta()));
+            }
+        }
+        // 3.批处理
+        BulkResponse bulkResponse;
+        try {
+            bulkResponse = restHighLevelClient.bulk(request, RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            throw new CommonException(SAVE_COURSE_ERROR, e);
+        }
+        // 4.限流和服务端错误需要重试，其它错误重试也不会成功，只记录日志
+        List<Boolean> results = new ArrayList<>(actions.size());
+        for (BulkItemResponse itemResponse : bulkResponse.getItems()) {
+            if (!itemResponse.isFailed()) {
+                results.add(true);
+                continue;
+            }
+            RestStatus status = itemResponse.status();
+            boolean retryable = status == RestStatus.TOO_MANY_REQUESTS
+                    || status.compareTo(RestStatus.INTERNAL_SERVER_ERROR) >= 0;
+            log.error("批处理失败，id:{}, 原因:{}, 是否重试:{}",
+                    itemResponse.getId(), itemResponse.getFailureMessage(), retryable);
+            results.add(!retryable);
+        }
+        return results;
+    }
 }
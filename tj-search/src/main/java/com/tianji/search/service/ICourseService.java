@@ -1,14 +1,34 @@
 package com.tianji.search.service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface ICourseService {
 
-    void handleCourseDelete(Long courseId);
+    /**
+     * 删除课程索引，批量写入索引库
+     *
+     * @return 写入索引库后完成的future
+     */
+    CompletableFuture<Void> handleCourseDelete(Long courseId);
 
-    void handleCourseUp(Long courseId);
+    /**
+     * 新增课程索引，批量写入索引库
+     *
+     * @return 写入索引库后完成的future
+     */
+    CompletableFuture<Void> handleCourseUp(Long courseId);
 
-    void updateCourseSold(List<Long> courseId, int amount);
+    /**
+     * 累加课程销量，同一个课程的多次累加合并后批量写入索引库。
+     * 同一订单的每门课程只累加一次，重复的消息或部分课程失败后的重新投递不会重复累加已成功的课程
+     *
+     * @param orderId   订单id，为null时不做幂等处理
+     * @param courseIds 订单中的课程id
+     * @param amount    销量的变化，支付为1，退款为-1
+     * @return 写入索引库后完成的future
+     */
+    CompletableFuture<Void> updateCourseSold(Long orderId, List<Long> courseIds, int amount);
 
     void handleCourseDeletes(List<Long> courseIds);
 }
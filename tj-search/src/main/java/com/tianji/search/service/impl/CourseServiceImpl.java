@@ -3,46 +3,122 @@ package com.tianji.search.service.impl;
 import com.tianji.api.client.course.CourseClient;
 import com.tianji.api.dto.course.CourseSearchDTO;
 import com.tianji.common.utils.BeanUtils;
+import com.tianji.common.utils.CollUtils;
+import com.tianji.common.utils.StringUtils;
 import com.tianji.search.domain.po.Course;
+import com.tianji.search.repository.CourseBulkIndexer;
 import com.tianji.search.repository.CourseRepository;
 import com.tianji.search.service.ICourseService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+@Slf4j
 @Service
 public class CourseServiceImpl implements ICourseService {
 
+    /**
+     * 已累加销量的课程，set结构，参数为订单id和操作（pay或refund），member为课程id
+     */
+    static final String SOLD_APPLIED_KEY_TEMPLATE = "search:course:sold:applied:{}:{}";
+    /**
+     * 已累加记录的有效期，需要覆盖消息重新投递的时间
+     */
+    private static final Duration SOLD_APPLIED_TTL = Duration.ofDays(7);
+
     @Resource
     private CourseRepository courseRepository;
     @Resource
     private CourseClient courseClient;
+    @Resource
+    private CourseBulkIndexer courseBulkIndexer;
+    @Resource
+    private StringRedisTemplate redisTemplate;
 
     @Override
-    public void handleCourseDelete(Long courseId) {
+    public CompletableFuture<Void> handleCourseDelete(Long courseId) {
         // 1.直接删除
-        courseRepository.deleteById(courseId);
+        return courseBulkIndexer.delete(courseId);
     }
 
     @Override
-    public void handleCourseUp(Long courseId) {
+    public CompletableFuture<Void> handleCourseUp(Long courseId) {
         // 1.根据id查询课程信息
         CourseSearchDTO courseSearchDTO = courseClient.getSearchInfo(courseId);
         if (courseSearchDTO == null) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
         // 2.数据转换
         Course course = BeanUtils.toBean(courseSearchDTO, Course.class);
         course.setType(courseSearchDTO.getCourseType());
         // 3.写入索引库
-        courseRepository.save(course);
-
+        return courseBulkIndexer.index(course);
     }
 
     @Override
-    public void updateCourseSold(List<Long> courseIds, int amount) {
-        courseRepository.incrementSold(courseIds, amount);
+    public CompletableFuture<Void> updateCourseSold(Long orderId, List<Long> courseIds, int amount) {
+        if (orderId == null) {
+            return courseBulkIndexer.incrementSold(courseIds, amount);
+        }
+        // 1.查询该订单已经累加过的课程
+        String key = StringUtils.format(SOLD_APPLIED_KEY_TEMPLATE, orderId, amount > 0 ? "pay" : "refund");
+        Set<String> applied = redisTemplate.opsForSet().members(key);
+        // 2.只累加未累加过的课程
+        List<Long> pendingIds = new ArrayList<>(courseIds.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(courseIds.size());
+        for (Long courseId : courseIds) {
+            if (CollUtils.isNotEmpty(applied) && applied.contains(courseId.toString())) {
+                log.debug("订单{}的课程{}已累加过销量", orderId, courseId);
+                continue;
+            }
+            pendingIds.add(courseId);
+            futures.add(courseBulkIndexer.incrementSold(List.of(courseId), amount));
+        }
+        if (futures.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // 3.全部课程有结果后，一次往返记录写入成功的课程，部分失败时重新投递只重试失败的课程
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        return all.handle((r, e) -> {
+            List<Long> succeeded = new ArrayList<>(pendingIds.size());
+            for (int i = 0; i < futures.size(); i++) {
+                if (!futures.get(i).isCompletedExceptionally()) {
+                    succeeded.add(pendingIds.get(i));
+                }
+            }
+            markApplied(key, succeeded);
+            return null;
+        }).thenCompose(v -> all);
+    }
+
+    private void markApplied(String key, List<Long> courseIds) {
+        if (courseIds.isEmpty()) {
+            return;
+        }
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        byte[][] members = new byte[courseIds.size()][];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = courseIds.get(i).toString().getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.setCommands().sAdd(rawKey, members);
+                connection.keyCommands().expire(rawKey, SOLD_APPLIED_TTL.getSeconds());
+                return null;
+            });
+        } catch (Exception e) {
+            // 销量已写入索引库，记录失败只会让重新投递时重复累加这些课程，不影响本次结果
+            log.warn("记录订单已累加销量的课程失败，key：{}，课程：{}", key, courseIds, e);
+        }
     }
 
     @Override
@@ -1,7 +1,7 @@
 package com.tianji.search.service.impl;
 
+import com.tianji.api.batch.BatchLoader;
 import com.tianji.api.cache.CategoryCache;
-import com.tianji.api.client.user.UserClient;
 import com.tianji.api.dto.user.UserDTO;
 import com.tianji.common.constants.ErrorInfo;
 import com.tianji.common.domain.dto.PageDTO;
@@ -48,7 +48,7 @@ public class SearchServiceImpl implements ISearchService {
     private IInterestsService interestsService;
 
     @Autowired
-    private UserClient userClient;
+    private BatchLoader<Long, UserDTO> userBatchLoader;
 
     @Autowired
     private CategoryCache categoryCache;
@@ -153,7 +153,7 @@ public class SearchServiceImpl implements ISearchService {
             return courses;
         }
         // 4.查询教师
-        List<UserDTO> teachers = userClient.queryUserByIds(teacherIds);
+        List<UserDTO> teachers = userBatchLoader.getAll(teacherIds);
         AssertUtils.isNotEmpty(teachers, SearchErrorInfo.TEACHER_NOT_EXISTS);
         Map<String, String> tMap = teachers.stream()
                 .collect(Collectors.toMap(t -> t.getId().toString(), UserDTO::getName));
@@ -176,7 +176,7 @@ public class SearchServiceImpl implements ISearchService {
         }
         // 3.1.查询教师信息
         List<Long> teacherIds = list.stream().map(Course::getTeacher).collect(Collectors.toList());
-        List<UserDTO> teachers = userClient.queryUserByIds(teacherIds);
+        List<UserDTO> teachers = userBatchLoader.getAll(teacherIds);
         AssertUtils.isNotEmpty(teachers, SearchErrorInfo.TEACHER_NOT_EXISTS);
         Map<Long, String> teacherMap = teachers.stream()
                 .collect(Collectors.toMap(UserDTO::getId, UserDTO::getName));
@@ -0,0 +1,121 @@
+package com.tianji.search.impl;
+
+import com.tianji.search.repository.CourseBulkIndexer;
+import com.tianji.search.service.impl.CourseServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisSetCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 使用内存中的redis替身测试订单销量累加的幂等
+ */
+@ExtendWith(MockitoExtension.class)
+class CourseSoldIdempotencyTest {
+
+    private final Map<String, Set<String>> sets = new ConcurrentHashMap<>();
+    /**
+     * 每门课程实际累加的销量
+     */
+    private final Map<Long, Integer> sold = new HashMap<>();
+    /**
+     * 写入失败的课程
+     */
+    private final Set<Long> failing = new HashSet<>();
+
+    @Mock
+    private CourseBulkIndexer courseBulkIndexer;
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private SetOperations<String, String> setOps;
+    @Mock
+    private RedisConnection connection;
+    @Mock
+    private RedisSetCommands setCommands;
+    @Mock
+    private RedisKeyCommands keyCommands;
+    @InjectMocks
+    private CourseServiceImpl courseService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForSet()).thenReturn(setOps);
+        lenient().when(setOps.members(anyString())).thenAnswer(
+                inv -> new HashSet<>(sets.getOrDefault(inv.<String>getArgument(0), Set.of())));
+        lenient().when(connection.setCommands()).thenReturn(setCommands);
+        lenient().when(connection.keyCommands()).thenReturn(keyCommands);
+        lenient().when(setCommands.sAdd(any(), any())).thenAnswer(inv -> {
+            Object[] args = inv.getArguments();
+            Set<String> set = sets.computeIfAbsent(new String((byte[]) args[0], UTF_8), k -> new HashSet<>());
+            for (int i = 1; i < args.length; i++) {
+                set.add(new String((byte[]) args[i], UTF_8));
+            }
+            return (long) args.length - 1;
+        });
+        lenient().when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(inv -> {
+            inv.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+            return List.of();
+        });
+        lenient().when(courseBulkIndexer.incrementSold(anyList(), anyInt())).thenAnswer(inv -> {
+            Long courseId = inv.<List<Long>>getArgument(0).get(0);
+            if (failing.contains(courseId)) {
+                return CompletableFuture.failedFuture(new IllegalStateException("429"));
+            }
+            sold.merge(courseId, inv.<Integer>getArgument(1), Integer::sum);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @Test
+    void testRedeliveryOnlyRetriesFailedCourse() {
+        failing.add(2L);
+        CompletableFuture<Void> first = courseService.updateCourseSold(100L, List.of(1L, 2L, 3L), 1);
+        assertTrue(first.isCompletedExceptionally());
+
+        // 重新投递时课程2恢复，已成功的课程1、3不再累加
+        failing.clear();
+        CompletableFuture<Void> second = courseService.updateCourseSold(100L, List.of(1L, 2L, 3L), 1);
+        assertFalse(second.isCompletedExceptionally());
+        assertEquals(Map.of(1L, 1, 2L, 1, 3L, 1), sold);
+
+        // 重复的消息不再累加
+        courseService.updateCourseSold(100L, List.of(1L, 2L, 3L), 1);
+        assertEquals(Map.of(1L, 1, 2L, 1, 3L, 1), sold);
+    }
+
+    @Test
+    void testPayAndRefundTrackedSeparately() {
+        courseService.updateCourseSold(100L, List.of(1L), 1);
+        courseService.updateCourseSold(100L, List.of(1L), -1);
+        courseService.updateCourseSold(100L, List.of(1L), -1);
+
+        assertEquals(0, sold.get(1L));
+    }
+
+    @Test
+    void testNoOrderIdNotDeduplicated() {
+        courseService.updateCourseSold(null, List.of(1L), 1);
+        courseService.updateCourseSold(null, List.of(1L), 1);
+
+        assertEquals(2, sold.get(1L));
+        verifyNoInteractions(redisTemplate);
+    }
+}
@@ -0,0 +1,112 @@
+package com.tianji.search.mq;
+
+import com.rabbitmq.client.Channel;
+import com.tianji.search.config.MqRetryProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static com.tianji.common.constants.MqConstants.Exchange.ERROR_EXCHANGE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MessageAckerTest {
+
+    private static final String QUEUE = "search.order.pay.queue";
+    private static final long TAG = 7L;
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final Channel channel = mock(Channel.class);
+    private MessageAcker acker;
+
+    @BeforeEach
+    void setUp() {
+        MqRetryProperties properties = new MqRetryProperties();
+        properties.setInitialInterval(Duration.ofSeconds(1));
+        properties.setMaxInterval(Duration.ofSeconds(5));
+        properties.setMaxRetries(3);
+        acker = new MessageAcker(rabbitTemplate, properties, "search-service");
+    }
+
+    private Message message(Integer retries) {
+        MessageProperties props = new MessageProperties();
+        props.setDeliveryTag(TAG);
+        props.setConsumerQueue(QUEUE);
+        if (retries != null) {
+            props.setHeader(MessageAcker.RETRY_COUNT_HEADER, retries);
+        }
+        return new Message("{}".getBytes(), props);
+    }
+
+    @Test
+    void testAckOnSuccess() throws Exception {
+        acker.ackWhenDone(() -> CompletableFuture.completedFuture(null), channel, message(null));
+
+        verify(channel).basicAck(TAG, false);
+        verifyNoInteractions(rabbitTemplate);
+    }
+
+    @Test
+    void testRetryWithDelay() throws Exception {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        acker.ackWhenDone(() -> future, channel, message(1));
+        verifyNoInteractions(channel);
+
+        future.completeExceptionally(new IllegalStateException("429 Too Many Requests"));
+
+        // 通过延迟交换机回到原队列，原消息被确认而不是重新入队
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        verify(rabbitTemplate).send(eq(MessageAcker.RETRY_EXCHANGE), eq(QUEUE), sent.capture());
+        assertEquals(2, (Integer) sent.getValue().getMessageProperties().getHeader(MessageAcker.RETRY_COUNT_HEADER));
+        assertEquals(2000, sent.getValue().getMessageProperties().getDelay());
+        verify(channel).basicAck(TAG, false);
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void testTaskExceptionRetried() throws Exception {
+        acker.ackWhenDone(() -> {
+            throw new IllegalStateException("boom");
+        }, channel, message(null));
+
+        verify(rabbitTemplate).send(eq(MessageAcker.RETRY_EXCHANGE), eq(QUEUE), any(Message.class));
+        verify(channel).basicAck(TAG, false);
+    }
+
+    @Test
+    void testErrorQueueAfterMaxRetries() throws Exception {
+        acker.ackWhenDone(() -> CompletableFuture.failedFuture(new IllegalStateException("503")), channel, message(3));
+
+        verify(rabbitTemplate).send(eq(ERROR_EXCHANGE), eq("error.search-service"), any(Message.class));
+        verify(rabbitTemplate, never()).send(eq(MessageAcker.RETRY_EXCHANGE), anyString(), any(Message.class));
+        verify(channel).basicAck(TAG, false);
+    }
+
+    @Test
+    void testRequeueWhenRetryCannotBeSent() throws Exception {
+        doThrow(new AmqpException("broker down")).when(rabbitTemplate).send(anyString(), anyString(), any(Message.class));
+
+        acker.ackWhenDone(() -> CompletableFuture.failedFuture(new IllegalStateException("503")), channel, message(null));
+
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+        verify(channel).basicNack(TAG, false, true);
+    }
+
+    @Test
+    void testRetryDelayBackoff() {
+        assertEquals(1000, acker.retryDelay(0));
+        assertEquals(2000, acker.retryDelay(1));
+        assertEquals(4000, acker.retryDelay(2));
+        // 不超过最大延迟时间
+        assertEquals(5000, acker.retryDelay(3));
+        assertEquals(5000, acker.retryDelay(100));
+    }
+}
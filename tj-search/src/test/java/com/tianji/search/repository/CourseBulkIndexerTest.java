@@ -0,0 +1,146 @@
+package com.tianji.search.repository;
+
+import com.tianji.search.config.BulkIndexProperties;
+import com.tianji.search.domain.po.Course;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CourseBulkIndexerTest {
+
+    private final CourseRepository repository = mock(CourseRepository.class);
+    /**
+     * 每次bulk请求的操作
+     */
+    private final List<List<CourseIndexAction>> requests = Collections.synchronizedList(new ArrayList<>());
+    private CourseBulkIndexer indexer;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        indexer.destroy();
+    }
+
+    @Test
+    void testMergeIncrements() throws Exception {
+        start(Duration.ofMillis(200), 100, true);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 37; i++) {
+            futures.add(indexer.incrementSold(List.of(1L, 2L), 1));
+        }
+        futures.add(indexer.incrementSold(List.of(2L), -2));
+        await(futures);
+
+        assertEquals(1, requests.size());
+        List<CourseIndexAction> actions = requests.get(0);
+        assertEquals(2, actions.size());
+        assertEquals(37, actions.get(0).getSoldDelta());
+        assertEquals(35, actions.get(1).getSoldDelta());
+    }
+
+    @Test
+    void testMergeWithIndexAndDelete() throws Exception {
+        start(Duration.ofMillis(200), 100, true);
+        Course course = new Course();
+        course.setId(1L);
+        course.setSold(10);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        // 新增后的累加直接写入文档
+        futures.add(indexer.index(course));
+        futures.add(indexer.incrementSold(List.of(1L), 3));
+        // 删除后的累加忽略
+        futures.add(indexer.delete(2L));
+        futures.add(indexer.incrementSold(List.of(2L), 1));
+        // 累加后的新增覆盖累加
+        futures.add(indexer.incrementSold(List.of(3L), 1));
+        Course course3 = new Course();
+        course3.setId(3L);
+        futures.add(indexer.index(course3));
+        // 累加合并后没有变化，不需要写入
+        futures.add(indexer.incrementSold(List.of(4L), 1));
+        futures.add(indexer.incrementSold(List.of(4L), -1));
+        await(futures);
+
+        List<CourseIndexAction> actions = requests.get(0);
+        assertEquals(3, actions.size());
+        assertEquals(CourseIndexAction.Type.INDEX, actions.get(0).getType());
+        assertEquals(13, actions.get(0).getCourse().getSold());
+        assertEquals(CourseIndexAction.Type.DELETE, actions.get(1).getType());
+        assertEquals(CourseIndexAction.Type.INDEX, actions.get(2).getType());
+        assertNull(actions.get(2).getCourse().getSold());
+    }
+
+    @Test
+    void testFlushOnBatchSize() throws Exception {
+        // 攒批时间很长，达到批大小时立即写入
+        start(Duration.ofMinutes(1), 2, true);
+        CompletableFuture<Void> first = indexer.delete(1L);
+        Thread.sleep(100);
+        assertFalse(first.isDone());
+        CompletableFuture<Void> second = indexer.delete(2L);
+
+        await(List.of(first, second));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void testCallbacksRunOffFlusherThread() throws Exception {
+        start(Duration.ofMillis(50), 100, true);
+        CompletableFuture<String> thread = indexer.delete(1L).thenApply(v -> Thread.currentThread().getName());
+
+        assertTrue(thread.get(5, TimeUnit.SECONDS).startsWith("course-bulk-callback-"));
+    }
+
+    @Test
+    void testFailure() {
+        start(Duration.ofMillis(50), 100, false);
+        CompletableFuture<Void> future = indexer.incrementSold(List.of(1L, 2L), 1);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertNotNull(e.getCause());
+    }
+
+    @Test
+    void testDestroyFlushesBuffer() throws Exception {
+        start(Duration.ofMinutes(1), 100, true);
+        CompletableFuture<Void> future = indexer.delete(1L);
+        indexer.destroy();
+
+        assertTrue(future.isDone());
+        assertEquals(1, requests.size());
+        assertTrue(indexer.delete(2L).isCompletedExceptionally());
+    }
+
+    private void start(Duration flushInterval, int batchSize, boolean success) {
+        when(repository.bulk(anyList())).thenAnswer(invocation -> {
+            List<CourseIndexAction> actions = new ArrayList<>(invocation.getArgument(0));
+            requests.add(actions);
+            // 课程2写入失败，需要重试
+            List<Boolean> results = new ArrayList<>(actions.size());
+            for (CourseIndexAction action : actions) {
+                results.add(success || action.getCourseId() != 2L);
+            }
+            return results;
+        });
+        BulkIndexProperties properties = new BulkIndexProperties();
+        properties.setFlushInterval(flushInterval);
+        properties.setBatchSize(batchSize);
+        indexer = new CourseBulkIndexer(repository, properties);
+        indexer.afterPropertiesSet();
+    }
+
+    private static void await(List<CompletableFuture<Void>> futures) throws Exception {
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+    }
+}
@@ -3,6 +3,7 @@ package com.tianji.trade.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.tianji.api.cache.CourseCache;
 import com.tianji.api.client.course.CourseClient;
 import com.tianji.api.dto.course.CourseFullInfoDTO;
 import com.tianji.api.dto.course.CourseSimpleInfoDTO;
@@ -44,6 +45,7 @@ import static com.tianji.trade.constants.TradeErrorInfo.*;
 public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements ICartService {
 
     private final CourseClient courseClient;
+    private final CourseCache courseCache;
     private final TradeProperties tradeProperties;
 
     @Override
@@ -109,7 +111,7 @@ public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements IC
         }
         // 3.查询购物车中的课程
         List<Long> courseIds = carts.stream().map(Cart::getCourseId).collect(Collectors.toList());
-        List<CourseSimpleInfoDTO> courseSimpleInfos = courseClient.getSimpleInfoList(courseIds);
+        List<CourseSimpleInfoDTO> courseSimpleInfos = courseCache.getSimpleInfoList(courseIds);
         Map<Long, CourseSimpleInfoDTO> map = courseSimpleInfos.stream()
                 .collect(Collectors.toMap(CourseSimpleInfoDTO::getId, c -> c));
         // 4.组织 vo
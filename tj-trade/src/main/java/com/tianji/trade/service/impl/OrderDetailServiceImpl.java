@@ -4,6 +4,7 @@ import cn.hutool.db.DbRuntimeException;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.tianji.api.batch.BatchLoader;
 import com.tianji.api.cache.RoleCache;
 import com.tianji.api.client.user.UserClient;
 import com.tianji.api.dto.IdAndNumDTO;
@@ -53,6 +54,7 @@ import static com.tianji.trade.constants.TradeErrorInfo.ORDER_NOT_EXISTS;
 public class OrderDetailServiceImpl extends ServiceImpl<OrderDetailMapper, OrderDetail> implements IOrderDetailService {
 
     private final UserClient userClient;
+    private final BatchLoader<Long, UserDTO> userBatchLoader;
 
     private final OrderMapper orderMapper;
 
@@ -114,7 +116,7 @@ public class OrderDetailServiceImpl extends ServiceImpl<OrderDetailMapper, Order
         }
         // 5.查询订单中的用户信息
         Set<Long> uIds = records.stream().map(OrderDetail::getUserId).collect(Collectors.toSet());
-        List<UserDTO> users = userClient.queryUserByIds(uIds);
+        List<UserDTO> users = userBatchLoader.getAll(uIds);
         AssertUtils.isNotEmpty(users, ErrorInfo.Msg.USER_NOT_EXISTS);
         Map<Long, UserDTO> userMap = users.stream().collect(Collectors.toMap(UserDTO::getId, u -> u));
 
@@ -163,7 +165,7 @@ public class OrderDetailServiceImpl extends ServiceImpl<OrderDetailMapper, Order
         if (refundApply != null) {
             uIds.add(refundApply.getCreater());
         }
-        List<UserDTO> userDTOS = userClient.queryUserByIds(uIds);
+        List<UserDTO> userDTOS = userBatchLoader.getAll(uIds);
         AssertUtils.isNotEmpty(userDTOS, ErrorInfo.Msg.USER_NOT_EXISTS);
         Map<Long, UserDTO> userMap = userDTOS.stream().collect(Collectors.toMap(UserDTO::getId, u -> u));
 
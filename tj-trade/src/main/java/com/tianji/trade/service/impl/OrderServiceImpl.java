@@ -8,6 +8,7 @@ import com.tianji.api.constants.CourseStatus;
 import com.tianji.api.dto.course.CourseSimpleInfoDTO;
 import com.tianji.api.dto.trade.OrderBasicDTO;
 import com.tianji.common.autoconfigure.mq.RabbitMqHelper;
+import com.tianji.common.autoconfigure.outbox.OutboxHelper;
 import com.tianji.common.constants.MqConstants;
 import com.tianji.common.domain.dto.PageDTO;
 import com.tianji.common.exceptions.BadRequestException;
@@ -36,6 +37,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -61,6 +63,7 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
     private final ICartService cartService;
     private final TradeProperties tradeProperties;
     private final RabbitMqHelper rabbitMqHelper;
+    private final OutboxHelper outboxHelper;
 
     @Override
     @Transactional
@@ -171,6 +174,7 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
                         .userId(userId)
                         .courseIds(cIds)
                         .finishTime(order.getFinishTime())
+                        .amount(0)
                         .build()
         );
         // 6.返回vo
@@ -392,16 +396,25 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
         updateById(o);
         // 3.更新订单条目
         detailService.markDetailSuccessByOrderId(o.getId(), payResult.getPayChannel(), payResult.getSuccessTime());
-        // 4.查询订单包含的课程信息
-        List<Long> cIds = detailService.queryCourseIdsByOrderId(o.getId());
-        // 5.发送MQ消息，通知报名成功
-        rabbitMqHelper.send(
+        // 4.查询订单包含的课程信息，以及每门课程的实付金额
+        List<OrderDetail> details = detailService.queryByOrderId(o.getId());
+        List<Long> cIds = new ArrayList<>(details.size());
+        Map<Long, Integer> courseAmounts = new HashMap<>(details.size());
+        for (OrderDetail detail : details) {
+            cIds.add(detail.getCourseId());
+            courseAmounts.put(detail.getCourseId(), detail.getRealPayAmount());
+        }
+        // 5.发送MQ消息，通知报名成功。消息与订单状态在同一事务中写入本地消息表，以订单id保证只发送一次
+        outboxHelper.publish(
                 MqConstants.Exchange.ORDER_EXCHANGE,
                 MqConstants.Key.ORDER_PAY_KEY,
                 OrderBasicDTO.builder()
                         .orderId(o.getId()).userId(order.getUserId()).courseIds(cIds)
                         .finishTime(o.getPayTime())
-                        .build()
+                        .amount(order.getRealAmount())
+                        .courseAmounts(courseAmounts)
+                        .build(),
+                "order:pay:" + o.getId()
         );
     }
 
@@ -2,6 +2,7 @@ package com.tianji.trade.service.impl;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.tianji.api.batch.BatchLoader;
 import com.tianji.api.cache.RoleCache;
 import com.tianji.api.client.user.UserClient;
 import com.tianji.api.dto.trade.OrderBasicDTO;
@@ -64,6 +65,7 @@ public class RefundApplyServiceImpl extends ServiceImpl<RefundApplyMapper, Refun
     private final OrderMapper orderMapper;
     private final IOrderDetailService detailService;
     private final UserClient userClient;
+    private final BatchLoader<Long, UserDTO> userBatchLoader;
     private final PayClient payClient;
     private final RoleCache roleCache;
     private final ThreadPoolTaskExecutor sendRefundRequestExecutor;
@@ -242,7 +244,7 @@ public class RefundApplyServiceImpl extends ServiceImpl<RefundApplyMapper, Refun
             uIds.add(record.getApprover());
         }
         uIds.remove(null);
-        List<UserDTO> userDTOS = userClient.queryUserByIds(uIds);
+        List<UserDTO> userDTOS = userBatchLoader.getAll(uIds);
         if (userDTOS.size() != uIds.size()) {
             throw new BizIllegalException("用户数据有误");
         }
@@ -275,7 +277,7 @@ public class RefundApplyServiceImpl extends ServiceImpl<RefundApplyMapper, Refun
         uIds.add(apply.getUserId());
         uIds.add(apply.getCreater());
         // 4.1.远程查询
-        List<UserDTO> userDTOS = userClient.queryUserByIds(uIds);
+        List<UserDTO> userDTOS = userBatchLoader.getAll(uIds);
         AssertUtils.isNotEmpty(userDTOS, TradeErrorInfo.COURSE_EXPIRED);
         Map<Long, UserDTO> userMap = userDTOS.stream().collect(Collectors.toMap(UserDTO::getId, u -> u));
         // 4.2.学员
@@ -453,7 +455,11 @@ public class RefundApplyServiceImpl extends ServiceImpl<RefundApplyMapper, Refun
                     OrderBasicDTO.builder()
                             .orderId(refundApply.getOrderId())
                             .userId(refundApply.getUserId())
-                            .courseIds(CollUtils.singletonList(detail.getCourseId())).build());
+                            .courseIds(CollUtils.singletonList(detail.getCourseId()))
+                            .finishTime(r.getFinishTime())
+                            .amount(refundApply.getRefundAmount())
+                            .courseAmounts(Map.of(detail.getCourseId(), refundApply.getRefundAmount()))
+                            .build());
         }
     }
 
@@ -2,6 +2,9 @@ package com.tianji.user.service.impl;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.tianji.api.client.trade.TradeClient;
+import com.tianji.api.dto.user.UserEventDTO;
+import com.tianji.common.autoconfigure.outbox.OutboxHelper;
+import com.tianji.common.constants.MqConstants;
 import com.tianji.common.domain.dto.PageDTO;
 import com.tianji.common.enums.UserType;
 import com.tianji.common.utils.BeanUtils;
@@ -20,6 +23,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +44,7 @@ public class StudentServiceImpl implements IStudentService {
     private final IUserService userService;
     private final IUserDetailService detailService;
     private final TradeClient tradeClient;
+    private final OutboxHelper outboxHelper;
 
     @Override
     @Transactional
@@ -57,6 +62,14 @@ public class StudentServiceImpl implements IStudentService {
         student.setName(RandomUtils.randomString(8));
         student.setRoleId(UserConstants.STUDENT_ROLE_ID);
         detailService.save(student);
+
+        // 3.发送MQ消息，通知新学员注册。消息与学员数据在同一事务中写入本地消息表
+        outboxHelper.publish(
+                MqConstants.Exchange.USER_EXCHANGE,
+                MqConstants.Key.USER_REGISTER_KEY,
+                UserEventDTO.of(user.getId(), LocalDateTime.now()),
+                "user:register:" + user.getId()
+        );
     }
 
     @Override